@@ -0,0 +1,308 @@
+"""Reads an Arrow IPC file from the specification alone and prints its table.
+
+Written separately from satd.store.ArrowWriter, FlatBuffers and ArrowFile:
+it follows Schema.fbs, Message.fbs and File.fbs of the Arrow format and the
+rules of the FlatBuffers verifier that pyarrow and R arrow run over the
+metadata (bounds, alignment, vtables, null-terminated strings), and the IPC
+rules of the columnar format (8-byte aligned messages and buffers, buffer
+sizes, offsets, null counts, UTF-8). Any violation stops it with an error.
+
+When pyarrow is installed, the file is also read with pyarrow.ipc.open_file
+and both readings must agree.
+
+    python3 bench/arrow/check_arrow.py bench/arrow/golden.arrow
+    python3 bench/arrow/check_arrow.py bench/arrow/golden.arrow --expect bench/arrow/golden.txt
+"""
+
+import math
+import struct
+import sys
+
+MAGIC = b"ARROW1"
+
+# union Type of Schema.fbs
+TYPE_INT, TYPE_FLOAT, TYPE_UTF8, TYPE_BOOL = 2, 3, 5, 6
+TYPE_NAMES = {TYPE_INT: "Int", TYPE_FLOAT: "FloatingPoint", TYPE_UTF8: "Utf8", TYPE_BOOL: "Bool"}
+# union MessageHeader of Message.fbs
+HEADER_SCHEMA, HEADER_RECORD_BATCH = 1, 3
+
+
+class Invalid(Exception):
+    pass
+
+
+def need(ok, what):
+    if not ok:
+        raise Invalid(what)
+
+
+class Fb:
+    """One FlatBuffer, checked as flatbuffers::Verifier checks it."""
+
+    def __init__(self, buf, what):
+        self.b = buf
+        self.what = what
+
+    def _get(self, fmt, at, align):
+        size = struct.calcsize(fmt)
+        need(0 <= at and at + size <= len(self.b), "%s: read of %d bytes at %d out of bounds" % (self.what, size, at))
+        need(at % align == 0, "%s: %s at %d not aligned to %d" % (self.what, fmt, at, align))
+        return struct.unpack_from("<" + fmt, self.b, at)[0]
+
+    def u32(self, at):
+        return self._get("I", at, 4)
+
+    def root(self):
+        return self.table(0 + self.u32(0))
+
+    def table(self, at):
+        vt = at - self._get("i", at, 4)
+        vsize = self._get("H", vt, 2)
+        tsize = self._get("H", vt + 2, 2)
+        need(vsize >= 4 and vsize % 2 == 0, "%s: vtable size %d at %d" % (self.what, vsize, vt))
+        need(vt + vsize <= len(self.b) and at + tsize <= len(self.b), "%s: table at %d out of bounds" % (self.what, at))
+        fields = [self._get("H", vt + 4 + 2 * i, 2) for i in range((vsize - 4) // 2)]
+        for f in fields:
+            need(f < tsize, "%s: field offset %d beyond table size %d" % (self.what, f, tsize))
+        return Table(self, at, fields)
+
+
+class Table:
+    def __init__(self, fb, at, fields):
+        self.fb = fb
+        self.at = at
+        self.fields = fields
+
+    def _pos(self, slot):
+        if slot < len(self.fields) and self.fields[slot]:
+            return self.at + self.fields[slot]
+        return None
+
+    def scalar(self, slot, fmt, default):
+        p = self._pos(slot)
+        return default if p is None else self.fb._get(fmt, p, struct.calcsize(fmt))
+
+    def ref(self, slot):
+        p = self._pos(slot)
+        return None if p is None else p + self.fb.u32(p)
+
+    def table(self, slot):
+        r = self.ref(slot)
+        return None if r is None else self.fb.table(r)
+
+    def string(self, slot):
+        r = self.ref(slot)
+        if r is None:
+            return None
+        n = self.fb.u32(r)
+        need(r + 4 + n < len(self.fb.b), "%s: string at %d out of bounds" % (self.fb.what, r))
+        need(self.fb.b[r + 4 + n] == 0, "%s: string at %d not null-terminated" % (self.fb.what, r))
+        return self.fb.b[r + 4:r + 4 + n].decode("utf-8")
+
+    def tables(self, slot):
+        r = self.ref(slot)
+        if r is None:
+            return []
+        n = self.fb.u32(r)
+        return [self.fb.table(r + 4 + 4 * i + self.fb.u32(r + 4 + 4 * i)) for i in range(n)]
+
+    def structs(self, slot, fmt):
+        """Vector of structs of layout fmt, whose largest member is 8 bytes."""
+        r = self.ref(slot)
+        if r is None:
+            return []
+        n = self.fb.u32(r)
+        size = struct.calcsize("<" + fmt)
+        need((r + 4) % 8 == 0, "%s: struct vector at %d not aligned to 8" % (self.fb.what, r + 4))
+        need(r + 4 + n * size <= len(self.fb.b), "%s: struct vector at %d out of bounds" % (self.fb.what, r))
+        return [struct.unpack_from("<" + fmt, self.fb.b, r + 4 + i * size) for i in range(n)]
+
+
+def read_schema(schema):
+    need(schema is not None, "no schema")
+    need(schema.scalar(0, "h", 0) == 0, "schema is not little-endian")
+    fields = []
+    for f in schema.tables(1):
+        name = f.string(0)
+        type_type = f.scalar(2, "B", 0)
+        t = f.table(3)
+        need(t is not None, "field %s has no type table" % name)
+        need(f.ref(4) is None, "field %s is dictionary-encoded" % name)
+        need(not f.tables(5), "field %s has children" % name)
+        if type_type == TYPE_INT:
+            width, signed = t.scalar(0, "i", 0), t.scalar(1, "B", 0)
+            need((width, signed) == (32, 1), "field %s is Int(%d, %d), not int32" % (name, width, signed))
+        elif type_type == TYPE_FLOAT:
+            need(t.scalar(0, "h", 0) == 2, "field %s is not a double" % name)
+        else:
+            need(type_type in (TYPE_UTF8, TYPE_BOOL), "field %s has type %d" % (name, type_type))
+        fields.append((name, type_type, bool(f.scalar(1, "B", 0))))
+    return fields
+
+
+def read_message(data, offset, what):
+    need(offset % 8 == 0, "%s: message at %d not aligned to 8" % (what, offset))
+    need(struct.unpack_from("<I", data, offset)[0] == 0xFFFFFFFF, "%s: no continuation marker" % what)
+    length = struct.unpack_from("<i", data, offset + 4)[0]
+    need(length > 0 and (8 + length) % 8 == 0, "%s: metadata length %d leaves the body unaligned" % (what, length))
+    need(offset + 8 + length <= len(data), "%s: metadata out of bounds" % what)
+    message = Fb(data[offset + 8:offset + 8 + length], what).root()
+    need(message.scalar(0, "h", 0) == 4, "%s: metadata version is not V5" % what)
+    return message, 8 + length
+
+
+def bits(buf, i):
+    return (buf[i >> 3] >> (i & 7)) & 1
+
+
+def read_batch(data, block, fields, b):
+    offset, meta_length, body_length = block
+    what = "batch %d" % b
+    message, length = read_message(data, offset, what)
+    need(length == meta_length, "%s: block says %d metadata bytes, message has %d" % (what, meta_length, length))
+    need(message.scalar(1, "B", 0) == HEADER_RECORD_BATCH, "%s: not a record batch" % what)
+    need(message.scalar(3, "q", 0) == body_length, "%s: body length differs from its block" % what)
+    batch = message.table(2)
+    need(batch.ref(3) is None, "%s: compressed" % what)
+    rows = batch.scalar(0, "q", 0)
+    nodes = batch.structs(1, "qq")
+    buffers = batch.structs(2, "qq")
+    need(len(nodes) == len(fields), "%s: %d field nodes for %d fields" % (what, len(nodes), len(fields)))
+    body = offset + meta_length
+    need(body + body_length <= len(data), "%s: body out of bounds" % what)
+
+    def buffer(k):
+        at, size = buffers[k]
+        need(at % 8 == 0, "%s: buffer %d at %d not aligned to 8" % (what, k, at))
+        need(at >= 0 and size >= 0 and at + size <= body_length, "%s: buffer %d out of the body" % (what, k))
+        return data[body + at:body + at + size]
+
+    columns = []
+    k = 0
+    for (name, type_type, nullable), (n, nulls) in zip(fields, nodes):
+        need(n == rows, "%s: %s has %d rows of %d" % (what, name, n, rows))
+        need(nulls == 0 or nullable, "%s: %s has nulls but is not nullable" % (what, name))
+        validity = buffer(k)
+        if nulls:
+            need(len(validity) >= (n + 7) // 8, "%s: %s validity too short" % (what, name))
+            need(n - sum(bits(validity, i) for i in range(n)) == nulls, "%s: %s null count is wrong" % (what, name))
+        valid = [nulls == 0 or bits(validity, i) == 1 for i in range(n)]
+        if type_type == TYPE_UTF8:
+            offsets, chars = buffer(k + 1), buffer(k + 2)
+            k += 3
+            need(len(offsets) >= 4 * (n + 1), "%s: %s offsets too short" % (what, name))
+            o = struct.unpack_from("<%di" % (n + 1), offsets)
+            need(o[0] == 0 and all(o[i] <= o[i + 1] for i in range(n)) and o[n] <= len(chars),
+                 "%s: %s offsets are not monotonic within the data" % (what, name))
+            values = [chars[o[i]:o[i + 1]].decode("utf-8") for i in range(n)]
+        else:
+            data_buffer = buffer(k + 1)
+            k += 2
+            if type_type == TYPE_INT:
+                need(len(data_buffer) >= 4 * n, "%s: %s data too short" % (what, name))
+                values = list(struct.unpack_from("<%di" % n, data_buffer))
+            elif type_type == TYPE_FLOAT:
+                need(len(data_buffer) >= 8 * n, "%s: %s data too short" % (what, name))
+                values = list(struct.unpack_from("<%dd" % n, data_buffer))
+            else:
+                need(len(data_buffer) >= (n + 7) // 8, "%s: %s data too short" % (what, name))
+                values = [bits(data_buffer, i) == 1 for i in range(n)]
+        columns.append([v if ok else None for v, ok in zip(values, valid)])
+    need(k == len(buffers), "%s: %d buffers for %d expected" % (what, len(buffers), k))
+    return rows, columns
+
+
+def read(data):
+    need(data[:6] == MAGIC and data[-6:] == MAGIC, "no ARROW1 magic")
+    need(data[6:8] == b"\0\0", "magic not padded to 8 bytes")
+    footer_length = struct.unpack_from("<i", data, len(data) - 10)[0]
+    footer_at = len(data) - 10 - footer_length
+    need(8 <= footer_at, "footer out of bounds")
+    footer = Fb(data[footer_at:footer_at + footer_length], "footer").root()
+    need(footer.scalar(0, "h", 0) == 4, "footer version is not V5")
+    fields = read_schema(footer.table(1))
+    need(not footer.structs(2, "qi4xq"), "the file has dictionaries")
+    blocks = footer.structs(3, "qi4xq")
+
+    message, length = read_message(data, 8, "schema message")
+    need(message.scalar(1, "B", 0) == HEADER_SCHEMA, "the first message is not the schema")
+    need(read_schema(message.table(2)) == fields, "the schema message differs from the footer's")
+    end = 8 + length
+    batches = []
+    for b, block in enumerate(blocks):
+        need(block[0] == end, "batch %d at %d, not right after the previous message at %d" % (b, block[0], end))
+        batches.append(read_batch(data, block, fields, b))
+        end = block[0] + block[1] + block[2]
+    need(data[end:end + 8] == b"\xff\xff\xff\xff\0\0\0\0", "no end-of-stream marker after the last batch")
+    need(end + 8 == footer_at, "bytes between the end-of-stream marker and the footer")
+    return fields, batches
+
+
+def text(v):
+    if v is None:
+        return "null"
+    if isinstance(v, bool):
+        return "true" if v else "false"
+    if isinstance(v, float):
+        return "NaN" if math.isnan(v) else repr(v)
+    if isinstance(v, str):
+        return '"' + v.encode("unicode_escape").decode("ascii").replace('"', '\\"') + '"'
+    return str(v)
+
+
+def dump(fields, batches):
+    lines = ["%s %s%s" % (name, TYPE_NAMES[t], "" if nullable else " not null") for name, t, nullable in fields]
+    for b, (rows, columns) in enumerate(batches):
+        lines.append("batch %d: %d rows" % (b, rows))
+        for r in range(rows):
+            lines.append("  " + " ".join(text(c[r]) for c in columns))
+    return "\n".join(lines) + "\n"
+
+
+def check_pyarrow(path, fields, batches):
+    try:
+        import pyarrow.ipc
+    except ImportError:
+        return "pyarrow not installed"
+    reader = pyarrow.ipc.open_file(path)
+    need(reader.num_record_batches == len(batches), "pyarrow reads %d batches" % reader.num_record_batches)
+    need(reader.schema.names == [f[0] for f in fields], "pyarrow reads other column names")
+    for b, (rows, columns) in enumerate(batches):
+        batch = reader.get_batch(b)
+        for c, column in enumerate(columns):
+            theirs = batch.column(c).to_pylist()
+            same = all(a == t or (isinstance(a, float) and isinstance(t, float) and math.isnan(a) and math.isnan(t))
+                       for a, t in zip(column, theirs))
+            need(same and len(theirs) == rows, "pyarrow reads column %s of batch %d differently" % (fields[c][0], b))
+    return "pyarrow %s reads the same" % pyarrow.__version__
+
+
+def main(args):
+    if not args:
+        print(__doc__.strip().splitlines()[-2].strip(), file=sys.stderr)
+        return 1
+    path = args[0]
+    with open(path, "rb") as f:
+        data = f.read()
+    try:
+        fields, batches = read(data)
+        pyarrow = check_pyarrow(path, fields, batches)
+    except (Invalid, UnicodeDecodeError, struct.error) as e:
+        print("%s: invalid: %s" % (path, e), file=sys.stderr)
+        return 1
+    table = dump(fields, batches)
+    if "--expect" in args:
+        with open(args[args.index("--expect") + 1], encoding="utf-8") as f:
+            if f.read() != table:
+                print("%s: the table differs from %s" % (path, args[args.index("--expect") + 1]), file=sys.stderr)
+                sys.stdout.write(table)
+                return 1
+    elif sum(r for r, _ in batches) <= 20:
+        sys.stdout.write(table)
+    print("%s: valid, %d columns, %d batches, %d rows; %s"
+          % (path, len(fields), len(batches), sum(r for r, _ in batches), pyarrow), file=sys.stderr)
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main(sys.argv[1:]))
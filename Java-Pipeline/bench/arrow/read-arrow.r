@@ -0,0 +1,61 @@
+##
+## Reads the Arrow files of satd.store.ArrowWriter with R's arrow package
+## and stops at the first difference.
+##
+## install.packages("arrow")
+##
+## golden.arrow is the small table of satd.bench.ArrowBench, which checks
+## that the writer still produces it byte for byte; check_arrow.py reads it
+## from the Arrow specification alone. Give an export of data_v3
+## and the data_v3 directory to compare every cell with read.csv as well:
+##
+##   java -cp out satd.store.ArrowWriter --out /tmp/data_v3.arrow \
+##       -- ../R-Neural-Network/data_v3/metrics-smells-psatd-msatd-*.csv
+##   Rscript bench/arrow/read-arrow.r bench/arrow/golden.arrow \
+##       /tmp/data_v3.arrow ../R-Neural-Network/data_v3
+##
+
+library(arrow)
+
+args <- commandArgs(trailingOnly = TRUE)
+golden <- if (length(args) > 0) args[1] else "bench/arrow/golden.arrow"
+
+reader <- RecordBatchFileReader$create(golden)
+stopifnot(reader$num_record_batches == 2,
+          reader$batch(0)$num_rows == 3,
+          reader$batch(1)$num_rows == 2)
+types <- sapply(reader$schema$fields, function(f) f$type$ToString())
+stopifnot(identical(reader$schema$names, c("System", "LOC", "CC", "Blob", "File")),
+          identical(types, c("string", "int32", "double", "bool", "string")))
+
+d <- as.data.frame(reader$read_table())
+stopifnot(identical(d$System, c("ant", "ant", "ant", "jEdit", "jEdit")),
+          identical(d$LOC, c(12L, NA, -7L, 2147483647L, 0L)),
+          identical(d$CC, c(1.5, -0.25, NA, 1e-300, NaN)),
+          identical(d$Blob, c(TRUE, NA, FALSE, TRUE, FALSE)),
+          identical(enc2utf8(d$File), c("a/B.java", "", NA, "é/ü.java", "c/D.java")))
+print(paste(golden, "reads as written"))
+
+if (length(args) > 2) {
+  a <- read_ipc_file(args[2])
+  files <- list.files(args[3], pattern = "^metrics-smells-psatd-msatd-.*\\.csv$", full.names = T)
+  for (f in files) {
+    system <- sub("^metrics-smells-psatd-msatd-(.*)\\.csv$", "\\1", basename(f))
+    csv <- read.csv(f, header = T, sep = ";", check.names = F, stringsAsFactors = F)
+    rows <- a[a$System == system, ]
+    stopifnot(nrow(rows) == nrow(csv))
+    for (col in names(csv)) {
+      x <- rows[[col]]
+      y <- csv[[col]]
+      if (is.numeric(y)) {
+        same <- identical(as.numeric(x), as.numeric(y))
+      } else {
+        same <- identical(ifelse(is.na(x), "", as.character(x)), ifelse(is.na(y), "", y))
+      }
+      if (!same) {
+        stop(paste(system, col, "differs from", f))
+      }
+    }
+    print(paste(system, nrow(csv), "rows as read.csv reads them"))
+  }
+}
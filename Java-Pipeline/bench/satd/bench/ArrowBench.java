@@ -0,0 +1,242 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import satd.csv.CsvReader;
+import satd.link.SmellIndex;
+import satd.store.ArrowFile;
+import satd.store.ArrowWriter;
+
+/**
+ * Exports the nine data_v3 files, joined with the smell flags, to one Arrow
+ * file, then compares loading the dataset from the CSV text (every cell a
+ * String, numbers parsed, as read.csv does) with opening the Arrow file and
+ * reading every numeric column from the mapping. Every cell of the Arrow
+ * file must match the CSV.
+ *
+ * First the writer's output for a small fixed table (every type, nulls, two
+ * batches) must equal bench/arrow/golden.arrow byte for byte and read back
+ * through {@link ArrowFile}. The golden file is the reference only as far
+ * as readers outside this code accept it: bench/arrow/check_arrow.py reads
+ * it from the Arrow specification (and with pyarrow, when installed) into
+ * bench/arrow/golden.txt, and bench/arrow/read-arrow.r reads it with R's
+ * arrow package. {@code --write-golden} rewrites it after a deliberate
+ * change to the writer, which must then pass both again.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.ArrowBench ..
+ */
+public final class ArrowBench {
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        Path golden = root.resolve("Java-Pipeline/bench/arrow/golden.arrow");
+        if (args.length > 1 && args[1].equals("--write-golden")) {
+            writeGolden(golden);
+            System.out.println("wrote " + golden);
+            return;
+        }
+        checkGolden(golden);
+        List<Path> csvs = list(root.resolve("R-Neural-Network/data_v3"), "metrics-smells-psatd-msatd-", ".csv");
+        List<Path> smellFiles = list(root.resolve("Antipatterns-Data"), "smells-", ".txt");
+        smellFiles.removeIf(p -> p.getFileName().toString().equals("smells-list.txt"));
+        Path index = Files.createTempFile("smells", ".idx");
+        Path arrow = Files.createTempFile("data_v3", ".arrow");
+        long csvBytes = 0;
+        for (Path p : csvs) {
+            csvBytes += Files.size(p);
+        }
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        try (SmellIndex smells = SmellIndex.openOrBuild(index, smellFiles)) {
+            harness.run("export " + csvs.size() + " data_v3 files", () -> {
+                try {
+                    return ArrowWriter.exportCsv(csvs, smells, arrow);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        harness.run("load CSV text, parse numbers", () -> {
+            try {
+                return loadCsv(csvs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        harness.run("open Arrow file, read numeric columns", () -> {
+            try (ArrowFile f = ArrowFile.open(arrow)) {
+                return sum(f);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        try (ArrowFile f = ArrowFile.open(arrow)) {
+            int mismatches = verify(f, csvs);
+            long[] types = new long[ArrowWriter.Type.values().length];
+            for (int c = 0; c < f.columns().size(); c++) {
+                types[f.type(c).ordinal()]++;
+            }
+            System.out.printf(Locale.ROOT, "%d rows in %d batches; columns: %d INT, %d DOUBLE, %d BOOL, %d UTF8%n",
+                    f.rows(), f.batches(), types[0], types[1], types[2], types[3]);
+            System.out.printf(Locale.ROOT, "CSV %.1f MB, Arrow %.1f MB, %d cells differ%n",
+                    csvBytes / 1048576.0, Files.size(arrow) / 1048576.0, mismatches);
+        }
+        Files.delete(index);
+        Files.delete(arrow);
+    }
+
+    /** The golden table: System, LOC, CC, Blob and File columns, in two batches. */
+    private static void writeGolden(Path out) throws IOException {
+        List<String> names = List.of("System", "LOC", "CC", "Blob", "File");
+        List<ArrowWriter.Type> types = List.of(ArrowWriter.Type.UTF8, ArrowWriter.Type.INT,
+                ArrowWriter.Type.DOUBLE, ArrowWriter.Type.BOOL, ArrowWriter.Type.UTF8);
+        try (ArrowWriter w = new ArrowWriter(out, names, types)) {
+            w.batch(3, new Object[] {
+                new String[] {"ant", "ant", "ant"},
+                new int[] {12, 0, -7},
+                new double[] {1.5, -0.25, 0},
+                new boolean[] {true, false, false},
+                new String[] {"a/B.java", "", null},
+            }, new boolean[][] {
+                null,
+                {true, false, true},
+                {true, true, false},
+                {true, false, true},
+                null,
+            });
+            w.batch(2, new Object[] {
+                new String[] {"jEdit", "jEdit"},
+                new int[] {Integer.MAX_VALUE, 0},
+                new double[] {1e-300, Double.NaN},
+                new boolean[] {true, false},
+                new String[] {"\u00e9/\u00fc.java", "c/D.java"},
+            }, null);
+        }
+    }
+
+    /** Fails unless the writer's golden table equals {@code golden} and reads back as written. */
+    private static void checkGolden(Path golden) throws IOException {
+        Path mine = Files.createTempFile("golden", ".arrow");
+        try {
+            writeGolden(mine);
+            check(Arrays.equals(Files.readAllBytes(mine), Files.readAllBytes(golden)),
+                    "the golden table is written as " + golden);
+        } finally {
+            Files.delete(mine);
+        }
+        try (ArrowFile f = ArrowFile.open(golden)) {
+            check(f.columns().equals(List.of("System", "LOC", "CC", "Blob", "File")), "golden columns");
+            check(f.batches() == 2 && f.rows(0) == 3 && f.rows(1) == 2, "golden batches");
+            check(f.string(0, 0, 2).equals("ant") && f.string(1, 0, 1).equals("jEdit"), "golden System");
+            check(f.ints(0, 1).get(0) == 12 && f.isNull(0, 1, 1) && f.ints(0, 1).get(2) == -7
+                    && f.ints(1, 1).get(0) == Integer.MAX_VALUE && !f.isNull(1, 1, 1), "golden LOC");
+            check(f.doubles(0, 2).get(1) == -0.25 && f.isNull(0, 2, 2) && f.doubles(1, 2).get(0) == 1e-300
+                    && Double.isNaN(f.doubles(1, 2).get(1)), "golden CC");
+            check(f.bool(0, 3, 0) && f.isNull(0, 3, 1) && !f.isNull(0, 3, 2) && !f.bool(0, 3, 2)
+                    && f.bool(1, 3, 0), "golden Blob");
+            check("".equals(f.string(0, 4, 1)) && f.string(0, 4, 2) == null
+                    && "\u00e9/\u00fc.java".equals(f.string(1, 4, 0)), "golden File");
+        }
+        System.out.println("golden.arrow: written byte for byte and read back");
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            throw new IllegalStateException("check failed: " + what);
+        }
+    }
+
+    private static long loadCsv(List<Path> csvs) throws IOException {
+        double sum = 0;
+        for (Path p : csvs) {
+            try (CsvReader r = CsvReader.open(p, StandardCharsets.ISO_8859_1, ';')) {
+                r.next();
+                String[] row;
+                while ((row = r.next()) != null) {
+                    for (String v : row) {
+                        if (!v.isEmpty() && (Character.isDigit(v.charAt(0)) || v.charAt(0) == '-')) {
+                            sum += Double.parseDouble(v);
+                        }
+                    }
+                }
+            }
+        }
+        return (long) sum;
+    }
+
+    private static long sum(ArrowFile f) {
+        double sum = 0;
+        for (int b = 0; b < f.batches(); b++) {
+            for (int c = 0; c < f.columns().size(); c++) {
+                if (f.type(c) == ArrowWriter.Type.DOUBLE) {
+                    DoubleBuffer v = f.doubles(b, c);
+                    for (int r = 0; r < v.limit(); r++) {
+                        sum += v.get(r);
+                    }
+                } else if (f.type(c) == ArrowWriter.Type.INT) {
+                    IntBuffer v = f.ints(b, c);
+                    for (int r = 0; r < v.limit(); r++) {
+                        sum += v.get(r);
+                    }
+                }
+            }
+        }
+        return (long) sum;
+    }
+
+    private static int verify(ArrowFile f, List<Path> csvs) throws IOException {
+        int mismatches = 0;
+        for (int b = 0; b < csvs.size(); b++) {
+            try (CsvReader r = CsvReader.open(csvs.get(b), StandardCharsets.ISO_8859_1, ';')) {
+                String[] header = r.next();
+                String[] row;
+                for (int i = 0; (row = r.next()) != null; i++) {
+                    if (!ArrowWriter.systemOf(csvs.get(b)).equals(f.string(b, 0, i))) {
+                        mismatches++;
+                    }
+                    for (int k = 0; k < header.length; k++) {
+                        int c = k + 1;
+                        String v = row[k];
+                        boolean same;
+                        if (v.isEmpty()) {
+                            same = f.isNull(b, c, i);
+                        } else if (f.type(c) == ArrowWriter.Type.DOUBLE) {
+                            same = f.doubles(b, c).get(i) == Double.parseDouble(v);
+                        } else if (f.type(c) == ArrowWriter.Type.INT) {
+                            same = f.ints(b, c).get(i) == Integer.parseInt(v);
+                        } else {
+                            same = v.equals(f.string(b, c, i));
+                        }
+                        mismatches += same ? 0 : 1;
+                    }
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    private static List<Path> list(Path dir, String prefix, String suffix) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix) && !name.startsWith("._");
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+}
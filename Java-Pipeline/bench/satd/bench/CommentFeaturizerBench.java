@@ -0,0 +1,62 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import satd.embed.EmbeddingStore;
+import satd.features.CommentFeaturizer;
+
+/**
+ * Featurizes the comments of the toAnalyse corpora, repeated to 100k
+ * comments, in batches of 1024 into one preallocated buffer. B/op should
+ * stay at zero: nothing is allocated per comment.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.embed.EmbeddingStoreWriter ../word2vec.git/trunk/bin/concordia-bin.bin concordia.emb
+ *   java -cp out satd.bench.CommentFeaturizerBench concordia.emb ../toAnalyse_FN.java ../toAnalyse_FP.java
+ */
+public final class CommentFeaturizerBench {
+
+    private static final int COMMENTS = 100_000;
+    private static final int BATCH = 1024;
+    private static final Pattern COMMENT = Pattern.compile("//([^\\n]*)|/\\*((?s:.*?))\\*/");
+
+    public static void main(String[] args) throws IOException {
+        List<String> found = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            Matcher m = COMMENT.matcher(new String(Files.readAllBytes(Paths.get(args[i])), StandardCharsets.ISO_8859_1));
+            while (m.find()) {
+                found.add(m.group(1) != null ? m.group(1) : m.group(2));
+            }
+        }
+        CharSequence[] comments = new CharSequence[COMMENTS];
+        long chars = 0;
+        for (int i = 0; i < COMMENTS; i++) {
+            comments[i] = found.get(i % found.size());
+            chars += comments[i].length();
+        }
+        System.out.printf("%d distinct comments, %.1f chars on average%n", found.size(), (double) chars / COMMENTS);
+
+        try (EmbeddingStore store = EmbeddingStore.open(Paths.get(args[0]))) {
+            CommentFeaturizer featurizer = new CommentFeaturizer(store, 256);
+            float[] out = new float[BATCH * featurizer.width()];
+            Harness harness = Harness.configured();
+            Harness.header();
+            double ms = harness.run("featurize " + COMMENTS + " comments", () -> {
+                long tokens = 0;
+                for (int from = 0; from < COMMENTS; from += BATCH) {
+                    tokens += featurizer.featurize(comments, from, Math.min(BATCH, COMMENTS - from), out);
+                }
+                return tokens;
+            });
+            System.out.printf("%.0f comments/s%n", COMMENTS / ms * 1000);
+        }
+    }
+}
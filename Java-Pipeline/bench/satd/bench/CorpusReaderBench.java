@@ -0,0 +1,99 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import satd.corpus.CorpusReader;
+
+/**
+ * CorpusReader against the old slurp-and-split approach, on the two
+ * toAnalyse corpora and on a synthetic concatenation of both.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out -Dbench.synthetic.mb=1024 satd.bench.CorpusReaderBench ../toAnalyse_FN.java ../toAnalyse_FP.java
+ */
+public final class CorpusReaderBench {
+
+    public static void main(String[] args) throws IOException {
+        Harness harness = Harness.configured();
+        Harness.header();
+        for (String arg : args) {
+            Path file = Paths.get(arg);
+            compare(harness, file.getFileName().toString(), file);
+        }
+
+        long mb = Long.getLong("bench.synthetic.mb", 0);
+        if (mb > 0 && args.length > 0) {
+            Path synthetic = Files.createTempFile("corpus-", ".java");
+            try {
+                concatenate(args, synthetic, mb << 20);
+                // one timed pass each, a 1 GB split does not fit a loop
+                compare(new Harness(0, 1), "synthetic", synthetic);
+            } finally {
+                Files.delete(synthetic);
+            }
+        }
+    }
+
+    private static void compare(Harness harness, String label, Path file) {
+        String name = label + " (" + (size(file) >> 10) + " KB)";
+        harness.run("split  " + name, () -> split(file));
+        harness.run("mapped " + name, () -> mapped(file));
+    }
+
+    static long split(Path file) {
+        try {
+            String text = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+            long chars = 0;
+            for (String snippet : text.split(CorpusReader.SEPARATOR)) {
+                chars += snippet.trim().length();
+            }
+            return chars;
+        } catch (IOException | OutOfMemoryError e) {
+            System.out.println("  split failed: " + e);
+            return 0;
+        }
+    }
+
+    static long mapped(Path file) {
+        try (CorpusReader corpus = CorpusReader.open(file)) {
+            long chars = 0;
+            for (CharSequence snippet : corpus) {
+                chars += snippet.length();
+            }
+            return chars;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void concatenate(String[] sources, Path target, long bytes) throws IOException {
+        byte[][] parts = new byte[sources.length][];
+        for (int i = 0; i < sources.length; i++) {
+            parts[i] = Files.readAllBytes(Paths.get(sources[i]));
+        }
+        byte[] separator = ("\n" + CorpusReader.SEPARATOR + "\n").getBytes(StandardCharsets.ISO_8859_1);
+        try (OutputStream out = Files.newOutputStream(target)) {
+            long written = 0;
+            for (int i = 0; written < bytes; i = (i + 1) % parts.length) {
+                out.write(parts[i]);
+                out.write(separator);
+                written += parts[i].length + separator.length;
+            }
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import satd.csv.CsvReader;
+import satd.csv.CsvTokenizer;
+
+/**
+ * Reads ToAnalyse.csv (free-text FN column, then System, ClassPath_methodName
+ * and the metric and PMD count columns) three ways: {@link CsvReader}, which
+ * like R's read.csv makes a String of every field before converting the
+ * numeric ones, and {@link CsvTokenizer} over a heap and over a mapped
+ * buffer, which parses the numeric columns from the bytes and decodes only
+ * the three text columns. The values must agree.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.CsvTokenizerBench ../ToAnalyse.csv
+ */
+public final class CsvTokenizerBench {
+
+    /** FN, System and ClassPath_methodName; the header names the numeric columns after them. */
+    private static final int TEXT = 3;
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "../ToAnalyse.csv");
+        byte[] bytes = Files.readAllBytes(file);
+        int columns;
+        try (CsvReader r = CsvReader.open(file, StandardCharsets.ISO_8859_1, ',')) {
+            String[] header = r.next();
+            columns = header.length;
+            while (columns > 0 && header[columns - 1].isEmpty()) {
+                columns--;
+            }
+        }
+        // the last named column, containInfo, is text too
+        int numeric = columns - 1;
+        double mb = bytes.length / 1048576.0;
+        System.out.printf(Locale.ROOT, "%s: %.1f MB, %d named columns, %d numeric%n", file, mb, columns, numeric - TEXT);
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        double readerMs = harness.run("CsvReader, Strings then parse", () -> {
+            try {
+                return viaReader(file, numeric);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        double heapMs = harness.run("CsvTokenizer, heap buffer", () -> viaTokenizer(new CsvTokenizer(ByteBuffer.wrap(bytes), (byte) ','), numeric));
+        double mappedMs = harness.run("CsvTokenizer, mapped file", () -> {
+            try {
+                return viaTokenizer(CsvTokenizer.map(file, (byte) ','), numeric);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        double splitMs = harness.run("CsvTokenizer, offsets only", () -> {
+            CsvTokenizer csv = new CsvTokenizer(ByteBuffer.wrap(bytes), (byte) ',');
+            long n = 0;
+            while (csv.next() >= 0) {
+                n += csv.fields();
+            }
+            return n;
+        });
+        System.out.printf(Locale.ROOT, "MB/s: CsvReader %.0f, heap %.0f, mapped %.0f, offsets only %.0f%n",
+                mb / readerMs * 1000, mb / heapMs * 1000, mb / mappedMs * 1000, mb / splitMs * 1000);
+
+        int differences = 0;
+        CsvTokenizer csv = new CsvTokenizer(ByteBuffer.wrap(bytes), (byte) ',');
+        try (CsvReader r = CsvReader.open(file, StandardCharsets.ISO_8859_1, ',')) {
+            String[] row;
+            while ((row = r.next()) != null) {
+                csv.next();
+                if (csv.fields() != row.length) {
+                    differences++;
+                    continue;
+                }
+                for (int f = 0; f < row.length; f++) {
+                    differences += csv.string(f).equals(row[f]) ? 0 : 1;
+                }
+            }
+            differences += csv.next() < 0 ? 0 : 1;
+        }
+        System.out.printf(Locale.ROOT, "%d records, %d fields differ from CsvReader%n", csv.record() + 1, differences);
+    }
+
+    private static long viaReader(Path file, int numeric) throws IOException {
+        List<String> notes = new ArrayList<>();
+        double sum = 0;
+        try (CsvReader r = CsvReader.open(file, StandardCharsets.ISO_8859_1, ',')) {
+            r.next();
+            String[] row;
+            while ((row = r.next()) != null) {
+                notes.add(row[0]);
+                notes.add(row[1]);
+                notes.add(row[2]);
+                for (int c = TEXT; c < numeric && c < row.length; c++) {
+                    if (!row[c].isEmpty()) {
+                        sum += Double.parseDouble(row[c]);
+                    }
+                }
+            }
+        }
+        return notes.size() + (long) sum;
+    }
+
+    private static long viaTokenizer(CsvTokenizer csv, int numeric) {
+        List<String> notes = new ArrayList<>();
+        double sum = 0;
+        csv.next();
+        while (csv.next() >= 0) {
+            notes.add(csv.string(0));
+            notes.add(csv.string(1));
+            notes.add(csv.string(2));
+            int n = Math.min(numeric, csv.fields());
+            for (int c = TEXT; c < n; c++) {
+                if (!csv.isEmpty(c)) {
+                    sum += csv.parseDouble(c);
+                }
+            }
+        }
+        return notes.size() + (long) sum;
+    }
+}
@@ -0,0 +1,85 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import satd.learn.Dataset;
+import satd.learn.Forest;
+import satd.learn.ForestTrainer;
+import satd.learn.GbmTrainer;
+import satd.learn.MlpTrainer;
+import satd.learn.Presorted;
+import satd.learn.Scores;
+
+/**
+ * Times presorting train-set3.csv and growing random forests of 100 and
+ * 400 trees and a treebag of 25 on it, with one thread and with the common
+ * pool, and reports the heap in use after each so that growth with the
+ * number of trees shows. Then cross-validates train-set3.csv and every
+ * data_v3 file with a 500-tree forest and prints the AUC next to the best
+ * of caret's treebag1..treebag3 in caret-results.txt.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.ForestBench ..
+ */
+public final class ForestBench {
+
+    private static final double CARET_TREEBAG_AUC = 0.6521;
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        List<Path> files = new ArrayList<>();
+        files.add(root.resolve("train-set3.csv"));
+        files.addAll(MlpTrainer.systems(root.resolve("R-Neural-Network/data_v3")));
+
+        Dataset d = GbmTrainer.load(files.get(0));
+        Presorted sorted = Presorted.of(d);
+        int[] rows = new int[d.rows()];
+        for (int r = 0; r < rows.length; r++) {
+            rows[r] = r;
+        }
+        ForkJoinPool single = new ForkJoinPool(1);
+        int threads = ForkJoinPool.commonPool().getParallelism();
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("presort " + d.rows() + " x " + d.width(), () -> Presorted.of(d).features());
+        for (int trees : new int[] {100, 400}) {
+            ForestTrainer serial = new ForestTrainer(single, trees, 0, 1, Integer.MAX_VALUE);
+            ForestTrainer parallel = new ForestTrainer(ForkJoinPool.commonPool(), trees, 0, 1, Integer.MAX_VALUE);
+            harness.run("rf " + trees + " trees, 1 thread", () -> serial.train(d, sorted, rows, 1).nodes());
+            harness.run("rf " + trees + " trees, " + threads + " threads", () -> parallel.train(d, sorted, rows, 1).nodes());
+            Forest forest = parallel.train(d, sorted, rows, 1);
+            System.out.printf(Locale.ROOT, "  %d trees: %d nodes, %.1f MB heap in use%n", trees, forest.nodes(),
+                    usedHeap() / 1e6);
+        }
+        ForestTrainer treebag = new ForestTrainer(ForkJoinPool.commonPool(), 25, Integer.MAX_VALUE, 1, Integer.MAX_VALUE);
+        harness.run("treebag 25 trees, " + threads + " threads", () -> treebag.train(d, sorted, rows, 1).nodes());
+        single.shutdown();
+
+        ForestTrainer rf = new ForestTrainer(ForkJoinPool.commonPool(), 500, 0, 1, Integer.MAX_VALUE);
+        System.out.printf(Locale.ROOT, "%n%-48s %6s %9s %8s%n", "10-fold CV, rf 500 trees", "rows", "AUC", "s");
+        for (Path csv : files) {
+            long t0 = System.nanoTime();
+            Dataset s = GbmTrainer.load(csv);
+            float[] p = rf.crossValidate(s, Presorted.of(s), 10, new Random(137));
+            System.out.printf(Locale.ROOT, "%-48s %6d %9.4f %8.2f%n", MlpTrainer.systemOf(csv), s.rows(),
+                    Scores.auc(s.y(), p), (System.nanoTime() - t0) / 1e9);
+        }
+        System.out.printf(Locale.ROOT, "%-48s %6s %9.4f%n", "caret treebag3, caret-results.txt", "", CARET_TREEBAG_AUC);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
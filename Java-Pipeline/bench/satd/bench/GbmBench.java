@@ -0,0 +1,65 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import satd.learn.Bins;
+import satd.learn.Dataset;
+import satd.learn.GbmTrainer;
+import satd.learn.MlpTrainer;
+import satd.learn.Scores;
+
+/**
+ * Times quantizing train-set3.csv and training 150 depth-3 trees on it,
+ * with one thread and with the common pool, then cross-validates
+ * train-set3.csv and every data_v3 file (10 stratified folds) and prints
+ * the AUC next to the best of caret's gbm1..gbm3 in caret-results.txt.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.GbmBench ..
+ */
+public final class GbmBench {
+
+    private static final double CARET_GBM_AUC = 0.8167;
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        List<Path> files = new ArrayList<>();
+        files.add(root.resolve("train-set3.csv"));
+        files.addAll(MlpTrainer.systems(root.resolve("R-Neural-Network/data_v3")));
+
+        Dataset d = GbmTrainer.load(files.get(0));
+        Bins bins = Bins.of(d, Bins.MAX_BINS);
+        int[] rows = new int[d.rows()];
+        for (int r = 0; r < rows.length; r++) {
+            rows[r] = r;
+        }
+        ForkJoinPool single = new ForkJoinPool(1);
+        GbmTrainer serial = new GbmTrainer(single, 150, 3, 0.1, 10, 0.5);
+        GbmTrainer parallel = new GbmTrainer(ForkJoinPool.commonPool(), 150, 3, 0.1, 10, 0.5);
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("quantize " + d.rows() + " x " + d.width(), () -> Bins.of(d, Bins.MAX_BINS).features());
+        harness.run("train 150 trees, 1 thread", () -> serial.train(d, bins, rows, 1).nodes());
+        harness.run("train 150 trees, " + ForkJoinPool.commonPool().getParallelism() + " threads",
+                () -> parallel.train(d, bins, rows, 1).nodes());
+        single.shutdown();
+
+        System.out.printf(Locale.ROOT, "%n%-48s %6s %9s %8s%n", "10-fold CV", "rows", "AUC", "s");
+        for (Path csv : files) {
+            long t0 = System.nanoTime();
+            Dataset s = GbmTrainer.load(csv);
+            float[] p = parallel.crossValidate(s, Bins.of(s, Bins.MAX_BINS), 10, new Random(137));
+            System.out.printf(Locale.ROOT, "%-48s %6d %9.4f %8.2f%n", MlpTrainer.systemOf(csv), s.rows(),
+                    Scores.auc(s.y(), p), (System.nanoTime() - t0) / 1e9);
+        }
+        System.out.printf(Locale.ROOT, "%-48s %6s %9.4f%n", "caret gbm3, caret-results.txt", "", CARET_GBM_AUC);
+    }
+}
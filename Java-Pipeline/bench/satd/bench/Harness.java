@@ -0,0 +1,86 @@
+package satd.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal benchmark loop: warm-up iterations, then timed iterations.
+ * Reports time and throughput per operation together with the bytes
+ * allocated per operation and per second, like JMH's {@code -prof gc}. The
+ * value returned by each operation is folded into a sink so the JIT cannot
+ * drop it.
+ *
+ * Allocation is counted per thread, from what each one had allocated when
+ * the timed iterations started to what it has at the end: the calling
+ * thread and every pool worker alive at the end, workers started during
+ * the run included. The JVM forgets the count of a thread once it exits,
+ * so a thread that ends during the run is lost; the line then says how
+ * many did, and B/op is a lower bound.
+ */
+public final class Harness {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static volatile long sink;
+
+    private final int warmup;
+    private final int iterations;
+
+    public Harness(int warmup, int iterations) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    /** Iteration counts from {@code -Dbench.warmup} and {@code -Dbench.iterations}. */
+    public static Harness configured() {
+        int warmup = Integer.getInteger("bench.warmup", 3);
+        int iterations = Integer.getInteger("bench.iterations", 5);
+        return new Harness(warmup, iterations);
+    }
+
+    public static void header() {
+        System.out.printf(Locale.ROOT, "%-48s %12s %14s %14s %10s%n", "Benchmark", "ms/op", "ops/s", "B/op", "MB/s");
+    }
+
+    /** Runs {@code op} and prints one result line; returns the mean ms/op. */
+    public double run(String name, LongSupplier op) {
+        for (int i = 0; i < warmup; i++) {
+            sink += op.getAsLong();
+        }
+        long[] ids0 = THREADS.getAllThreadIds();
+        long[] bytes0 = THREADS.getThreadAllocatedBytes(ids0);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += op.getAsLong();
+        }
+        long elapsed = System.nanoTime() - t0;
+        long[] ids1 = THREADS.getAllThreadIds();
+        long[] bytes1 = THREADS.getThreadAllocatedBytes(ids1);
+
+        Map<Long, Long> before = new HashMap<>();
+        for (int t = 0; t < ids0.length; t++) {
+            if (bytes0[t] >= 0) {
+                before.put(ids0[t], bytes0[t]);
+            }
+        }
+        long bytes = 0;
+        int alive = 0;
+        for (int t = 0; t < ids1.length; t++) {
+            if (bytes1[t] >= 0) {
+                Long b = before.get(ids1[t]);
+                bytes += bytes1[t] - (b == null ? 0 : b);
+                alive += b == null ? 0 : 1;
+            }
+        }
+        int exited = before.size() - alive;
+        double msPerOp = elapsed / 1e6 / iterations;
+        System.out.printf(Locale.ROOT, "%-48s %12.3f %14.2f %14d %10.1f%s%n",
+                name, msPerOp, 1000.0 / msPerOp, bytes / iterations, bytes / 1048576.0 / (elapsed / 1e9),
+                exited == 0 ? "" : "  (" + exited + " threads exited, B/op is a lower bound)");
+        return msPerOp;
+    }
+}
@@ -0,0 +1,112 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import satd.learn.Csr;
+import satd.learn.Dataset;
+import satd.learn.GbmTrainer;
+import satd.learn.Logistic;
+import satd.learn.LogisticTrainer;
+import satd.learn.MlpTrainer;
+
+/**
+ * Times fitting the 30-lambda lasso path of train-set3.csv and of all
+ * nine data_v3 files, with one thread and with the common pool, and
+ * scoring every row with a fitted model through the CSR nonzeros against
+ * a dense dot product over all features.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.LogisticBench ..
+ */
+public final class LogisticBench {
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        List<Path> files = new ArrayList<>();
+        files.add(root.resolve("train-set3.csv"));
+        files.addAll(MlpTrainer.systems(root.resolve("R-Neural-Network/data_v3")));
+        List<Dataset> data = new ArrayList<>();
+        List<Csr> matrices = new ArrayList<>();
+        long cells = 0;
+        long nonZeros = 0;
+        for (Path csv : files) {
+            Dataset d = GbmTrainer.load(csv);
+            Csr x = Csr.of(d).scaledByMaxAbs();
+            data.add(d);
+            matrices.add(x);
+            cells += (long) d.rows() * d.width();
+            nonZeros += x.nonZeros();
+        }
+        System.out.printf(Locale.ROOT, "%d files, %d cells, %d nonzero (%.0f%%)%n%n", files.size(), cells, nonZeros,
+                100.0 * nonZeros / cells);
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        LogisticTrainer serial = new LogisticTrainer(single, 1);
+        LogisticTrainer parallel = new LogisticTrainer(ForkJoinPool.commonPool(), 1);
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("Csr.of, " + files.size() + " files", () -> {
+            long n = 0;
+            for (Dataset d : data) {
+                n += Csr.of(d).nonZeros();
+            }
+            return n;
+        });
+        harness.run("path of " + files.size() + " files, 1 thread", () -> paths(serial, data, matrices));
+        harness.run("path of " + files.size() + " files, " + ForkJoinPool.commonPool().getParallelism() + " threads",
+                () -> paths(parallel, data, matrices));
+        single.shutdown();
+
+        Dataset d = data.get(0);
+        Csr x = matrices.get(0);
+        List<Logistic> path = parallel.path(x, d.y(), all(d.rows()), 30);
+        Logistic model = path.get(path.size() / 2);
+        float[] dense = d.x();
+        int width = d.width();
+        double[] w = model.weights();
+        harness.run("score " + d.rows() + " rows, CSR", () -> {
+            double sum = 0;
+            for (int r = 0; r < x.rows(); r++) {
+                sum += model.margin(x, r);
+            }
+            return (long) sum;
+        });
+        harness.run("score " + d.rows() + " rows, dense", () -> {
+            double sum = 0;
+            for (int r = 0; r < d.rows(); r++) {
+                double m = model.bias();
+                for (int j = 0; j < width; j++) {
+                    m += dense[r * width + j] * w[j];
+                }
+                sum += m;
+            }
+            return (long) sum;
+        });
+    }
+
+    private static long paths(LogisticTrainer trainer, List<Dataset> data, List<Csr> matrices) {
+        long weights = 0;
+        for (int i = 0; i < data.size(); i++) {
+            Dataset d = data.get(i);
+            for (Logistic model : trainer.path(matrices.get(i), d.y(), all(d.rows()), 30)) {
+                weights += model.nonZeros();
+            }
+        }
+        return weights;
+    }
+
+    private static int[] all(int n) {
+        int[] rows = new int[n];
+        for (int r = 0; r < n; r++) {
+            rows[r] = r;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,162 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import satd.embed.EmbeddingStore;
+import satd.features.CommentFeaturizer;
+import satd.learn.Lstm;
+import satd.learn.LstmScorer;
+
+/**
+ * Scores the comments of the toAnalyse corpora, repeated to 300k like a
+ * system snapshot, with a two-layer LSTM of 128 units and random weights
+ * on the given embeddings, in batches of 64 and of 1. Before timing, the
+ * probabilities of the first comments are compared with a direct
+ * double-precision evaluation of the saved model: the unstacked i2h and
+ * h2h matrices as Torch stores them, one comment at a time.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.embed.EmbeddingStoreWriter ../word2vec.git/trunk/bin/concordia-bin.bin concordia.emb
+ *   java --add-modules jdk.incubator.vector -cp out satd.bench.LstmBench concordia.emb ../toAnalyse_FN.java ../toAnalyse_FP.java
+ */
+public final class LstmBench {
+
+    private static final int COMMENTS = 300_000;
+    private static final int UNBATCHED = 10_000;
+    private static final int CHECKED = 200;
+    private static final int MAX_TOKENS = 100;
+    private static final Pattern COMMENT = Pattern.compile("//([^\\n]*)|/\\*((?s:.*?))\\*/");
+
+    public static void main(String[] args) throws IOException {
+        List<String> found = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            Matcher m = COMMENT.matcher(new String(Files.readAllBytes(Paths.get(args[i])), StandardCharsets.ISO_8859_1));
+            while (m.find()) {
+                found.add(m.group(1) != null ? m.group(1) : m.group(2));
+            }
+        }
+        List<String> comments = new ArrayList<>(COMMENTS);
+        for (int i = 0; i < COMMENTS; i++) {
+            comments.add(found.get(i % found.size()));
+        }
+        try (EmbeddingStore store = EmbeddingStore.open(Paths.get(args[0]))) {
+            Lstm model = new Lstm(store.dim(), 128, 2, 2, 7);
+            Path file = Files.createTempFile("satd", ".lstm");
+            model.save(file);
+            Lstm loaded = Lstm.load(file);
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            LstmScorer scorer = new LstmScorer(pool, loaded, store, 64, MAX_TOKENS);
+
+            List<String> checked = found.subList(0, Math.min(CHECKED, found.size()));
+            float[] p = scorer.score(checked);
+            CommentFeaturizer featurizer = new CommentFeaturizer(store, MAX_TOKENS);
+            int[] ids = new int[MAX_TOKENS];
+            double worst = 0;
+            long tokens = 0;
+            for (int c = 0; c < checked.size(); c++) {
+                int n = featurizer.tokenize(checked.get(c), ids, 0);
+                tokens += n;
+                worst = Math.max(worst, Math.abs(reference(file, store, ids, n) - p[2 * c + 1]));
+            }
+            Files.delete(file);
+            System.out.printf(Locale.ROOT, "%d distinct comments, %.1f known tokens on average, %d dims, %d threads%n",
+                    found.size(), (double) tokens / checked.size(), store.dim(), pool.getParallelism());
+            System.out.printf(Locale.ROOT, "largest difference from the direct evaluation %.2e%n%n", worst);
+
+            Harness harness = Harness.configured();
+            Harness.header();
+            double ms = harness.run("score " + COMMENTS + " comments, batch 64",
+                    () -> Float.floatToIntBits(scorer.score(comments)[1]));
+            System.out.printf(Locale.ROOT, "%.0f comments/s%n", COMMENTS / ms * 1000);
+            LstmScorer single = new LstmScorer(pool, loaded, store, 1, MAX_TOKENS);
+            List<String> few = comments.subList(0, UNBATCHED);
+            ms = harness.run("score " + UNBATCHED + " comments, batch 1",
+                    () -> Float.floatToIntBits(single.score(few)[1]));
+            System.out.printf(Locale.ROOT, "%.0f comments/s%n", UNBATCHED / ms * 1000);
+        }
+    }
+
+    /** Probability of class 1 by the definition, from the Torch-layout file. */
+    static double reference(Path file, EmbeddingStore store, int[] ids, int n) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        b.position(8);
+        int layers = b.getInt();
+        int input = b.getInt();
+        int hidden = b.getInt();
+        int classes = b.getInt();
+        double[][] x = new double[n][input];
+        for (int t = 0; t < n; t++) {
+            for (int k = 0; k < input; k++) {
+                x[t][k] = store.get(ids[t], k);
+            }
+        }
+        for (int l = 0; l < layers; l++) {
+            int in = l == 0 ? input : hidden;
+            float[] wx = floats(b, 4 * hidden * in);
+            float[] bx = floats(b, 4 * hidden);
+            float[] wh = floats(b, 4 * hidden * hidden);
+            float[] bh = floats(b, 4 * hidden);
+            double[] h = new double[hidden];
+            double[] c = new double[hidden];
+            double[][] next = new double[n][];
+            for (int t = 0; t < n; t++) {
+                double[] pre = new double[4 * hidden];
+                for (int g = 0; g < 4 * hidden; g++) {
+                    double s = bx[g] + bh[g];
+                    for (int k = 0; k < in; k++) {
+                        s += wx[g * in + k] * x[t][k];
+                    }
+                    for (int k = 0; k < hidden; k++) {
+                        s += wh[g * hidden + k] * h[k];
+                    }
+                    pre[g] = s;
+                }
+                for (int j = 0; j < hidden; j++) {
+                    double inGate = 1 / (1 + Math.exp(-pre[j]));
+                    double forget = 1 / (1 + Math.exp(-pre[hidden + j]));
+                    double outGate = 1 / (1 + Math.exp(-pre[2 * hidden + j]));
+                    c[j] = forget * c[j] + inGate * Math.tanh(pre[3 * hidden + j]);
+                    h[j] = outGate * Math.tanh(c[j]);
+                }
+                next[t] = h.clone();
+            }
+            x = n > 0 ? next : new double[][] {h};
+        }
+        double[] h = n > 0 ? x[n - 1] : new double[hidden];
+        float[] w = floats(b, classes * hidden);
+        float[] bias = floats(b, classes);
+        double[] logits = new double[classes];
+        double sum = 0;
+        for (int k = 0; k < classes; k++) {
+            logits[k] = bias[k];
+            for (int j = 0; j < hidden; j++) {
+                logits[k] += w[k * hidden + j] * h[j];
+            }
+        }
+        for (int k = 0; k < classes; k++) {
+            sum += Math.exp(logits[k]);
+        }
+        return Math.exp(logits[1]) / sum;
+    }
+
+    private static float[] floats(ByteBuffer b, int n) {
+        float[] v = new float[n];
+        for (int i = 0; i < n; i++) {
+            v[i] = b.getFloat();
+        }
+        return v;
+    }
+}
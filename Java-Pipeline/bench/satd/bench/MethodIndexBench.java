@@ -0,0 +1,148 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import satd.metrics.MethodIndex;
+import satd.metrics.MetricsColumn;
+import satd.metrics.MetricsLoader;
+import satd.metrics.MetricsTable;
+
+/**
+ * Attributes a (file, line) position to its enclosing method for every line
+ * from 1 to the last EndLine of every file of the nine systems, in random
+ * order: a scan of the file's rows per position (the current way), one
+ * {@link MethodIndex#method} lookup per position, and one bulk
+ * {@link MethodIndex#methods} call. The three must agree. The last two are
+ * run again on the positions in file order, as a comment extractor emits
+ * them.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.MethodIndexBench ..
+ */
+public final class MethodIndexBench {
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        List<Path> metrics;
+        try (Stream<Path> s = Files.list(root.resolve("Method-level-metrics"))) {
+            metrics = s.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.endsWith("-met-metr.csv") && !name.startsWith("._");
+            }).sorted().collect(Collectors.toList());
+        }
+        MetricsTable table = new MetricsLoader().load(metrics);
+        String[] paths = table.strings(MetricsColumn.FILE);
+        int[] start = table.ints(MetricsColumn.START_LINE);
+        int[] end = table.ints(MetricsColumn.END_LINE);
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("build index over " + table.rows() + " rows", () -> MethodIndex.of(table).files());
+        MethodIndex index = MethodIndex.of(table);
+
+        // rows of a file are contiguous in the met-metr files
+        int[] firstRow = new int[index.files() + 1];
+        int[] lastLine = new int[index.files()];
+        for (int s = 0; s < table.systems().size(); s++) {
+            for (int r = table.start(s); r < table.start(s + 1); r++) {
+                int f = index.file(s, paths[r]);
+                if (r == table.start(s) || !paths[r].equals(paths[r - 1])) {
+                    firstRow[f] = r;
+                }
+                firstRow[f + 1] = r + 1;
+                lastLine[f] = Math.max(lastLine[f], end[r]);
+            }
+        }
+        int total = 0;
+        for (int f = 0; f < lastLine.length; f++) {
+            total += lastLine[f];
+        }
+        int n = total;
+        int[] files = new int[n];
+        int[] lines = new int[n];
+        for (int f = 0, q = 0; f < lastLine.length; f++) {
+            for (int line = 1; line <= lastLine[f]; line++, q++) {
+                files[q] = f;
+                lines[q] = line;
+            }
+        }
+        int[] orderedFiles = files.clone();
+        int[] orderedLines = lines.clone();
+        Random random = new Random(42);
+        for (int q = n - 1; q > 0; q--) {
+            int o = random.nextInt(q + 1);
+            int f = files[q];
+            int l = lines[q];
+            files[q] = files[o];
+            lines[q] = lines[o];
+            files[o] = f;
+            lines[o] = l;
+        }
+
+        int[] scanned = new int[n];
+        int[] found = new int[n];
+        int[] bulk = new int[n];
+        double scanMs = harness.run("scan file rows, " + n + " positions", () -> {
+            long hits = 0;
+            for (int q = 0; q < n; q++) {
+                int best = -1;
+                for (int r = firstRow[files[q]]; r < firstRow[files[q] + 1]; r++) {
+                    if (start[r] <= lines[q] && lines[q] <= end[r]
+                            && (best < 0 || start[r] > start[best] || (start[r] == start[best] && end[r] < end[best]))) {
+                        best = r;
+                    }
+                }
+                scanned[q] = best;
+                hits += best >= 0 ? 1 : 0;
+            }
+            return hits;
+        });
+        double lookupMs = harness.run("method(file, line), " + n + " positions", () -> {
+            long hits = 0;
+            for (int q = 0; q < n; q++) {
+                found[q] = index.method(files[q], lines[q]);
+                hits += found[q] >= 0 ? 1 : 0;
+            }
+            return hits;
+        });
+        double bulkMs = harness.run("methods(files, lines), " + n + " positions", () -> {
+            index.methods(files, lines, bulk);
+            return bulk[0];
+        });
+        int[] ordered = new int[n];
+        double orderedLookupMs = harness.run("method(file, line), in file order", () -> {
+            long hits = 0;
+            for (int q = 0; q < n; q++) {
+                ordered[q] = index.method(orderedFiles[q], orderedLines[q]);
+                hits += ordered[q] >= 0 ? 1 : 0;
+            }
+            return hits;
+        });
+        double orderedBulkMs = harness.run("methods(files, lines), in file order", () -> {
+            index.methods(orderedFiles, orderedLines, ordered);
+            return ordered[0];
+        });
+
+        int mismatches = 0;
+        int inside = 0;
+        for (int q = 0; q < n; q++) {
+            mismatches += found[q] == scanned[q] && bulk[q] == scanned[q] ? 0 : 1;
+            inside += found[q] >= 0 ? 1 : 0;
+        }
+        System.out.printf(Locale.ROOT, "%d files, %d positions, %d inside a method, %d mismatches%n",
+                index.files(), n, inside, mismatches);
+        System.out.printf(Locale.ROOT, "ns/position, random order: scan %.1f, lookup %.1f, bulk %.1f%n",
+                scanMs * 1e6 / n, lookupMs * 1e6 / n, bulkMs * 1e6 / n);
+        System.out.printf(Locale.ROOT, "ns/position, file order: lookup %.1f, bulk %.1f%n",
+                orderedLookupMs * 1e6 / n, orderedBulkMs * 1e6 / n);
+    }
+}
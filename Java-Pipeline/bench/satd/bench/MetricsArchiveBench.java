@@ -0,0 +1,163 @@
+package satd.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import satd.metrics.MetricsArchive;
+import satd.metrics.MetricsArchiveWriter;
+import satd.metrics.MetricsColumn;
+import satd.metrics.MetricsLoader;
+import satd.metrics.MetricsTable;
+
+/**
+ * Archives the nine met-metr files and compares size and load time with
+ * the CSV text, then runs filtered scans with and without the per-chunk
+ * statistics. The decoded archive must equal the loaded table.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.MetricsArchiveBench ..
+ */
+public final class MetricsArchiveBench {
+
+    private static final String TAG = "argouml-multi-line-14325-DEFECT.txt";
+    private static final String FILE = "bsh/BSHAmbiguousName.java";
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        List<Path> files = list(root.resolve("Method-level-metrics"), "-met-metr.csv");
+        MetricsTable table = new MetricsLoader().load(files);
+        Path archive = Files.createTempFile("metrics", ".sarc");
+        long text = 0;
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(gzipped)) {
+            for (Path f : files) {
+                text += Files.size(f);
+                gz.write(Files.readAllBytes(f));
+            }
+        }
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("write archive", () -> write(table, archive));
+        harness.run("load CSV text", () -> {
+            try {
+                return new MetricsLoader().load(files).rows();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        harness.run("open archive, decode all", () -> {
+            try (MetricsArchive a = MetricsArchive.open(archive)) {
+                return a.table().rows();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        try (MetricsArchive a = MetricsArchive.open(archive)) {
+            int tag = a.code(MetricsColumn.SATD_TAG, TAG);
+            int file = a.code(MetricsColumn.FILE, FILE);
+            Object[][] scans = {
+                {"SATDTag = " + TAG, MetricsColumn.SATD_TAG, (double) tag, (double) tag},
+                {"File = " + FILE, MetricsColumn.FILE, (double) file, (double) file},
+                {"McCabe >= 50", MetricsColumn.MC_CABE, 50.0, Double.POSITIVE_INFINITY},
+                {"Readability < 0.001", MetricsColumn.READABILITY, Double.NEGATIVE_INFINITY, 0.001},
+            };
+            StringBuilder report = new StringBuilder();
+            for (Object[] s : scans) {
+                MetricsColumn c = (MetricsColumn) s[1];
+                double lo = (Double) s[2];
+                double hi = (Double) s[3];
+                harness.run(s[0] + ", full scan", () -> scanAll(a, c, lo, hi));
+                harness.run(s[0] + ", skipping chunks", () -> a.select(c, lo, hi).length);
+                int read = 0;
+                for (int k = 0; k < a.chunks(); k++) {
+                    read += a.mayContain(k, c, lo, hi) ? 1 : 0;
+                }
+                report.append(String.format(Locale.ROOT, "%s: %d rows, %d of %d chunks decoded%n",
+                        s[0], a.select(c, lo, hi).length, read, a.chunks()));
+            }
+            System.out.print(report);
+
+            Map<String, Integer> codecs = new TreeMap<>();
+            for (MetricsColumn c : MetricsColumn.values()) {
+                long bytes = 0;
+                for (int k = 0; k < a.chunks(); k++) {
+                    bytes += a.encodedBytes(k, c);
+                    codecs.merge(c.header() + " " + a.codec(k, c), 1, Integer::sum);
+                }
+                System.out.printf(Locale.ROOT, "  %-12s %8d bytes  %5.2f bytes/row%n", c.header(), bytes, (double) bytes / a.rows());
+            }
+            System.out.println("  chunks per codec: " + codecs);
+            System.out.printf(Locale.ROOT, "%d rows in %d chunks; text %.2f MB, gzip %.2f MB, archive %.2f MB; %d cells differ%n",
+                    a.rows(), a.chunks(), text / 1048576.0, gzipped.size() / 1048576.0,
+                    Files.size(archive) / 1048576.0, compare(table, a.table()));
+        }
+        Files.delete(archive);
+    }
+
+    private static long write(MetricsTable table, Path archive) {
+        try {
+            return MetricsArchiveWriter.write(table, archive, MetricsArchiveWriter.DEFAULT_CHUNK);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** The same filter as {@link MetricsArchive#select}, decoding every chunk. */
+    private static long scanAll(MetricsArchive a, MetricsColumn c, double lo, double hi) {
+        int[] ints = new int[MetricsArchiveWriter.DEFAULT_CHUNK];
+        double[] doubles = new double[MetricsArchiveWriter.DEFAULT_CHUNK];
+        long hits = 0;
+        for (int k = 0; k < a.chunks(); k++) {
+            if (c.type() == MetricsColumn.Type.DOUBLE) {
+                a.doubles(k, c, doubles);
+            } else {
+                a.ints(k, c, ints);
+            }
+            for (int i = 0; i < a.chunkRows(k); i++) {
+                double v = c.type() == MetricsColumn.Type.DOUBLE ? doubles[i] : ints[i];
+                hits += v >= lo && v <= hi ? 1 : 0;
+            }
+        }
+        return hits;
+    }
+
+    private static int compare(MetricsTable x, MetricsTable y) {
+        int differ = x.rows() == y.rows() && x.systems().equals(y.systems()) ? 0 : 1;
+        for (MetricsColumn c : MetricsColumn.values()) {
+            for (int r = 0; r < x.rows(); r++) {
+                boolean same;
+                switch (c.type()) {
+                    case STRING: same = x.strings(c)[r].equals(y.strings(c)[r]); break;
+                    case INT: same = x.ints(c)[r] == y.ints(c)[r]; break;
+                    case DOUBLE: same = Double.compare(x.doubles(c)[r], y.doubles(c)[r]) == 0; break;
+                    default: same = x.booleans(c)[r] == y.booleans(c)[r]; break;
+                }
+                differ += same ? 0 : 1;
+            }
+        }
+        return differ;
+    }
+
+    private static List<Path> list(Path dir, String suffix) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.endsWith(suffix) && !name.startsWith("._");
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import satd.metrics.MethodMeasurer;
+import satd.metrics.MethodMetrics;
+import satd.metrics.MetricsCache;
+import satd.metrics.MetricsColumn;
+import satd.metrics.MetricsLoader;
+import satd.metrics.MetricsTable;
+import satd.metrics.SourceMeasurer;
+
+/**
+ * Seeds a {@link MetricsCache} from jEdit-met-metr.csv over a synthetic
+ * source tree with one file per File of the metrics (its methods as empty
+ * bodies), then changes every tenth file and checks what the cache does
+ * with the two versions:
+ *
+ *   seed          every file of the tree is cached in the met-metr log,
+ *                 each method once although met-metr repeats it per tag
+ *   --changed     lists nothing for the seeded tree, exactly the changed
+ *                 files for the next one, before and after measuring
+ *   measure       SourceMeasurer gets no hit from the seeded rows, then
+ *                 hits on every unchanged file of the next tree
+ *   ids           a measurer with another id is refused, and met-metr rows
+ *                 cannot be seeded into the SourceMeasurer log
+ *   reopen        both logs come back with the same files
+ *
+ * A failed check stops the benchmark. Then times seeding, --changed and
+ * measuring from a warm cache against measuring without one.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.MetricsCacheBench ..
+ */
+public final class MetricsCacheBench {
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        MetricsTable table = new MetricsLoader().load(List.of(root.resolve("Method-level-metrics/jEdit-met-metr.csv")));
+        Map<String, List<String>> methods = new LinkedHashMap<>();
+        Set<String> distinct = new HashSet<>();
+        String[] file = table.strings(MetricsColumn.FILE);
+        String[] method = table.strings(MetricsColumn.METHOD);
+        for (int r = table.start(0); r < table.start(1); r++) {
+            methods.computeIfAbsent(file[r], k -> new ArrayList<>()).add(method[r]);
+            distinct.add(file[r] + "\0" + MethodMetrics.of(table, r).signature());
+        }
+
+        Path dir = Files.createTempDirectory("metrics-cache");
+        Path v1 = dir.resolve("v1");
+        Path v2 = dir.resolve("v2");
+        Path cacheDir = dir.resolve("cache");
+        List<String> edited = new ArrayList<>();
+        int n = 0;
+        for (Map.Entry<String, List<String>> e : methods.entrySet()) {
+            byte[] source = source(e.getKey(), e.getValue());
+            write(v1.resolve(e.getKey()), source);
+            if (n++ % 10 == 0) {
+                source = (new String(source, StandardCharsets.ISO_8859_1) + "// changed\n").getBytes(StandardCharsets.ISO_8859_1);
+                edited.add(e.getKey());
+            }
+            write(v2.resolve(e.getKey()), source);
+        }
+        List<Path> files1 = MetricsCache.javaFiles(v1);
+        List<Path> files2 = MetricsCache.javaFiles(v2);
+        edited.sort(null);
+        SourceMeasurer measurer = new SourceMeasurer();
+
+        try (MetricsCache tool = MetricsCache.open(cacheDir, MetricsCache.TOOL);
+             MetricsCache mine = MetricsCache.open(cacheDir, measurer.id())) {
+            check(tool.seed(table, 0, v1) == methods.size(), "seed caches every file");
+            int seeded = 0;
+            for (Path f : files1) {
+                seeded += tool.get(MetricsCache.hash(Files.readAllBytes(f))).size();
+            }
+            check(seeded == distinct.size(), "seed caches each method once, got " + seeded + " rows for "
+                    + distinct.size() + " methods of " + table.rows() + " met-metr rows");
+            check(tool.changed(v1).isEmpty(), "--changed lists nothing for the seeded tree");
+            check(tool.changed(v2).equals(edited), "--changed lists the changed files");
+
+            MetricsCache.Measured first = mine.measure(v1, files1, measurer);
+            check(first.hits == 0, "SourceMeasurer gets no hit from seeded rows, got " + first.hits);
+            MetricsCache.Measured second = mine.measure(v2, files2, measurer);
+            check(second.hits == files2.size() - edited.size() && second.misses == edited.size(),
+                    "SourceMeasurer measures only the changed files, got " + second.misses);
+            check(tool.changed(v2).equals(edited), "--changed is unaffected by SourceMeasurer rows");
+            String some = MetricsCache.pathOf(v1, files1.get(0));
+            check(!first.rows.get(some).equals(tool.get(MetricsCache.hash(Files.readAllBytes(files1.get(0))))),
+                    "the two logs hold different rows for one file");
+
+            check(refused(() -> mine.measure(v1, files1, new Other())), "a measurer with another id is refused");
+            check(refused(() -> mine.seed(table, 0, v1)), "met-metr rows are not seeded into the SourceMeasurer log");
+        }
+        try (MetricsCache tool = MetricsCache.open(cacheDir, MetricsCache.TOOL);
+             MetricsCache mine = MetricsCache.open(cacheDir, measurer.id())) {
+            check(tool.size() == files1.size(), "the met-metr log reopens with every file");
+            check(mine.size() == files1.size() + edited.size(), "the SourceMeasurer log reopens with both versions");
+        }
+        System.out.printf("%d files, %d changed: checks passed%n", files1.size(), edited.size());
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        try (MetricsCache tool = MetricsCache.open(cacheDir, MetricsCache.TOOL);
+             MetricsCache mine = MetricsCache.open(cacheDir, measurer.id())) {
+            harness.run("seed " + files1.size() + " files (all cached)", () -> {
+                try {
+                    return tool.seed(table, 0, v1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            harness.run("--changed " + files2.size() + " files", () -> {
+                try {
+                    return tool.changed(v2).size();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            harness.run("measure " + files2.size() + " files, warm cache", () -> {
+                try {
+                    return mine.measure(v2, files2, measurer).hits;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            harness.run("measure " + files2.size() + " files, no cache", () -> {
+                long rows = 0;
+                for (Path f : files2) {
+                    try {
+                        rows += measurer.measure(MetricsCache.pathOf(v2, f), Files.readAllBytes(f)).size();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return rows;
+            });
+        }
+
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /** Source of a class in {@code path}, package included so no two files are equal, with an empty method per name. */
+    private static byte[] source(String path, List<String> methods) {
+        int slash = path.lastIndexOf('/');
+        String name = path.substring(slash + 1, path.length() - ".java".length());
+        StringBuilder sb = new StringBuilder();
+        if (slash > 0) {
+            sb.append("package ").append(path.substring(0, slash).replace('/', '.')).append(";\n\n");
+        }
+        sb.append("class ").append(name).append(" {\n");
+        for (String m : methods) {
+            sb.append("    void ").append(m).append("() {\n    }\n");
+        }
+        return sb.append("}\n").toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void write(Path f, byte[] bytes) throws IOException {
+        Files.createDirectories(f.getParent());
+        Files.write(f, bytes);
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            throw new IllegalStateException("check failed: " + what);
+        }
+    }
+
+    private static boolean refused(IoAction action) throws IOException {
+        try {
+            action.run();
+            return false;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return true;
+        }
+    }
+
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    /** Same rules as SourceMeasurer under another id, as after a version bump. */
+    private static final class Other implements MethodMeasurer {
+        private final SourceMeasurer delegate = new SourceMeasurer();
+
+        @Override
+        public String id() {
+            return "source-measurer-0";
+        }
+
+        @Override
+        public List<MethodMetrics> measure(String path, byte[] source) {
+            return delegate.measure(path, source);
+        }
+    }
+}
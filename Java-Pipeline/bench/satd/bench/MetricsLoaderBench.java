@@ -0,0 +1,49 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import satd.metrics.MetricsLoader;
+
+/**
+ * Warm reloads of the Method-level-metrics files with 1, 2, 4, ... workers
+ * up to the number of cores.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.MetricsLoaderBench ../Method-level-metrics/*-met-metr.csv
+ */
+public final class MetricsLoaderBench {
+
+    public static void main(String[] args) {
+        List<Path> files = new ArrayList<>();
+        for (String a : args) {
+            files.add(Paths.get(a));
+        }
+        Harness harness = Harness.configured();
+        Harness.header();
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int p = 1; ; p = Math.min(cores, p * 2)) {
+            ForkJoinPool pool = new ForkJoinPool(p);
+            MetricsLoader loader = new MetricsLoader(pool, 1 << 18);
+            harness.run("load " + files.size() + " files, parallelism " + p, () -> load(loader, files));
+            pool.shutdown();
+            if (p == cores) {
+                break;
+            }
+        }
+    }
+
+    private static long load(MetricsLoader loader, List<Path> files) {
+        try {
+            return loader.load(files).rows();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
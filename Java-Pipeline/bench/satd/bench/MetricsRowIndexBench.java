@@ -0,0 +1,159 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import satd.csv.CsvTokenizer;
+import satd.metrics.MethodMetrics;
+import satd.metrics.MetricsColumn;
+import satd.metrics.MetricsLoader;
+import satd.metrics.MetricsRowIndex;
+import satd.metrics.MetricsTable;
+
+/**
+ * Builds the row-index sidecars of the nine met-metr files (in a temporary
+ * copy of the directory) and compares a point lookup of one method by
+ * (File, Method, StartLine) through the index with scanning its CSV. Every
+ * row of every file is looked up once through the index and must come back
+ * as loaded by {@link MetricsLoader}.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.MetricsRowIndexBench ..
+ */
+public final class MetricsRowIndexBench {
+
+    private static final int QUERIES = 10000;
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        Path dir = Files.createTempDirectory("met-metr");
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> s = Files.list(root.resolve("Method-level-metrics"))) {
+            for (Path p : s.filter(p -> p.getFileName().toString().endsWith("-met-metr.csv")
+                    && !p.getFileName().toString().startsWith("._")).sorted().collect(Collectors.toList())) {
+                files.add(Files.copy(p, dir.resolve(p.getFileName())));
+            }
+        }
+        MetricsTable table = new MetricsLoader().load(files);
+        String[] file = table.strings(MetricsColumn.FILE);
+        String[] method = table.strings(MetricsColumn.METHOD);
+        int[] startLine = table.ints(MetricsColumn.START_LINE);
+        Random random = new Random(17);
+        int[] queries = new int[QUERIES];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextInt(table.rows());
+        }
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("build " + files.size() + " sidecars", () -> {
+            int rows = 0;
+            for (Path f : files) {
+                try {
+                    rows += MetricsRowIndex.build(f);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return rows;
+        });
+        MetricsRowIndex[] indexes = new MetricsRowIndex[files.size()];
+        for (int s = 0; s < indexes.length; s++) {
+            indexes[s] = MetricsRowIndex.open(files.get(s));
+        }
+        harness.run("open " + files.size() + " sidecars", () -> {
+            long rows = 0;
+            for (Path f : files) {
+                try (MetricsRowIndex index = MetricsRowIndex.open(f)) {
+                    rows += index.rows();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return rows;
+        });
+        double scan = harness.run(QUERIES / 500 + " lookups, scanning the CSV", () -> {
+            long hits = 0;
+            for (int i = 0; i < QUERIES / 500; i++) {
+                int r = queries[i];
+                hits += scan(files.get(table.system(r)), file[r], method[r], startLine[r]);
+            }
+            return hits;
+        }) / (QUERIES / 500);
+        double indexed = harness.run(QUERIES + " lookups, index + pread", () -> {
+            long hits = 0;
+            for (int r : queries) {
+                MetricsRowIndex index = indexes[table.system(r)];
+                hits += index.lookup(file[r], method[r], startLine[r]).endLine();
+            }
+            return hits;
+        }) / QUERIES;
+
+        int wrong = 0;
+        for (int r = 0; r < table.rows(); r++) {
+            int s = table.system(r);
+            int[] found = indexes[s].findAll(file[r], method[r], startLine[r]);
+            int local = r - table.start(s);
+            boolean hit = false;
+            for (int f : found) {
+                hit |= f == local;
+            }
+            if (!hit || !indexes[s].metrics(local).equals(MethodMetrics.of(table, r))) {
+                wrong++;
+            }
+        }
+        long indexBytes = 0;
+        long csvBytes = 0;
+        for (int s = 0; s < indexes.length; s++) {
+            indexBytes += Files.size(MetricsRowIndex.sidecar(files.get(s)));
+            csvBytes += Files.size(files.get(s));
+            indexes[s].close();
+        }
+        MetricsRowIndex jEdit = null;
+        for (Path f : files) {
+            if (f.getFileName().toString().startsWith("jEdit")) {
+                jEdit = MetricsRowIndex.open(f);
+            }
+        }
+        if (jEdit != null) {
+            int r = jEdit.find("org/gjt/sp/jedit/textarea/ChunkCache.java", "getScreenLineOfOffset", 64);
+            System.out.println("jEdit ChunkCache.getScreenLineOfOffset: " + (r < 0 ? "not found" : jEdit.line(r)));
+            jEdit.close();
+        }
+        System.out.printf(Locale.ROOT, "per lookup: scan %.1f us, index %.2f us; %d of %d rows wrong%n",
+                scan * 1e3, indexed * 1e3, wrong, table.rows());
+        System.out.printf(Locale.ROOT, "CSV %.1f MB, sidecars %.1f MB%n", csvBytes / 1048576.0, indexBytes / 1048576.0);
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path p : s.collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /** Number of rows of {@code csv} with the key, found by tokenizing the whole file. */
+    private static int scan(Path csv, String file, String method, int startLine) {
+        try {
+            CsvTokenizer t = CsvTokenizer.map(csv, (byte) ';');
+            int hits = 0;
+            while (t.next() >= 0) {
+                if (t.parseInt(2) == startLine && t.string(1).equals(method) && t.string(0).equals(file)) {
+                    hits++;
+                }
+            }
+            return hits;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
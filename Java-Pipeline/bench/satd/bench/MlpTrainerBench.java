@@ -0,0 +1,95 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import satd.learn.Dataset;
+import satd.learn.MlpTrainer;
+import satd.learn.Scores;
+
+/**
+ * Times training one 40-20-10 network with rprop+ on nine folds of the
+ * largest data_v3 file, with one thread and with the common pool. Then it
+ * runs {@code reps} repetitions (default 1) of the 10-fold cross-validation
+ * of nnplay-new-data.r per system. Each score is printed next to the mean
+ * and standard deviation of the 20 R repetitions in NN-results-v4, with
+ * the difference in R standard deviations.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.MlpTrainerBench .. 3
+ */
+public final class MlpTrainerBench {
+
+    private static final int[] SHOWN = {0, 1, 3};
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        int reps = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        Path data = root.resolve("R-Neural-Network/data_v3");
+        Path results = root.resolve("R-Neural-Network/NN-results-v4");
+        List<Path> systems = MlpTrainer.systems(data);
+
+        Dataset largest = null;
+        for (Path csv : systems) {
+            Dataset d = Dataset.load(csv, "MSATDNum", Dataset.CARET_DROPPED).scaled();
+            if (largest == null || d.rows() > largest.rows()) {
+                largest = d;
+            }
+        }
+        Dataset d = largest;
+        int[] train = new int[d.rows() * 9 / 10];
+        for (int i = 0; i < train.length; i++) {
+            train[i] = i;
+        }
+        ForkJoinPool single = new ForkJoinPool(1);
+        MlpTrainer serial = new MlpTrainer(single, MlpTrainer.HIDDEN, MlpTrainer.THRESHOLD, 50_000_000);
+        MlpTrainer parallel = new MlpTrainer(ForkJoinPool.commonPool(), MlpTrainer.HIDDEN, MlpTrainer.THRESHOLD, 50_000_000);
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("train " + train.length + " rows, 1 thread", () -> serial.fit(d, train, 1).steps);
+        harness.run("train " + train.length + " rows, " + ForkJoinPool.commonPool().getParallelism()
+                + " threads", () -> parallel.fit(d, train, 1).steps);
+        single.shutdown();
+
+        System.out.printf(Locale.ROOT, "%n%d repetition(s) against the 20 of NN-results-v4: java, R mean +- sd, (java - R) / sd%n", reps);
+        System.out.printf(Locale.ROOT, "%-33s", "");
+        for (int c : SHOWN) {
+            System.out.printf(Locale.ROOT, " %-27s", Scores.COLUMNS[c]);
+        }
+        System.out.printf(Locale.ROOT, " %6s %6s%n", "steps", "cv s");
+        for (Path csv : systems) {
+            String system = MlpTrainer.systemOf(csv);
+            Dataset s = Dataset.load(csv, "MSATDNum", Dataset.CARET_DROPPED).scaled();
+            long t0 = System.nanoTime();
+            Random random = new Random(137);
+            List<double[]> runs = new ArrayList<>();
+            List<MlpTrainer.Fit> fits = new ArrayList<>();
+            for (int r = 0; r < reps; r++) {
+                runs.add(Scores.of(s.y(), parallel.crossValidate(s, 10, random, fits)));
+            }
+            double seconds = (System.nanoTime() - t0) / 1e9 / reps;
+            double[] java = Scores.mean(runs);
+            Path file = results.resolve("NN-results-" + system + ".csv");
+            List<double[]> r = Files.exists(file) ? Scores.read(file) : List.of();
+            double[] mean = Scores.mean(r);
+            double[] sd = Scores.sd(r);
+            long steps = 0;
+            for (MlpTrainer.Fit f : fits) {
+                steps += f.steps;
+            }
+            System.out.printf(Locale.ROOT, "%-33s", system);
+            for (int c : SHOWN) {
+                System.out.printf(Locale.ROOT, " %.3f %.3f +- %.3f %+5.1f", java[c], mean[c], sd[c], (java[c] - mean[c]) / sd[c]);
+            }
+            System.out.printf(Locale.ROOT, " %6d %6.1f%n", steps / fits.size(), seconds);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import satd.csv.CsvTokenizer;
+import satd.link.PathDictionary;
+import satd.link.SmellIndex;
+import satd.metrics.MetricsColumn;
+import satd.metrics.MetricsLoader;
+import satd.metrics.MetricsTable;
+
+/**
+ * Builds one {@link PathDictionary} over the nine met-metr files, the smell
+ * files (paths and Entities) and ToAnalyse.csv, then compares String keys
+ * with dictionary ids for the two operations the scripts do most: joining
+ * metrics rows to smell records by (system, file), and grouping the rows of
+ * a method (met-metr repeats a method once per SATD tag).
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.PathDictionaryBench ..
+ */
+public final class PathDictionaryBench {
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        MetricsTable table = new MetricsLoader().load(list(root.resolve("Method-level-metrics"), "", "-met-metr.csv"));
+        List<Path> smellFiles = list(root.resolve("Antipatterns-Data"), "smells-", ".txt");
+        smellFiles.removeIf(p -> p.getFileName().toString().equals("smells-list.txt"));
+        Path index = Files.createTempFile("smells", ".idx");
+        SmellIndex smells = SmellIndex.openOrBuild(index, smellFiles);
+        String[] files = table.strings(MetricsColumn.FILE);
+        String[] methods = table.strings(MetricsColumn.METHOD);
+        int[] systemOfRow = new int[table.rows()];
+        for (int s = 0; s < table.systems().size(); s++) {
+            for (int r = table.start(s); r < table.start(s + 1); r++) {
+                systemOfRow[r] = s;
+            }
+        }
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("build dictionary", () -> build(table, smells).methods());
+        PathDictionary dictionary = build(table, smells);
+
+        int[] fileId = new int[table.rows()];
+        int[] methodId = new int[table.rows()];
+        harness.run("encode " + table.rows() + " met-metr rows", () -> {
+            for (int r = 0; r < fileId.length; r++) {
+                String system = table.systems().get(systemOfRow[r]);
+                fileId[r] = dictionary.file(system, files[r]);
+                methodId[r] = dictionary.method(system, files[r], methods[r]);
+            }
+            return methodId[methodId.length - 1];
+        });
+        int[] smellOfFile = new int[dictionary.files()];
+        java.util.Arrays.fill(smellOfFile, -1);
+        for (int k = 0; k < smells.records(); k++) {
+            smellOfFile[dictionary.file(smells.system(k), smells.path(k))] = k;
+        }
+
+        Map<String, Integer> smellByKey = new HashMap<>();
+        for (int k = 0; k < smells.records(); k++) {
+            smellByKey.put(smells.system(k) + '\0' + smells.path(k), k);
+        }
+        harness.run("join rows to smells, String keys", () -> {
+            long hits = 0;
+            for (int r = 0; r < files.length; r++) {
+                Integer k = smellByKey.get(table.systems().get(systemOfRow[r]) + '\0' + files[r]);
+                hits += k == null ? 0 : smells.classes(k);
+            }
+            return hits;
+        });
+        harness.run("join rows to smells, ids", () -> {
+            long hits = 0;
+            for (int r = 0; r < fileId.length; r++) {
+                int k = smellOfFile[fileId[r]];
+                hits += k < 0 ? 0 : smells.classes(k);
+            }
+            return hits;
+        });
+        harness.run("group rows by method, String keys", () -> {
+            Map<String, int[]> groups = new HashMap<>();
+            for (int r = 0; r < files.length; r++) {
+                String key = table.systems().get(systemOfRow[r]) + '\0' + files[r] + '\0' + methods[r];
+                groups.computeIfAbsent(key, k -> new int[1])[0]++;
+            }
+            return groups.size();
+        });
+        harness.run("group rows by method, ids", () -> {
+            int[] counts = new int[dictionary.methods()];
+            int groups = 0;
+            for (int r = 0; r < methodId.length; r++) {
+                groups += counts[methodId[r]]++ == 0 ? 1 : 0;
+            }
+            return groups;
+        });
+
+        int resolved = 0;
+        int rows = 0;
+        CsvTokenizer csv = CsvTokenizer.map(root.resolve("ToAnalyse.csv"), (byte) ',');
+        csv.next();
+        while (csv.next() >= 0) {
+            if (!csv.isEmpty(1)) {
+                rows++;
+                resolved += dictionary.methodOfClassPath(csv.string(1), csv.string(2)) >= 0 ? 1 : 0;
+            }
+        }
+
+        Set<String> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        long stringBytes = 0;
+        for (int r = 0; r < files.length; r++) {
+            for (String s : new String[] {files[r], methods[r]}) {
+                if (distinct.add(s)) {
+                    // compact Latin-1 String: 24-byte object, 16-byte array header, padded to 8
+                    stringBytes += 24 + ((16 + s.length() + 7) & ~7);
+                }
+            }
+        }
+        System.out.printf(Locale.ROOT, "%d systems, %d files, %d classes, %d methods%n",
+                dictionary.systems(), dictionary.files(), dictionary.classes(), dictionary.methods());
+        System.out.printf(Locale.ROOT, "File and Method Strings of the table: %.1f MB; dictionary %.1f MB + ids %.1f MB%n",
+                stringBytes / 1048576.0, dictionary.encodedBytes() / 1048576.0, 8.0 * table.rows() / 1048576.0);
+        System.out.printf(Locale.ROOT, "ToAnalyse.csv: %d of %d methods resolved; %d met-metr rows without a smell record%n",
+                resolved, rows, countMissing(fileId, smellOfFile));
+        smells.close();
+        Files.delete(index);
+    }
+
+    private static PathDictionary build(MetricsTable table, SmellIndex smells) {
+        PathDictionary.Builder b = new PathDictionary.Builder();
+        String[] files = table.strings(MetricsColumn.FILE);
+        String[] methods = table.strings(MetricsColumn.METHOD);
+        for (int s = 0; s < table.systems().size(); s++) {
+            String system = table.systems().get(s);
+            for (int r = table.start(s); r < table.start(s + 1); r++) {
+                b.addMethod(system, files[r], methods[r]);
+            }
+        }
+        for (int k = 0; k < smells.records(); k++) {
+            b.addFile(smells.system(k), smells.path(k));
+            for (int c = 0; c < smells.classes(k); c++) {
+                String entity = smells.entity(k, c);
+                if (!entity.isEmpty()) {
+                    b.addClass(smells.system(k), smells.path(k), entity);
+                }
+            }
+        }
+        return b.build();
+    }
+
+    private static int countMissing(int[] fileId, int[] smellOfFile) {
+        int n = 0;
+        for (int f : fileId) {
+            n += smellOfFile[f] < 0 ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static List<Path> list(Path dir, String prefix, String suffix) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix) && !name.startsWith("._");
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package satd.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import satd.corpus.CorpusReader;
+import satd.embed.EmbeddingStore;
+import satd.embed.EmbeddingStoreWriter;
+import satd.features.CommentFeaturizer;
+import satd.features.SparseFeatureVector;
+import satd.learn.Csr;
+import satd.learn.Dataset;
+import satd.learn.Logistic;
+import satd.learn.LogisticTrainer;
+import satd.learn.Scores;
+import satd.link.AntipatternLinker;
+import satd.metrics.MetricsColumn;
+import satd.metrics.MetricsLoader;
+import satd.metrics.MetricsTable;
+
+/**
+ * End-to-end baseline of the JVM side of the SATD pipeline on the data of
+ * the repository, one line per stage:
+ *
+ *   corpus    split toAnalyse_FN.java and toAnalyse_FP.java into snippets
+ *   load      parse the nine Method-level-metrics files (1 worker and all cores)
+ *   join      link the antipattern list onto every metrics row
+ *   features  Size..McCabe, Readability and the smell flags of every method
+ *             as a {@link SparseFeatureVector}
+ *   comments  {@link CommentFeaturizer} pooling of the concordia-bin.bin
+ *             vectors of every comment of the corpus snippets
+ *   score     SATD probability of every method from a {@link Logistic}
+ *
+ * The model is fitted by {@link LogisticTrainer} on the methods of half
+ * the source files, chosen by the hash of system and path, with the SATD
+ * column as the label, before timing; its AUC on the other files is
+ * printed so the scores are those of a real model. met-metr repeats a
+ * method once per SATD comment, so splitting rows would put copies of one
+ * method on both sides.
+ * The word2vec vectors are converted to a temporary {@link EmbeddingStore}
+ * first; without word2vec.git the comments stage is skipped.
+ *
+ * EXAMPLE (from the repository root)
+ *
+ *   java -cp Java-Pipeline/out satd.bench.PipelineBench .
+ */
+public final class PipelineBench {
+
+    private static final Pattern COMMENT = Pattern.compile("//([^\\n]*)|/\\*((?s:.*?))\\*/");
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        List<Path> corpora = List.of(root.resolve("toAnalyse_FN.java"), root.resolve("toAnalyse_FP.java"));
+        List<Path> metrics;
+        try (Stream<Path> s = Files.list(root.resolve("Method-level-metrics"))) {
+            metrics = s.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.endsWith("-met-metr.csv") && !name.startsWith("._");
+            }).sorted().collect(Collectors.toList());
+        }
+        AntipatternLinker linker = new AntipatternLinker();
+        linker.addAntipatternList(root.resolve("Antipatterns-Data").resolve("antipattern-list.txt"));
+
+        Harness harness = Harness.configured();
+        Harness.header();
+
+        harness.run("corpus  snippets of toAnalyse_FN/FP", () -> {
+            long n = 0;
+            for (Path p : corpora) {
+                try (CorpusReader r = CorpusReader.open(p)) {
+                    for (CharSequence snippet : r) {
+                        n += snippet.length();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return n;
+        });
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        MetricsLoader sequential = new MetricsLoader(single, 1 << 18);
+        MetricsLoader parallel = new MetricsLoader();
+        harness.run("load    met-metr, 1 worker", () -> load(sequential, metrics).rows());
+        harness.run("load    met-metr, " + ForkJoinPool.getCommonPoolParallelism() + " workers", () -> load(parallel, metrics).rows());
+        single.shutdown();
+
+        harness.run("join    antipatterns x met-metr", () -> {
+            long n = 0;
+            for (Path p : metrics) {
+                try (BufferedReader in = Files.newBufferedReader(p, StandardCharsets.ISO_8859_1)) {
+                    n += linker.link(MetricsLoader.systemOf(p), in, Writer.nullWriter());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return n;
+        });
+
+        MetricsTable table = load(parallel, metrics);
+        int width = MetricsColumn.METRICS.length + 1 + AntipatternLinker.SMELLS.length;
+        SparseFeatureVector[] features = new SparseFeatureVector[table.rows()];
+        harness.run("features " + width + " per method, sparse", () -> assemble(table, linker, features, width));
+
+        List<CharSequence> found = new ArrayList<>();
+        for (Path p : corpora) {
+            try (CorpusReader r = CorpusReader.open(p)) {
+                for (CharSequence snippet : r) {
+                    Matcher m = COMMENT.matcher(snippet);
+                    while (m.find()) {
+                        found.add(m.group(1) != null ? m.group(1) : m.group(2));
+                    }
+                }
+            }
+        }
+        Path vectors = root.resolve("word2vec.git/trunk/bin/concordia-bin.bin");
+        if (Files.exists(vectors)) {
+            Path emb = Files.createTempFile("concordia", ".emb");
+            EmbeddingStoreWriter.convert(vectors, emb);
+            try (EmbeddingStore store = EmbeddingStore.open(emb)) {
+                CommentFeaturizer featurizer = new CommentFeaturizer(store, 256);
+                CharSequence[] comments = found.toArray(new CharSequence[0]);
+                float[] pooled = new float[comments.length * featurizer.width()];
+                harness.run("comments " + comments.length + ", " + featurizer.width() + " per comment",
+                        () -> featurizer.featurize(comments, 0, comments.length, pooled));
+            } finally {
+                Files.delete(emb);
+            }
+        } else {
+            System.out.println("comments skipped: no " + vectors);
+        }
+
+        float[] dense = new float[table.rows() * width];
+        float[] label = new float[table.rows()];
+        boolean[] satd = table.booleans(MetricsColumn.SATD);
+        for (int r = 0; r < table.rows(); r++) {
+            SparseFeatureVector v = features[r];
+            for (int k = 0; k < v.size(); k++) {
+                dense[r * width + v.index(k)] = v.value(k);
+            }
+            label[r] = satd[r] ? 1f : 0f;
+        }
+        List<String> names = new ArrayList<>();
+        for (int k = 0; k < width; k++) {
+            names.add("f" + k);
+        }
+        Csr x = Csr.of(new Dataset(names, dense, label)).scaledByMaxAbs();
+        String[] file = table.strings(MetricsColumn.FILE);
+        boolean[] train = new boolean[table.rows()];
+        int trainRows = 0;
+        for (int s = 0; s < table.systems().size(); s++) {
+            for (int r = table.start(s); r < table.start(s + 1); r++) {
+                train[r] = ((table.systems().get(s) + "/" + file[r]).hashCode() & 1) == 0;
+                trainRows += train[r] ? 1 : 0;
+            }
+        }
+        int[] fit = new int[trainRows];
+        for (int r = 0, i = 0; r < train.length; r++) {
+            if (train[r]) {
+                fit[i++] = r;
+            }
+        }
+        Logistic model = new LogisticTrainer(ForkJoinPool.commonPool(), 1).fit(x, label, fit, 1e-4);
+        float[] p = new float[table.rows()];
+        harness.run("score   logistic over all methods", () -> {
+            long positive = 0;
+            for (int r = 0; r < p.length; r++) {
+                p[r] = (float) model.probability(x, r);
+                positive += p[r] > 0.5f ? 1 : 0;
+            }
+            return positive;
+        });
+        float[] heldOutLabel = new float[table.rows() - trainRows];
+        float[] heldOut = new float[heldOutLabel.length];
+        for (int r = 0, i = 0; r < train.length; r++) {
+            if (!train[r]) {
+                heldOutLabel[i] = label[r];
+                heldOut[i++] = p[r];
+            }
+        }
+        System.out.printf(Locale.ROOT, "model: %d of %d weights, fitted on %d rows, AUC %.4f on the %d rows of the"
+                + " other files%n", model.nonZeros(), width, trainRows, Scores.auc(heldOutLabel, heldOut),
+                heldOut.length);
+    }
+
+    private static MetricsTable load(MetricsLoader loader, List<Path> files) {
+        try {
+            return loader.load(files);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long assemble(MetricsTable t, AntipatternLinker linker, SparseFeatureVector[] out, int width) {
+        String[] files = t.strings(MetricsColumn.FILE);
+        String[] methods = t.strings(MetricsColumn.METHOD);
+        double[] readability = t.doubles(MetricsColumn.READABILITY);
+        int[][] counts = new int[MetricsColumn.METRICS.length][];
+        for (int k = 0; k < counts.length; k++) {
+            counts[k] = t.ints(MetricsColumn.METRICS[k]);
+        }
+        long nonZeros = 0;
+        for (int s = 0; s < t.systems().size(); s++) {
+            String system = t.systems().get(s);
+            for (int r = t.start(s); r < t.start(s + 1); r++) {
+                SparseFeatureVector.Builder b = new SparseFeatureVector.Builder(width);
+                for (int k = 0; k < counts.length; k++) {
+                    b.add(k, counts[k][r]);
+                }
+                b.add(counts.length, (float) readability[r]);
+                int flags = linker.flags(system, files[r], methods[r]);
+                for (int k = 0; k < AntipatternLinker.SMELLS.length; k++) {
+                    b.add(counts.length + 1 + k, (flags >>> k) & 1);
+                }
+                out[r] = b.build();
+                nonZeros += out[r].size();
+            }
+        }
+        return nonZeros;
+    }
+}
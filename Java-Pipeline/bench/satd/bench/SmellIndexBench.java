@@ -0,0 +1,152 @@
+package satd.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import satd.link.SmellIndex;
+import satd.link.SmellIndexWriter;
+import satd.metrics.MetricsColumn;
+import satd.metrics.MetricsLoader;
+import satd.metrics.MetricsTable;
+
+/**
+ * Builds the smell index from the nine smells-*.txt files, then looks up the
+ * file of every Method-level-metrics row in it, against the scripts' way of
+ * rescanning the smell file of the system for each lookup (timed on the
+ * first 200 rows of each system only).
+ *
+ * Then damages the index (truncated by 1, 20 and half its bytes, and a
+ * section offset pointing past the end) and checks that open reports each
+ * as an IOException and openOrBuild rebuilds it.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.SmellIndexBench ..
+ */
+public final class SmellIndexBench {
+
+    private static final int SCANNED = 200;
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        List<Path> smells = list(root.resolve("Antipatterns-Data"), "smells-", ".txt");
+        smells.removeIf(p -> p.getFileName().toString().equals("smells-list.txt"));
+        List<Path> metrics = list(root.resolve("Method-level-metrics"), "", "-met-metr.csv");
+        MetricsTable table = new MetricsLoader().load(metrics);
+        String[] files = table.strings(MetricsColumn.FILE);
+        Path index = Files.createTempFile("smells", ".idx");
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("build index from " + smells.size() + " smell files", () -> {
+            try {
+                return SmellIndexWriter.build(smells, index);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        harness.run("open index", () -> {
+            try (SmellIndex s = SmellIndex.open(index)) {
+                return s.records();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        try (SmellIndex s = SmellIndex.open(index)) {
+            double ms = harness.run("find " + table.rows() + " met-metr files", () -> {
+                long hits = 0;
+                for (int sys = 0; sys < table.systems().size(); sys++) {
+                    String system = table.systems().get(sys);
+                    for (int r = table.start(sys); r < table.start(sys + 1); r++) {
+                        hits += s.find(system, files[r]) >= 0 ? 1 : 0;
+                    }
+                }
+                return hits;
+            });
+            long hits = 0;
+            for (int sys = 0; sys < table.systems().size(); sys++) {
+                for (int r = table.start(sys); r < table.start(sys + 1); r++) {
+                    hits += s.find(table.systems().get(sys), files[r]) >= 0 ? 1 : 0;
+                }
+            }
+            System.out.printf(Locale.ROOT, "%d records, %d of %d rows found, %.0f ns/lookup%n",
+                    s.records(), hits, table.rows(), ms * 1e6 / table.rows());
+        }
+
+        int scanned = SCANNED * table.systems().size();
+        double ms = harness.run("rescan smell file, " + scanned + " lookups", () -> {
+            long hits = 0;
+            for (int sys = 0; sys < table.systems().size(); sys++) {
+                Path file = root.resolve("Antipatterns-Data").resolve("smells-" + table.systems().get(sys) + ".txt");
+                for (int r = table.start(sys); r < table.start(sys) + SCANNED; r++) {
+                    hits += scan(file, files[r]) ? 1 : 0;
+                }
+            }
+            return hits;
+        });
+        System.out.printf(Locale.ROOT, "%.0f ns/lookup rescanning%n", ms * 1e6 / scanned);
+
+        byte[] good = Files.readAllBytes(index);
+        int records;
+        try (SmellIndex s = SmellIndex.open(index)) {
+            records = s.records();
+        }
+        byte[] farOffset = good.clone();
+        // metaOffset, the last long of the header
+        ByteBuffer.wrap(farOffset).order(ByteOrder.LITTLE_ENDIAN).putLong(64, good.length + 8L);
+        List<byte[]> damaged = List.of(Arrays.copyOf(good, good.length - 1), Arrays.copyOf(good, good.length - 20),
+                Arrays.copyOf(good, good.length / 2), farOffset);
+        for (byte[] bad : damaged) {
+            Files.write(index, bad);
+            try (SmellIndex s = SmellIndex.open(index)) {
+                throw new IllegalStateException("check failed: a damaged index of " + bad.length + " bytes opened");
+            } catch (IOException e) {
+                // expected
+            }
+            try (SmellIndex s = SmellIndex.openOrBuild(index, smells)) {
+                if (s.records() != records || !Arrays.equals(Files.readAllBytes(index), good)) {
+                    throw new IllegalStateException("check failed: a damaged index was not rebuilt");
+                }
+            }
+        }
+        System.out.printf("%d damaged indexes refused by open and rebuilt by openOrBuild%n", damaged.size());
+        Files.delete(index);
+    }
+
+    private static boolean scan(Path smells, String file) {
+        String key = ":::./" + file + ":::";
+        try (BufferedReader in = Files.newBufferedReader(smells, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.contains(key)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Path> list(Path dir, String prefix, String suffix) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix) && !name.startsWith("._");
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+}
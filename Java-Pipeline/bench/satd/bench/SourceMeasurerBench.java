@@ -0,0 +1,181 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import satd.corpus.CorpusReader;
+import satd.metrics.MethodMetrics;
+import satd.metrics.MetricsColumn;
+import satd.metrics.MetricsLoader;
+import satd.metrics.MetricsTable;
+import satd.metrics.SourceMeasurer;
+
+/**
+ * Validates SourceMeasurer on the snippets of toAnalyse_FN/FP against their
+ * rows in Method-level-metrics, for the columns it computes, then measures a synthetic system the size of
+ * hibernate (same number of files and of method lines, built from the
+ * snippets and held in memory).
+ *
+ * A snippet's reference row is the row with its method name and the
+ * closest Size, within 3 lines; snippets whose name is ambiguous at that
+ * Size are left out.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.SourceMeasurerBench ..
+ */
+public final class SourceMeasurerBench {
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "..");
+        List<Path> metrics;
+        try (Stream<Path> s = Files.list(root.resolve("Method-level-metrics"))) {
+            metrics = s.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.endsWith("-met-metr.csv") && !name.startsWith("._");
+            }).sorted().collect(Collectors.toList());
+        }
+        MetricsTable table = new MetricsLoader().load(metrics);
+        Map<String, List<MethodMetrics>> byName = new HashMap<>();
+        for (int r = 0; r < table.rows(); r++) {
+            byName.computeIfAbsent(table.strings(MetricsColumn.METHOD)[r], k -> new ArrayList<>()).add(MethodMetrics.of(table, r));
+        }
+
+        List<byte[]> snippets = new ArrayList<>();
+        for (String corpus : new String[] {"toAnalyse_FN.java", "toAnalyse_FP.java"}) {
+            try (CorpusReader r = CorpusReader.open(root.resolve(corpus))) {
+                for (CharSequence s : r) {
+                    snippets.add(s.toString().getBytes(StandardCharsets.ISO_8859_1));
+                }
+            }
+        }
+
+        SourceMeasurer measurer = new SourceMeasurer();
+        int columns = SourceMeasurer.COLUMNS.length;
+        int[] exact = new int[columns];
+        long[] error = new long[columns];
+        int matched = 0;
+        for (byte[] s : snippets) {
+            List<MethodMetrics> rows = measurer.measure("snippet", s);
+            if (rows.isEmpty()) {
+                continue;
+            }
+            MethodMetrics mine = rows.get(0);
+            MethodMetrics ref = reference(byName.get(mine.method()), mine.metric(MetricsColumn.SIZE));
+            if (ref == null) {
+                continue;
+            }
+            matched++;
+            for (int k = 0; k < columns; k++) {
+                int a = mine.metric(SourceMeasurer.COLUMNS[k]);
+                int b = ref.metric(SourceMeasurer.COLUMNS[k]);
+                exact[k] += a == b ? 1 : 0;
+                error[k] += Math.abs(a - b);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%d snippets, %d with a reference row%n", snippets.size(), matched);
+        System.out.printf(Locale.ROOT, "%-12s %8s %10s%n", "Metric", "exact", "mean |d|");
+        for (int k = 0; k < columns; k++) {
+            System.out.printf(Locale.ROOT, "%-12s %7.0f%% %10.2f%n", SourceMeasurer.COLUMNS[k].header(),
+                    100.0 * exact[k] / matched, (double) error[k] / matched);
+        }
+
+        String system = "hibernate-distribution-3.3.2.GA";
+        int s = table.systems().indexOf(system);
+        Set<String> files = new HashSet<>();
+        long methodLines = 0;
+        for (int r = table.start(s); r < table.start(s + 1); r++) {
+            files.add(table.strings(MetricsColumn.FILE)[r]);
+            methodLines += table.ints(MetricsColumn.SIZE)[r];
+        }
+        List<byte[]> tree = synthesize(snippets, files.size(), methodLines);
+        long bytes = 0;
+        for (byte[] f : tree) {
+            bytes += f.length;
+        }
+        System.out.printf(Locale.ROOT, "%n%s: %d files, %d method lines, %.1f MB synthesized%n",
+                system, tree.size(), methodLines, bytes / 1048576.0);
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        double ms = harness.run("measure " + tree.size() + " files", () -> {
+            long n = 0;
+            for (byte[] f : tree) {
+                n += measurer.measure("F.java", f).size();
+            }
+            return n;
+        });
+        System.out.printf(Locale.ROOT, "%.0f files/s, %.1f MB/s%n", tree.size() / ms * 1000, bytes / 1048576.0 / ms * 1000);
+    }
+
+    private static MethodMetrics reference(List<MethodMetrics> candidates, int size) {
+        if (candidates == null) {
+            return null;
+        }
+        int best = Integer.MAX_VALUE;
+        for (MethodMetrics m : candidates) {
+            best = Math.min(best, Math.abs(m.metric(MetricsColumn.SIZE) - size));
+        }
+        if (best > 3) {
+            return null;
+        }
+        MethodMetrics ref = null;
+        for (MethodMetrics m : candidates) {
+            if (Math.abs(m.metric(MetricsColumn.SIZE) - size) == best) {
+                if (ref != null && !java.util.Arrays.equals(ref.metrics(), m.metrics())) {
+                    return null;
+                }
+                ref = m;
+            }
+        }
+        return ref;
+    }
+
+    /** {@code files} classes that together hold about {@code methodLines} lines of snippets. */
+    private static List<byte[]> synthesize(List<byte[]> snippets, int files, long methodLines) {
+        long snippetLines = 0;
+        for (byte[] s : snippets) {
+            snippetLines += lines(s);
+        }
+        long perFile = Math.max(1, methodLines * snippets.size() / snippetLines / files);
+        List<byte[]> tree = new ArrayList<>(files);
+        int next = 0;
+        long written = 0;
+        for (int f = 0; f < files; f++) {
+            StringBuilder sb = new StringBuilder("package org.hibernate.synthetic;\n\nimport java.util.*;\n\npublic class C")
+                    .append(f).append(" {\n\n");
+            long quota = (methodLines - written) / (files - f);
+            long lines = 0;
+            for (int k = 0; k < perFile * 2 && lines < quota; k++) {
+                byte[] s = snippets.get(next++ % snippets.size());
+                sb.append(new String(s, StandardCharsets.ISO_8859_1)).append("\n\n");
+                lines += lines(s);
+            }
+            written += lines;
+            tree.add(sb.append("}\n").toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+        return tree;
+    }
+
+    private static int lines(byte[] s) {
+        int n = 1;
+        for (byte b : s) {
+            if (b == '\n') {
+                n++;
+            }
+        }
+        return n;
+    }
+}
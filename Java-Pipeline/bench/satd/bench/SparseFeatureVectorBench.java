@@ -0,0 +1,133 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import satd.csv.CsvReader;
+import satd.features.SparseFeatureVector;
+
+/**
+ * Sparse against dense storage of the PMD rule columns of ToAnalyse.csv
+ * (Readibility, exclusive, to containInfo, exclusive), with the rows
+ * repeated up to a 100k-method corpus. The heap retained by the corpus in
+ * each form is printed after the timings.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.SparseFeatureVectorBench ../ToAnalyse.csv
+ */
+public final class SparseFeatureVectorBench {
+
+    private static final int CORPUS = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        int from;
+        int to;
+        try (CsvReader in = CsvReader.open(Paths.get(args[0]), StandardCharsets.ISO_8859_1, ',')) {
+            List<String> header = Arrays.asList(in.next());
+            from = header.indexOf("Readibility") + 1;
+            to = header.indexOf("containInfo");
+            String[] r;
+            while ((r = in.next()) != null) {
+                if (r.length >= to && !r[from].isEmpty()) {
+                    rows.add(r);
+                }
+            }
+        }
+        int dim = to - from;
+        System.out.println(rows.size() + " rows, " + dim + " rule columns, corpus of " + CORPUS);
+
+        float[][] dense = new float[CORPUS][];
+        SparseFeatureVector[] sparse = new SparseFeatureVector[CORPUS];
+        double[] weights = new Random(7).doubles(dim).toArray();
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        harness.run("build dense double[]", () -> {
+            long n = 0;
+            for (int i = 0; i < CORPUS; i++) {
+                double[] d = new double[dim];
+                String[] r = rows.get(i % rows.size());
+                for (int c = 0; c < dim; c++) {
+                    d[c] = Double.parseDouble(r[from + c]);
+                }
+                n += d.length;
+            }
+            return n;
+        });
+        harness.run("build dense float[]", () -> {
+            for (int i = 0; i < CORPUS; i++) {
+                dense[i] = new float[dim];
+                String[] r = rows.get(i % rows.size());
+                for (int c = 0; c < dim; c++) {
+                    dense[i][c] = Float.parseFloat(r[from + c]);
+                }
+            }
+            return dense.length;
+        });
+        harness.run("build sparse", () -> {
+            for (int i = 0; i < CORPUS; i++) {
+                sparse[i] = SparseFeatureVector.parse(rows.get(i % rows.size()), from, to);
+            }
+            return sparse.length;
+        });
+        harness.run("dot dense", () -> {
+            double s = 0;
+            for (float[] d : dense) {
+                for (int c = 0; c < dim; c++) {
+                    s += d[c] * weights[c];
+                }
+            }
+            return (long) s;
+        });
+        harness.run("dot sparse", () -> {
+            double s = 0;
+            for (SparseFeatureVector v : sparse) {
+                s += v.dot(weights);
+            }
+            return (long) s;
+        });
+        harness.run("norm2 + pairwise dot sparse", () -> {
+            double s = 0;
+            for (int i = 1; i < CORPUS; i++) {
+                s += sparse[i].dot(sparse[i - 1]) / (1 + sparse[i].norm2());
+            }
+            return (long) s;
+        });
+
+        long stored = 0;
+        for (SparseFeatureVector v : sparse) {
+            stored += v.size();
+        }
+        System.out.printf("%.2f non-zeros per row out of %d%n", (double) stored / CORPUS, dim);
+
+        Arrays.fill(dense, null);
+        Arrays.fill(sparse, null);
+        long base = usedHeap();
+        double[][] doubles = new double[CORPUS][];
+        for (int i = 0; i < CORPUS; i++) {
+            doubles[i] = new double[dim];
+        }
+        System.out.printf("retained dense double[]: %,d bytes%n", usedHeap() - base);
+        doubles = null;
+        base = usedHeap();
+        for (int i = 0; i < CORPUS; i++) {
+            sparse[i] = SparseFeatureVector.parse(rows.get(i % rows.size()), from, to);
+        }
+        System.out.printf("retained sparse:         %,d bytes%n", usedHeap() - base);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,70 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import satd.learn.Dataset;
+import satd.learn.GbmTrainer;
+import satd.learn.Learner;
+import satd.learn.OofCache;
+import satd.learn.Scores;
+import satd.learn.StackingRunner;
+
+/**
+ * Times the out-of-fold matrix of the default base learners on one
+ * data_v3 file (jmeter unless another file is given) with an empty cache,
+ * once, and then read back from the cache, and every meta-learner fitted
+ * and cross-validated on the cached matrix.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.StackingBench ../R-Neural-Network/data_v3/metrics-smells-psatd-msatd-apache-jmeter-2.10.csv
+ */
+public final class StackingBench {
+
+    public static void main(String[] args) throws IOException {
+        Path csv = Paths.get(args.length > 0 ? args[0]
+                : "../R-Neural-Network/data_v3/metrics-smells-psatd-msatd-apache-jmeter-2.10.csv");
+        Dataset d = GbmTrainer.load(csv);
+        Path dir = Files.createTempDirectory("oof");
+        StackingRunner runner = new StackingRunner(ForkJoinPool.commonPool(), new OofCache(dir), 10, 137);
+        List<Learner> learners = StackingRunner.defaults();
+        System.out.printf(Locale.ROOT, "%s: %d rows, %d learners x 10 folds, cache %s%n%n", csv.getFileName(),
+                d.rows(), learners.size(), dir);
+
+        Harness.header();
+        float[][][] z = new float[1][][];
+        new Harness(0, 1).run("out-of-fold, empty cache", () -> {
+            z[0] = outOfFold(runner, d, learners);
+            return z[0].length;
+        });
+        Harness harness = Harness.configured();
+        harness.run("out-of-fold, cached", () -> outOfFold(runner, d, learners).length);
+        for (StackingRunner.Meta meta : StackingRunner.Meta.values()) {
+            harness.run("stack " + meta.name().toLowerCase(Locale.ROOT) + ", 10 folds",
+                    () -> (long) (1e6 * Scores.auc(d.y(), runner.stack(meta, z[0], d.y()))));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private static float[][] outOfFold(StackingRunner runner, Dataset d, List<Learner> learners) {
+        try {
+            return runner.outOfFold(d, learners, new AtomicInteger());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package satd.bench;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import satd.nn.ClassNLLCriterion;
+import satd.nn.CnnPulses;
+import satd.nn.Linear;
+import satd.nn.Module;
+import satd.nn.Sequential;
+import satd.nn.TemporalConvolution;
+
+/**
+ * The network of CNN.lua on its 10000 synthetic pulses, in the layers of
+ * satd.nn against the same network written as plain loops in Torch's
+ * step-major layout, as Torch's C code runs it: forward passes, training
+ * steps (forward, backward, update), and the second convolution alone.
+ * Both start from the same weights; before timing, their log-probabilities
+ * and the gradients of one backward pass are compared.
+ *
+ * Run with {@code --add-modules jdk.incubator.vector} for the SIMD
+ * kernels; without, satd.nn falls back to its own scalar loops.
+ *
+ * EXAMPLE
+ *
+ *   java --add-modules jdk.incubator.vector -cp out satd.bench.TemporalConvolutionBench
+ */
+public final class TemporalConvolutionBench {
+
+    private static final int EXAMPLES = 10000;
+    private static final float LEARNING_RATE = 0.01f;
+
+    public static void main(String[] args) {
+        Random random = new Random(7);
+        float[][] x = new float[EXAMPLES][];
+        int[] y = new int[EXAMPLES];
+        CnnPulses.pulses(x, y, random);
+        Sequential model = CnnPulses.model(random);
+        Naive naive = new Naive(model);
+        ClassNLLCriterion criterion = new ClassNLLCriterion();
+        System.out.printf(Locale.ROOT, "%d pulses of %d steps, vector module %s%n", EXAMPLES, x[0].length,
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() ? "present" : "absent");
+
+        double worstOutput = 0;
+        double worstGradient = 0;
+        for (int i = 0; i < 100; i++) {
+            float[] out = model.forward(x[i]);
+            float[] expected = naive.forward(x[i]);
+            for (int k = 0; k < out.length; k++) {
+                worstOutput = Math.max(worstOutput, Math.abs(out[k] - expected[k]));
+            }
+            model.zeroGradParameters();
+            model.backward(x[i], criterion.backward(out, y[i]));
+            naive.zero();
+            naive.backward(y[i]);
+            worstGradient = Math.max(worstGradient, naive.difference(model));
+        }
+        System.out.printf(Locale.ROOT, "largest difference from the plain loops: output %.2e, gradient %.2e%n%n",
+                worstOutput, worstGradient);
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        double nnForward = harness.run("satd.nn forward, " + EXAMPLES + " pulses", () -> {
+            long sum = 0;
+            for (float[] series : x) {
+                sum += Float.floatToIntBits(model.forward(series)[0]);
+            }
+            return sum;
+        });
+        double naiveForward = harness.run("plain loops forward, " + EXAMPLES + " pulses", () -> {
+            long sum = 0;
+            for (float[] series : x) {
+                sum += Float.floatToIntBits(naive.forward(series)[0]);
+            }
+            return sum;
+        });
+        double nnTrain = harness.run("satd.nn training epoch", () -> {
+            long sum = 0;
+            for (int i = 0; i < EXAMPLES; i++) {
+                float[] out = model.forward(x[i]);
+                sum += Float.floatToIntBits(criterion.forward(out, y[i]));
+                model.zeroGradParameters();
+                model.backward(x[i], criterion.backward(out, y[i]));
+                model.updateParameters(LEARNING_RATE);
+            }
+            return sum;
+        });
+        double naiveTrain = harness.run("plain loops training epoch", () -> {
+            long sum = 0;
+            for (int i = 0; i < EXAMPLES; i++) {
+                sum += Float.floatToIntBits(-naive.forward(x[i])[y[i]]);
+                naive.zero();
+                naive.backward(y[i]);
+                naive.update(LEARNING_RATE);
+            }
+            return sum;
+        });
+        Module conv = model.modules().get(3);
+        float[][] planes = new float[EXAMPLES][];
+        float[][] frames = new float[EXAMPLES][];
+        for (int i = 0; i < EXAMPLES; i++) {
+            float[] h = x[i];
+            for (int m = 0; m < 3; m++) {
+                h = model.modules().get(m).forward(h);
+            }
+            planes[i] = h.clone();
+            naive.forward(x[i]);
+            frames[i] = naive.h1.clone();
+        }
+        float[] gradOutput = new float[23 * 5];
+        Arrays.fill(gradOutput, 0.01f);
+        double nnConv = harness.run("satd.nn conv 10->5 forward + backward", () -> {
+            long sum = 0;
+            for (float[] p : planes) {
+                sum += Float.floatToIntBits(conv.forward(p)[0]);
+                sum += Float.floatToIntBits(conv.backward(p, gradOutput)[0]);
+            }
+            return sum;
+        });
+        double naiveConv = harness.run("plain loops conv 10->5 forward + backward", () -> {
+            long sum = 0;
+            for (float[] f : frames) {
+                Naive.convForward(f, naive.c2w, naive.c2b, naive.a2, 29, 10, 5, 7);
+                Naive.convBackward(f, naive.c2w, gradOutput, naive.gc2w, naive.gc2b, naive.gh1, 29, 10, 5, 7);
+                sum += Float.floatToIntBits(naive.a2[0]) + Float.floatToIntBits(naive.gh1[0]);
+            }
+            return sum;
+        });
+        System.out.printf(Locale.ROOT, "%nspeedup: forward %.1fx, training %.1fx, conv 10->5 %.1fx%n",
+                naiveForward / nnForward, naiveTrain / nnTrain, naiveConv / nnConv);
+        System.out.printf(Locale.ROOT, "satd.nn: %.2f us per forward, %.2f us per training step%n",
+                nnForward * 1000 / EXAMPLES, nnTrain * 1000 / EXAMPLES);
+    }
+
+    /**
+     * CNN.lua's network as plain loops over step-major series
+     * ({@code steps x channels}), weights copied from a satd.nn model.
+     */
+    static final class Naive {
+        final float[] c1w;
+        final float[] c1b;
+        final float[] c2w;
+        final float[] c2b;
+        final float[] l1w;
+        final float[] l1b;
+        final float[] l2w;
+        final float[] l2b;
+        final float[] gc1w = new float[10 * 7];
+        final float[] gc1b = new float[10];
+        final float[] gc2w = new float[5 * 70];
+        final float[] gc2b = new float[5];
+        final float[] gl1w = new float[30 * 55];
+        final float[] gl1b = new float[30];
+        final float[] gl2w = new float[2 * 30];
+        final float[] gl2b = new float[2];
+
+        float[] input;
+        final float[] a1 = new float[58 * 10];
+        final float[] h1 = new float[29 * 10];
+        final int[] p1 = new int[29 * 10];
+        final float[] a2 = new float[23 * 5];
+        final float[] h2 = new float[11 * 5];
+        final int[] p2 = new int[11 * 5];
+        final float[] a3 = new float[30];
+        final float[] a4 = new float[2];
+        final float[] out = new float[2];
+        final float[] gh1 = new float[29 * 10];
+        final float[] ga1 = new float[58 * 10];
+        final float[] ga2 = new float[23 * 5];
+        final float[] gh2 = new float[11 * 5];
+        final float[] ga3 = new float[30];
+        final float[] gx = new float[64];
+
+        Naive(Sequential model) {
+            TemporalConvolution c1 = (TemporalConvolution) model.modules().get(0);
+            TemporalConvolution c2 = (TemporalConvolution) model.modules().get(3);
+            Linear l1 = (Linear) model.modules().get(7);
+            Linear l2 = (Linear) model.modules().get(9);
+            c1w = c1.weight().clone();
+            c1b = c1.bias().clone();
+            c2w = c2.weight().clone();
+            c2b = c2.bias().clone();
+            l1w = l1.weight().clone();
+            l1b = l1.bias().clone();
+            l2w = l2.weight().clone();
+            l2b = l2.bias().clone();
+        }
+
+        float[] forward(float[] x) {
+            input = x;
+            convForward(x, c1w, c1b, a1, 64, 1, 10, 7);
+            poolRelu(a1, h1, p1, 58, 10);
+            convForward(h1, c2w, c2b, a2, 29, 10, 5, 7);
+            poolRelu(a2, h2, p2, 23, 5);
+            linear(h2, l1w, l1b, a3, 55, 30);
+            linear(a3, l2w, l2b, a4, 30, 2);
+            float max = Math.max(a4[0], a4[1]);
+            double sum = Math.exp(a4[0] - max) + Math.exp(a4[1] - max);
+            for (int k = 0; k < 2; k++) {
+                out[k] = a4[k] - (float) (max + Math.log(sum));
+            }
+            return out;
+        }
+
+        /** Gradients of the NLL loss of {@code label} after {@link #forward}, added. */
+        void backward(int label) {
+            float[] g4 = new float[2];
+            for (int k = 0; k < 2; k++) {
+                float g = (k == label ? -1f : 0f) + (float) Math.exp(out[k]);
+                g4[k] = a4[k] > 0 ? g : 0f;
+            }
+            Arrays.fill(ga3, 0f);
+            linearBackward(a3, l2w, g4, gl2w, gl2b, ga3, 30, 2);
+            for (int j = 0; j < 30; j++) {
+                ga3[j] = a3[j] > 0 ? ga3[j] : 0f;
+            }
+            Arrays.fill(gh2, 0f);
+            linearBackward(h2, l1w, ga3, gl1w, gl1b, gh2, 55, 30);
+            Arrays.fill(ga2, 0f);
+            for (int j = 0; j < gh2.length; j++) {
+                ga2[p2[j]] += h2[j] > 0 ? gh2[j] : 0f;
+            }
+            convBackward(h1, c2w, ga2, gc2w, gc2b, gh1, 29, 10, 5, 7);
+            Arrays.fill(ga1, 0f);
+            for (int j = 0; j < gh1.length; j++) {
+                ga1[p1[j]] += h1[j] > 0 ? gh1[j] : 0f;
+            }
+            convBackward(input, c1w, ga1, gc1w, gc1b, gx, 64, 1, 10, 7);
+        }
+
+        static void convForward(float[] x, float[] w, float[] b, float[] y, int steps, int in, int out, int kW) {
+            int k = kW * in;
+            for (int t = 0; t + kW <= steps; t++) {
+                for (int o = 0; o < out; o++) {
+                    float s = b[o];
+                    for (int q = 0; q < k; q++) {
+                        s += w[o * k + q] * x[t * in + q];
+                    }
+                    y[t * out + o] = s;
+                }
+            }
+        }
+
+        static void convBackward(float[] x, float[] w, float[] gy, float[] gw, float[] gb, float[] gx, int steps,
+                int in, int out, int kW) {
+            int k = kW * in;
+            Arrays.fill(gx, 0f);
+            for (int t = 0; t + kW <= steps; t++) {
+                for (int o = 0; o < out; o++) {
+                    float g = gy[t * out + o];
+                    gb[o] += g;
+                    for (int q = 0; q < k; q++) {
+                        gw[o * k + q] += g * x[t * in + q];
+                        gx[t * in + q] += g * w[o * k + q];
+                    }
+                }
+            }
+        }
+
+        /** Max pooling by two, then ReLU; {@code at} keeps the positions of the maxima. */
+        static void poolRelu(float[] x, float[] y, int[] at, int steps, int channels) {
+            for (int t = 0; t < steps / 2; t++) {
+                for (int c = 0; c < channels; c++) {
+                    int a = 2 * t * channels + c;
+                    int best = x[a + channels] > x[a] ? a + channels : a;
+                    at[t * channels + c] = best;
+                    y[t * channels + c] = Math.max(x[best], 0f);
+                }
+            }
+        }
+
+        /** Linear followed by ReLU. */
+        static void linear(float[] x, float[] w, float[] b, float[] y, int in, int out) {
+            for (int o = 0; o < out; o++) {
+                float s = b[o];
+                for (int i = 0; i < in; i++) {
+                    s += w[o * in + i] * x[i];
+                }
+                y[o] = Math.max(s, 0f);
+            }
+        }
+
+        static void linearBackward(float[] x, float[] w, float[] gy, float[] gw, float[] gb, float[] gx, int in,
+                int out) {
+            for (int o = 0; o < out; o++) {
+                gb[o] += gy[o];
+                for (int i = 0; i < in; i++) {
+                    gw[o * in + i] += gy[o] * x[i];
+                    gx[i] += gy[o] * w[o * in + i];
+                }
+            }
+        }
+
+        void zero() {
+            for (float[] g : new float[][] {gc1w, gc1b, gc2w, gc2b, gl1w, gl1b, gl2w, gl2b}) {
+                Arrays.fill(g, 0f);
+            }
+        }
+
+        void update(float learningRate) {
+            float[][] p = {c1w, c1b, c2w, c2b, l1w, l1b, l2w, l2b};
+            float[][] g = {gc1w, gc1b, gc2w, gc2b, gl1w, gl1b, gl2w, gl2b};
+            for (int j = 0; j < p.length; j++) {
+                for (int i = 0; i < p[j].length; i++) {
+                    p[j][i] -= learningRate * g[j][i];
+                }
+            }
+        }
+
+        /** Largest difference between these gradients and the model's. */
+        double difference(Sequential model) {
+            TemporalConvolution c1 = (TemporalConvolution) model.modules().get(0);
+            TemporalConvolution c2 = (TemporalConvolution) model.modules().get(3);
+            Linear l1 = (Linear) model.modules().get(7);
+            Linear l2 = (Linear) model.modules().get(9);
+            float[][] mine = {gc1w, gc1b, gc2w, gc2b, gl1w, gl1b, gl2w, gl2b};
+            float[][] theirs = {c1.gradWeight(), c1.gradBias(), c2.gradWeight(), c2.gradBias(), l1.gradWeight(),
+                l1.gradBias(), l2.gradWeight(), l2.gradBias()};
+            double worst = 0;
+            for (int j = 0; j < mine.length; j++) {
+                for (int i = 0; i < mine[j].length; i++) {
+                    worst = Math.max(worst, Math.abs(mine[j][i] - theirs[j][i]));
+                }
+            }
+            return worst;
+        }
+    }
+}
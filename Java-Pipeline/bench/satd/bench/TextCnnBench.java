@@ -0,0 +1,129 @@
+package satd.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import satd.learn.TextCnn;
+
+/**
+ * Scores the comments of the toAnalyse corpora with a TextCNN of
+ * train.py's shape (embedding 128, filter sizes 3, 4, 5, 128 filters
+ * each, two classes) and random weights, its vocabulary the words of
+ * those comments and its padded length the longest of them, as train.py
+ * would build it. Before timing, the scores of the first comments are
+ * compared with a direct double-precision convolution over the whole
+ * padded length.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.bench.TextCnnBench ../toAnalyse_FN.java ../toAnalyse_FP.java
+ */
+public final class TextCnnBench {
+
+    private static final Pattern COMMENT = Pattern.compile("//([^\\n]*)|/\\*((?s:.*?))\\*/");
+    private static final Pattern WORD = Pattern.compile("[a-z0-9']+");
+    private static final int CHECKED = 200;
+
+    public static void main(String[] args) throws IOException {
+        List<String> comments = new ArrayList<>();
+        for (String file : args) {
+            Matcher m = COMMENT.matcher(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.ISO_8859_1));
+            while (m.find()) {
+                comments.add(m.group(1) != null ? m.group(1) : m.group(2));
+            }
+        }
+        Map<String, Integer> words = new LinkedHashMap<>();
+        words.put("<UNK>", 0);
+        int length = 5;
+        long tokens = 0;
+        for (String c : comments) {
+            Matcher m = WORD.matcher(c.toLowerCase(Locale.ROOT));
+            int n = 0;
+            while (m.find()) {
+                words.putIfAbsent(m.group(), words.size());
+                n++;
+            }
+            length = Math.max(length, n);
+            tokens += n;
+        }
+        TextCnn model = new TextCnn(new ArrayList<>(words.keySet()), 128, length, new int[] {3, 4, 5}, 128, 2, 10);
+        System.out.printf(Locale.ROOT, "%d comments, %.1f tokens on average, padded length %d, %d words%n",
+                comments.size(), (double) tokens / comments.size(), length, words.size());
+
+        int[] ids = new int[length];
+        float[] scores = new float[2];
+        double worst = 0;
+        for (int i = 0; i < Math.min(CHECKED, comments.size()); i++) {
+            int n = model.ids(comments.get(i), ids);
+            model.scores(ids, n, scores);
+            double[] expected = reference(model, ids, n);
+            for (int c = 0; c < 2; c++) {
+                worst = Math.max(worst, Math.abs(scores[c] - expected[c]));
+            }
+        }
+        System.out.printf(Locale.ROOT, "largest difference from the direct convolution %.2e%n%n", worst);
+
+        Harness harness = Harness.configured();
+        Harness.header();
+        double ms = harness.run("score " + comments.size() + " comments", () -> {
+            long sum = 0;
+            for (String c : comments) {
+                sum += Float.floatToIntBits(model.probabilities(c)[1]);
+            }
+            return sum;
+        });
+        System.out.printf(Locale.ROOT, "%.1f us per comment%n", ms * 1000 / comments.size());
+        List<String> few = comments.subList(0, Math.min(CHECKED, comments.size()));
+        double direct = new Harness(1, 1).run("direct convolution, " + few.size() + " comments", () -> {
+            long sum = 0;
+            for (String c : few) {
+                sum += (long) reference(model, ids, model.ids(c, ids))[1];
+            }
+            return sum;
+        });
+        System.out.printf(Locale.ROOT, "%.1f us per comment%n", direct * 1000 / few.size());
+    }
+
+    /** Scores by the definition: every window of the padded comment, sums in double. */
+    static double[] reference(TextCnn model, int[] ids, int n) {
+        int dim = model.dim();
+        int filters = model.filters();
+        int[] sizes = model.sizes();
+        float[] embedding = model.embedding();
+        double[] pooled = new double[sizes.length * filters];
+        for (int s = 0; s < sizes.length; s++) {
+            float[] w = model.weights(s);
+            for (int c = 0; c < filters; c++) {
+                double max = 0;
+                for (int t = 0; t + sizes[s] <= model.length(); t++) {
+                    double sum = model.biases(s)[c];
+                    for (int k = 0; k < sizes[s]; k++) {
+                        int word = t + k < n ? ids[t + k] : 0;
+                        for (int e = 0; e < dim; e++) {
+                            sum += embedding[word * dim + e] * w[(k * dim + e) * filters + c];
+                        }
+                    }
+                    max = Math.max(max, sum);
+                }
+                pooled[s * filters + c] = max;
+            }
+        }
+        double[] scores = new double[model.classes()];
+        for (int c = 0; c < scores.length; c++) {
+            scores[c] = model.outputBias()[c];
+            for (int i = 0; i < pooled.length; i++) {
+                scores[c] += pooled[i] * model.output()[i * scores.length + c];
+            }
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,263 @@
+package satd.corpus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the method snippets of a {@code ///===///} corpus such as
+ * {@code toAnalyse_FN.java} or {@code toAnalyse_FP.java}.
+ *
+ * The file is memory-mapped one window at a time and every snippet is
+ * returned as a {@link CharSequence} view over the mapped bytes, so walking
+ * a corpus never copies its text onto the heap. Bytes are read as
+ * ISO-8859-1 (one char per byte), which is exact for the ASCII sources we
+ * collect. Leading and trailing whitespace of each snippet is dropped and
+ * empty snippets are skipped.
+ *
+ * EXAMPLE
+ *
+ *   try (CorpusReader corpus = CorpusReader.open(Paths.get("toAnalyse_FN.java"))) {
+ *       for (CharSequence snippet : corpus) { ... }
+ *   }
+ */
+public final class CorpusReader implements Iterable<CharSequence>, Closeable {
+
+    public static final String SEPARATOR = "///===///";
+
+    private static final byte[] SEP = SEPARATOR.getBytes(StandardCharsets.ISO_8859_1);
+
+    // the first '=' of the separator, the byte we scan for
+    private static final int ANCHOR = 3;
+    private static final long ANCHOR_BYTES = 0x3D3D3D3D3D3D3D3DL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    static final long DEFAULT_WINDOW = 1L << 28;
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long window;
+
+    private CorpusReader(FileChannel channel, long window) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.window = window;
+    }
+
+    public static CorpusReader open(Path file) throws IOException {
+        return open(file, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Opens a corpus mapping at most {@code window} bytes at a time. The
+     * window grows on demand when a single snippet does not fit in it.
+     */
+    public static CorpusReader open(Path file, long window) throws IOException {
+        if (window < SEP.length || window > MAX_WINDOW) {
+            throw new IllegalArgumentException("window size out of range: " + window);
+        }
+        return new CorpusReader(FileChannel.open(file, StandardOpenOption.READ), window);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /** Number of snippets in the corpus; a full scan, but no copying. */
+    public long count() {
+        long n = 0;
+        for (Iterator<CharSequence> it = iterator(); it.hasNext(); it.next()) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns a fresh pass over the corpus. Views handed out by the iterator
+     * stay valid after the iterator moves on, as long as the reader is open.
+     */
+    @Override
+    public Iterator<CharSequence> iterator() {
+        return new SnippetIterator();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private final class SnippetIterator implements Iterator<CharSequence> {
+
+        private ByteBuffer buf;
+        private long base;
+        private int pos;
+        private boolean eof;
+        private Snippet next;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !eof) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Snippet s = next;
+            next = null;
+            return s;
+        }
+
+        private Snippet advance() {
+            long span = window;
+            while (true) {
+                if (buf == null || (pos == buf.limit() && base + pos < size)) {
+                    remap(base + (buf == null ? 0 : pos), span);
+                }
+                int end = buf.limit();
+                int sep = indexOf(buf, pos, end);
+                int from = pos;
+                int to;
+                if (sep >= 0) {
+                    to = sep;
+                    pos = sep + SEP.length;
+                } else if (base + end >= size) {
+                    to = end;
+                    pos = end;
+                    eof = true;
+                } else {
+                    // the snippet runs past the window: remap starting at it,
+                    // growing the window if the snippet alone filled it
+                    if (from == 0) {
+                        if (span >= MAX_WINDOW) {
+                            throw new IllegalStateException("snippet larger than 2 GB at offset " + base);
+                        }
+                        span = Math.min(MAX_WINDOW, span * 2);
+                    }
+                    remap(base + from, span);
+                    continue;
+                }
+                while (from < to && (buf.get(from) & 0xFF) <= ' ') {
+                    from++;
+                }
+                while (to > from && (buf.get(to - 1) & 0xFF) <= ' ') {
+                    to--;
+                }
+                if (to > from) {
+                    return new Snippet(buf, from, to - from);
+                }
+                if (eof) {
+                    return null;
+                }
+            }
+        }
+
+        private void remap(long offset, long span) {
+            long length = Math.min(span, size - offset);
+            try {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException e) {
+                throw new IllegalStateException("unable to map corpus at offset " + offset, e);
+            }
+            base = offset;
+            pos = 0;
+        }
+    }
+
+    /**
+     * Index of the first separator starting in [from, to), or -1. Scans for
+     * the '=' anchor eight bytes at a time with the usual SWAR zero-byte
+     * trick and only then compares the full separator.
+     */
+    static int indexOf(ByteBuffer buf, int from, int to) {
+        int last = to - SEP.length;
+        int a = from + ANCHOR;
+        int aMax = last + ANCHOR;
+        while (a <= aMax) {
+            if (a + Long.BYTES <= to) {
+                long x = buf.getLong(a) ^ ANCHOR_BYTES;
+                long hits = (x - LOW_BITS) & ~x & HIGH_BITS;
+                if (hits == 0) {
+                    a += Long.BYTES;
+                    continue;
+                }
+                a += Long.numberOfTrailingZeros(hits) >>> 3;
+                if (a > aMax) {
+                    break;
+                }
+            } else if (buf.get(a) != '=') {
+                a++;
+                continue;
+            }
+            if (matches(buf, a - ANCHOR)) {
+                return a - ANCHOR;
+            }
+            a++;
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer buf, int at) {
+        for (int i = 0; i < SEP.length; i++) {
+            if (buf.get(at + i) != SEP[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** A zero-copy view over one snippet of a mapped window. */
+    static final class Snippet implements CharSequence {
+
+        private final ByteBuffer buf;
+        private final int offset;
+        private final int length;
+
+        Snippet(ByteBuffer buf, int offset, int length) {
+            this.buf = buf;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char) (buf.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+            }
+            return new Snippet(buf, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            buf.get(offset, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package satd.csv;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Record reader for delimited text with RFC-4180 quoting: quoted fields may
+ * hold the delimiter, doubled quotes and line breaks. Unquoted {@code ;}
+ * files such as the met-metr CSVs read the same way with {@code ';'}.
+ */
+public final class CsvReader implements Closeable {
+
+    private final Reader in;
+    private final char delimiter;
+    private final char[] buf = new char[1 << 16];
+    private int pos;
+    private int limit;
+    private final StringBuilder field = new StringBuilder();
+
+    public CsvReader(Reader in, char delimiter) {
+        this.in = in;
+        this.delimiter = delimiter;
+    }
+
+    public static CsvReader open(Path file, Charset charset, char delimiter) throws IOException {
+        return new CsvReader(new BufferedReader(Files.newBufferedReader(file, charset)), delimiter);
+    }
+
+    /** Next record, or null at end of input. CRLF and LF both end a record. */
+    public String[] next() throws IOException {
+        if (!fill()) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        while (fill()) {
+            char c = buf[pos++];
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (fill() && buf[pos] == '"') {
+                    field.append('"');
+                    pos++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                if (fill() && buf[pos] == '\n') {
+                    pos++;
+                }
+                break;
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private boolean fill() throws IOException {
+        if (pos < limit) {
+            return true;
+        }
+        limit = in.read(buf, 0, buf.length);
+        pos = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,300 @@
+package satd.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Zero-copy counterpart of {@link CsvReader}: splits the records of a
+ * {@link ByteBuffer} in one pass and keeps only the offsets of each field,
+ * with the same RFC-4180 quoting (delimiters, doubled quotes and line breaks
+ * inside quotes; LF or CRLF between records).
+ *
+ * {@link #next()} moves to the next record; its fields are then read by
+ * index, as offsets, as numbers parsed straight from the bytes, or as a
+ * String only when asked for one. For a quoted field the offsets are those
+ * of the text between the quotes; a field holding a doubled quote (or text
+ * after its closing quote) is {@link #escaped} and only {@link #string}
+ * decodes it.
+ *
+ * EXAMPLE
+ *
+ *   CsvTokenizer csv = CsvTokenizer.map(Paths.get("ToAnalyse.csv"), (byte) ',');
+ *   csv.next();                               // header
+ *   while (csv.next() >= 0) {
+ *       String note = csv.string(0);          // FN: free-text reviewer note
+ *       int size = csv.parseInt(3);
+ *       double readability = csv.parseDouble(12);
+ *   }
+ */
+public final class CsvTokenizer {
+
+    private final ByteBuffer buf;
+    private final byte[] array;
+    private final int base;
+    private final byte delimiter;
+    private final int limit;
+    private int pos;
+    private int record = -1;
+    private int fields;
+    private int[] start = new int[64];
+    private int[] end = new int[64];
+    private boolean[] escaped = new boolean[64];
+    private byte[] scratch = new byte[64];
+
+    /** Tokenizes {@code buf} from its position to its limit. */
+    public CsvTokenizer(ByteBuffer buf, byte delimiter) {
+        this.buf = buf;
+        this.array = buf.hasArray() ? buf.array() : null;
+        this.base = buf.hasArray() ? buf.arrayOffset() : 0;
+        this.delimiter = delimiter;
+        this.pos = buf.position();
+        this.limit = buf.limit();
+    }
+
+    public static CsvTokenizer map(Path file, byte delimiter) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CsvTokenizer(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), delimiter);
+        }
+    }
+
+    /**
+     * Moves to the next record; returns its number of fields, or -1 at end
+     * of input. A final line break does not start an empty record.
+     */
+    public int next() {
+        if (pos >= limit) {
+            return -1;
+        }
+        fields = 0;
+        pos = array != null ? nextInArray(pos) : nextInBuffer(pos);
+        record++;
+        return fields;
+    }
+
+    /** Splits the record at {@code p}; returns where the next one starts. Fast path for heap buffers. */
+    private int nextInArray(int p) {
+        byte[] a = array;
+        byte d = delimiter;
+        int to = base + limit;
+        int i = base + p;
+        while (true) {
+            if (a[i] == '"') {
+                i = base + quoted(i - base);
+            } else {
+                int s = i;
+                byte b;
+                while (i < to && (b = a[i]) != d && b != '\n' && b != '\r') {
+                    i++;
+                }
+                add(s - base, i - base, false);
+            }
+            if (i >= to) {
+                return limit;
+            }
+            byte b = a[i++];
+            if (b == d) {
+                if (i == to) {
+                    add(limit, limit, false);
+                    return limit;
+                }
+                continue;
+            }
+            if (b == '\r' && i < to && a[i] == '\n') {
+                i++;
+            }
+            return i - base;
+        }
+    }
+
+    /** {@link #nextInArray} for direct and mapped buffers. */
+    private int nextInBuffer(int p) {
+        ByteBuffer a = buf;
+        byte d = delimiter;
+        int to = limit;
+        while (true) {
+            if (a.get(p) == '"') {
+                p = quoted(p);
+            } else {
+                int s = p;
+                byte b;
+                while (p < to && (b = a.get(p)) != d && b != '\n' && b != '\r') {
+                    p++;
+                }
+                add(s, p, false);
+            }
+            if (p >= to) {
+                return to;
+            }
+            byte b = a.get(p++);
+            if (b == d) {
+                if (p == to) {
+                    add(to, to, false);
+                    return to;
+                }
+                continue;
+            }
+            if (b == '\r' && p < to && a.get(p) == '\n') {
+                p++;
+            }
+            return p;
+        }
+    }
+
+    /** Adds the quoted field opening at {@code p}; returns the position of the delimiter or line break after it. */
+    private int quoted(int p) {
+        int s = ++p;
+        boolean esc = false;
+        while (p < limit) {
+            if (get(p) == '"') {
+                if (p + 1 < limit && get(p + 1) == '"') {
+                    esc = true;
+                    p += 2;
+                    continue;
+                }
+                break;
+            }
+            p++;
+        }
+        int e = p;
+        p = Math.min(limit, p + 1);
+        int after = scan(p);
+        if (after != p) {
+            // text after the closing quote belongs to the field, as in CsvReader
+            esc = true;
+            e = after;
+        }
+        add(s, e, esc);
+        return after;
+    }
+
+    /** First position from {@code p} on holding the delimiter or a line break, or the limit. */
+    private int scan(int p) {
+        while (p < limit) {
+            byte b = get(p);
+            if (b == delimiter || b == '\n' || b == '\r') {
+                break;
+            }
+            p++;
+        }
+        return p;
+    }
+
+    private byte get(int p) {
+        return array != null ? array[base + p] : buf.get(p);
+    }
+
+    private void add(int s, int e, boolean esc) {
+        if (fields == start.length) {
+            start = Arrays.copyOf(start, fields * 2);
+            end = Arrays.copyOf(end, fields * 2);
+            escaped = Arrays.copyOf(escaped, fields * 2);
+        }
+        start[fields] = s;
+        end[fields] = e;
+        escaped[fields] = esc;
+        fields++;
+    }
+
+    /** Number of the current record, 0 for the first one. */
+    public int record() {
+        return record;
+    }
+
+    /** Number of fields of the current record. */
+    public int fields() {
+        return fields;
+    }
+
+    /** Offset in the buffer of the first byte of field {@code f}. */
+    public int start(int f) {
+        check(f);
+        return start[f];
+    }
+
+    /** Offset in the buffer just past the last byte of field {@code f}. */
+    public int end(int f) {
+        check(f);
+        return end[f];
+    }
+
+    public boolean isEmpty(int f) {
+        check(f);
+        return start[f] == end[f];
+    }
+
+    /** Whether field {@code f} holds doubled quotes or text after its closing quote, so its bytes are not its value. */
+    public boolean escaped(int f) {
+        check(f);
+        return escaped[f];
+    }
+
+    /** Value of field {@code f}, Latin-1 decoded, quotes undone. */
+    public String string(int f) {
+        int n = copy(f);
+        if (!escaped[f]) {
+            return new String(scratch, 0, n, StandardCharsets.ISO_8859_1);
+        }
+        int w = 0;
+        for (int r = 0; r < n; r++) {
+            if (scratch[r] == '"') {
+                if (r + 1 < n && scratch[r + 1] == '"') {
+                    scratch[w++] = '"';
+                    r++;
+                }
+                continue;
+            }
+            scratch[w++] = scratch[r];
+        }
+        return new String(scratch, 0, w, StandardCharsets.ISO_8859_1);
+    }
+
+    /** Field {@code f} as an int; an empty field is 0. */
+    public int parseInt(int f) {
+        check(f);
+        if (escaped[f]) {
+            return Integer.parseInt(string(f));
+        }
+        if (array != null) {
+            return Numbers.parseInt(array, base + start[f], base + end[f]);
+        }
+        return Numbers.parseInt(scratch, 0, copy(f));
+    }
+
+    /** Field {@code f} as a double; an empty field is NaN. */
+    public double parseDouble(int f) {
+        check(f);
+        if (escaped[f]) {
+            return Double.parseDouble(string(f));
+        }
+        if (array != null) {
+            return Numbers.parseDouble(array, base + start[f], base + end[f]);
+        }
+        return Numbers.parseDouble(scratch, 0, copy(f));
+    }
+
+    /** Copies the bytes of field {@code f} to the start of {@link #scratch}; returns their number. */
+    private int copy(int f) {
+        check(f);
+        int n = end[f] - start[f];
+        if (n > scratch.length) {
+            scratch = new byte[Math.max(n, scratch.length * 2)];
+        }
+        if (array != null) {
+            System.arraycopy(array, base + start[f], scratch, 0, n);
+        } else {
+            buf.get(start[f], scratch, 0, n);
+        }
+        return n;
+    }
+
+    private void check(int f) {
+        if (f < 0 || f >= fields) {
+            throw new IndexOutOfBoundsException("field " + f + " of " + fields);
+        }
+    }
+}
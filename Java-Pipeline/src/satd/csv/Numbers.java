@@ -0,0 +1,90 @@
+package satd.csv;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Number parsing straight from the bytes of a field, without building a
+ * String for the common cases.
+ */
+public final class Numbers {
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private Numbers() {
+    }
+
+    /** Parses a decimal int in [from, to); an empty field is 0. */
+    public static int parseInt(byte[] b, int from, int to) {
+        return (int) parseLong(b, from, to);
+    }
+
+    public static long parseLong(byte[] b, int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        boolean negative = b[from] == '-';
+        int i = negative || b[from] == '+' ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException(text(b, from, to));
+        }
+        long v = 0;
+        for (; i < to; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException(text(b, from, to));
+            }
+            v = v * 10 + d;
+        }
+        return negative ? -v : v;
+    }
+
+    /**
+     * Parses a double in [from, to); an empty field is NaN. Plain decimals
+     * with at most 15 significant digits are converted exactly without
+     * allocating; anything else falls back to {@link Double#parseDouble}.
+     */
+    public static double parseDouble(byte[] b, int from, int to) {
+        if (from == to) {
+            return Double.NaN;
+        }
+        boolean negative = b[from] == '-';
+        int i = negative || b[from] == '+' ? from + 1 : from;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        boolean any = false;
+        for (; i < to; i++) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (digits > 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (dot) {
+                    scale++;
+                }
+                if (digits > 15) {
+                    return Double.parseDouble(text(b, from, to));
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.parseDouble(text(b, from, to));
+            }
+        }
+        if (!any || scale >= POW10.length) {
+            return Double.parseDouble(text(b, from, to));
+        }
+        double v = mantissa / POW10[scale];
+        return negative ? -v : v;
+    }
+
+    private static String text(byte[] b, int from, int to) {
+        return new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,224 @@
+package satd.embed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped word2vec embeddings, as written by {@link EmbeddingStoreWriter}.
+ *
+ * The vectors form one contiguous row-major float matrix, and the
+ * vocabulary is a precomputed open-addressing hash table over the UTF-8
+ * words. Lookups hash and compare the query in place, so {@link #id} and
+ * the row accessors allocate nothing. Every JVM that opens the same file
+ * shares it through the page cache.
+ *
+ * A mapping holds at most 2 GB, so the matrix is mapped in chunks of a
+ * power-of-two number of whole rows, at most 2 GB each; the chunk of a
+ * row is its index shifted right. A vocabulary of 3M words x 300 floats
+ * (3.6 GB) takes three chunks.
+ *
+ * File layout (little-endian):
+ *
+ *   "SATDEMB1"  int words  int dim  int slots  int 0
+ *   long matrixOffset  long offsetsOffset  long blobOffset  long slotsOffset
+ *   matrix   words x dim float, 64-byte aligned
+ *   offsets  (words + 1) x long into blob, word i is blob[offsets[i], offsets[i + 1])
+ *   blob     UTF-8 words
+ *   slots    slots x int, row id + 1 or 0 when empty; slots is a power of two
+ */
+public final class EmbeddingStore implements Closeable {
+
+    static final byte[] MAGIC = "SATDEMB1".getBytes(StandardCharsets.US_ASCII);
+    static final int HEADER = 56;
+
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final FileChannel channel;
+    private final int words;
+    private final int dim;
+    private final int mask;
+    private final int chunkShift;
+    private final FloatBuffer[] chunks;
+    private final ByteBuffer offsets;
+    private final ByteBuffer blob;
+    private final ByteBuffer slots;
+
+    private EmbeddingStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not an embedding store");
+        }
+        words = header.getInt();
+        dim = header.getInt();
+        int slotCount = header.getInt();
+        header.getInt();
+        long matrixAt = header.getLong();
+        long offsetsAt = header.getLong();
+        long blobAt = header.getLong();
+        long slotsAt = header.getLong();
+        mask = slotCount - 1;
+        chunkShift = 31 - Integer.numberOfLeadingZeros(Integer.MAX_VALUE / (Math.max(1, dim) * Float.BYTES));
+        chunks = new FloatBuffer[(int) ((words + (1L << chunkShift) - 1) >> chunkShift)];
+        for (int c = 0; c < chunks.length; c++) {
+            long first = (long) c << chunkShift;
+            long rows = Math.min(1L << chunkShift, words - first);
+            chunks[c] = map(matrixAt + first * dim * Float.BYTES, rows * dim * Float.BYTES).asFloatBuffer()
+                    .asReadOnlyBuffer();
+        }
+        offsets = map(offsetsAt, (words + 1L) * Long.BYTES);
+        blob = map(blobAt, offsets.getLong(words * Long.BYTES));
+        slots = map(slotsAt, (long) slotCount * Integer.BYTES);
+    }
+
+    public static EmbeddingStore open(Path file) throws IOException {
+        return new EmbeddingStore(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    private ByteBuffer map(long at, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("section larger than 2 GB at " + at);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, at, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int words() {
+        return words;
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    /** Row of {@code word}, or -1 when it is not in the vocabulary. */
+    public int id(CharSequence word) {
+        int slot = hash(word) & mask;
+        while (true) {
+            int row = slots.getInt(slot * Integer.BYTES) - 1;
+            if (row < 0) {
+                return -1;
+            }
+            if (equals(row, word)) {
+                return row;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public String word(int row) {
+        int from = (int) offsets.getLong(row * Long.BYTES);
+        int to = (int) offsets.getLong((row + 1) * Long.BYTES);
+        byte[] bytes = new byte[to - from];
+        blob.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public float get(int row, int k) {
+        return chunks[row >>> chunkShift].get(offset(row) + k);
+    }
+
+    /** Copies row {@code row} into {@code dst} at {@code off}. */
+    public void copy(int row, float[] dst, int off) {
+        chunks[row >>> chunkShift].get(offset(row), dst, off, dim);
+    }
+
+    /**
+     * The read-only, row-major chunk of the matrix that holds {@code row},
+     * which starts at {@link #offset}; the same buffer for every row of the
+     * chunk.
+     */
+    public FloatBuffer chunk(int row) {
+        return chunks[row >>> chunkShift];
+    }
+
+    /** Where {@code row} starts in its {@link #chunk}. */
+    public int offset(int row) {
+        return (row & (1 << chunkShift) - 1) * dim;
+    }
+
+    /** FNV-1a over the UTF-8 encoding of {@code s}, encoded on the fly. */
+    static int hash(CharSequence s) {
+        int h = FNV_OFFSET;
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            int cp = s.charAt(i);
+            if (Character.isHighSurrogate((char) cp) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                cp = Character.toCodePoint((char) cp, s.charAt(++i));
+            }
+            if (cp < 0x80) {
+                h = (h ^ cp) * FNV_PRIME;
+            } else if (cp < 0x800) {
+                h = (h ^ (0xC0 | cp >>> 6)) * FNV_PRIME;
+                h = (h ^ (0x80 | cp & 0x3F)) * FNV_PRIME;
+            } else if (cp < 0x10000) {
+                h = (h ^ (0xE0 | cp >>> 12)) * FNV_PRIME;
+                h = (h ^ (0x80 | cp >>> 6 & 0x3F)) * FNV_PRIME;
+                h = (h ^ (0x80 | cp & 0x3F)) * FNV_PRIME;
+            } else {
+                h = (h ^ (0xF0 | cp >>> 18)) * FNV_PRIME;
+                h = (h ^ (0x80 | cp >>> 12 & 0x3F)) * FNV_PRIME;
+                h = (h ^ (0x80 | cp >>> 6 & 0x3F)) * FNV_PRIME;
+                h = (h ^ (0x80 | cp & 0x3F)) * FNV_PRIME;
+            }
+        }
+        return h;
+    }
+
+    static int hash(byte[] utf8) {
+        int h = FNV_OFFSET;
+        for (byte b : utf8) {
+            h = (h ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /** Whether the stored word of {@code row} is the UTF-8 encoding of {@code s}. */
+    private boolean equals(int row, CharSequence s) {
+        int p = (int) offsets.getLong(row * Long.BYTES);
+        int end = (int) offsets.getLong((row + 1) * Long.BYTES);
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            int cp = s.charAt(i);
+            if (Character.isHighSurrogate((char) cp) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                cp = Character.toCodePoint((char) cp, s.charAt(++i));
+            }
+            int len = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+            if (p + len > end) {
+                return false;
+            }
+            if (len == 1) {
+                if (blob.get(p) != cp) {
+                    return false;
+                }
+            } else {
+                int lead = len == 2 ? 0xC0 | cp >>> 6 : len == 3 ? 0xE0 | cp >>> 12 : 0xF0 | cp >>> 18;
+                if ((blob.get(p) & 0xFF) != lead) {
+                    return false;
+                }
+                for (int k = 1; k < len; k++) {
+                    if ((blob.get(p + k) & 0xFF) != (0x80 | cp >>> 6 * (len - 1 - k) & 0x3F)) {
+                        return false;
+                    }
+                }
+            }
+            p += len;
+        }
+        return p == end;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,169 @@
+package satd.embed;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts word2vec output, text ({@code -binary 0}) or binary
+ * ({@code -binary 1}), to an {@link EmbeddingStore} file. Both start with
+ * {@code <words> <dim>}; the format of the vectors is detected from the
+ * bytes after the first word.
+ *
+ * Vectors are streamed straight to the matrix section; only the words are
+ * held in memory while converting.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.embed.EmbeddingStoreWriter ../word2vec.git/trunk/bin/concordia-bin.bin concordia.emb
+ */
+public final class EmbeddingStoreWriter {
+
+    private static final int ALIGN = 64;
+
+    private EmbeddingStoreWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: EmbeddingStoreWriter <word2vec vectors> <out.emb>");
+            System.exit(1);
+        }
+        long t0 = System.nanoTime();
+        int words = convert(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.printf("%d words -> %s in %.1f ms%n", words, args[1], (System.nanoTime() - t0) / 1e6);
+    }
+
+    /** Converts {@code in} to {@code out}; returns the number of words. */
+    public static int convert(Path in, Path out) throws IOException {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(in), 1 << 16);
+             FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ)) {
+            int words = Integer.parseInt(token(is));
+            int dim = Integer.parseInt(token(is));
+
+            long matrixAt = align(EmbeddingStore.HEADER);
+            ByteBuffer row = ByteBuffer.allocate(dim * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            List<byte[]> vocab = new ArrayList<>(words);
+            Boolean binary = null;
+            for (int w = 0; w < words; w++) {
+                vocab.add(word(is));
+                if (binary == null) {
+                    binary = !looksLikeText(is);
+                }
+                row.clear();
+                if (binary) {
+                    readFully(is, row.array());
+                } else {
+                    for (int k = 0; k < dim; k++) {
+                        row.putFloat(Float.parseFloat(token(is)));
+                    }
+                }
+                row.rewind();
+                writeFully(ch, row, matrixAt + (long) w * dim * Float.BYTES);
+            }
+
+            long offsetsAt = matrixAt + (long) words * dim * Float.BYTES;
+            ByteBuffer offsets = ByteBuffer.allocate((words + 1) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            ByteArrayOutputStream blob = new ByteArrayOutputStream();
+            for (byte[] v : vocab) {
+                offsets.putLong(blob.size());
+                blob.writeBytes(v);
+            }
+            offsets.putLong(blob.size());
+            long blobAt = offsetsAt + offsets.capacity();
+
+            int slotCount = Integer.highestOneBit(Math.max(1, words) * 2 - 1) << 1;
+            ByteBuffer slots = ByteBuffer.allocate(slotCount * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int w = 0; w < words; w++) {
+                int slot = EmbeddingStore.hash(vocab.get(w)) & (slotCount - 1);
+                while (slots.getInt(slot * Integer.BYTES) != 0) {
+                    slot = (slot + 1) & (slotCount - 1);
+                }
+                slots.putInt(slot * Integer.BYTES, w + 1);
+            }
+            long slotsAt = align(blobAt + blob.size());
+
+            ByteBuffer header = ByteBuffer.allocate(EmbeddingStore.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(EmbeddingStore.MAGIC).putInt(words).putInt(dim).putInt(slotCount).putInt(0)
+                    .putLong(matrixAt).putLong(offsetsAt).putLong(blobAt).putLong(slotsAt).flip();
+            writeFully(ch, header, 0);
+            writeFully(ch, offsets.flip(), offsetsAt);
+            writeFully(ch, ByteBuffer.wrap(blob.toByteArray()), blobAt);
+            writeFully(ch, slots, slotsAt);
+            return words;
+        }
+    }
+
+    private static long align(long at) {
+        return (at + ALIGN - 1) / ALIGN * ALIGN;
+    }
+
+    /** Next whitespace-delimited token, like fscanf("%s"). */
+    private static String token(InputStream is) throws IOException {
+        return new String(word(is), StandardCharsets.UTF_8);
+    }
+
+    /** Skips whitespace, then reads up to and including the next space or newline. */
+    private static byte[] word(InputStream is) throws IOException {
+        int c;
+        do {
+            c = is.read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        ByteArrayOutputStream w = new ByteArrayOutputStream(16);
+        while (c != -1 && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+            w.write(c);
+            c = is.read();
+        }
+        if (w.size() == 0) {
+            throw new EOFException("unexpected end of vectors");
+        }
+        return w.toByteArray();
+    }
+
+    /** Peeks at the start of the first vector: text vectors begin with a number. */
+    private static boolean looksLikeText(InputStream is) throws IOException {
+        is.mark(16);
+        byte[] peek = new byte[16];
+        int n = is.read(peek);
+        is.reset();
+        for (int i = 0; i < n; i++) {
+            byte b = peek[i];
+            boolean numeric = (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.'
+                    || b == 'e' || b == 'E' || b == ' ' || b == '\n';
+            if (!numeric) {
+                return false;
+            }
+        }
+        return n > 0;
+    }
+
+    private static void readFully(InputStream is, byte[] b) throws IOException {
+        int off = 0;
+        while (off < b.length) {
+            int n = is.read(b, off, b.length - off);
+            if (n < 0) {
+                throw new EOFException("unexpected end of vectors");
+            }
+            off += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b, long at) throws IOException {
+        while (b.hasRemaining()) {
+            at += ch.write(b, at);
+        }
+    }
+}
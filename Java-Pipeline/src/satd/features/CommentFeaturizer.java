@@ -0,0 +1,172 @@
+package satd.features;
+
+import java.nio.FloatBuffer;
+
+import satd.embed.EmbeddingStore;
+
+/**
+ * Turns comments into fixed-size vectors: mean and max pooling of the
+ * word2vec rows of their tokens, as {@code build-vector-dataset.pl} does one
+ * token at a time.
+ *
+ * A token is a run of letters, digits and underscores. It is looked up as
+ * spelled first, then lowercased: concordia-bin.bin is all lower case, but
+ * lapd-bin-300.bin keeps identifiers such as {@code String} and
+ * {@code BTREEUNORDERED} as written. Tokens missing from the vocabulary in
+ * both spellings are skipped. Token ids are looked up through a reused view
+ * over the comment, and pooling writes into the caller's buffer, so
+ * featurizing allocates nothing per comment. An instance is not
+ * thread-safe; use one per thread over a shared store.
+ */
+public final class CommentFeaturizer {
+
+    private final EmbeddingStore store;
+    private final int dim;
+    private final int[] ids;
+    private final Token token = new Token();
+
+    /** @param maxTokens tokens kept per comment, the rest are ignored */
+    public CommentFeaturizer(EmbeddingStore store, int maxTokens) {
+        this.store = store;
+        this.dim = store.dim();
+        this.ids = new int[maxTokens];
+    }
+
+    /** Width of one output row: mean pooling then max pooling. */
+    public int width() {
+        return 2 * dim;
+    }
+
+    /**
+     * Writes the ids of the known tokens of {@code comment} into {@code out}
+     * from {@code off}; returns how many were written.
+     */
+    public int tokenize(CharSequence comment, int[] out, int off) {
+        int n = 0;
+        int len = comment.length();
+        int i = 0;
+        while (i < len && off + n < out.length) {
+            while (i < len && !isWordChar(comment.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < len && isWordChar(comment.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                int id = store.id(token.of(comment, start, i, false));
+                if (id < 0 && token.hasUpperCase()) {
+                    id = store.id(token.of(comment, start, i, true));
+                }
+                if (id >= 0) {
+                    out[off + n++] = id;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Featurizes {@code count} comments starting at {@code from}; row r of
+     * {@code out} (stride {@link #width()}) gets comment {@code from + r}.
+     * Comments without a known token get a zero row. Returns the total
+     * number of known tokens.
+     */
+    public long featurize(CharSequence[] comments, int from, int count, float[] out) {
+        int width = width();
+        if (out.length < count * width) {
+            throw new IllegalArgumentException("output holds " + out.length / width + " rows, need " + count);
+        }
+        long tokens = 0;
+        for (int r = 0; r < count; r++) {
+            int n = tokenize(comments[from + r], ids, 0);
+            pool(ids, n, out, r * width);
+            tokens += n;
+        }
+        return tokens;
+    }
+
+    /** Mean of the rows {@code ids[0..n)} into out[at, at + dim), max into the next dim. */
+    void pool(int[] rows, int n, float[] out, int at) {
+        int maxAt = at + dim;
+        if (n == 0) {
+            for (int k = 0; k < 2 * dim; k++) {
+                out[at + k] = 0f;
+            }
+            return;
+        }
+        FloatBuffer chunk = store.chunk(rows[0]);
+        int base = store.offset(rows[0]);
+        for (int k = 0; k < dim; k++) {
+            float v = chunk.get(base + k);
+            out[at + k] = v;
+            out[maxAt + k] = v;
+        }
+        for (int t = 1; t < n; t++) {
+            chunk = store.chunk(rows[t]);
+            base = store.offset(rows[t]);
+            for (int k = 0; k < dim; k++) {
+                float v = chunk.get(base + k);
+                out[at + k] += v;
+                if (v > out[maxAt + k]) {
+                    out[maxAt + k] = v;
+                }
+            }
+        }
+        float inv = 1f / n;
+        for (int k = 0; k < dim; k++) {
+            out[at + k] *= inv;
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /** View over [start, end) of a comment, as spelled or lowercased, reused for every token. */
+    private static final class Token implements CharSequence {
+        private CharSequence s;
+        private int start;
+        private int end;
+        private boolean lower;
+
+        Token of(CharSequence s, int start, int end, boolean lower) {
+            this.s = s;
+            this.start = start;
+            this.end = end;
+            this.lower = lower;
+            return this;
+        }
+
+        boolean hasUpperCase() {
+            for (int i = start; i < end; i++) {
+                if (Character.toLowerCase(s.charAt(i)) != s.charAt(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            char c = s.charAt(start + index);
+            return lower ? Character.toLowerCase(c) : c;
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().subSequence(from, to);
+        }
+
+        @Override
+        public String toString() {
+            String t = s.subSequence(start, end).toString();
+            return lower ? t.toLowerCase() : t;
+        }
+    }
+}
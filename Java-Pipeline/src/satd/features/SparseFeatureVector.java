@@ -0,0 +1,240 @@
+package satd.features;
+
+import java.util.Arrays;
+
+/**
+ * Immutable sparse vector of float features: strictly increasing {@code int}
+ * indices and the matching non-zero values, for the mostly-zero PMD rule and
+ * smell columns.
+ *
+ * {@link #parse} and {@link #format} convert from and to the cells of a CSV
+ * row. Values must be exactly representable as floats, which holds for the
+ * rule counts and 0/1 smell flags; an empty cell is a missing value and is
+ * kept as NaN.
+ */
+public final class SparseFeatureVector {
+
+    public static final SparseFeatureVector EMPTY = new SparseFeatureVector(new int[0], new float[0], 0);
+
+    private final int[] indices;
+    private final float[] values;
+    private final int size;
+
+    private SparseFeatureVector(int[] indices, float[] values, int size) {
+        this.indices = indices;
+        this.values = values;
+        this.size = size;
+    }
+
+    /** Copies the given entries; indices must be strictly increasing, zero values are dropped. */
+    public static SparseFeatureVector of(int[] indices, float[] values) {
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException("indices and values differ in length");
+        }
+        Builder b = new Builder(indices.length);
+        for (int i = 0; i < indices.length; i++) {
+            b.add(indices[i], values[i]);
+        }
+        return b.build();
+    }
+
+    public static SparseFeatureVector fromDense(float[] dense) {
+        Builder b = new Builder(8);
+        for (int i = 0; i < dense.length; i++) {
+            b.add(i, dense[i]);
+        }
+        return b.build();
+    }
+
+    /** Reads cells [from, to) of a CSV row; feature i is cell from + i. */
+    public static SparseFeatureVector parse(String[] cells, int from, int to) {
+        Builder b = new Builder(8);
+        for (int c = from; c < to; c++) {
+            String s = cells[c].trim();
+            if (s.isEmpty()) {
+                b.add(c - from, Float.NaN);
+                continue;
+            }
+            double d = Double.parseDouble(s);
+            float f = (float) d;
+            if (f != d && !Double.isNaN(d)) {
+                throw new IllegalArgumentException("cell " + c + " (" + s + ") is not exactly representable as a float");
+            }
+            b.add(c - from, f);
+        }
+        return b.build();
+    }
+
+    /** Writes {@code dimension} cells into {@code cells} starting at {@code from}. */
+    public void format(String[] cells, int from, int dimension) {
+        Arrays.fill(cells, from, from + dimension, "0");
+        for (int k = 0; k < size; k++) {
+            float v = values[k];
+            cells[from + indices[k]] = Float.isNaN(v) ? "" : v == (long) v ? Long.toString((long) v) : Float.toString(v);
+        }
+    }
+
+    /** Number of stored (non-zero) entries. */
+    public int size() {
+        return size;
+    }
+
+    public int index(int k) {
+        return indices[k];
+    }
+
+    public float value(int k) {
+        return values[k];
+    }
+
+    public float get(int index) {
+        int k = Arrays.binarySearch(indices, 0, size, index);
+        return k >= 0 ? values[k] : 0f;
+    }
+
+    public float[] toDense(int dimension) {
+        float[] dense = new float[dimension];
+        for (int k = 0; k < size; k++) {
+            dense[indices[k]] = values[k];
+        }
+        return dense;
+    }
+
+    public double dot(SparseFeatureVector o) {
+        double sum = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < o.size) {
+            int a = indices[i];
+            int b = o.indices[j];
+            if (a == b) {
+                sum += (double) values[i++] * o.values[j++];
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    /** Dot product with a dense weight vector, touching only the non-zeros. */
+    public double dot(double[] dense) {
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += values[k] * dense[indices[k]];
+        }
+        return sum;
+    }
+
+    public double norm2() {
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += (double) values[k] * values[k];
+        }
+        return Math.sqrt(sum);
+    }
+
+    /** this + scale * o, merging the two index sets. */
+    public SparseFeatureVector add(SparseFeatureVector o, float scale) {
+        Builder b = new Builder(size + o.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < o.size) {
+            int a = i < size ? indices[i] : Integer.MAX_VALUE;
+            int c = j < o.size ? o.indices[j] : Integer.MAX_VALUE;
+            if (a == c) {
+                b.add(a, values[i++] + scale * o.values[j++]);
+            } else if (a < c) {
+                b.add(a, values[i++]);
+            } else {
+                b.add(c, scale * o.values[j++]);
+            }
+        }
+        return b.build();
+    }
+
+    /** Appends the features of {@code o} shifted by {@code offset}, e.g. smells after PMD rules. */
+    public SparseFeatureVector concat(SparseFeatureVector o, int offset) {
+        if (size > 0 && offset <= indices[size - 1]) {
+            throw new IllegalArgumentException("offset " + offset + " overlaps index " + indices[size - 1]);
+        }
+        Builder b = new Builder(size + o.size);
+        for (int k = 0; k < size; k++) {
+            b.add(indices[k], values[k]);
+        }
+        for (int k = 0; k < o.size; k++) {
+            b.add(offset + o.indices[k], o.values[k]);
+        }
+        return b.build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SparseFeatureVector)) {
+            return false;
+        }
+        SparseFeatureVector v = (SparseFeatureVector) o;
+        return size == v.size
+                && Arrays.equals(indices, 0, size, v.indices, 0, size)
+                && Arrays.equals(values, 0, size, v.values, 0, size);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = size;
+        for (int k = 0; k < size; k++) {
+            h = 31 * h + indices[k];
+            h = 31 * h + Float.floatToIntBits(values[k]);
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int k = 0; k < size; k++) {
+            sb.append(k == 0 ? "" : ", ").append(indices[k]).append(':').append(values[k]);
+        }
+        return sb.append('}').toString();
+    }
+
+    /** Accumulates entries in increasing index order. */
+    public static final class Builder {
+        private int[] indices;
+        private float[] values;
+        private int size;
+
+        public Builder(int capacity) {
+            indices = new int[Math.max(1, capacity)];
+            values = new float[indices.length];
+        }
+
+        public Builder add(int index, float value) {
+            if (size > 0 && index <= indices[size - 1]) {
+                throw new IllegalArgumentException("index " + index + " not after " + indices[size - 1]);
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("negative index " + index);
+            }
+            if (value == 0f) {
+                return this;
+            }
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            indices[size] = index;
+            values[size++] = value;
+            return this;
+        }
+
+        /** Trims to size, so a built vector holds exactly its non-zeros. */
+        public SparseFeatureVector build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new SparseFeatureVector(Arrays.copyOf(indices, size), Arrays.copyOf(values, size), size);
+        }
+    }
+}
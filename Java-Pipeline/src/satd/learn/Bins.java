@@ -0,0 +1,126 @@
+package satd.learn;
+
+import java.util.Arrays;
+
+/**
+ * The features of a {@link Dataset} quantized once into at most 256 bins
+ * each, for histogram-based tree learners.
+ *
+ * A feature with few distinct values gets one bin per value; otherwise
+ * the bin edges are quantiles, so every bin holds about as many rows. Bin
+ * {@code b} of feature {@code f} holds the values {@code <= upper(f, b)}
+ * and {@code > upper(f, b - 1)}; the last bin is unbounded and also takes
+ * NaN. Codes are one unsigned byte per cell, feature-major, so building
+ * the histogram of one feature reads one contiguous array.
+ */
+public final class Bins {
+
+    public static final int MAX_BINS = 256;
+
+    private final byte[][] codes;
+    private final float[][] upper;
+    private final int rows;
+
+    private Bins(byte[][] codes, float[][] upper, int rows) {
+        this.codes = codes;
+        this.upper = upper;
+        this.rows = rows;
+    }
+
+    /** Quantizes every feature of {@code d} into at most {@code maxBins} bins. */
+    public static Bins of(Dataset d, int maxBins) {
+        if (maxBins < 2 || maxBins > MAX_BINS) {
+            throw new IllegalArgumentException("maxBins must be in [2, " + MAX_BINS + "]: " + maxBins);
+        }
+        int rows = d.rows();
+        int width = d.width();
+        float[] x = d.x();
+        byte[][] codes = new byte[width][rows];
+        float[][] upper = new float[width][];
+        float[] column = new float[rows];
+        for (int f = 0; f < width; f++) {
+            for (int r = 0; r < rows; r++) {
+                column[r] = x[r * width + f];
+            }
+            float[] sorted = column.clone();
+            Arrays.sort(sorted);
+            upper[f] = edges(sorted, maxBins);
+            byte[] c = codes[f];
+            for (int r = 0; r < rows; r++) {
+                c[r] = (byte) bin(upper[f], column[r]);
+            }
+        }
+        return new Bins(codes, upper, rows);
+    }
+
+    /** Upper edges of all bins but the last, strictly increasing. */
+    private static float[] edges(float[] sorted, int maxBins) {
+        int n = sorted.length;
+        while (n > 0 && Float.isNaN(sorted[n - 1])) {
+            n--;
+        }
+        float[] distinct = new float[n];
+        int d = 0;
+        for (int i = 0; i < n; i++) {
+            if (d == 0 || sorted[i] != distinct[d - 1]) {
+                distinct[d++] = sorted[i];
+            }
+        }
+        if (d <= maxBins) {
+            return Arrays.copyOf(distinct, Math.max(0, d - 1));
+        }
+        float[] edges = new float[maxBins - 1];
+        int e = 0;
+        for (int b = 1; b < maxBins; b++) {
+            float v = sorted[(int) ((long) b * n / maxBins) - 1];
+            if ((e == 0 || v > edges[e - 1]) && v < distinct[d - 1]) {
+                edges[e++] = v;
+            }
+        }
+        return Arrays.copyOf(edges, e);
+    }
+
+    private static int bin(float[] upper, float v) {
+        int lo = 0;
+        int hi = upper.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (v <= upper[mid]) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int features() {
+        return codes.length;
+    }
+
+    /** Number of bins of feature {@code f}, 1 to {@link #MAX_BINS}. */
+    public int bins(int f) {
+        return upper[f].length + 1;
+    }
+
+    /** Codes of feature {@code f}, one per row, read as {@code & 0xFF}; shared, not copied. */
+    public byte[] codes(int f) {
+        return codes[f];
+    }
+
+    public int code(int f, int row) {
+        return codes[f][row] & 0xFF;
+    }
+
+    /**
+     * Largest value of bin {@code b} of feature {@code f}: a value goes
+     * to bin {@code b} or below exactly when it is {@code <=} this.
+     */
+    public float upper(int f, int b) {
+        return b < upper[f].length ? upper[f][b] : Float.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,286 @@
+package satd.learn;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import satd.csv.CsvReader;
+
+/**
+ * A numeric feature matrix and its label, read from a {@code ;}-separated
+ * file with a header such as
+ * {@code data_v3/metrics-smells-psatd-msatd-<system>.csv}.
+ *
+ * Features are the columns that are numeric in every row and not dropped;
+ * text columns (File, Class, Entities, C, MSATDTag, ...) are left out.
+ * Values are kept row-major in one {@code float[]}, row {@code r} at
+ * {@code x[r * width() .. (r + 1) * width())}.
+ *
+ * EXAMPLE
+ *
+ *   Dataset d = Dataset.load(csv, "MSATDNum", Dataset.NNPLAY_DROPPED).scaled();
+ */
+public final class Dataset {
+
+    /** The columns nnplay.r removes before training: names, labels, and metrics that scale to NaN. */
+    public static final List<String> NNPLAY_DROPPED = Collections.unmodifiableList(Arrays.asList(
+            "Entities", "RULE", "Entity", "File", "Class", "MSATDTag", "MSATDNum", "NOPM", "NOTC", "CP",
+            "DCAEC", "ACAIC", "DCMEC", "EIC", "EIP", "PP", "REIP", "RRFP", "RRTP", "USELESS", "RFP", "RTP",
+            "CBOin", "FanOut", "CLD", "NOC", "NOD", "NCP"));
+
+    /**
+     * The columns caret-models.r and nnplay-new-data.r remove: those of
+     * nnplay.r but RULE, and the readability counts.
+     */
+    public static final List<String> CARET_DROPPED = Collections.unmodifiableList(Arrays.asList(
+            "Entities", "Entity", "File", "Class", "MSATDTag", "MSATDNum", "NOPM", "NOTC", "CP", "DCAEC",
+            "ACAIC", "DCMEC", "EIC", "EIP", "PP", "REIP", "RRFP", "RRTP", "USELESS", "RFP", "RTP", "CBOin",
+            "FanOut", "CLD", "NOC", "NOD", "NCP", "paragraphs", "interrogative", "article", "subordination",
+            "Tot", "D", "B", "M", "I", "T", "W", "C"));
+
+    private final List<String> features;
+    private final float[] x;
+    private final float[] y;
+    private final int rows;
+
+    public Dataset(List<String> features, float[] x, float[] y) {
+        if (features.isEmpty() ? x.length != 0 : x.length != (long) y.length * features.size()) {
+            throw new IllegalArgumentException(x.length + " values for " + y.length + " rows of " + features.size());
+        }
+        this.features = Collections.unmodifiableList(new ArrayList<>(features));
+        this.x = x;
+        this.y = y;
+        this.rows = y.length;
+    }
+
+    /**
+     * Reads {@code csv}: {@code label} is the target, every other numeric
+     * column not in {@code dropped} is a feature. Cells are ISO-8859-1.
+     */
+    public static Dataset load(Path csv, String label, Collection<String> dropped) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        String[] header;
+        try (CsvReader in = CsvReader.open(csv, StandardCharsets.ISO_8859_1, ';')) {
+            header = in.next();
+            if (header == null) {
+                throw new IOException("empty file: " + csv);
+            }
+            String[] record;
+            while ((record = in.next()) != null) {
+                if (record.length == 1 && record[0].isEmpty()) {
+                    continue;
+                }
+                if (record.length != header.length) {
+                    throw new IOException(csv + ": row " + (records.size() + 1) + " has " + record.length
+                            + " fields, header has " + header.length);
+                }
+                records.add(record);
+            }
+        }
+        int target = Arrays.asList(header).indexOf(label);
+        if (target < 0) {
+            throw new IOException(csv + " has no column " + label);
+        }
+        Set<String> skip = new HashSet<>(dropped);
+        List<String> names = new ArrayList<>();
+        List<Integer> columns = new ArrayList<>();
+        for (int c = 0; c < header.length; c++) {
+            if (c != target && !skip.contains(header[c]) && numeric(records, c)) {
+                names.add(header[c]);
+                columns.add(c);
+            }
+        }
+        int width = columns.size();
+        float[] x = new float[records.size() * width];
+        float[] y = new float[records.size()];
+        for (int r = 0; r < records.size(); r++) {
+            String[] record = records.get(r);
+            for (int j = 0; j < width; j++) {
+                x[r * width + j] = Float.parseFloat(record[columns.get(j)]);
+            }
+            try {
+                y[r] = Float.parseFloat(record[target]);
+            } catch (NumberFormatException e) {
+                throw new IOException(csv + ": row " + (r + 1) + ": " + label + " is not a number: " + record[target]);
+            }
+        }
+        return new Dataset(names, x, y);
+    }
+
+    /**
+     * Reads a {@code csv} without header whose last column is the label,
+     * such as train-set3.csv. Features are named V1, V2, ... as R names
+     * them with {@code header = F}; every cell must be a number.
+     */
+    public static Dataset loadHeaderless(Path csv, char separator) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (CsvReader in = CsvReader.open(csv, StandardCharsets.ISO_8859_1, separator)) {
+            String[] record;
+            while ((record = in.next()) != null) {
+                if (record.length == 1 && record[0].isEmpty()) {
+                    continue;
+                }
+                if (!records.isEmpty() && record.length != records.get(0).length) {
+                    throw new IOException(csv + ": row " + (records.size() + 1) + " has " + record.length
+                            + " fields, row 1 has " + records.get(0).length);
+                }
+                records.add(record);
+            }
+        }
+        if (records.isEmpty()) {
+            throw new IOException("empty file: " + csv);
+        }
+        int width = records.get(0).length - 1;
+        List<String> names = new ArrayList<>();
+        for (int j = 0; j < width; j++) {
+            names.add("V" + (j + 1));
+        }
+        float[] x = new float[records.size() * width];
+        float[] y = new float[records.size()];
+        for (int r = 0; r < records.size(); r++) {
+            String[] record = records.get(r);
+            try {
+                for (int j = 0; j < width; j++) {
+                    x[r * width + j] = Float.parseFloat(record[j].trim());
+                }
+                y[r] = Float.parseFloat(record[width].trim());
+            } catch (NumberFormatException e) {
+                throw new IOException(csv + ": row " + (r + 1) + ": " + e.getMessage());
+            }
+        }
+        return new Dataset(names, x, y);
+    }
+
+    private static boolean numeric(List<String[]> records, int c) {
+        for (String[] record : records) {
+            try {
+                Float.parseFloat(record[c]);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int width() {
+        return features.size();
+    }
+
+    public List<String> features() {
+        return features;
+    }
+
+    /** The feature matrix, row-major; shared, not copied. */
+    public float[] x() {
+        return x;
+    }
+
+    /** The labels; shared, not copied. */
+    public float[] y() {
+        return y;
+    }
+
+    public float value(int row, int feature) {
+        return x[row * features.size() + feature];
+    }
+
+    public float label(int row) {
+        return y[row];
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the feature names, values and labels; two
+     * datasets with the same fingerprint are taken to be the same data.
+     */
+    public long fingerprint() {
+        long h = 0xCBF29CE484222325L;
+        for (String f : features) {
+            for (int i = 0; i < f.length(); i++) {
+                h = (h ^ f.charAt(i)) * 0x100000001B3L;
+            }
+            h = (h ^ 0xFFFF) * 0x100000001B3L;
+        }
+        for (float v : x) {
+            h = (h ^ Float.floatToIntBits(v)) * 0x100000001B3L;
+        }
+        for (float v : y) {
+            h = (h ^ Float.floatToIntBits(v)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * Min-max scaled copy, every feature in [0, 1] over all rows, like
+     * {@code scale(ds, center = mins, scale = maxs - mins)} in nnplay.r.
+     * A constant feature, NaN in R, becomes 0.
+     */
+    public Dataset scaled() {
+        int width = features.size();
+        float[] min = new float[width];
+        float[] max = new float[width];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (int r = 0; r < rows; r++) {
+            for (int j = 0; j < width; j++) {
+                float v = x[r * width + j];
+                min[j] = Math.min(min[j], v);
+                max[j] = Math.max(max[j], v);
+            }
+        }
+        float[] scaled = new float[x.length];
+        for (int r = 0; r < rows; r++) {
+            for (int j = 0; j < width; j++) {
+                float range = max[j] - min[j];
+                scaled[r * width + j] = range > 0 ? (x[r * width + j] - min[j]) / range : 0f;
+            }
+        }
+        return new Dataset(features, scaled, y.clone());
+    }
+
+    /**
+     * Two-class copy: rows labelled {@code excluded} are removed, as
+     * caret-models.r removes MayBe SATD, and the label becomes 1 for
+     * {@code positive} and 0 for anything else. {@code Float.NaN} removes
+     * no row.
+     */
+    public Dataset binary(float positive, float excluded) {
+        int kept = 0;
+        for (float label : y) {
+            kept += label == excluded ? 0 : 1;
+        }
+        int[] rowIds = new int[kept];
+        for (int r = 0, i = 0; r < rows; r++) {
+            if (y[r] != excluded) {
+                rowIds[i++] = r;
+            }
+        }
+        Dataset d = subset(rowIds);
+        for (int r = 0; r < d.rows; r++) {
+            d.y[r] = d.y[r] == positive ? 1f : 0f;
+        }
+        return d;
+    }
+
+    /** The given rows, in the given order, as a new dataset. */
+    public Dataset subset(int[] rowIds) {
+        int width = features.size();
+        float[] xs = new float[rowIds.length * width];
+        float[] ys = new float[rowIds.length];
+        for (int i = 0; i < rowIds.length; i++) {
+            System.arraycopy(x, rowIds[i] * width, xs, i * width, width);
+            ys[i] = y[rowIds[i]];
+        }
+        return new Dataset(features, xs, ys);
+    }
+}
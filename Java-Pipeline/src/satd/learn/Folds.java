@@ -0,0 +1,59 @@
+package satd.learn;
+
+import java.util.Random;
+
+/** Fold assignment for cross-validation. */
+final class Folds {
+
+    private Folds() {
+    }
+
+    /**
+     * Fold of every row, stratified: the rows of each class (label 1 or
+     * not) are shuffled and dealt round-robin to the {@code folds} folds.
+     */
+    static int[] stratified(float[] labels, int folds, Random random) {
+        int n = labels.length;
+        int[] order = new int[n];
+        for (int r = 0; r < n; r++) {
+            order[r] = r;
+        }
+        for (int i = 0; i < n - 1; i++) {
+            int j = i + random.nextInt(n - i);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        int[] fold = new int[n];
+        int[] dealt = new int[2];
+        for (int r : order) {
+            int c = labels[r] == 1f ? 1 : 0;
+            fold[r] = dealt[c]++ % folds;
+        }
+        return fold;
+    }
+
+    /** Rows {@code 0..n-1}. */
+    static int[] all(int n) {
+        int[] rows = new int[n];
+        for (int r = 0; r < n; r++) {
+            rows[r] = r;
+        }
+        return rows;
+    }
+
+    /** The rows not in fold {@code k}, ascending. */
+    static int[] training(int[] fold, int k) {
+        int size = 0;
+        for (int f : fold) {
+            size += f == k ? 0 : 1;
+        }
+        int[] rows = new int[size];
+        for (int r = 0, j = 0; r < fold.length; r++) {
+            if (fold[r] != k) {
+                rows[j++] = r;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,80 @@
+package satd.learn;
+
+import java.util.List;
+
+/**
+ * A trained ensemble of classification trees for two classes, as
+ * {@link ForestTrainer} builds it. Each leaf holds the fraction of class 1
+ * among the bootstrap rows that reached it; the probability of class 1 is
+ * the mean over the trees.
+ *
+ * Nodes are laid out as in {@link Gbm}.
+ */
+public final class Forest {
+
+    private final int[] roots;
+    private final int[] feature;
+    private final float[] threshold;
+    private final int[] left;
+    private final int[] right;
+    private final float[] value;
+    private final List<String> features;
+    private final double[] importance;
+
+    Forest(int[] roots, int[] feature, float[] threshold, int[] left, int[] right, float[] value,
+            List<String> features, double[] importance) {
+        this.roots = roots;
+        this.feature = feature;
+        this.threshold = threshold;
+        this.left = left;
+        this.right = right;
+        this.value = value;
+        this.features = features;
+        this.importance = importance;
+    }
+
+    public int trees() {
+        return roots.length;
+    }
+
+    public int nodes() {
+        return feature.length;
+    }
+
+    public List<String> features() {
+        return features;
+    }
+
+    /**
+     * Mean decrease in Gini impurity of every feature: the weighted
+     * impurity decrease of its splits, summed and divided by the number of
+     * trees, as randomForest's MeanDecreaseGini.
+     */
+    public double[] importance() {
+        return importance.clone();
+    }
+
+    /** Probability of class 1 for the row at {@code x[offset..]}. */
+    public float probability(float[] x, int offset) {
+        float sum = 0;
+        for (int root : roots) {
+            int i = root;
+            while (feature[i] >= 0) {
+                i = x[offset + feature[i]] <= threshold[i] ? left[i] : right[i];
+            }
+            sum += value[i];
+        }
+        return sum / roots.length;
+    }
+
+    /** Probability of class 1 for every row of {@code d}. */
+    public float[] probabilities(Dataset d) {
+        int width = d.width();
+        float[] x = d.x();
+        float[] p = new float[d.rows()];
+        for (int r = 0; r < p.length; r++) {
+            p[r] = probability(x, r * width);
+        }
+        return p;
+    }
+}
@@ -0,0 +1,483 @@
+package satd.learn;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Random forests and bagged trees (caret's {@code rf} and {@code treebag})
+ * for two classes, trees built concurrently on a {@link ForkJoinPool}.
+ *
+ * Every tree draws a bootstrap sample of the training rows as a weight
+ * array (how many times each row was drawn) and grows CART trees on the
+ * Gini impurity, level by level: for each feature, one walk of its
+ * {@link Presorted} row order evaluates the split points of every open
+ * node at once. Each node tries {@code mtry} random features; {@code mtry}
+ * equal to the number of features is treebag. Nodes split down to
+ * {@code minLeaf} bootstrap rows or purity, like randomForest's nodesize.
+ *
+ * The row orders are shared read-only by all trees. Weights, node ids and
+ * per-level buffers belong to a scratch space that a thread takes for one
+ * tree and returns after, so memory does not grow with the number of
+ * trees beyond the trees themselves.
+ *
+ * {@code main} cross-validates the files it is given as {@link GbmTrainer}
+ * does, and with {@code --importance dir} writes the importance of a
+ * forest trained on all rows in the layout of the VariableImportance plots
+ * of caret-models.r.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.learn.ForestTrainer --trees 500 --importance . ../R-Neural-Network/data_v3/*.csv
+ *   java -cp out satd.learn.ForestTrainer --mtry all --trees 25 ../train-set3.csv
+ */
+public final class ForestTrainer {
+
+    /** Bumped whenever the same settings could train a different forest. */
+    static final int VERSION = 1;
+
+    private final ForkJoinPool pool;
+    private final int trees;
+    private final int mtry;
+    private final int minLeaf;
+    private final int maxDepth;
+
+    /**
+     * @param mtry     features tried per node; 0 for {@code floor(sqrt(features))},
+     *                 {@link Integer#MAX_VALUE} for all (treebag)
+     * @param maxDepth levels below the root; {@link Integer#MAX_VALUE} grows trees out
+     */
+    public ForestTrainer(ForkJoinPool pool, int trees, int mtry, int minLeaf, int maxDepth) {
+        if (trees < 1 || mtry < 0 || minLeaf < 1 || maxDepth < 0) {
+            throw new IllegalArgumentException("trees and minLeaf must be positive, mtry and maxDepth not negative");
+        }
+        this.pool = pool;
+        this.trees = trees;
+        this.mtry = mtry;
+        this.minLeaf = minLeaf;
+        this.maxDepth = maxDepth;
+    }
+
+    /** Every setting of this trainer, with its version, as {@code name=value} pairs. */
+    public String config() {
+        return String.format(Locale.ROOT, "forest-trainer=%d trees=%d mtry=%d minleaf=%d maxdepth=%d",
+                VERSION, trees, mtry, minLeaf, maxDepth);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int trees = 500;
+        int mtry = 0;
+        int minLeaf = 1;
+        int folds = 10;
+        long seed = 137;
+        Path importance = null;
+        int i = 0;
+        for (; i + 1 < args.length && args[i].startsWith("--"); i += 2) {
+            switch (args[i]) {
+                case "--trees": trees = Integer.parseInt(args[i + 1]); break;
+                case "--mtry": mtry = args[i + 1].equals("all") ? Integer.MAX_VALUE : Integer.parseInt(args[i + 1]); break;
+                case "--min-leaf": minLeaf = Integer.parseInt(args[i + 1]); break;
+                case "--folds": folds = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                case "--importance": importance = Paths.get(args[i + 1]); break;
+                default: i = args.length; break;
+            }
+        }
+        if (i >= args.length || args[i].startsWith("--")) {
+            System.err.println("Usage: ForestTrainer [--trees n] [--mtry n|all] [--min-leaf n] [--folds n] [--seed n]"
+                    + " [--importance dir] file.csv...");
+            System.exit(1);
+        }
+        if (importance != null) {
+            Files.createDirectories(importance);
+        }
+        ForestTrainer trainer = new ForestTrainer(ForkJoinPool.commonPool(), trees, mtry, minLeaf, Integer.MAX_VALUE);
+        String model = mtry == Integer.MAX_VALUE ? "treebag" : "rf";
+        for (; i < args.length; i++) {
+            Path csv = Paths.get(args[i]);
+            long t0 = System.nanoTime();
+            Dataset d = GbmTrainer.load(csv);
+            Presorted sorted = Presorted.of(d);
+            float[] p = trainer.crossValidate(d, sorted, folds, new Random(seed));
+            System.out.printf(Locale.ROOT, "%-60s %5d rows %3d features  AUC %.4f  %.2f s%n",
+                    csv.getFileName(), d.rows(), d.width(), Scores.auc(d.y(), p), (System.nanoTime() - t0) / 1e9);
+            if (importance != null) {
+                Forest forest = trainer.train(d, sorted, Folds.all(d.rows()), seed);
+                String name = csv.getFileName().toString().replace("metrics-smells-psatd-msatd-", "plot-");
+                writeImportance(importance.resolve("VariableImportance-" + model + "-" + name),
+                        forest.features(), forest.importance());
+            }
+        }
+    }
+
+    /**
+     * Writes the non-zero {@code weights} ascending, as the data frame
+     * {@code results} that caret-models.r plots: a quoted header
+     * {@code "VariableName";"Weight"} and one quoted row per feature.
+     */
+    public static void writeImportance(Path file, List<String> names, double[] weights) throws IOException {
+        List<Integer> order = new ArrayList<>();
+        for (int f = 0; f < weights.length; f++) {
+            if (weights[f] != 0) {
+                order.add(f);
+            }
+        }
+        order.sort(Comparator.comparingDouble(f -> weights[f]));
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+            out.write("\"VariableName\";\"Weight\"\n");
+            for (int f : order) {
+                out.write(String.format(Locale.ROOT, "\"%s\";\"%.10f\"%n", names.get(f), weights[f]));
+            }
+        }
+    }
+
+    /** Out-of-fold probabilities of class 1, folds as in {@link GbmTrainer#crossValidate}. */
+    public float[] crossValidate(Dataset d, Presorted sorted, int folds, Random random) {
+        int[] fold = Folds.stratified(d.y(), folds, random);
+        float[] p = new float[d.rows()];
+        int width = d.width();
+        for (int k = 0; k < folds; k++) {
+            Forest forest = train(d, sorted, Folds.training(fold, k), random.nextLong());
+            for (int r = 0; r < p.length; r++) {
+                if (fold[r] == k) {
+                    p[r] = forest.probability(d.x(), r * width);
+                }
+            }
+        }
+        return p;
+    }
+
+    /** Trains on {@code rows} of {@code d}; {@code sorted} must be of {@code d}. */
+    public Forest train(Dataset d, Presorted sorted, int[] rows, long seed) {
+        if (sorted.features() != d.width() || (d.width() > 0 && sorted.order(0).length != d.rows())) {
+            throw new IllegalArgumentException("presorted orders are not of this dataset");
+        }
+        int tried = mtry == 0 ? Math.max(1, (int) Math.sqrt(d.width())) : Math.min(mtry, d.width());
+        Tree[] built = new Tree[trees];
+        ConcurrentLinkedQueue<Scratch> scratches = new ConcurrentLinkedQueue<>();
+        pool.invoke(new TreeTask(0, trees, () -> {
+            Scratch s = scratches.poll();
+            return s != null ? s : new Scratch(d, sorted, rows, tried);
+        }, scratches, built, seed));
+
+        double[] importance = new double[d.width()];
+        for (Scratch s : scratches) {
+            for (int f = 0; f < importance.length; f++) {
+                importance[f] += s.importance[f] / trees;
+            }
+        }
+        int total = 0;
+        for (Tree t : built) {
+            total += t.feature.length;
+        }
+        int[] roots = new int[trees];
+        int[] feature = new int[total];
+        float[] threshold = new float[total];
+        int[] left = new int[total];
+        int[] right = new int[total];
+        float[] value = new float[total];
+        int at = 0;
+        for (int t = 0; t < trees; t++) {
+            Tree tree = built[t];
+            int n = tree.feature.length;
+            roots[t] = at;
+            System.arraycopy(tree.feature, 0, feature, at, n);
+            System.arraycopy(tree.threshold, 0, threshold, at, n);
+            System.arraycopy(tree.value, 0, value, at, n);
+            for (int i = 0; i < n; i++) {
+                left[at + i] = tree.left[i] + at;
+                right[at + i] = tree.right[i] + at;
+            }
+            at += n;
+        }
+        return new Forest(roots, feature, threshold, left, right, value, d.features(), importance);
+    }
+
+    /** One finished tree, its nodes numbered from 0. */
+    private static final class Tree {
+        final int[] feature;
+        final float[] threshold;
+        final int[] left;
+        final int[] right;
+        final float[] value;
+
+        Tree(Nodes nodes) {
+            feature = Arrays.copyOf(nodes.feature, nodes.size);
+            threshold = Arrays.copyOf(nodes.threshold, nodes.size);
+            left = Arrays.copyOf(nodes.left, nodes.size);
+            right = Arrays.copyOf(nodes.right, nodes.size);
+            value = Arrays.copyOf(nodes.value, nodes.size);
+        }
+    }
+
+    /** Builds trees {@code [from, to)}, halving the range down to one tree per task. */
+    private final class TreeTask extends RecursiveAction {
+        final int from;
+        final int to;
+        final Supplier<Scratch> take;
+        final ConcurrentLinkedQueue<Scratch> give;
+        final Tree[] built;
+        final long seed;
+
+        TreeTask(int from, int to, Supplier<Scratch> take, ConcurrentLinkedQueue<Scratch> give,
+                Tree[] built, long seed) {
+            this.from = from;
+            this.to = to;
+            this.take = take;
+            this.give = give;
+            this.built = built;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                Scratch s = take.get();
+                built[from] = s.grow(new Random(seed + from * 0x9E3779B97F4A7C15L));
+                give.add(s);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TreeTask(from, mid, take, give, built, seed), new TreeTask(mid, to, take, give, built, seed));
+        }
+    }
+
+    /** Everything one tree needs while it grows; reused tree after tree. */
+    private final class Scratch {
+        final Dataset d;
+        final Presorted sorted;
+        final int[] rows;
+        final int tried;
+        final int width;
+        final int[] weight;
+        final int[] nodeOf;
+        final double[] importance;
+        final Nodes nodes = new Nodes();
+        final int[] features;
+        final boolean[] mask;
+        final boolean[] used;
+
+        // per open node of the level being split, and of the next level
+        int[] node;
+        int[] n0;
+        int[] n1;
+        int[] nextNode;
+        int[] next0;
+        int[] next1;
+        final int[] l0;
+        final int[] l1;
+        final float[] last;
+        final double[] bestGain;
+        final int[] bestFeature;
+        final float[] bestThreshold;
+        final int[] bestL0;
+        final int[] bestL1;
+        final int[] leftOpen;
+        final int[] rightOpen;
+
+        Scratch(Dataset d, Presorted sorted, int[] rows, int tried) {
+            this.d = d;
+            this.sorted = sorted;
+            this.rows = rows;
+            this.tried = tried;
+            this.width = d.width();
+            int n = d.rows();
+            this.weight = new int[n];
+            this.nodeOf = new int[n];
+            this.importance = new double[width];
+            this.features = new int[width];
+            this.mask = tried < width ? new boolean[n * width] : null;
+            this.used = new boolean[width];
+            this.node = new int[n];
+            this.n0 = new int[n];
+            this.n1 = new int[n];
+            this.nextNode = new int[n];
+            this.next0 = new int[n];
+            this.next1 = new int[n];
+            this.l0 = new int[n];
+            this.l1 = new int[n];
+            this.last = new float[n];
+            this.bestGain = new double[n];
+            this.bestFeature = new int[n];
+            this.bestThreshold = new float[n];
+            this.bestL0 = new int[n];
+            this.bestL1 = new int[n];
+            this.leftOpen = new int[n];
+            this.rightOpen = new int[n];
+        }
+
+        Tree grow(Random random) {
+            float[] x = d.x();
+            float[] y = d.y();
+            Arrays.fill(weight, 0);
+            for (int i = 0; i < rows.length; i++) {
+                weight[rows[random.nextInt(rows.length)]]++;
+            }
+            nodes.clear();
+            int c0 = 0;
+            int c1 = 0;
+            Arrays.fill(nodeOf, -1);
+            for (int r : rows) {
+                if (weight[r] > 0) {
+                    nodeOf[r] = 0;
+                    if (y[r] == 1f) {
+                        c1 += weight[r];
+                    } else {
+                        c0 += weight[r];
+                    }
+                }
+            }
+            node[0] = nodes.leaf((float) c1 / (c0 + c1));
+            n0[0] = c0;
+            n1[0] = c1;
+            int open = opens(c0, c1, 0) ? 1 : 0;
+
+            for (int level = 0; open > 0; level++) {
+                chooseFeatures(open, random);
+                for (int a = 0; a < open; a++) {
+                    bestGain[a] = 1e-9;
+                    bestFeature[a] = -1;
+                }
+                for (int f = 0; f < width; f++) {
+                    if (used[f]) {
+                        scan(f, open, x, y);
+                    }
+                }
+                int opened = 0;
+                for (int a = 0; a < open; a++) {
+                    int f = bestFeature[a];
+                    if (f < 0) {
+                        leftOpen[a] = -1;
+                        rightOpen[a] = -1;
+                        continue;
+                    }
+                    importance[f] += bestGain[a];
+                    int ll0 = bestL0[a];
+                    int ll1 = bestL1[a];
+                    int rr0 = n0[a] - ll0;
+                    int rr1 = n1[a] - ll1;
+                    int self = node[a];
+                    nodes.feature[self] = f;
+                    nodes.threshold[self] = bestThreshold[a];
+                    int left = nodes.leaf((float) ll1 / (ll0 + ll1));
+                    int right = nodes.leaf((float) rr1 / (rr0 + rr1));
+                    nodes.left[self] = left;
+                    nodes.right[self] = right;
+                    leftOpen[a] = opens(ll0, ll1, level + 1) ? opened : -1;
+                    if (leftOpen[a] >= 0) {
+                        nextNode[opened] = left;
+                        next0[opened] = ll0;
+                        next1[opened++] = ll1;
+                    }
+                    rightOpen[a] = opens(rr0, rr1, level + 1) ? opened : -1;
+                    if (rightOpen[a] >= 0) {
+                        nextNode[opened] = right;
+                        next0[opened] = rr0;
+                        next1[opened++] = rr1;
+                    }
+                }
+                for (int r : rows) {
+                    int a = nodeOf[r];
+                    if (a >= 0) {
+                        int f = bestFeature[a];
+                        nodeOf[r] = f < 0 ? -1 : x[r * width + f] <= bestThreshold[a] ? leftOpen[a] : rightOpen[a];
+                    }
+                }
+                int[] t = node;
+                node = nextNode;
+                nextNode = t;
+                t = n0;
+                n0 = next0;
+                next0 = t;
+                t = n1;
+                n1 = next1;
+                next1 = t;
+                open = opened;
+            }
+            return new Tree(nodes);
+        }
+
+        /** Whether a node of these class weights at this depth may still split. */
+        private boolean opens(int c0, int c1, int depth) {
+            return c0 > 0 && c1 > 0 && c0 + c1 >= 2 * minLeaf && depth < maxDepth;
+        }
+
+        /** Draws the features each open node tries; marks in {@code used} those any node tries. */
+        private void chooseFeatures(int open, Random random) {
+            if (mask == null) {
+                Arrays.fill(used, true);
+                return;
+            }
+            Arrays.fill(used, false);
+            Arrays.fill(mask, 0, open * width, false);
+            for (int f = 0; f < width; f++) {
+                features[f] = f;
+            }
+            for (int a = 0; a < open; a++) {
+                for (int i = 0; i < tried; i++) {
+                    int j = i + random.nextInt(width - i);
+                    int f = features[j];
+                    features[j] = features[i];
+                    features[i] = f;
+                    mask[a * width + f] = true;
+                    used[f] = true;
+                }
+            }
+        }
+
+        /** Walks the rows in order of feature {@code f}, scoring every split point of every open node. */
+        private void scan(int f, int open, float[] x, float[] y) {
+            Arrays.fill(l0, 0, open, 0);
+            Arrays.fill(l1, 0, open, 0);
+            Arrays.fill(last, 0, open, Float.NaN);
+            for (int r : sorted.order(f)) {
+                int a = nodeOf[r];
+                if (a < 0 || (mask != null && !mask[a * width + f])) {
+                    continue;
+                }
+                float v = x[r * width + f];
+                if (v > last[a]) {
+                    int ll0 = l0[a];
+                    int ll1 = l1[a];
+                    int nl = ll0 + ll1;
+                    int nr = n0[a] + n1[a] - nl;
+                    if (nl >= minLeaf && nr >= minLeaf) {
+                        int rr0 = n0[a] - ll0;
+                        int rr1 = n1[a] - ll1;
+                        int n = nl + nr;
+                        double gain = ((double) ll0 * ll0 + (double) ll1 * ll1) / nl
+                                + ((double) rr0 * rr0 + (double) rr1 * rr1) / nr
+                                - ((double) n0[a] * n0[a] + (double) n1[a] * n1[a]) / n;
+                        if (gain > bestGain[a]) {
+                            float mid = last[a] + (v - last[a]) / 2;
+                            bestGain[a] = gain;
+                            bestFeature[a] = f;
+                            bestThreshold[a] = mid < v ? mid : last[a];
+                            bestL0[a] = ll0;
+                            bestL1[a] = ll1;
+                        }
+                    }
+                }
+                if (y[r] == 1f) {
+                    l1[a] += weight[r];
+                } else {
+                    l0[a] += weight[r];
+                }
+                last[a] = v;
+            }
+        }
+    }
+}
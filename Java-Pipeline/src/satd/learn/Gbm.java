@@ -0,0 +1,69 @@
+package satd.learn;
+
+/**
+ * A trained gradient-boosted ensemble of binary trees for two classes,
+ * as {@link GbmTrainer} builds it: the log-odds of class 1 is
+ * {@code base} plus the leaf value each tree gives the row.
+ *
+ * All trees live in flat node arrays. Node {@code i} is a leaf when
+ * {@code feature[i] < 0}; otherwise rows with
+ * {@code x[feature] <= threshold} go to {@code left[i]}, the others to
+ * {@code right[i]}. Tree {@code t} starts at node {@code roots[t]}.
+ */
+public final class Gbm {
+
+    private final float base;
+    private final int[] roots;
+    private final int[] feature;
+    private final float[] threshold;
+    private final int[] left;
+    private final int[] right;
+    private final float[] value;
+
+    Gbm(float base, int[] roots, int[] feature, float[] threshold, int[] left, int[] right, float[] value) {
+        this.base = base;
+        this.roots = roots;
+        this.feature = feature;
+        this.threshold = threshold;
+        this.left = left;
+        this.right = right;
+        this.value = value;
+    }
+
+    public int trees() {
+        return roots.length;
+    }
+
+    public int nodes() {
+        return feature.length;
+    }
+
+    /** Log-odds of class 1 for the row at {@code x[offset..]}, with the first {@code trees} trees. */
+    public float margin(float[] x, int offset, int trees) {
+        float sum = base;
+        for (int t = 0; t < trees; t++) {
+            sum += leaf(t, x, offset);
+        }
+        return sum;
+    }
+
+    /** Value of the leaf tree {@code t} sends the row at {@code x[offset..]} to. */
+    float leaf(int t, float[] x, int offset) {
+        int i = roots[t];
+        while (feature[i] >= 0) {
+            i = x[offset + feature[i]] <= threshold[i] ? left[i] : right[i];
+        }
+        return value[i];
+    }
+
+    /** Probability of class 1 for every row of {@code d}. */
+    public float[] probabilities(Dataset d) {
+        int width = d.width();
+        float[] x = d.x();
+        float[] p = new float[d.rows()];
+        for (int r = 0; r < p.length; r++) {
+            p[r] = (float) (1 / (1 + Math.exp(-margin(x, r * width, roots.length))));
+        }
+        return p;
+    }
+}
@@ -0,0 +1,398 @@
+package satd.learn;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Gradient boosting of binary trees on quantized features ({@link Bins}),
+ * with the Bernoulli loss of caret's {@code gbm} models.
+ *
+ * Each tree fits the gradient {@code p - y} and hessian {@code p(1 - p)}
+ * of a bag of {@code bagFraction} of the rows, grown depth-first to
+ * {@code depth} levels (gbm's interaction.depth). A node's split is the
+ * best bin boundary found in its per-feature histograms of gradient and
+ * hessian sums. The histograms of the smaller child are built from its
+ * rows, feature by feature in parallel on a {@link ForkJoinPool}; the
+ * larger child's are the parent's minus the smaller's. Leaves take the
+ * Newton step {@code -G / (H + LAMBDA)} times {@code shrinkage}.
+ *
+ * {@code main} cross-validates the files it is given, 10 stratified folds,
+ * and prints the AUC of the out-of-fold probabilities. data_v3 files are
+ * prepared as caret-models.r does: MayBe rows (MSATDNum 1) removed, Yes
+ * (2) is class 1, the caret columns dropped. Any other file is read as
+ * train-set3.csv: no header, the label last, label 1 is class 1.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.learn.GbmTrainer --trees 150 --depth 3 ../train-set3.csv ../R-Neural-Network/data_v3/*.csv
+ */
+public final class GbmTrainer {
+
+    /** Bumped whenever the same settings could train a different model. */
+    static final int VERSION = 1;
+
+    static final double LAMBDA = 1.0;
+
+    /** Histograms of fewer row-feature cells than this are built on the calling thread. */
+    static final int PARALLEL_CELLS = 1 << 15;
+
+    private static final int FEATURES_PER_TASK = 4;
+
+    private final ForkJoinPool pool;
+    private final int trees;
+    private final int depth;
+    private final double shrinkage;
+    private final int minLeaf;
+    private final double bagFraction;
+
+    public GbmTrainer(ForkJoinPool pool, int trees, int depth, double shrinkage, int minLeaf, double bagFraction) {
+        if (trees < 1 || depth < 1 || minLeaf < 1 || !(bagFraction > 0 && bagFraction <= 1)) {
+            throw new IllegalArgumentException("trees, depth, minLeaf must be positive and bagFraction in (0, 1]");
+        }
+        this.pool = pool;
+        this.trees = trees;
+        this.depth = depth;
+        this.shrinkage = shrinkage;
+        this.minLeaf = minLeaf;
+        this.bagFraction = bagFraction;
+    }
+
+    /** Every setting of this trainer, with its version, as {@code name=value} pairs. */
+    public String config() {
+        return String.format(Locale.ROOT, "gbm-trainer=%d trees=%d depth=%d shrinkage=%s minleaf=%d bag=%s lambda=%s",
+                VERSION, trees, depth, shrinkage, minLeaf, bagFraction, LAMBDA);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int trees = 150;
+        int depth = 3;
+        double shrinkage = 0.1;
+        int minLeaf = 10;
+        double bag = 0.5;
+        int folds = 10;
+        long seed = 137;
+        int i = 0;
+        for (; i + 1 < args.length && args[i].startsWith("--"); i += 2) {
+            switch (args[i]) {
+                case "--trees": trees = Integer.parseInt(args[i + 1]); break;
+                case "--depth": depth = Integer.parseInt(args[i + 1]); break;
+                case "--shrinkage": shrinkage = Double.parseDouble(args[i + 1]); break;
+                case "--min-leaf": minLeaf = Integer.parseInt(args[i + 1]); break;
+                case "--bag": bag = Double.parseDouble(args[i + 1]); break;
+                case "--folds": folds = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                default: i = args.length; break;
+            }
+        }
+        if (i >= args.length || args[i].startsWith("--")) {
+            System.err.println("Usage: GbmTrainer [--trees n] [--depth n] [--shrinkage x] [--min-leaf n] [--bag x]"
+                    + " [--folds n] [--seed n] file.csv...");
+            System.exit(1);
+        }
+        GbmTrainer trainer = new GbmTrainer(ForkJoinPool.commonPool(), trees, depth, shrinkage, minLeaf, bag);
+        for (; i < args.length; i++) {
+            Path csv = Paths.get(args[i]);
+            long t0 = System.nanoTime();
+            Dataset d = load(csv);
+            Bins bins = Bins.of(d, Bins.MAX_BINS);
+            float[] p = trainer.crossValidate(d, bins, folds, new Random(seed));
+            System.out.printf(Locale.ROOT, "%-60s %5d rows %4d positive %3d features  AUC %.4f  %.2f s%n",
+                    csv.getFileName(), d.rows(), positives(d), d.width(), Scores.auc(d.y(), p),
+                    (System.nanoTime() - t0) / 1e9);
+        }
+    }
+
+    /** {@code csv} as two classes, prepared as the class comment describes. */
+    public static Dataset load(Path csv) throws IOException {
+        if (csv.getFileName().toString().startsWith("metrics-smells-psatd-msatd-")) {
+            return Dataset.load(csv, "MSATDNum", Dataset.CARET_DROPPED).binary(2f, 1f);
+        }
+        return Dataset.loadHeaderless(csv, ';').binary(1f, Float.NaN);
+    }
+
+    private static int positives(Dataset d) {
+        int n = 0;
+        for (float y : d.y()) {
+            n += y == 1f ? 1 : 0;
+        }
+        return n;
+    }
+
+    /**
+     * Probabilities of class 1 for every row of {@code d}, each from a
+     * model trained on the other folds. Folds are stratified: the rows of
+     * each class are shuffled and dealt round-robin.
+     */
+    public float[] crossValidate(Dataset d, Bins bins, int folds, Random random) {
+        int n = d.rows();
+        int[] fold = Folds.stratified(d.y(), folds, random);
+        float[] p = new float[n];
+        int width = d.width();
+        for (int k = 0; k < folds; k++) {
+            int[] train = Folds.training(fold, k);
+            Gbm model = train(d, bins, train, random.nextLong());
+            for (int r = 0; r < n; r++) {
+                if (fold[r] == k) {
+                    p[r] = (float) (1 / (1 + Math.exp(-model.margin(d.x(), r * width, model.trees()))));
+                }
+            }
+        }
+        return p;
+    }
+
+    /** Trains on {@code rows} of {@code d}; {@code bins} must be the quantized {@code d}. */
+    public Gbm train(Dataset d, Bins bins, int[] rows, long seed) {
+        if (bins.rows() != d.rows() || bins.features() != d.width()) {
+            throw new IllegalArgumentException("bins are not of this dataset");
+        }
+        Random random = new Random(seed);
+        float[] y = d.y();
+        float[] x = d.x();
+        int width = d.width();
+        double positive = 0;
+        for (int r : rows) {
+            positive += y[r];
+        }
+        double mean = Math.min(Math.max(positive / rows.length, 1e-6), 1 - 1e-6);
+        float base = (float) Math.log(mean / (1 - mean));
+
+        Grower grower = new Grower(bins, d.rows());
+        float[] score = new float[d.rows()];
+        Arrays.fill(score, base);
+        int[] bag = rows.clone();
+        int bagged = Math.max(1, (int) Math.round(bagFraction * rows.length));
+        int[] roots = new int[trees];
+        for (int t = 0; t < trees; t++) {
+            for (int r : rows) {
+                double p = 1 / (1 + Math.exp(-score[r]));
+                grower.g[r] = p - y[r];
+                grower.h[r] = p * (1 - p);
+            }
+            shuffle(bag, bagged, random);
+            roots[t] = grower.grow(bag, bagged);
+            for (int r : rows) {
+                score[r] += grower.nodes.leaf(roots[t], x, r * width);
+            }
+        }
+        Nodes nodes = grower.nodes;
+        return new Gbm(base, roots, Arrays.copyOf(nodes.feature, nodes.size),
+                Arrays.copyOf(nodes.threshold, nodes.size), Arrays.copyOf(nodes.left, nodes.size),
+                Arrays.copyOf(nodes.right, nodes.size), Arrays.copyOf(nodes.value, nodes.size));
+    }
+
+    /** Grows the trees of one model: gradients, histograms, node buffers. */
+    private final class Grower {
+        final Bins bins;
+        final double[] g;
+        final double[] h;
+        final int[] offsets;
+        final int cells;
+        final ArrayDeque<Histogram> free = new ArrayDeque<>();
+        final Nodes nodes = new Nodes();
+
+        Grower(Bins bins, int rows) {
+            this.bins = bins;
+            this.g = new double[rows];
+            this.h = new double[rows];
+            this.offsets = new int[bins.features() + 1];
+            for (int f = 0; f < bins.features(); f++) {
+                offsets[f + 1] = offsets[f] + bins.bins(f);
+            }
+            this.cells = offsets[bins.features()];
+        }
+
+        /** Grows one tree on {@code idx[0..n)}, which it reorders, and returns its root. */
+        int grow(int[] idx, int n) {
+            Histogram root = take();
+            build(root, idx, 0, n);
+            double gs = 0;
+            double hs = 0;
+            for (int i = 0; i < n; i++) {
+                gs += g[idx[i]];
+                hs += h[idx[i]];
+            }
+            return node(root, idx, 0, n, gs, hs, 0);
+        }
+
+        private int node(Histogram hist, int[] idx, int from, int to, double gs, double hs, int level) {
+            int n = to - from;
+            int feature = -1;
+            int bin = -1;
+            double best = 0;
+            double gl = 0;
+            double hl = 0;
+            if (level < depth && n >= 2 * minLeaf) {
+                double parent = gs * gs / (hs + LAMBDA);
+                for (int f = 0; f < bins.features(); f++) {
+                    double cg = 0;
+                    double ch = 0;
+                    int cn = 0;
+                    for (int b = offsets[f], end = offsets[f + 1] - 1; b < end; b++) {
+                        cg += hist.g[b];
+                        ch += hist.h[b];
+                        cn += hist.n[b];
+                        if (cn < minLeaf) {
+                            continue;
+                        }
+                        if (n - cn < minLeaf) {
+                            break;
+                        }
+                        double rg = gs - cg;
+                        double rh = hs - ch;
+                        double gain = cg * cg / (ch + LAMBDA) + rg * rg / (rh + LAMBDA) - parent;
+                        if (gain > best) {
+                            best = gain;
+                            feature = f;
+                            bin = b - offsets[f];
+                            gl = cg;
+                            hl = ch;
+                        }
+                    }
+                }
+            }
+            if (feature < 0) {
+                free.push(hist);
+                return nodes.leaf((float) (-gs / (hs + LAMBDA) * shrinkage));
+            }
+
+            byte[] codes = bins.codes(feature);
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                if ((codes[idx[i]] & 0xFF) <= bin) {
+                    i++;
+                } else {
+                    int t = idx[i];
+                    idx[i] = idx[j];
+                    idx[j--] = t;
+                }
+            }
+            int split = i;
+            int self = nodes.split(feature, bins.upper(feature, bin));
+
+            Histogram small = take();
+            boolean leftSmaller = split - from <= to - split;
+            if (leftSmaller) {
+                build(small, idx, from, split);
+            } else {
+                build(small, idx, split, to);
+            }
+            hist.subtract(small);
+            Histogram leftHist = leftSmaller ? small : hist;
+            Histogram rightHist = leftSmaller ? hist : small;
+            int left = node(leftHist, idx, from, split, gl, hl, level + 1);
+            int right = node(rightHist, idx, split, to, gs - gl, hs - hl, level + 1);
+            nodes.left[self] = left;
+            nodes.right[self] = right;
+            return self;
+        }
+
+        private Histogram take() {
+            Histogram hist = free.poll();
+            if (hist == null) {
+                return new Histogram(cells);
+            }
+            hist.clear();
+            return hist;
+        }
+
+        private void build(Histogram hist, int[] idx, int from, int to) {
+            if ((long) (to - from) * bins.features() < PARALLEL_CELLS || pool.getParallelism() < 2) {
+                accumulate(hist, idx, from, to, 0, bins.features());
+            } else {
+                pool.invoke(new HistogramTask(hist, idx, from, to, 0, bins.features()));
+            }
+        }
+
+        void accumulate(Histogram hist, int[] idx, int from, int to, int f0, int f1) {
+            double[] hg = hist.g;
+            double[] hh = hist.h;
+            int[] hn = hist.n;
+            for (int f = f0; f < f1; f++) {
+                byte[] codes = bins.codes(f);
+                int offset = offsets[f];
+                for (int i = from; i < to; i++) {
+                    int r = idx[i];
+                    int b = offset + (codes[r] & 0xFF);
+                    hg[b] += g[r];
+                    hh[b] += h[r];
+                    hn[b]++;
+                }
+            }
+        }
+
+        /** Histograms of a range of features; features are disjoint, so no merging. */
+        private final class HistogramTask extends RecursiveAction {
+            final Histogram hist;
+            final int[] idx;
+            final int from;
+            final int to;
+            final int f0;
+            final int f1;
+
+            HistogramTask(Histogram hist, int[] idx, int from, int to, int f0, int f1) {
+                this.hist = hist;
+                this.idx = idx;
+                this.from = from;
+                this.to = to;
+                this.f0 = f0;
+                this.f1 = f1;
+            }
+
+            @Override
+            protected void compute() {
+                if (f1 - f0 <= FEATURES_PER_TASK) {
+                    accumulate(hist, idx, from, to, f0, f1);
+                    return;
+                }
+                int mid = (f0 + f1) >>> 1;
+                invokeAll(new HistogramTask(hist, idx, from, to, f0, mid),
+                        new HistogramTask(hist, idx, from, to, mid, f1));
+            }
+        }
+    }
+
+    /** Gradient sum, hessian sum and row count of every bin of every feature. */
+    private static final class Histogram {
+        final double[] g;
+        final double[] h;
+        final int[] n;
+
+        Histogram(int cells) {
+            g = new double[cells];
+            h = new double[cells];
+            n = new int[cells];
+        }
+
+        void clear() {
+            Arrays.fill(g, 0);
+            Arrays.fill(h, 0);
+            Arrays.fill(n, 0);
+        }
+
+        void subtract(Histogram o) {
+            for (int i = 0; i < g.length; i++) {
+                g[i] -= o.g[i];
+                h[i] -= o.h[i];
+                n[i] -= o.n[i];
+            }
+        }
+    }
+
+    /** Moves a uniform sample of {@code k} elements of {@code a} to its front. */
+    private static void shuffle(int[] a, int k, Random random) {
+        for (int i = 0; i < k && i < a.length - 1; i++) {
+            int j = i + random.nextInt(a.length - i);
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package satd.learn;
+
+/**
+ * Cache-blocked single-precision matrix products on flat row-major arrays.
+ * Every product accumulates into {@code c}; clear it first for a plain
+ * product.
+ *
+ * Loops run over one block of rows of the right-hand matrix at a time, so
+ * the rows being reused stay in L1, and the innermost loop walks
+ * contiguous memory that the JIT vectorizes.
+ *
+ * When the JVM runs with {@code --add-modules jdk.incubator.vector},
+ * {@link #nn} runs on {@link VectorGemm} instead, which keeps its sums in
+ * vector registers; without the module nothing loads that class.
+ */
+public final class Gemm {
+
+    static final int BLOCK = 64;
+
+    /** Whether {@code jdk.incubator.vector} was resolved at startup. */
+    static final boolean VECTOR = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private Gemm() {
+    }
+
+    /** c[m x n] += a[m x k] * b[k x n] */
+    public static void nn(float[] a, float[] b, float[] c, int m, int k, int n) {
+        if (VECTOR) {
+            VectorGemm.nn(a, b, c, m, k, n);
+            return;
+        }
+        for (int p0 = 0; p0 < k; p0 += BLOCK) {
+            int p1 = Math.min(k, p0 + BLOCK);
+            for (int j0 = 0; j0 < n; j0 += BLOCK * 4) {
+                int j1 = Math.min(n, j0 + BLOCK * 4);
+                for (int i = 0; i < m; i++) {
+                    int ci = i * n;
+                    for (int p = p0; p < p1; p++) {
+                        float aip = a[i * k + p];
+                        if (aip == 0f) {
+                            continue;
+                        }
+                        int bp = p * n;
+                        for (int j = j0; j < j1; j++) {
+                            c[ci + j] += aip * b[bp + j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** c[k x n] += transpose(a[m x k]) * b[m x n] */
+    public static void tn(float[] a, float[] b, float[] c, int m, int k, int n) {
+        for (int i0 = 0; i0 < m; i0 += BLOCK) {
+            int i1 = Math.min(m, i0 + BLOCK);
+            for (int p = 0; p < k; p++) {
+                int cp = p * n;
+                for (int i = i0; i < i1; i++) {
+                    float aip = a[i * k + p];
+                    if (aip == 0f) {
+                        continue;
+                    }
+                    int bi = i * n;
+                    for (int j = 0; j < n; j++) {
+                        c[cp + j] += aip * b[bi + j];
+                    }
+                }
+            }
+        }
+    }
+
+    /** c[m x k] += a[m x n] * transpose(b[k x n]) */
+    public static void nt(float[] a, float[] b, float[] c, int m, int k, int n) {
+        for (int p0 = 0; p0 < k; p0 += BLOCK) {
+            int p1 = Math.min(k, p0 + BLOCK);
+            for (int i = 0; i < m; i++) {
+                int ai = i * n;
+                for (int p = p0; p < p1; p++) {
+                    int bp = p * n;
+                    float s = 0f;
+                    for (int j = 0; j < n; j++) {
+                        s += a[ai + j] * b[bp + j];
+                    }
+                    c[i * k + p] += s;
+                }
+            }
+        }
+    }
+}
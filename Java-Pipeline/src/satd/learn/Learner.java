@@ -0,0 +1,21 @@
+package satd.learn;
+
+/**
+ * A two-class model family with fixed settings, as a base learner of
+ * {@link StackingRunner}: fits on some rows of a dataset and gives the
+ * probability of class 1 for others.
+ */
+public interface Learner {
+
+    /**
+     * The learner and every setting that changes its predictions, hard-coded
+     * ones included, with the versions of the code that uses them, such as
+     * {@code gbm learners=1 bins=256 gbm-trainer=1 trees=150 depth=3 ...};
+     * predictions cached under it are reused only by a learner of the same
+     * config.
+     */
+    String config();
+
+    /** Probabilities of class 1 for {@code test}, from a model fitted on {@code train} of {@code d}. */
+    float[] fitPredict(Dataset d, int[] train, int[] test, long seed);
+}
@@ -0,0 +1,145 @@
+package satd.learn;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The trainers of this package as {@link Learner}s, under the method names
+ * of caret-ensemble.r. Each keeps the label-free preprocessing of the last
+ * dataset it saw (bins, presorted orders, scaled copies), so the folds of
+ * one dataset share it.
+ */
+public final class Learners {
+
+    /**
+     * Version of the preprocessing and prediction code here, first in every
+     * config after the method name; each trainer's config carries its own.
+     */
+    static final int VERSION = 1;
+
+    private Learners() {
+    }
+
+    /** {@link GbmTrainer} with a bag fraction of 0.5 and at least 10 rows per leaf. */
+    public static Learner gbm(int trees, int depth, double shrinkage) {
+        GbmTrainer trainer = new GbmTrainer(ForkJoinPool.commonPool(), trees, depth, shrinkage, 10, 0.5);
+        return new Cached<Bins>(String.format(Locale.ROOT, "gbm learners=%d bins=%d %s", VERSION, Bins.MAX_BINS,
+                trainer.config())) {
+            @Override
+            Bins prepare(Dataset d) {
+                return Bins.of(d, Bins.MAX_BINS);
+            }
+
+            @Override
+            float[] fitPredict(Dataset d, Bins bins, int[] train, int[] test, long seed) {
+                Gbm model = trainer.train(d, bins, train, seed);
+                float[] p = new float[test.length];
+                for (int i = 0; i < test.length; i++) {
+                    float m = model.margin(d.x(), test[i] * d.width(), model.trees());
+                    p[i] = (float) (1 / (1 + Math.exp(-m)));
+                }
+                return p;
+            }
+        };
+    }
+
+    /** {@link LogisticTrainer} at one lambda, features scaled by their largest absolute value. */
+    public static Learner glm(double alpha, double lambda) {
+        LogisticTrainer trainer = new LogisticTrainer(ForkJoinPool.commonPool(), alpha);
+        return new Cached<Csr>(String.format(Locale.ROOT, "glm learners=%d scaling=maxabs %s lambda=%s", VERSION,
+                trainer.config(), lambda)) {
+            @Override
+            Csr prepare(Dataset d) {
+                return Csr.of(d).scaledByMaxAbs();
+            }
+
+            @Override
+            float[] fitPredict(Dataset d, Csr x, int[] train, int[] test, long seed) {
+                Logistic model = trainer.fit(x, d.y(), train, lambda);
+                float[] p = new float[test.length];
+                for (int i = 0; i < test.length; i++) {
+                    p[i] = (float) model.probability(x, test[i]);
+                }
+                return p;
+            }
+        };
+    }
+
+    /**
+     * {@link MlpTrainer} with one hidden layer, features min-max scaled as in
+     * nnplay.r, trained to neuralnet's threshold or at most {@code stepMax}
+     * rprop+ steps.
+     */
+    public static Learner nnet(int hidden, int stepMax) {
+        MlpTrainer trainer = new MlpTrainer(ForkJoinPool.commonPool(), new int[] {hidden}, MlpTrainer.THRESHOLD, stepMax);
+        return new Cached<Dataset>(String.format(Locale.ROOT, "nnet learners=%d scaling=minmax %s", VERSION,
+                trainer.config())) {
+            @Override
+            Dataset prepare(Dataset d) {
+                return d.scaled();
+            }
+
+            @Override
+            float[] fitPredict(Dataset d, Dataset scaled, int[] train, int[] test, long seed) {
+                Mlp net = trainer.train(scaled, train, seed);
+                return net.predict(scaled.subset(test).x(), test.length);
+            }
+        };
+    }
+
+    /** {@link ForestTrainer}; {@code mtry} 0 is rf's default, {@link Integer#MAX_VALUE} treebag. */
+    public static Learner forest(int trees, int mtry) {
+        ForestTrainer trainer = new ForestTrainer(ForkJoinPool.commonPool(), trees, mtry, 1, Integer.MAX_VALUE);
+        String name = mtry == Integer.MAX_VALUE ? "treebag" : mtry == 0 ? "rf" : "rf mtry=" + mtry;
+        return new Cached<Presorted>(String.format(Locale.ROOT, "%s learners=%d %s", name, VERSION,
+                trainer.config())) {
+            @Override
+            Presorted prepare(Dataset d) {
+                return Presorted.of(d);
+            }
+
+            @Override
+            float[] fitPredict(Dataset d, Presorted sorted, int[] train, int[] test, long seed) {
+                Forest forest = trainer.train(d, sorted, train, seed);
+                float[] p = new float[test.length];
+                for (int i = 0; i < test.length; i++) {
+                    p[i] = forest.probability(d.x(), test[i] * d.width());
+                }
+                return p;
+            }
+        };
+    }
+
+    /** A learner and the preprocessing of the dataset it last saw. */
+    private abstract static class Cached<T> implements Learner {
+        private final String config;
+        private Dataset seen;
+        private T prepared;
+
+        Cached(String config) {
+            this.config = config;
+        }
+
+        @Override
+        public String config() {
+            return config;
+        }
+
+        abstract T prepare(Dataset d);
+
+        abstract float[] fitPredict(Dataset d, T prepared, int[] train, int[] test, long seed);
+
+        @Override
+        public float[] fitPredict(Dataset d, int[] train, int[] test, long seed) {
+            T p;
+            synchronized (this) {
+                if (seen != d) {
+                    prepared = prepare(d);
+                    seen = d;
+                }
+                p = prepared;
+            }
+            return fitPredict(d, p, train, test, seed);
+        }
+    }
+}
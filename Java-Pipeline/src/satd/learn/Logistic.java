@@ -0,0 +1,50 @@
+package satd.learn;
+
+/**
+ * A trained logistic regression over the columns of a {@link Csr}: the
+ * log-odds of class 1 is {@code bias + sum weights[j] * x[j]}. Scoring a
+ * row costs one multiply-add per nonzero of the row.
+ */
+public final class Logistic {
+
+    private final double[] weights;
+    private final double bias;
+    private final double lambda;
+
+    Logistic(double[] weights, double bias, double lambda) {
+        this.weights = weights;
+        this.bias = bias;
+        this.lambda = lambda;
+    }
+
+    /** The weights; shared, not copied. */
+    public double[] weights() {
+        return weights;
+    }
+
+    public double bias() {
+        return bias;
+    }
+
+    /** The regularization strength it was fitted with. */
+    public double lambda() {
+        return lambda;
+    }
+
+    /** Number of nonzero weights. */
+    public int nonZeros() {
+        int n = 0;
+        for (double w : weights) {
+            n += w != 0 ? 1 : 0;
+        }
+        return n;
+    }
+
+    public double margin(Csr x, int row) {
+        return bias + x.dot(row, weights);
+    }
+
+    public double probability(Csr x, int row) {
+        return 1 / (1 + Math.exp(-margin(x, row)));
+    }
+}
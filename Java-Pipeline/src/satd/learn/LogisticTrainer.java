@@ -0,0 +1,431 @@
+package satd.learn;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Regularized logistic regression on {@link Csr} matrices, the models of
+ * caret's {@code glm} baselines with glmnet's elastic net penalty:
+ *
+ *   mean log loss + lambda * (alpha * |w|_1 + (1 - alpha) / 2 * |w|_2^2)
+ *
+ * The bias is not penalized. Fits use L-BFGS, as OWL-QN (orthant-wise
+ * L-BFGS, Andrew and Gao) when there is an L1 term: directions and steps
+ * are kept in the orthant of the current weights, so weights reach exact
+ * zeros. The loss and its gradient are summed over fixed chunks of rows in
+ * parallel on a {@link ForkJoinPool}, each chunk into its own buffer, and
+ * the chunks are added in order, so results do not depend on threads.
+ *
+ * {@link #path} fits a decreasing sequence of lambdas from the smallest
+ * one that keeps every weight at zero, each starting from the previous
+ * solution. {@code main} cross-validates the path on the files it is
+ * given, prepared as {@link GbmTrainer#load} does and scaled to [-1, 1]
+ * without losing sparsity, and prints the best lambda and its AUC.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.learn.LogisticTrainer --alpha 1 --lambdas 30 ../train-set3.csv ../R-Neural-Network/data_v3/*.csv
+ */
+public final class LogisticTrainer {
+
+    /** Bumped whenever the same settings could fit different weights. */
+    static final int VERSION = 1;
+
+    static final int MEMORY = 10;
+    static final int MAX_ITERATIONS = 500;
+    static final double TOLERANCE = 1e-6;
+
+    /** Rows per chunk of the loss sum. */
+    static final int CHUNK_ROWS = 256;
+
+    private final ForkJoinPool pool;
+    private final double alpha;
+
+    /** @param alpha 1 for the lasso, 0 for ridge, between for the elastic net */
+    public LogisticTrainer(ForkJoinPool pool, double alpha) {
+        if (!(alpha >= 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("alpha must be in [0, 1]: " + alpha);
+        }
+        this.pool = pool;
+        this.alpha = alpha;
+    }
+
+    /** Every setting of this trainer, with its version, as {@code name=value} pairs; lambda is per fit. */
+    public String config() {
+        return String.format(Locale.ROOT, "logistic-trainer=%d alpha=%s memory=%d maxit=%d tolerance=%s",
+                VERSION, alpha, MEMORY, MAX_ITERATIONS, TOLERANCE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        double alpha = 1;
+        int lambdas = 30;
+        int folds = 10;
+        long seed = 137;
+        boolean printPath = false;
+        int i = 0;
+        for (; i + 1 < args.length && args[i].startsWith("--"); i += 2) {
+            switch (args[i]) {
+                case "--alpha": alpha = Double.parseDouble(args[i + 1]); break;
+                case "--lambdas": lambdas = Integer.parseInt(args[i + 1]); break;
+                case "--folds": folds = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                case "--path": printPath = true; i--; break;
+                default: i = args.length; break;
+            }
+        }
+        if (i >= args.length || args[i].startsWith("--")) {
+            System.err.println("Usage: LogisticTrainer [--alpha x] [--lambdas n] [--folds n] [--seed n] [--path]"
+                    + " file.csv...");
+            System.exit(1);
+        }
+        LogisticTrainer trainer = new LogisticTrainer(ForkJoinPool.commonPool(), alpha);
+        for (; i < args.length; i++) {
+            Path csv = Paths.get(args[i]);
+            long t0 = System.nanoTime();
+            Dataset d = GbmTrainer.load(csv);
+            Csr x = Csr.of(d).scaledByMaxAbs();
+            float[][] p = trainer.crossValidate(x, d.y(), lambdas, folds, new Random(seed));
+            List<Logistic> path = trainer.path(x, d.y(), Folds.all(d.rows()), lambdas);
+            int best = 0;
+            double[] auc = new double[lambdas];
+            for (int l = 0; l < lambdas; l++) {
+                auc[l] = Scores.auc(d.y(), p[l]);
+                best = auc[l] > auc[best] ? l : best;
+                if (printPath) {
+                    System.out.printf(Locale.ROOT, "  lambda %.6f  %3d nonzero  AUC %.4f%n", path.get(l).lambda(),
+                            path.get(l).nonZeros(), auc[l]);
+                }
+            }
+            System.out.printf(Locale.ROOT, "%-60s %5d rows %3d features %5.1f nonzero/row  lambda %.6f"
+                    + "  %3d weights  AUC %.4f  %.2f s%n", csv.getFileName(), d.rows(), d.width(),
+                    (double) x.nonZeros() / x.rows(), path.get(best).lambda(), path.get(best).nonZeros(), auc[best],
+                    (System.nanoTime() - t0) / 1e9);
+        }
+    }
+
+    /**
+     * Out-of-fold probabilities of class 1 for every lambda of the path,
+     * {@code [lambda][row]}; each fold fits its own path on the other folds.
+     */
+    public float[][] crossValidate(Csr x, float[] y, int lambdas, int folds, Random random) {
+        int[] fold = Folds.stratified(y, folds, random);
+        float[][] p = new float[lambdas][x.rows()];
+        for (int k = 0; k < folds; k++) {
+            List<Logistic> path = path(x, y, Folds.training(fold, k), lambdas);
+            for (int l = 0; l < lambdas; l++) {
+                Logistic model = path.get(l);
+                for (int r = 0; r < x.rows(); r++) {
+                    if (fold[r] == k) {
+                        p[l][r] = (float) model.probability(x, r);
+                    }
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Models for {@code lambdas} values from the smallest lambda that keeps
+     * every weight at zero (for the lasso; ridge and mixes start from it
+     * divided by {@code max(alpha, 0.001)}, as glmnet does) down to a
+     * thousandth of it, evenly spaced in log scale, each fit warm-started
+     * from the one before.
+     */
+    public List<Logistic> path(Csr x, float[] y, int[] rows, int lambdas) {
+        Problem problem = new Problem(x, y, rows);
+        int p = x.columns();
+        double[] theta = new double[p + 1];
+        double mean = 0;
+        for (int r : rows) {
+            mean += y[r];
+        }
+        mean = Math.min(Math.max(mean / rows.length, 1e-6), 1 - 1e-6);
+        theta[p] = Math.log(mean / (1 - mean));
+        double[] g = new double[p + 1];
+        problem.smooth(theta, g, 0);
+        double max = 0;
+        for (int j = 0; j < p; j++) {
+            max = Math.max(max, Math.abs(g[j]));
+        }
+        double lambdaMax = max / Math.max(alpha, 1e-3);
+        List<Logistic> models = new ArrayList<>();
+        for (int l = 0; l < lambdas; l++) {
+            double lambda = lambdas == 1 ? lambdaMax : lambdaMax * Math.pow(1e-3, (double) l / (lambdas - 1));
+            problem.minimize(theta, lambda * alpha, lambda * (1 - alpha));
+            models.add(new Logistic(Arrays.copyOf(theta, p), theta[p], lambda));
+        }
+        return models;
+    }
+
+    /** Fits one lambda, from zero weights. */
+    public Logistic fit(Csr x, float[] y, int[] rows, double lambda) {
+        double[] theta = new double[x.columns() + 1];
+        new Problem(x, y, rows).minimize(theta, lambda * alpha, lambda * (1 - alpha));
+        return new Logistic(Arrays.copyOf(theta, x.columns()), theta[x.columns()], lambda);
+    }
+
+    /** The loss over some rows, and the L-BFGS state to minimize it. */
+    private final class Problem {
+        final Csr x;
+        final float[] y;
+        final int[] rows;
+        final int n;
+        final int chunks;
+        final double[][] chunkGradient;
+        final double[] chunkLoss;
+        final double[][] s = new double[MEMORY][];
+        final double[][] dy = new double[MEMORY][];
+        final double[] rho = new double[MEMORY];
+        /** Candidate pair of an iteration; swapped into the history only if accepted. */
+        double[] nextS;
+        double[] nextDy;
+        int stored;
+        int newest = -1;
+
+        Problem(Csr x, float[] y, int[] rows) {
+            this.x = x;
+            this.y = y;
+            this.rows = rows;
+            this.n = x.columns() + 1;
+            this.chunks = Math.max(1, (rows.length + CHUNK_ROWS - 1) / CHUNK_ROWS);
+            this.chunkGradient = new double[chunks][n];
+            this.chunkLoss = new double[chunks];
+            for (int m = 0; m < MEMORY; m++) {
+                s[m] = new double[n];
+                dy[m] = new double[n];
+            }
+            nextS = new double[n];
+            nextDy = new double[n];
+        }
+
+        /** Mean log loss plus {@code l2 / 2 |w|^2} at {@code theta}; its gradient into {@code g}. */
+        double smooth(double[] theta, double[] g, double l2) {
+            if (chunks == 1 || pool.getParallelism() < 2) {
+                for (int c = 0; c < chunks; c++) {
+                    chunk(c, theta);
+                }
+            } else {
+                pool.invoke(new ChunkTask(theta, 0, chunks));
+            }
+            Arrays.fill(g, 0);
+            double loss = 0;
+            for (int c = 0; c < chunks; c++) {
+                loss += chunkLoss[c];
+                double[] cg = chunkGradient[c];
+                for (int j = 0; j < n; j++) {
+                    g[j] += cg[j];
+                }
+            }
+            double scale = 1.0 / rows.length;
+            loss *= scale;
+            double penalty = 0;
+            for (int j = 0; j < n - 1; j++) {
+                g[j] = g[j] * scale + l2 * theta[j];
+                penalty += theta[j] * theta[j];
+            }
+            g[n - 1] *= scale;
+            return loss + l2 / 2 * penalty;
+        }
+
+        void chunk(int c, double[] theta) {
+            double[] g = chunkGradient[c];
+            Arrays.fill(g, 0);
+            double loss = 0;
+            int bias = n - 1;
+            for (int i = c * CHUNK_ROWS, end = Math.min(rows.length, i + CHUNK_ROWS); i < end; i++) {
+                int r = rows[i];
+                double m = theta[bias] + x.dot(r, theta);
+                double label = y[r];
+                loss += (m > 0 ? m + Math.log1p(Math.exp(-m)) : Math.log1p(Math.exp(m))) - label * m;
+                double e = 1 / (1 + Math.exp(-m)) - label;
+                x.addTo(r, e, g);
+                g[bias] += e;
+            }
+            chunkLoss[c] = loss;
+        }
+
+        /** Loss sums of chunks {@code [from, to)}. */
+        final class ChunkTask extends RecursiveAction {
+            final double[] theta;
+            final int from;
+            final int to;
+
+            ChunkTask(double[] theta, int from, int to) {
+                this.theta = theta;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from == 1) {
+                    chunk(from, theta);
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(theta, from, mid), new ChunkTask(theta, mid, to));
+            }
+        }
+
+        /** OWL-QN from {@code theta}, which it overwrites with the minimum. */
+        void minimize(double[] theta, double l1, double l2) {
+            int p = n - 1;
+            double[] g = new double[n];
+            double[] pg = new double[n];
+            double[] d = new double[n];
+            double[] next = new double[n];
+            double[] nextG = new double[n];
+            double[] alphas = new double[MEMORY];
+            double f = smooth(theta, g, l2) + l1 * norm1(theta, p);
+            for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+                pseudoGradient(theta, g, l1, pg);
+                double size = 0;
+                for (double v : pg) {
+                    size = Math.max(size, Math.abs(v));
+                }
+                if (size < TOLERANCE * 10) {
+                    break;
+                }
+
+                // two-loop recursion: d = -H pg
+                for (int j = 0; j < n; j++) {
+                    d[j] = -pg[j];
+                }
+                for (int k = 0, m = newest; k < stored; k++, m = (m + MEMORY - 1) % MEMORY) {
+                    alphas[m] = rho[m] * dot(s[m], d);
+                    axpy(-alphas[m], dy[m], d);
+                }
+                if (stored > 0) {
+                    double gamma = dot(s[newest], dy[newest]) / dot(dy[newest], dy[newest]);
+                    for (int j = 0; j < n; j++) {
+                        d[j] *= gamma;
+                    }
+                }
+                for (int k = 0, m = (newest - stored + 1 + MEMORY) % MEMORY; k < stored; k++, m = (m + 1) % MEMORY) {
+                    double beta = rho[m] * dot(dy[m], d);
+                    axpy(alphas[m] - beta, s[m], d);
+                }
+                for (int j = 0; j < p; j++) {
+                    if (d[j] * pg[j] >= 0) {
+                        d[j] = 0;
+                    }
+                }
+                double slope = dot(pg, d);
+                if (slope >= 0) {
+                    for (int j = 0; j < n; j++) {
+                        d[j] = -pg[j];
+                    }
+                    slope = dot(pg, d);
+                    stored = 0;
+                }
+
+                double step = stored == 0 && iteration == 0 ? 1 / Math.sqrt(-slope) : 1;
+                double nextF = f;
+                boolean accepted = false;
+                for (int tries = 0; tries < 40; tries++) {
+                    for (int j = 0; j < n; j++) {
+                        next[j] = theta[j] + step * d[j];
+                    }
+                    for (int j = 0; j < p; j++) {
+                        double orthant = theta[j] != 0 ? theta[j] : -pg[j];
+                        if (next[j] * orthant <= 0) {
+                            next[j] = 0;
+                        }
+                    }
+                    nextF = smooth(next, nextG, l2) + l1 * norm1(next, p);
+                    double decrease = 0;
+                    for (int j = 0; j < n; j++) {
+                        decrease += pg[j] * (next[j] - theta[j]);
+                    }
+                    if (nextF <= f + 1e-4 * decrease) {
+                        accepted = true;
+                        break;
+                    }
+                    step /= 2;
+                }
+                if (!accepted) {
+                    break;
+                }
+
+                double sy = 0;
+                for (int j = 0; j < n; j++) {
+                    nextS[j] = next[j] - theta[j];
+                    nextDy[j] = nextG[j] - g[j];
+                    sy += nextS[j] * nextDy[j];
+                }
+                if (sy > 1e-12) {
+                    int m = (newest + 1) % MEMORY;
+                    double[] t = s[m];
+                    s[m] = nextS;
+                    nextS = t;
+                    t = dy[m];
+                    dy[m] = nextDy;
+                    nextDy = t;
+                    rho[m] = 1 / sy;
+                    newest = m;
+                    stored = Math.min(MEMORY, stored + 1);
+                }
+                double change = (f - nextF) / Math.max(1, Math.max(Math.abs(f), Math.abs(nextF)));
+                System.arraycopy(next, 0, theta, 0, n);
+                System.arraycopy(nextG, 0, g, 0, n);
+                f = nextF;
+                if (change < TOLERANCE) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pseudo-gradient of the L1-penalized objective. At a zero weight,
+     * where |w| has no derivative, it is the one-sided derivative that
+     * points downhill, or 0 when {@code l1} outweighs the smooth gradient.
+     */
+    private static void pseudoGradient(double[] theta, double[] g, double l1, double[] pg) {
+        int p = theta.length - 1;
+        for (int j = 0; j < p; j++) {
+            if (theta[j] > 0) {
+                pg[j] = g[j] + l1;
+            } else if (theta[j] < 0) {
+                pg[j] = g[j] - l1;
+            } else if (g[j] + l1 < 0) {
+                pg[j] = g[j] + l1;
+            } else if (g[j] - l1 > 0) {
+                pg[j] = g[j] - l1;
+            } else {
+                pg[j] = 0;
+            }
+        }
+        pg[p] = g[p];
+    }
+
+    private static double norm1(double[] theta, int p) {
+        double sum = 0;
+        for (int j = 0; j < p; j++) {
+            sum += Math.abs(theta[j]);
+        }
+        return sum;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int j = 0; j < a.length; j++) {
+            sum += a[j] * b[j];
+        }
+        return sum;
+    }
+
+    private static void axpy(double a, double[] x, double[] y) {
+        for (int j = 0; j < x.length; j++) {
+            y[j] += a * x[j];
+        }
+    }
+}
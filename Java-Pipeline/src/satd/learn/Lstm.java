@@ -0,0 +1,322 @@
+package satd.learn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import satd.embed.EmbeddingStore;
+
+/**
+ * Inference for stacked LSTM cells of LSTM.lua over word2vec rows, with a
+ * linear layer and softmax on the last hidden state of the top cell.
+ *
+ * A cell's preactivations are {@code i2h(x) + h2h(h)}, {@code 4 * hidden}
+ * wide: input, forget and output gates (sigmoid), then the input
+ * transform (tanh). {@code c = forget * c + in * transform} and
+ * {@code h = out * tanh(c)}. At load, i2h and h2h are stacked into one
+ * {@code (input + hidden) x 4 hidden} matrix and their biases summed, so a
+ * time step of a layer is one GEMM ({@link Gemm#nn}) of the rows
+ * {@code [x | h]} for all four gates, followed by the elementwise update,
+ * whose sigmoid and tanh run on {@link VectorActivations} when the Vector
+ * API is there. State starts at zero.
+ *
+ * A batch holds its sequences longest first. At step {@code t} only the
+ * sequences longer than {@code t} are active, and they are a prefix of the
+ * rows, so the GEMM shrinks as sequences end instead of running padding,
+ * and the rows of finished sequences keep their last hidden state.
+ * Everything a batch needs lives in a {@link Workspace} of preallocated
+ * arrays, one per thread.
+ *
+ * File layout (little-endian), matrices row-major as Torch's nn.Linear
+ * keeps them ({@code out x in}):
+ *
+ *   "SATDLSTM"  int layers  int input  int hidden  int classes
+ *   per layer: float[4 hidden x in] i2h weight, float[4 hidden] i2h bias,
+ *              float[4 hidden x hidden] h2h weight, float[4 hidden] h2h bias
+ *   float[classes x hidden] output weight, float[classes] output bias
+ *
+ * {@code in} is {@code input} for the first layer and {@code hidden} above.
+ */
+public final class Lstm {
+
+    static final byte[] MAGIC = "SATDLSTM".getBytes(StandardCharsets.US_ASCII);
+
+    private final int input;
+    private final int hidden;
+    private final int classes;
+    private final float[][] weights;
+    private final float[][] biases;
+    private final float[] output;
+    private final float[] outputBias;
+
+    private Lstm(int input, int hidden, int layers, int classes) {
+        if (input < 1 || hidden < 1 || layers < 1 || classes < 1) {
+            throw new IllegalArgumentException("sizes must be positive");
+        }
+        this.input = input;
+        this.hidden = hidden;
+        this.classes = classes;
+        this.weights = new float[layers][];
+        this.biases = new float[layers][];
+        for (int l = 0; l < layers; l++) {
+            weights[l] = new float[(in(l) + hidden) * 4 * hidden];
+            biases[l] = new float[4 * hidden];
+        }
+        this.output = new float[hidden * classes];
+        this.outputBias = new float[classes];
+    }
+
+    /** A model with weights uniform in [-0.08, 0.08], as char-rnn starts them. */
+    public Lstm(int input, int hidden, int layers, int classes, long seed) {
+        this(input, hidden, layers, classes);
+        Random random = new Random(seed);
+        for (int l = 0; l < layers; l++) {
+            uniform(weights[l], random);
+            uniform(biases[l], random);
+        }
+        uniform(output, random);
+        uniform(outputBias, random);
+    }
+
+    private static void uniform(float[] v, Random random) {
+        for (int i = 0; i < v.length; i++) {
+            v[i] = (2 * random.nextFloat() - 1) * 0.08f;
+        }
+    }
+
+    public static Lstm load(Path file) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        b.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not an LSTM model: " + file);
+        }
+        int layers = b.getInt();
+        int input = b.getInt();
+        int hidden = b.getInt();
+        int classes = b.getInt();
+        Lstm m = new Lstm(input, hidden, layers, classes);
+        for (int l = 0; l < layers; l++) {
+            m.readLinear(b, m.weights[l], 0, m.in(l), 4 * hidden, m.biases[l]);
+            m.readLinear(b, m.weights[l], m.in(l), hidden, 4 * hidden, m.biases[l]);
+        }
+        m.readLinear(b, m.output, 0, hidden, classes, m.outputBias);
+        if (b.hasRemaining()) {
+            throw new IOException("trailing bytes after the output layer: " + file);
+        }
+        return m;
+    }
+
+    /**
+     * Reads an {@code out x in} Torch weight into rows {@code [row, row + in)}
+     * of {@code w} ({@code ... x out}) transposed, and adds its bias to {@code bias}.
+     */
+    private void readLinear(ByteBuffer b, float[] w, int row, int in, int out, float[] bias) {
+        for (int o = 0; o < out; o++) {
+            for (int i = 0; i < in; i++) {
+                w[(row + i) * out + o] = b.getFloat();
+            }
+        }
+        for (int o = 0; o < out; o++) {
+            bias[o] += b.getFloat();
+        }
+    }
+
+    /**
+     * Writes the model. The stacked biases are written whole as the i2h
+     * bias and zero as the h2h bias, which loads back to the same sums.
+     */
+    public void save(Path file) throws IOException {
+        long floats = output.length + outputBias.length;
+        for (int l = 0; l < weights.length; l++) {
+            floats += weights[l].length + 2L * biases[l].length;
+        }
+        ByteBuffer b = ByteBuffer.allocate(MAGIC.length + 4 * Integer.BYTES + (int) floats * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        b.put(MAGIC).putInt(weights.length).putInt(input).putInt(hidden).putInt(classes);
+        for (int l = 0; l < weights.length; l++) {
+            writeLinear(b, weights[l], 0, in(l), 4 * hidden, biases[l]);
+            writeLinear(b, weights[l], in(l), hidden, 4 * hidden, new float[4 * hidden]);
+        }
+        writeLinear(b, output, 0, hidden, classes, outputBias);
+        Files.write(file, b.array());
+    }
+
+    private static void writeLinear(ByteBuffer b, float[] w, int row, int in, int out, float[] bias) {
+        for (int o = 0; o < out; o++) {
+            for (int i = 0; i < in; i++) {
+                b.putFloat(w[(row + i) * out + o]);
+            }
+        }
+        for (float v : bias) {
+            b.putFloat(v);
+        }
+    }
+
+    public int input() {
+        return input;
+    }
+
+    public int hidden() {
+        return hidden;
+    }
+
+    public int layers() {
+        return weights.length;
+    }
+
+    public int classes() {
+        return classes;
+    }
+
+    /** Input width of layer {@code l}. */
+    private int in(int l) {
+        return l == 0 ? input : hidden;
+    }
+
+    /** State for batches of up to {@code maxRows} sequences; one per thread. */
+    public Workspace workspace(int maxRows) {
+        return new Workspace(maxRows);
+    }
+
+    /** Rows {@code [x | h]} and cell states of every layer, gates, logits. */
+    public final class Workspace {
+        final int maxRows;
+        final float[][] z;
+        final float[][] c;
+        final float[] gates;
+        final float[] squashed;
+        final float[] logits;
+
+        Workspace(int maxRows) {
+            this.maxRows = maxRows;
+            this.z = new float[weights.length][];
+            this.c = new float[weights.length][];
+            for (int l = 0; l < weights.length; l++) {
+                z[l] = new float[maxRows * (in(l) + hidden)];
+                c[l] = new float[maxRows * hidden];
+            }
+            this.gates = new float[maxRows * 4 * hidden];
+            this.squashed = new float[hidden];
+            this.logits = new float[classes];
+        }
+    }
+
+    /**
+     * Class probabilities of sequences {@code order[from..from + count)}
+     * of {@code sequences} (word2vec rows of {@code store}), written to
+     * {@code out} at {@code order[i] * classes}. Their lengths,
+     * {@code lengths[order[i]]}, must not increase along {@code order}.
+     */
+    public void probabilities(EmbeddingStore store, int[][] sequences, int[] lengths, int[] order, int from,
+            int count, float[] out, Workspace ws) {
+        if (count > ws.maxRows) {
+            throw new IllegalArgumentException(count + " sequences, the workspace holds " + ws.maxRows);
+        }
+        if (store.dim() != input) {
+            throw new IllegalArgumentException("embeddings of " + store.dim() + " dims, the model takes " + input);
+        }
+        int layers = weights.length;
+        int g4 = 4 * hidden;
+        for (int l = 0; l < layers; l++) {
+            Arrays.fill(ws.z[l], 0, count * (in(l) + hidden), 0f);
+            Arrays.fill(ws.c[l], 0, count * hidden, 0f);
+        }
+        int active = count;
+        int steps = count == 0 ? 0 : lengths[order[from]];
+        for (int t = 0; t < steps; t++) {
+            while (lengths[order[from + active - 1]] <= t) {
+                active--;
+            }
+            int stride0 = input + hidden;
+            for (int r = 0; r < active; r++) {
+                store.copy(sequences[order[from + r]][t], ws.z[0], r * stride0);
+            }
+            for (int l = 0; l < layers; l++) {
+                int in = in(l);
+                int stride = in + hidden;
+                float[] z = ws.z[l];
+                float[] cell = ws.c[l];
+                float[] gates = ws.gates;
+                for (int r = 0; r < active; r++) {
+                    System.arraycopy(biases[l], 0, gates, r * g4, g4);
+                }
+                Gemm.nn(z, weights[l], gates, active, stride, g4);
+                float[] above = l + 1 < layers ? ws.z[l + 1] : null;
+                float[] squashed = ws.squashed;
+                for (int r = 0; r < active; r++) {
+                    int g = r * g4;
+                    int h = r * stride + in;
+                    int ci = r * hidden;
+                    sigmoid(gates, g, g + 3 * hidden);
+                    tanh(gates, g + 3 * hidden, g + g4);
+                    for (int j = 0; j < hidden; j++) {
+                        squashed[j] = gates[g + hidden + j] * cell[ci + j] + gates[g + j] * gates[g + 3 * hidden + j];
+                        cell[ci + j] = squashed[j];
+                    }
+                    tanh(squashed, 0, hidden);
+                    for (int j = 0; j < hidden; j++) {
+                        z[h + j] = gates[g + 2 * hidden + j] * squashed[j];
+                    }
+                    if (above != null) {
+                        System.arraycopy(z, h, above, r * (hidden + hidden), hidden);
+                    }
+                }
+            }
+        }
+        int top = layers - 1;
+        int stride = in(top) + hidden;
+        for (int r = 0; r < count; r++) {
+            int h = r * stride + in(top);
+            float max = Float.NEGATIVE_INFINITY;
+            for (int k = 0; k < classes; k++) {
+                float s = outputBias[k];
+                for (int j = 0; j < hidden; j++) {
+                    s += ws.z[top][h + j] * output[j * classes + k];
+                }
+                ws.logits[k] = s;
+                max = Math.max(max, s);
+            }
+            double sum = 0;
+            for (int k = 0; k < classes; k++) {
+                sum += Math.exp(ws.logits[k] - max);
+            }
+            int at = order[from + r] * classes;
+            for (int k = 0; k < classes; k++) {
+                out[at + k] = (float) (Math.exp(ws.logits[k] - max) / sum);
+            }
+        }
+    }
+
+    /** In place over {@code [from, to)}; on the Vector API when the module is there. */
+    private static void sigmoid(float[] v, int from, int to) {
+        if (Gemm.VECTOR) {
+            VectorActivations.sigmoid(v, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            v[i] = (float) (1 / (1 + Math.exp(-v[i])));
+        }
+    }
+
+    /**
+     * In place over {@code [from, to)}. Without the Vector API, as
+     * {@code (1 - e) / (1 + e)} with {@code e = exp(-2|x|)}: one
+     * {@link Math#exp} costs a seventh of a {@link Math#tanh}.
+     */
+    private static void tanh(float[] v, int from, int to) {
+        if (Gemm.VECTOR) {
+            VectorActivations.tanh(v, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            double e = Math.exp(-2 * Math.abs(v[i]));
+            v[i] = (float) Math.copySign((1 - e) / (1 + e), v[i]);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package satd.learn;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import satd.embed.EmbeddingStore;
+import satd.features.CommentFeaturizer;
+
+/**
+ * Scores many comments with an {@link Lstm}, in parallel on a
+ * {@link ForkJoinPool}.
+ *
+ * Comments become the ids of their known tokens, as
+ * {@link CommentFeaturizer#tokenize} finds them, at most
+ * {@code maxTokens}. They are then bucketed by length with a counting
+ * sort, longest first, and cut into batches of {@code batch} consecutive
+ * comments, so a batch holds sequences of nearly equal length and hardly
+ * any step runs with fewer rows than the batch. Batches are split among
+ * the pool's threads, each reusing one {@link Lstm.Workspace}.
+ *
+ * {@code main} scores every comment ({@code //} and {@code /* *}{@code /})
+ * of the given Java files and directories, walked for {@code *.java},
+ * and prints the throughput; {@code --out} writes the probability of
+ * class 1, the file and the comment on one line each.
+ *
+ * EXAMPLE
+ *
+ *   java --add-modules jdk.incubator.vector -cp out satd.learn.LstmScorer --out scores.tsv \
+ *       satd.lstm concordia.emb apache-ant-1.7.0
+ */
+public final class LstmScorer {
+
+    /** Comments tokenized per task. */
+    static final int TOKENIZE_CHUNK = 4096;
+
+    private static final Pattern COMMENT = Pattern.compile("//([^\\n]*)|/\\*((?s:.*?))\\*/");
+
+    private final ForkJoinPool pool;
+    private final Lstm model;
+    private final EmbeddingStore store;
+    private final int batch;
+    private final int maxTokens;
+    private final ThreadLocal<Lstm.Workspace> workspace;
+
+    public LstmScorer(ForkJoinPool pool, Lstm model, EmbeddingStore store, int batch, int maxTokens) {
+        if (batch < 1 || maxTokens < 1) {
+            throw new IllegalArgumentException("batch and maxTokens must be positive");
+        }
+        if (store.dim() != model.input()) {
+            throw new IllegalArgumentException("embeddings of " + store.dim() + " dims, the model takes "
+                    + model.input());
+        }
+        this.pool = pool;
+        this.model = model;
+        this.store = store;
+        this.batch = batch;
+        this.maxTokens = maxTokens;
+        this.workspace = ThreadLocal.withInitial(() -> model.workspace(batch));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path out = null;
+        int batch = 64;
+        int maxTokens = 100;
+        int i = 0;
+        for (; i + 1 < args.length && args[i].startsWith("--"); i += 2) {
+            switch (args[i]) {
+                case "--out": out = Paths.get(args[i + 1]); break;
+                case "--batch": batch = Integer.parseInt(args[i + 1]); break;
+                case "--max-tokens": maxTokens = Integer.parseInt(args[i + 1]); break;
+                default: i = args.length; break;
+            }
+        }
+        if (i + 2 >= args.length) {
+            System.err.println("Usage: LstmScorer [--out scores.tsv] [--batch n] [--max-tokens n]"
+                    + " model.lstm store.emb file.java|dir...");
+            System.exit(1);
+        }
+        Lstm model = Lstm.load(Paths.get(args[i]));
+        try (EmbeddingStore store = EmbeddingStore.open(Paths.get(args[i + 1]))) {
+            List<String> comments = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            long t0 = System.nanoTime();
+            for (int a = i + 2; a < args.length; a++) {
+                for (Path java : javaFiles(Paths.get(args[a]))) {
+                    Matcher m = COMMENT.matcher(new String(Files.readAllBytes(java), StandardCharsets.ISO_8859_1));
+                    while (m.find()) {
+                        comments.add(m.group(1) != null ? m.group(1) : m.group(2));
+                        files.add(java);
+                    }
+                }
+            }
+            long t1 = System.nanoTime();
+            LstmScorer scorer = new LstmScorer(ForkJoinPool.commonPool(), model, store, batch, maxTokens);
+            float[] p = scorer.score(comments);
+            long t2 = System.nanoTime();
+            int classes = model.classes();
+            int positive = 0;
+            for (int c = 0; c < comments.size(); c++) {
+                positive += p[c * classes + classes - 1] > 0.5f ? 1 : 0;
+            }
+            System.out.printf(Locale.ROOT, "%d comments read in %.1f s, scored in %.1f s (%.0f/s), %d above 0.5%n",
+                    comments.size(), (t1 - t0) / 1e9, (t2 - t1) / 1e9, comments.size() / ((t2 - t1) / 1e9), positive);
+            if (out != null) {
+                try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+                    for (int c = 0; c < comments.size(); c++) {
+                        w.write(String.format(Locale.ROOT, "%.5f\t%s\t%s%n", p[c * classes + classes - 1],
+                                files.get(c), comments.get(c).replaceAll("\\s+", " ").trim()));
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Path> javaFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> s = Files.walk(path)) {
+            return s.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /** Class probabilities of every comment, {@code comments.size() x classes}. */
+    public float[] score(List<? extends CharSequence> comments) {
+        int n = comments.size();
+        int[][] tokens = new int[n][];
+        pool.invoke(new TokenizeTask(comments, tokens, 0, n));
+        int[] lengths = new int[n];
+        int[] starts = new int[maxTokens + 2];
+        for (int c = 0; c < n; c++) {
+            lengths[c] = tokens[c].length;
+            starts[maxTokens - lengths[c] + 1]++;
+        }
+        for (int b = 1; b < starts.length; b++) {
+            starts[b] += starts[b - 1];
+        }
+        int[] order = new int[n];
+        for (int c = 0; c < n; c++) {
+            order[starts[maxTokens - lengths[c]]++] = c;
+        }
+        float[] out = new float[n * model.classes()];
+        int batches = (n + batch - 1) / batch;
+        pool.invoke(new BatchTask(tokens, lengths, order, out, 0, batches));
+        return out;
+    }
+
+    /** Token ids of a range of comments, with one featurizer. */
+    private final class TokenizeTask extends RecursiveAction {
+        final List<? extends CharSequence> comments;
+        final int[][] tokens;
+        final int from;
+        final int to;
+
+        TokenizeTask(List<? extends CharSequence> comments, int[][] tokens, int from, int to) {
+            this.comments = comments;
+            this.tokens = tokens;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TOKENIZE_CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TokenizeTask(comments, tokens, from, mid), new TokenizeTask(comments, tokens, mid, to));
+                return;
+            }
+            CommentFeaturizer featurizer = new CommentFeaturizer(store, maxTokens);
+            int[] ids = new int[maxTokens];
+            for (int c = from; c < to; c++) {
+                tokens[c] = Arrays.copyOf(ids, featurizer.tokenize(comments.get(c), ids, 0));
+            }
+        }
+    }
+
+    /** A range of batches, split in halves down to single batches. */
+    private final class BatchTask extends RecursiveAction {
+        final int[][] tokens;
+        final int[] lengths;
+        final int[] order;
+        final float[] out;
+        final int from;
+        final int to;
+
+        BatchTask(int[][] tokens, int[] lengths, int[] order, float[] out, int from, int to) {
+            this.tokens = tokens;
+            this.lengths = lengths;
+            this.order = order;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BatchTask(tokens, lengths, order, out, from, mid),
+                        new BatchTask(tokens, lengths, order, out, mid, to));
+                return;
+            }
+            int first = from * batch;
+            int count = Math.min(batch, order.length - first);
+            model.probabilities(store, tokens, lengths, order, first, count, out, workspace.get());
+        }
+    }
+}
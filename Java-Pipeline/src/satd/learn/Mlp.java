@@ -0,0 +1,189 @@
+package satd.learn;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Fully connected network with logistic units in every layer, as
+ * {@code neuralnet(..., linear.output = FALSE)} builds in nnplay.r.
+ *
+ * Layer {@code l} has a flat row-major weight matrix {@code in x out} and a
+ * bias vector. A batch is pushed through as one matrix per layer with
+ * {@link Gemm}, forward and backward, instead of one row at a time.
+ * Instances are not synchronized: {@link #gradient} only reads the
+ * weights, so any number of threads may compute gradients while nobody
+ * updates them.
+ */
+public final class Mlp {
+
+    private final int[] sizes;
+    private final float[][] weights;
+    private final float[][] biases;
+
+    /**
+     * @param sizes input width, hidden layer widths, output width
+     * @param seed  weights start uniform in +-sqrt(6 / (in + out)), biases at 0
+     */
+    public Mlp(int[] sizes, long seed) {
+        this(sizes, seed, false);
+    }
+
+    /** Weights and biases all drawn from N(0, 1), as neuralnet's default {@code startweights}. */
+    public static Mlp gaussian(int[] sizes, long seed) {
+        return new Mlp(sizes, seed, true);
+    }
+
+    private Mlp(int[] sizes, long seed, boolean gaussian) {
+        if (sizes.length < 2) {
+            throw new IllegalArgumentException("need an input and an output layer");
+        }
+        this.sizes = sizes.clone();
+        this.weights = new float[sizes.length - 1][];
+        this.biases = new float[sizes.length - 1][];
+        Random random = new Random(seed);
+        for (int l = 0; l < weights.length; l++) {
+            float limit = (float) Math.sqrt(6.0 / (sizes[l] + sizes[l + 1]));
+            weights[l] = new float[sizes[l] * sizes[l + 1]];
+            for (int i = 0; i < weights[l].length; i++) {
+                weights[l][i] = gaussian ? (float) random.nextGaussian() : (2 * random.nextFloat() - 1) * limit;
+            }
+            biases[l] = new float[sizes[l + 1]];
+            if (gaussian) {
+                for (int i = 0; i < biases[l].length; i++) {
+                    biases[l][i] = (float) random.nextGaussian();
+                }
+            }
+        }
+    }
+
+    public int[] sizes() {
+        return sizes.clone();
+    }
+
+    public int layers() {
+        return weights.length;
+    }
+
+    /** Weights of layer {@code l}, {@code sizes[l] x sizes[l + 1]}; shared, not copied. */
+    public float[] weights(int l) {
+        return weights[l];
+    }
+
+    /** Biases of layer {@code l}; shared, not copied. */
+    public float[] biases(int l) {
+        return biases[l];
+    }
+
+    /** Scratch matrices for batches of up to {@code maxRows} rows; one per thread. */
+    public Workspace workspace(int maxRows) {
+        return new Workspace(sizes, maxRows);
+    }
+
+    /** Activations and deltas of every layer for one batch. */
+    public static final class Workspace {
+        final float[][] activations;
+        final float[][] deltas;
+        final int maxRows;
+
+        Workspace(int[] sizes, int maxRows) {
+            this.maxRows = maxRows;
+            this.activations = new float[sizes.length][];
+            this.deltas = new float[sizes.length][];
+            for (int l = 0; l < sizes.length; l++) {
+                activations[l] = new float[maxRows * sizes[l]];
+                deltas[l] = new float[maxRows * sizes[l]];
+            }
+        }
+    }
+
+    /** Zeroed gradient buffers shaped like the weights and biases, weights first. */
+    public float[][] newGradient() {
+        float[][] g = new float[2 * weights.length][];
+        for (int l = 0; l < weights.length; l++) {
+            g[l] = new float[weights[l].length];
+            g[weights.length + l] = new float[biases[l].length];
+        }
+        return g;
+    }
+
+    /** Outputs for the {@code n} rows of {@code x}, row-major {@code n x sizes[last]}. */
+    public float[] predict(float[] x, int n) {
+        Workspace ws = workspace(Math.max(1, Math.min(n, 256)));
+        int out = sizes[sizes.length - 1];
+        float[] result = new float[n * out];
+        for (int from = 0; from < n; from += ws.maxRows) {
+            int m = Math.min(ws.maxRows, n - from);
+            System.arraycopy(x, from * sizes[0], ws.activations[0], 0, m * sizes[0]);
+            forward(ws, m);
+            System.arraycopy(ws.activations[sizes.length - 1], 0, result, from * out, m * out);
+        }
+        return result;
+    }
+
+    /**
+     * Adds to {@code gradient} the gradient of the summed squared error
+     * {@code sum (y - out)^2 / 2} (neuralnet's "sse") over
+     * {@code rows[from..to)} of {@code x} and {@code y}, and returns that
+     * error. {@code to - from} must not exceed the workspace's rows.
+     */
+    public double gradient(float[] x, float[] y, int[] rows, int from, int to, float[][] gradient, Workspace ws) {
+        int m = to - from;
+        int in = sizes[0];
+        int out = sizes[sizes.length - 1];
+        for (int i = 0; i < m; i++) {
+            System.arraycopy(x, rows[from + i] * in, ws.activations[0], i * in, in);
+        }
+        forward(ws, m);
+
+        int last = sizes.length - 1;
+        float[] o = ws.activations[last];
+        float[] d = ws.deltas[last];
+        double error = 0;
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < out; j++) {
+                float v = o[i * out + j];
+                float e = v - y[rows[from + i] * out + j];
+                error += 0.5 * e * e;
+                d[i * out + j] = e * v * (1 - v);
+            }
+        }
+        for (int l = last - 1; l >= 0; l--) {
+            int k = sizes[l];
+            int n = sizes[l + 1];
+            float[] delta = ws.deltas[l + 1];
+            Gemm.tn(ws.activations[l], delta, gradient[l], m, k, n);
+            float[] gb = gradient[weights.length + l];
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    gb[j] += delta[i * n + j];
+                }
+            }
+            if (l > 0) {
+                float[] below = ws.deltas[l];
+                Arrays.fill(below, 0, m * k, 0f);
+                Gemm.nt(delta, weights[l], below, m, k, n);
+                float[] a = ws.activations[l];
+                for (int i = 0; i < m * k; i++) {
+                    below[i] *= a[i] * (1 - a[i]);
+                }
+            }
+        }
+        return error;
+    }
+
+    private void forward(Workspace ws, int m) {
+        for (int l = 0; l < weights.length; l++) {
+            int k = sizes[l];
+            int n = sizes[l + 1];
+            float[] z = ws.activations[l + 1];
+            float[] b = biases[l];
+            for (int i = 0; i < m; i++) {
+                System.arraycopy(b, 0, z, i * n, n);
+            }
+            Gemm.nn(ws.activations[l], weights[l], z, m, k, n);
+            for (int i = 0; i < m * n; i++) {
+                z[i] = (float) (1 / (1 + Math.exp(-z[i])));
+            }
+        }
+    }
+}
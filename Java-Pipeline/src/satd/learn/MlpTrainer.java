@@ -0,0 +1,371 @@
+package satd.learn;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Trains {@link Mlp}s the way neuralnet does by default, and runs the
+ * experiment of nnplay-new-data.r on the data_v3 files, the one behind
+ * NN-results-v4 (nnplay.r reads the 52 features of the older layout).
+ *
+ * Training is neuralnet's {@code rprop+}: full-batch resilient
+ * backpropagation with weight backtracking on the summed squared error.
+ * Every weight and bias has its own step, starting at 0.1, times 1.2 while
+ * its partial derivative keeps its sign (at most 0.1) and times 0.5 when
+ * the sign flips (at least 1e-10), in which case the last step of that
+ * weight is undone. Weights start from N(0, 1). Training stops once no
+ * partial derivative of the error exceeds {@code threshold} (neuralnet's
+ * 0.01) or after {@code stepMax} steps; neuralnet gives up on such a
+ * network, here it is kept and counted as not converged.
+ *
+ * The gradient of the training rows is cut into shards of at least
+ * {@code MIN_SHARD} rows computed in parallel on a {@link ForkJoinPool},
+ * each into its own buffers, then summed; the weights are only written
+ * between steps.
+ *
+ * The experiment, per system: drop the columns of
+ * {@link Dataset#CARET_DROPPED}, scale the rest to [0, 1], then
+ * {@code --reps} times shuffle the rows, cut them into 10 folds, train a
+ * 40-20-10 network on 9 folds, predict the tenth (output rounded to 0/1),
+ * and score the predictions of all folds with {@link Scores}. MSATDNum is
+ * the target as it is in the script: 0 No, 1 MayBe, 2 Yes.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.learn.MlpTrainer --data ../R-Neural-Network/data_v3 --out results --reps 20
+ */
+public final class MlpTrainer {
+
+    /** Bumped whenever the same settings could train a different network. */
+    static final int VERSION = 1;
+
+    static final int MIN_SHARD = 32;
+
+    /** neuralnet's defaults: stopping threshold, first step, step factors and limits. */
+    public static final float THRESHOLD = 0.01f;
+    /** Hidden layers of nnplay-new-data.r. */
+    public static final int[] HIDDEN = {40, 20, 10};
+    static final float FIRST_STEP = 0.1f;
+    static final float MINUS = 0.5f;
+    static final float PLUS = 1.2f;
+    static final float MIN_STEP = 1e-10f;
+    static final float MAX_STEP = 0.1f;
+
+    private static final String PREFIX = "metrics-smells-psatd-msatd-";
+    private static final String SUFFIX = ".csv";
+
+    private final ForkJoinPool pool;
+    private final int[] hidden;
+    private final float threshold;
+    private final long stepMax;
+
+    /** A trained network and how training ended. */
+    public static final class Fit {
+        public final Mlp net;
+        public final long steps;
+        public final boolean converged;
+
+        Fit(Mlp net, long steps, boolean converged) {
+            this.net = net;
+            this.steps = steps;
+            this.converged = converged;
+        }
+    }
+
+    public MlpTrainer(ForkJoinPool pool, int[] hidden, float threshold, long stepMax) {
+        if (!(threshold > 0) || stepMax < 1) {
+            throw new IllegalArgumentException("threshold and stepMax must be positive");
+        }
+        this.pool = pool;
+        this.hidden = hidden.clone();
+        this.threshold = threshold;
+        this.stepMax = stepMax;
+    }
+
+    /** Every setting of this trainer, with its version, as {@code name=value} pairs. */
+    public String config() {
+        return String.format(Locale.ROOT, "mlp-trainer=%d hidden=%s threshold=%s stepmax=%d init=normal step=%s"
+                + " plus=%s minus=%s minstep=%s maxstep=%s", VERSION, Arrays.toString(hidden).replace(" ", ""),
+                threshold, stepMax, FIRST_STEP, PLUS, MINUS, MIN_STEP, MAX_STEP);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path data = Paths.get("../R-Neural-Network/data_v3");
+        Path out = Paths.get(".");
+        int reps = 20;
+        int folds = 10;
+        float threshold = THRESHOLD;
+        long stepMax = 50_000_000;
+        long seed = 137;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--data": data = Paths.get(args[i + 1]); break;
+                case "--out": out = Paths.get(args[i + 1]); break;
+                case "--reps": reps = Integer.parseInt(args[i + 1]); break;
+                case "--folds": folds = Integer.parseInt(args[i + 1]); break;
+                case "--threshold": threshold = Float.parseFloat(args[i + 1]); break;
+                case "--stepmax": stepMax = Long.parseLong(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                default:
+                    System.err.println("Usage: MlpTrainer [--data dir] [--out dir] [--reps n] [--folds n]"
+                            + " [--threshold x] [--stepmax n] [--seed n]");
+                    System.exit(1);
+            }
+        }
+        Files.createDirectories(out);
+        MlpTrainer trainer = new MlpTrainer(ForkJoinPool.commonPool(), HIDDEN, threshold, stepMax);
+        for (Path csv : systems(data)) {
+            long t0 = System.nanoTime();
+            Dataset d = Dataset.load(csv, "MSATDNum", Dataset.CARET_DROPPED).scaled();
+            Random random = new Random(seed);
+            List<double[]> runs = new ArrayList<>();
+            List<Fit> fits = new ArrayList<>();
+            for (int r = 0; r < reps; r++) {
+                runs.add(Scores.of(d.y(), trainer.crossValidate(d, folds, random, fits)));
+            }
+            Path result = out.resolve("NN-results-" + systemOf(csv) + SUFFIX);
+            Scores.write(result, runs);
+            double[] mean = Scores.mean(runs);
+            long steps = 0;
+            int failed = 0;
+            for (Fit f : fits) {
+                steps += f.steps;
+                failed += f.converged ? 0 : 1;
+            }
+            System.out.printf(Locale.ROOT, "%-40s %4d rows %3d features  recall %.3f precision %.3f F1 %.3f"
+                    + "  %.0f steps/net, %d of %d not converged  %.1f s%n", result.getFileName(), d.rows(), d.width(),
+                    mean[0], mean[1], mean[3], (double) steps / fits.size(), failed, fits.size(),
+                    (System.nanoTime() - t0) / 1e9);
+        }
+    }
+
+    /** The data_v3 files of {@code dir}, sorted. */
+    public static List<Path> systems(Path dir) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /** {@code metrics-smells-psatd-msatd-<system>.csv} -> {@code <system>}. */
+    public static String systemOf(Path csv) {
+        String name = csv.getFileName().toString();
+        if (name.startsWith(PREFIX)) {
+            name = name.substring(PREFIX.length());
+        }
+        return name.endsWith(SUFFIX) ? name.substring(0, name.length() - SUFFIX.length()) : name;
+    }
+
+    /**
+     * One repetition of the script: shuffles the rows, cuts them into
+     * {@code folds} equal folds and predicts each fold (0 or 1) with a
+     * network trained on the others.
+     */
+    public int[] crossValidate(Dataset d, int folds, Random random) {
+        return crossValidate(d, folds, random, new ArrayList<>());
+    }
+
+    /** {@link #crossValidate(Dataset, int, Random)}, adding the fit of every fold to {@code fits}. */
+    public int[] crossValidate(Dataset d, int folds, Random random, List<Fit> fits) {
+        int n = d.rows();
+        int[] order = permutation(n, random);
+        int[] predicted = new int[n];
+        for (int k = 0; k < folds; k++) {
+            int from = (int) ((long) n * k / folds);
+            int to = (int) ((long) n * (k + 1) / folds);
+            int[] train = new int[n - (to - from)];
+            System.arraycopy(order, 0, train, 0, from);
+            System.arraycopy(order, to, train, from, n - to);
+            int[] test = new int[to - from];
+            System.arraycopy(order, from, test, 0, test.length);
+            Fit fit = fit(d, train, random.nextLong());
+            fits.add(fit);
+            float[] out = fit.net.predict(d.subset(test).x(), test.length);
+            for (int i = 0; i < test.length; i++) {
+                predicted[test[i]] = out[i] > 0.5f ? 1 : 0;
+            }
+        }
+        return predicted;
+    }
+
+    /** Trains a network on {@code rows} of {@code d}, labels as single outputs. */
+    public Mlp train(Dataset d, int[] rows, long seed) {
+        return fit(d, rows, seed).net;
+    }
+
+    /** {@link #train}, also telling how many steps it took and whether it converged. */
+    public Fit fit(Dataset d, int[] rows, long seed) {
+        int[] sizes = new int[hidden.length + 2];
+        sizes[0] = d.width();
+        System.arraycopy(hidden, 0, sizes, 1, hidden.length);
+        sizes[sizes.length - 1] = 1;
+        Mlp net = Mlp.gaussian(sizes, seed);
+
+        int shards = Math.max(1, Math.min(pool.getParallelism(), rows.length / MIN_SHARD));
+        int shardRows = (rows.length + shards - 1) / shards;
+        Shard[] work = new Shard[shards];
+        for (int s = 0; s < shards; s++) {
+            int from = Math.min(rows.length, s * shardRows);
+            work[s] = new Shard(net, d, shardRows);
+            work[s].set(rows, from, Math.min(rows.length, from + shardRows));
+        }
+        Rprop rprop = new Rprop(net);
+        float[][] g = gradient(work);
+        long step = 1;
+        while (step < stepMax && maxAbs(g) > threshold) {
+            rprop.step(g);
+            g = gradient(work);
+            step++;
+        }
+        return new Fit(net, step, maxAbs(g) <= threshold);
+    }
+
+    /** Gradient of the error over all rows of the shards, summed into the first shard's buffers. */
+    private float[][] gradient(Shard[] work) {
+        if (work.length == 1) {
+            work[0].reinitialize();
+            work[0].compute();
+        } else {
+            for (Shard s : work) {
+                s.reinitialize();
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(work);
+                }
+            });
+        }
+        float[][] g = work[0].gradient;
+        for (int s = 1; s < work.length; s++) {
+            for (int p = 0; p < g.length; p++) {
+                float[] src = work[s].gradient[p];
+                for (int i = 0; i < src.length; i++) {
+                    g[p][i] += src[i];
+                }
+            }
+        }
+        return g;
+    }
+
+    private static float maxAbs(float[][] g) {
+        float max = 0;
+        for (float[] p : g) {
+            for (float v : p) {
+                max = Math.max(max, Math.abs(v));
+            }
+        }
+        return max;
+    }
+
+    /** Gradient of one slice of the training rows, into buffers of its own. */
+    private static final class Shard extends RecursiveAction {
+        final Mlp net;
+        final Dataset d;
+        final Mlp.Workspace ws;
+        final float[][] gradient;
+        int[] rows;
+        int from;
+        int to;
+
+        Shard(Mlp net, Dataset d, int maxRows) {
+            this.net = net;
+            this.d = d;
+            this.ws = net.workspace(maxRows);
+            this.gradient = net.newGradient();
+        }
+
+        void set(int[] rows, int from, int to) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            reinitialize();
+        }
+
+        @Override
+        protected void compute() {
+            for (float[] g : gradient) {
+                Arrays.fill(g, 0f);
+            }
+            if (from < to) {
+                net.gradient(d.x(), d.y(), rows, from, to, gradient, ws);
+            }
+        }
+    }
+
+    /**
+     * neuralnet's {@code plus()}: per weight, the sign of its last step
+     * and its step size. The sign is cleared after a backtrack, so the
+     * next step neither grows nor shrinks.
+     */
+    private static final class Rprop {
+        final Mlp net;
+        final float[][] sign;
+        final float[][] size;
+
+        Rprop(Mlp net) {
+            this.net = net;
+            this.sign = net.newGradient();
+            this.size = net.newGradient();
+            for (float[] p : size) {
+                Arrays.fill(p, FIRST_STEP);
+            }
+        }
+
+        void step(float[][] gradient) {
+            int layers = net.layers();
+            for (int p = 0; p < gradient.length; p++) {
+                float[] w = p < layers ? net.weights(p) : net.biases(p - layers);
+                float[] g = gradient[p];
+                float[] last = sign[p];
+                float[] step = size[p];
+                for (int i = 0; i < w.length; i++) {
+                    float s = Math.signum(g[i]);
+                    float t = last[i] * s;
+                    if (t < 0) {
+                        w[i] += last[i] * step[i];
+                        step[i] = Math.max(step[i] * MINUS, MIN_STEP);
+                        last[i] = 0;
+                    } else {
+                        if (t > 0) {
+                            step[i] = Math.min(step[i] * PLUS, MAX_STEP);
+                        }
+                        w[i] -= s * step[i];
+                        last[i] = s;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] permutation(int n, Random random) {
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) {
+            p[i] = i;
+        }
+        shuffle(p, random);
+        return p;
+    }
+
+    private static void shuffle(int[] a, Random random) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+}
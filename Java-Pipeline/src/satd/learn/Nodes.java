@@ -0,0 +1,57 @@
+package satd.learn;
+
+import java.util.Arrays;
+
+/**
+ * Growable arrays of binary tree nodes, the layout of {@link Gbm} and
+ * {@link Forest}: node {@code i} is a leaf of {@code value[i]} when
+ * {@code feature[i] < 0}, else rows with {@code x[feature] <= threshold}
+ * go to {@code left[i]} and the others to {@code right[i]}.
+ */
+final class Nodes {
+    int[] feature = new int[64];
+    float[] threshold = new float[64];
+    int[] left = new int[64];
+    int[] right = new int[64];
+    float[] value = new float[64];
+    int size;
+
+    int leaf(float v) {
+        int i = add();
+        feature[i] = -1;
+        value[i] = v;
+        return i;
+    }
+
+    int split(int f, float t) {
+        int i = add();
+        feature[i] = f;
+        threshold[i] = t;
+        return i;
+    }
+
+    /** Value of the leaf the tree at {@code root} sends the row at {@code x[offset..]} to. */
+    float leaf(int root, float[] x, int offset) {
+        int i = root;
+        while (feature[i] >= 0) {
+            i = x[offset + feature[i]] <= threshold[i] ? left[i] : right[i];
+        }
+        return value[i];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private int add() {
+        if (size == feature.length) {
+            int capacity = size * 2;
+            feature = Arrays.copyOf(feature, capacity);
+            threshold = Arrays.copyOf(threshold, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            value = Arrays.copyOf(value, capacity);
+        }
+        return size++;
+    }
+}
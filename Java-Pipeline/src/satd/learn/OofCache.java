@@ -0,0 +1,98 @@
+package satd.learn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Directory of out-of-fold predictions: the probabilities one base learner
+ * gave the held-out rows of one fold, keyed by the learner's
+ * {@link Learner#config}, the fold scheme (folds, seed, fold) and the
+ * {@link Dataset#fingerprint} of the data. A stacking run that finds all
+ * its keys here trains nothing.
+ *
+ * Each entry is one file, {@code <16 hex digits of the key hash>.oof}
+ * (little-endian):
+ *
+ *   "SATDOOF1"  int keyBytes  byte[keyBytes] key (UTF-8)  int n  float[n]
+ *
+ * The key is stored whole and compared on reading, so a hash collision
+ * reads as a miss. Entries are written to a temporary file and moved into
+ * place, so concurrent runs never see half a file.
+ */
+public final class OofCache {
+
+    static final byte[] MAGIC = "SATDOOF1".getBytes(StandardCharsets.US_ASCII);
+    static final String SUFFIX = ".oof";
+
+    private final Path dir;
+
+    public OofCache(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+    }
+
+    /** The key of fold {@code fold} of {@code folds}, dealt with {@code seed}, of {@code data}. */
+    public static String key(String config, long data, int folds, long seed, int fold) {
+        return String.format("%s|data=%016x folds=%d seed=%d fold=%d", config, data, folds, seed, fold);
+    }
+
+    /** The predictions stored under {@code key}, or null when there are none. */
+    public float[] get(String key) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < MAGIC.length + Integer.BYTES
+                || !Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)) {
+            return null;
+        }
+        b.position(MAGIC.length);
+        if (b.getInt() != k.length || b.remaining() < k.length + Integer.BYTES
+                || !Arrays.equals(Arrays.copyOfRange(bytes, b.position(), b.position() + k.length), k)) {
+            return null;
+        }
+        b.position(b.position() + k.length);
+        int n = b.getInt();
+        if (b.remaining() != (long) n * Float.BYTES) {
+            return null;
+        }
+        float[] p = new float[n];
+        b.asFloatBuffer().get(p);
+        return p;
+    }
+
+    /** Stores {@code p} under {@code key}, replacing what was there. */
+    public void put(String key, float[] p) throws IOException {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.allocate(MAGIC.length + 2 * Integer.BYTES + k.length + p.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        b.put(MAGIC).putInt(k.length).put(k).putInt(p.length);
+        b.asFloatBuffer().put(p);
+        Path target = file(key);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, b.array());
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path file(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (byte c : key.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (c & 0xFF)) * 0x100000001B3L;
+        }
+        return dir.resolve(String.format("%016x", h) + SUFFIX);
+    }
+}
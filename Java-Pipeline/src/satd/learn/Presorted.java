@@ -0,0 +1,53 @@
+package satd.learn;
+
+import java.util.Arrays;
+
+/**
+ * For every feature of a {@link Dataset}, its row ids ordered by value,
+ * NaN last. Built once and only read afterwards, so every tree of a
+ * {@link ForestTrainer} shares it across threads; a tree selects its rows
+ * by weight, never by copying or re-sorting.
+ */
+public final class Presorted {
+
+    private final int[][] order;
+
+    private Presorted(int[][] order) {
+        this.order = order;
+    }
+
+    public static Presorted of(Dataset d) {
+        int rows = d.rows();
+        int width = d.width();
+        float[] x = d.x();
+        int[][] order = new int[width][];
+        long[] keys = new long[rows];
+        for (int f = 0; f < width; f++) {
+            for (int r = 0; r < rows; r++) {
+                keys[r] = (long) sortable(x[r * width + f]) << 32 | r;
+            }
+            Arrays.sort(keys);
+            int[] o = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                o[i] = (int) keys[i];
+            }
+            order[f] = o;
+        }
+        return new Presorted(order);
+    }
+
+    /** An int ordered as the float is ordered, NaN above infinity. */
+    private static int sortable(float v) {
+        int bits = Float.floatToIntBits(v);
+        return bits >= 0 ? bits : bits ^ Integer.MAX_VALUE;
+    }
+
+    public int features() {
+        return order.length;
+    }
+
+    /** Row ids of feature {@code f} by ascending value; shared, not copied. */
+    public int[] order(int f) {
+        return order[f];
+    }
+}
@@ -0,0 +1,169 @@
+package satd.learn;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The scores of one cross-validated run, as nnplay.r computes them from
+ * {@code table(data$yes, p.vect)}: class 1 is the positive class and class
+ * 0 the negative one. Rows of any other label (MSATDNum 2, "Yes", in
+ * data_v3) appear in no cell that the scores read.
+ *
+ * Like nnplay.r, F2 is {@code 2PR / (P + R)}, so it equals F1. The files
+ * are the {@code NN-results-<system>.csv} layout: a quoted header and one
+ * quoted row of 10-decimal values per repetition.
+ */
+public final class Scores {
+
+    public static final String[] COLUMNS = {"recall", "precision", "specificity", "F1", "F2"};
+
+    private Scores() {
+    }
+
+    /** recall, precision, specificity, F1, F2 of {@code predicted} (0 or 1) against {@code labels}. */
+    public static double[] of(float[] labels, int[] predicted) {
+        long tp = 0;
+        long fn = 0;
+        long fp = 0;
+        long tn = 0;
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] == 1f) {
+                if (predicted[i] == 1) {
+                    tp++;
+                } else {
+                    fn++;
+                }
+            } else if (labels[i] == 0f) {
+                if (predicted[i] == 1) {
+                    fp++;
+                } else {
+                    tn++;
+                }
+            }
+        }
+        double recall = (double) tp / (tp + fn);
+        double precision = (double) tp / (tp + fp);
+        double specificity = (double) tn / (tn + fp);
+        double f1 = 2.0 * tp / (2 * tp + fp + fn);
+        double f2 = 2 * precision * recall / (recall + precision);
+        return new double[] {recall, precision, specificity, f1, f2};
+    }
+
+    /**
+     * Area under the ROC curve of {@code scores} for labels 1 (positive)
+     * and 0, as pROC's {@code roc(...)$auc} reports it: the Mann-Whitney
+     * statistic, ties counted one half. Other labels are ignored.
+     */
+    public static double auc(float[] labels, float[] scores) {
+        // (order-preserving score bits, row) packed in a long: a primitive sort, no boxing
+        long[] order = new long[labels.length];
+        int n = 0;
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] == 0f || labels[i] == 1f) {
+                int bits = Float.floatToIntBits(scores[i] + 0f);
+                bits ^= (bits >> 31) & 0x7FFFFFFF;
+                order[n++] = (long) bits << 32 | i;
+            }
+        }
+        Arrays.sort(order, 0, n);
+        double rankSum = 0;
+        long positives = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j < n && (order[j] >> 32) == (order[i] >> 32)) {
+                j++;
+            }
+            double rank = (i + 1 + j) / 2.0;
+            for (int k = i; k < j; k++) {
+                if (labels[(int) order[k]] == 1f) {
+                    rankSum += rank;
+                    positives++;
+                }
+            }
+            i = j;
+        }
+        long negatives = n - positives;
+        return (rankSum - positives * (positives + 1) / 2.0) / ((double) positives * negatives);
+    }
+
+    /** Column means, ignoring NaN (no predicted positives gives a NaN precision). */
+    public static double[] mean(List<double[]> runs) {
+        double[] sum = new double[COLUMNS.length];
+        int[] n = new int[COLUMNS.length];
+        for (double[] run : runs) {
+            for (int c = 0; c < sum.length; c++) {
+                if (!Double.isNaN(run[c])) {
+                    sum[c] += run[c];
+                    n[c]++;
+                }
+            }
+        }
+        for (int c = 0; c < sum.length; c++) {
+            sum[c] = n[c] == 0 ? Double.NaN : sum[c] / n[c];
+        }
+        return sum;
+    }
+
+    /** Column sample standard deviations, ignoring NaN like {@link #mean}. */
+    public static double[] sd(List<double[]> runs) {
+        double[] mean = mean(runs);
+        double[] sum = new double[COLUMNS.length];
+        int[] n = new int[COLUMNS.length];
+        for (double[] run : runs) {
+            for (int c = 0; c < sum.length; c++) {
+                if (!Double.isNaN(run[c])) {
+                    sum[c] += (run[c] - mean[c]) * (run[c] - mean[c]);
+                    n[c]++;
+                }
+            }
+        }
+        for (int c = 0; c < sum.length; c++) {
+            sum[c] = n[c] < 2 ? Double.NaN : Math.sqrt(sum[c] / (n[c] - 1));
+        }
+        return sum;
+    }
+
+    public static void write(Path file, List<double[]> runs) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+            StringBuilder line = new StringBuilder();
+            for (int c = 0; c < COLUMNS.length; c++) {
+                line.append(c == 0 ? "" : ";").append('"').append(COLUMNS[c]).append('"');
+            }
+            out.write(line.append('\n').toString());
+            for (double[] run : runs) {
+                line.setLength(0);
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    String v = Double.isNaN(run[c]) ? "NaN" : String.format(Locale.ROOT, "%.10f", run[c]);
+                    line.append(c == 0 ? "" : ";").append('"').append(v).append('"');
+                }
+                out.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    /** Reads a file written by {@link #write} or by nnplay.r. */
+    public static List<double[]> read(Path file) throws IOException {
+        List<double[]> runs = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.ISO_8859_1);
+        for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] cells = line.split(";");
+            double[] run = new double[COLUMNS.length];
+            for (int c = 0; c < run.length; c++) {
+                String v = c < cells.length ? cells[c].replace("\"", "").trim() : "NaN";
+                run[c] = v.equals("NaN") || v.equals("NA") ? Double.NaN : Double.parseDouble(v);
+            }
+            runs.add(run);
+        }
+        return runs;
+    }
+}
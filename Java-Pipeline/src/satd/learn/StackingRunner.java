@@ -0,0 +1,347 @@
+package satd.learn;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stacked ensembles of the base learners of caret-ensemble.r, on
+ * out-of-fold predictions kept in an {@link OofCache}.
+ *
+ * {@link #outOfFold} deals the rows to stratified folds and gives, for
+ * every base learner, the probability of class 1 of every row from a model
+ * that did not see it. The (learner, fold) fits missing from the cache run
+ * in parallel on a {@link ForkJoinPool} and are stored; the others are
+ * read back. A meta-learner ({@link Meta}) then combines the columns of
+ * that matrix, and is itself scored by cross-validation over the matrix
+ * with a second fold assignment, so it costs milliseconds once the base
+ * predictions are cached.
+ *
+ * {@code main} prepares the files it is given as {@link GbmTrainer#load}
+ * does and prints the AUC of every base learner and meta-learner.
+ * caret-ensemble.r's blackboost has no counterpart here; glm and nnet
+ * stand in for it.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.learn.StackingRunner --cache oof --folds 10 ../R-Neural-Network/data_v3/*.csv
+ */
+public final class StackingRunner {
+
+    private final ForkJoinPool pool;
+    private final OofCache cache;
+    private final int folds;
+    private final long seed;
+
+    public StackingRunner(ForkJoinPool pool, OofCache cache, int folds, long seed) {
+        if (folds < 2) {
+            throw new IllegalArgumentException("folds must be at least 2: " + folds);
+        }
+        this.pool = pool;
+        this.cache = cache;
+        this.folds = folds;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get("oof-cache");
+        int folds = 10;
+        long seed = 137;
+        int i = 0;
+        for (; i + 1 < args.length && args[i].startsWith("--"); i += 2) {
+            switch (args[i]) {
+                case "--cache": dir = Paths.get(args[i + 1]); break;
+                case "--folds": folds = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                default: i = args.length; break;
+            }
+        }
+        if (i >= args.length || args[i].startsWith("--")) {
+            System.err.println("Usage: StackingRunner [--cache dir] [--folds n] [--seed n] file.csv...");
+            System.exit(1);
+        }
+        StackingRunner runner = new StackingRunner(ForkJoinPool.commonPool(), new OofCache(dir), folds, seed);
+        List<Learner> learners = defaults();
+        for (; i < args.length; i++) {
+            Path csv = Paths.get(args[i]);
+            Dataset d = GbmTrainer.load(csv);
+            long t0 = System.nanoTime();
+            AtomicInteger trained = new AtomicInteger();
+            float[][] z = runner.outOfFold(d, learners, trained);
+            System.out.printf(Locale.ROOT, "%s  %d rows, %d of %d fits trained, %.2f s%n", csv.getFileName(),
+                    d.rows(), trained.get(), learners.size() * folds, (System.nanoTime() - t0) / 1e9);
+            for (int m = 0; m < learners.size(); m++) {
+                System.out.printf(Locale.ROOT, "  %-36s AUC %.4f%n", learners.get(m).config(),
+                        Scores.auc(d.y(), z[m]));
+            }
+            for (Meta meta : Meta.values()) {
+                long t1 = System.nanoTime();
+                float[] p = runner.stack(meta, z, d.y());
+                System.out.printf(Locale.ROOT, "  %-36s AUC %.4f  %.1f ms%n", "stack " + meta.name().toLowerCase(Locale.ROOT),
+                        Scores.auc(d.y(), p), (System.nanoTime() - t1) / 1e6);
+            }
+        }
+    }
+
+    /** caret-ensemble.r's list with blackboost replaced by glm and nnet. */
+    public static List<Learner> defaults() {
+        List<Learner> learners = new ArrayList<>();
+        learners.add(Learners.gbm(150, 3, 0.1));
+        learners.add(Learners.forest(200, 0));
+        learners.add(Learners.glm(0, 1e-3));
+        learners.add(Learners.nnet(5, 1000));
+        return learners;
+    }
+
+    /**
+     * Out-of-fold probabilities of class 1, {@code [learner][row]}. Fits not
+     * in the cache are trained and stored; {@code trained} counts them.
+     */
+    public float[][] outOfFold(Dataset d, List<Learner> learners, AtomicInteger trained) throws IOException {
+        int n = d.rows();
+        int[] fold = Folds.stratified(d.y(), folds, new Random(seed));
+        int[][] test = new int[folds][];
+        int[][] train = new int[folds][];
+        for (int k = 0; k < folds; k++) {
+            train[k] = Folds.training(fold, k);
+            test[k] = new int[n - train[k].length];
+            for (int r = 0, j = 0; r < n; r++) {
+                if (fold[r] == k) {
+                    test[k][j++] = r;
+                }
+            }
+        }
+        long data = d.fingerprint();
+        float[][] z = new float[learners.size()][n];
+        List<Fit> missing = new ArrayList<>();
+        for (int m = 0; m < learners.size(); m++) {
+            for (int k = 0; k < folds; k++) {
+                String key = OofCache.key(learners.get(m).config(), data, folds, seed, k);
+                float[] p = cache.get(key);
+                if (p != null && p.length == test[k].length) {
+                    scatter(p, test[k], z[m]);
+                } else {
+                    missing.add(new Fit(learners.get(m), key, k, z[m]));
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            try {
+                pool.invoke(new FitTask(d, train, test, missing.toArray(new Fit[0]), 0, missing.size()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            trained.addAndGet(missing.size());
+        }
+        return z;
+    }
+
+    /**
+     * Out-of-fold predictions of {@code meta} over the columns of
+     * {@code z}: each fold of a second stratified assignment is predicted
+     * by the meta-learner fitted on the other folds.
+     */
+    public float[] stack(Meta meta, float[][] z, float[] y) {
+        int n = y.length;
+        int[] fold = Folds.stratified(y, folds, new Random(~seed));
+        float[] p = new float[n];
+        for (int k = 0; k < folds; k++) {
+            int[] train = Folds.training(fold, k);
+            int[] test = new int[n - train.length];
+            for (int r = 0, j = 0; r < n; r++) {
+                if (fold[r] == k) {
+                    test[j++] = r;
+                }
+            }
+            scatter(meta.fitPredict(z, y, train, test), test, p);
+        }
+        return p;
+    }
+
+    private static void scatter(float[] p, int[] rows, float[] into) {
+        for (int i = 0; i < rows.length; i++) {
+            into[rows[i]] = p[i];
+        }
+    }
+
+    /** Ways of combining base learner probabilities. */
+    public enum Meta {
+        /** The base learner with the best AUC on the training rows. */
+        BEST {
+            @Override
+            float[] fitPredict(float[][] z, float[] y, int[] train, int[] test) {
+                int best = 0;
+                double bestAuc = -1;
+                for (int m = 0; m < z.length; m++) {
+                    double auc = Scores.auc(gather(y, train), gather(z[m], train));
+                    if (auc > bestAuc) {
+                        bestAuc = auc;
+                        best = m;
+                    }
+                }
+                return gather(z[best], test);
+            }
+        },
+        /** The mean probability of all base learners. */
+        MEAN {
+            @Override
+            float[] fitPredict(float[][] z, float[] y, int[] train, int[] test) {
+                int[] counts = new int[z.length];
+                Arrays.fill(counts, 1);
+                return blend(z, counts, test);
+            }
+        },
+        /**
+         * caretEnsemble's greedy optimization (Caruana's ensemble selection):
+         * {@link #GREEDY_ROUNDS} times, adds with replacement the base
+         * learner that most raises the training AUC of the mean; the
+         * weights are how often each was added.
+         */
+        GREEDY {
+            @Override
+            float[] fitPredict(float[][] z, float[] y, int[] train, int[] test) {
+                float[] yt = gather(y, train);
+                float[][] zt = new float[z.length][];
+                for (int m = 0; m < z.length; m++) {
+                    zt[m] = gather(z[m], train);
+                }
+                int[] counts = new int[z.length];
+                float[] sum = new float[train.length];
+                float[] candidate = new float[train.length];
+                for (int round = 0; round < GREEDY_ROUNDS; round++) {
+                    int best = 0;
+                    double bestAuc = -1;
+                    for (int m = 0; m < z.length; m++) {
+                        for (int i = 0; i < candidate.length; i++) {
+                            candidate[i] = sum[i] + zt[m][i];
+                        }
+                        double auc = Scores.auc(yt, candidate);
+                        if (auc > bestAuc) {
+                            bestAuc = auc;
+                            best = m;
+                        }
+                    }
+                    counts[best]++;
+                    for (int i = 0; i < sum.length; i++) {
+                        sum[i] += zt[best][i];
+                    }
+                }
+                return blend(z, counts, test);
+            }
+        },
+        /** caretStack's glm: logistic regression on the log-odds of the base learners. */
+        GLM {
+            @Override
+            float[] fitPredict(float[][] z, float[] y, int[] train, int[] test) {
+                int n = y.length;
+                float[] x = new float[n * z.length];
+                List<String> names = new ArrayList<>();
+                for (int m = 0; m < z.length; m++) {
+                    names.add("M" + m);
+                    for (int r = 0; r < n; r++) {
+                        double p = Math.min(Math.max(z[m][r], 1e-6), 1 - 1e-6);
+                        x[r * z.length + m] = (float) Math.log(p / (1 - p));
+                    }
+                }
+                Csr csr = Csr.of(new Dataset(names, x, y));
+                Logistic model = new LogisticTrainer(ForkJoinPool.commonPool(), 0).fit(csr, y, train, 1e-4);
+                float[] p = new float[test.length];
+                for (int i = 0; i < test.length; i++) {
+                    p[i] = (float) model.probability(csr, test[i]);
+                }
+                return p;
+            }
+        };
+
+        /** Rounds of {@link #GREEDY}, caretEnsemble's default {@code iter}. */
+        static final int GREEDY_ROUNDS = 100;
+
+        abstract float[] fitPredict(float[][] z, float[] y, int[] train, int[] test);
+
+        private static float[] gather(float[] v, int[] rows) {
+            float[] g = new float[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                g[i] = v[rows[i]];
+            }
+            return g;
+        }
+
+        private static float[] blend(float[][] z, int[] counts, int[] rows) {
+            int total = 0;
+            for (int c : counts) {
+                total += c;
+            }
+            float[] p = new float[rows.length];
+            for (int m = 0; m < z.length; m++) {
+                if (counts[m] == 0) {
+                    continue;
+                }
+                float w = (float) counts[m] / total;
+                for (int i = 0; i < rows.length; i++) {
+                    p[i] += w * z[m][rows[i]];
+                }
+            }
+            return p;
+        }
+    }
+
+    /** One base learner on one fold; writes its column of the matrix. */
+    private static final class Fit {
+        final Learner learner;
+        final String key;
+        final int fold;
+        final float[] column;
+
+        Fit(Learner learner, String key, int fold, float[] column) {
+            this.learner = learner;
+            this.key = key;
+            this.fold = fold;
+            this.column = column;
+        }
+    }
+
+    /** A range of fits, split in halves down to single fits. */
+    private final class FitTask extends RecursiveAction {
+        final Dataset d;
+        final int[][] train;
+        final int[][] test;
+        final Fit[] fits;
+        final int from;
+        final int to;
+
+        FitTask(Dataset d, int[][] train, int[][] test, Fit[] fits, int from, int to) {
+            this.d = d;
+            this.train = train;
+            this.test = test;
+            this.fits = fits;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new FitTask(d, train, test, fits, from, mid), new FitTask(d, train, test, fits, mid, to));
+                return;
+            }
+            Fit fit = fits[from];
+            float[] p = fit.learner.fitPredict(d, train[fit.fold], test[fit.fold], seed * 31 + fit.fold);
+            scatter(p, test[fit.fold], fit.column);
+            try {
+                cache.put(fit.key, p);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package satd.learn;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Inference for the TextCNN of Misc-Scripts/train.py: word embedding,
+ * one convolution per filter size over the padded token sequence, ReLU,
+ * max over time, and a dense layer to the class scores (dropout is off at
+ * inference). Weights come from a file written by
+ * Misc-Scripts/export_textcnn.py.
+ *
+ * A convolution is a GEMM ({@link Gemm#nn}): the embedding rows of every
+ * window are copied side by side into one row of an im2col matrix,
+ * {@code windows x (size * dim)}, times the filter matrix
+ * {@code (size * dim) x filters}. train.py pads every comment with token
+ * 0 to the longest training comment, and the windows lying wholly in
+ * that padding all have the same value, so only one of them is computed:
+ * the cost follows the comment's length, not the padded length.
+ *
+ * The model is immutable and may be shared by any number of threads;
+ * each thread keeps its own scratch matrices, grown to the longest
+ * comment it has scored.
+ *
+ * Tokens are those of train.py: data_helpers.clean_str (characters other
+ * than letters, digits and {@code (),!?'`} become spaces, {@code 's},
+ * {@code 've}, {@code n't}, {@code 're}, {@code 'd}, {@code 'll} split
+ * off, lowercased), then the word pattern of VocabularyProcessor, which
+ * keeps the runs of letters, digits and apostrophes. Unknown words are
+ * id 0, and tokens past the padded length are dropped.
+ *
+ * File layout (little-endian):
+ *
+ *   "SATDCNN1"  int words  int dim  int length  int sizes  int filters  int classes  int[sizes] filter sizes
+ *   words x (int bytes, UTF-8 word), word i has id i
+ *   float[words x dim] embedding
+ *   per filter size s: float[s x dim x filters] weights (TensorFlow's HWIO order), float[filters] biases
+ *   float[sizes * filters x classes] output weights, float[classes] output biases
+ *
+ * {@code main} prints the class probabilities of every line of the given
+ * files, one comment per line. With {@code --check}, it instead scores the
+ * comments of a file export_textcnn.py wrote ({@code score score ... TAB
+ * comment}) and prints the largest difference from TensorFlow's scores.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.learn.TextCnn runs/1500000000/model.cnn comments.txt
+ *   java -cp out satd.learn.TextCnn --check runs/1500000000/model.cnn.check runs/1500000000/model.cnn
+ */
+public final class TextCnn {
+
+    static final byte[] MAGIC = "SATDCNN1".getBytes(StandardCharsets.US_ASCII);
+
+    /** Largest difference from TensorFlow's scores that {@code --check} accepts. */
+    static final float TOLERANCE = 1e-3f;
+
+    private final List<String> vocabulary;
+    private final Map<String, Integer> ids;
+    private final int dim;
+    private final int length;
+    private final int[] sizes;
+    private final int filters;
+    private final int classes;
+    private final float[] embedding;
+    private final float[][] weights;
+    private final float[][] biases;
+    private final float[] output;
+    private final float[] outputBias;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private TextCnn(List<String> vocabulary, int dim, int length, int[] sizes, int filters, int classes,
+            float[] embedding, float[][] weights, float[][] biases, float[] output, float[] outputBias) {
+        for (int s : sizes) {
+            if (s < 1 || s > length) {
+                throw new IllegalArgumentException("filter size " + s + " does not fit length " + length);
+            }
+        }
+        this.vocabulary = vocabulary;
+        this.ids = new HashMap<>(2 * vocabulary.size());
+        for (int i = 0; i < vocabulary.size(); i++) {
+            ids.putIfAbsent(vocabulary.get(i), i);
+        }
+        this.dim = dim;
+        this.length = length;
+        this.sizes = sizes;
+        this.filters = filters;
+        this.classes = classes;
+        this.embedding = embedding;
+        this.weights = weights;
+        this.biases = biases;
+        this.output = output;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * A model with text_cnn.py's initial weights: embedding uniform in
+     * [-1, 1], filters normal with deviation 0.1, convolution biases 0.1,
+     * output weights uniform in +-sqrt(6 / (in + out)), output biases 0.1.
+     *
+     * @param vocabulary words by id; id 0 is the unknown word and the padding
+     */
+    public TextCnn(List<String> vocabulary, int dim, int length, int[] sizes, int filters, int classes, long seed) {
+        this(new ArrayList<>(vocabulary), dim, length, sizes.clone(), filters, classes,
+                new float[vocabulary.size() * dim], new float[sizes.length][], new float[sizes.length][],
+                new float[sizes.length * filters * classes], new float[classes]);
+        Random random = new Random(seed);
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = 2 * random.nextFloat() - 1;
+        }
+        for (int s = 0; s < sizes.length; s++) {
+            weights[s] = new float[sizes[s] * dim * filters];
+            for (int i = 0; i < weights[s].length; i++) {
+                weights[s][i] = (float) (0.1 * random.nextGaussian());
+            }
+            biases[s] = new float[filters];
+            Arrays.fill(biases[s], 0.1f);
+        }
+        float limit = (float) Math.sqrt(6.0 / (sizes.length * filters + classes));
+        for (int i = 0; i < output.length; i++) {
+            output[i] = (2 * random.nextFloat() - 1) * limit;
+        }
+        Arrays.fill(outputBias, 0.1f);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path check = null;
+        int i = 0;
+        for (; i + 1 < args.length && args[i].startsWith("--"); i += 2) {
+            switch (args[i]) {
+                case "--check": check = Paths.get(args[i + 1]); break;
+                default: i = args.length; break;
+            }
+        }
+        if (i >= args.length || args[i].startsWith("--") || (check == null && i + 1 >= args.length)) {
+            System.err.println("Usage: TextCnn model.cnn comments.txt...");
+            System.err.println("       TextCnn --check model.cnn.check model.cnn");
+            System.exit(1);
+        }
+        TextCnn model = load(Paths.get(args[i++]));
+        if (check != null) {
+            float worst = check(model, check);
+            System.out.printf(Locale.ROOT, "largest score difference from TensorFlow %.2e%n", worst);
+            System.exit(worst <= TOLERANCE ? 0 : 2);
+        }
+        long comments = 0;
+        long nanos = 0;
+        StringBuilder line = new StringBuilder();
+        for (; i < args.length; i++) {
+            try (BufferedReader in = Files.newBufferedReader(Paths.get(args[i]), StandardCharsets.UTF_8)) {
+                for (String comment; (comment = in.readLine()) != null; ) {
+                    long t0 = System.nanoTime();
+                    float[] p = model.probabilities(comment);
+                    nanos += System.nanoTime() - t0;
+                    comments++;
+                    line.setLength(0);
+                    for (float v : p) {
+                        line.append(String.format(Locale.ROOT, "%.5f\t", v));
+                    }
+                    System.out.println(line.append(comment));
+                }
+            }
+        }
+        System.err.printf(Locale.ROOT, "%d comments, %.1f us per comment%n", comments, nanos / 1e3 / comments);
+    }
+
+    /** Largest absolute difference between the scores in {@code file} and the model's. */
+    static float check(TextCnn model, Path file) throws IOException {
+        float worst = 0;
+        int[] tokens = new int[model.length];
+        float[] scores = new float[model.classes];
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line; (line = in.readLine()) != null; ) {
+                int tab = line.indexOf('\t');
+                String[] expected = line.substring(0, tab).trim().split(" +");
+                model.scores(tokens, model.ids(line.substring(tab + 1), tokens), scores);
+                for (int c = 0; c < model.classes; c++) {
+                    worst = Math.max(worst, Math.abs(scores[c] - Float.parseFloat(expected[c])));
+                }
+            }
+        }
+        return worst;
+    }
+
+    public static TextCnn load(Path file) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        b.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not a TextCNN model: " + file);
+        }
+        int words = b.getInt();
+        int dim = b.getInt();
+        int length = b.getInt();
+        int[] sizes = new int[b.getInt()];
+        int filters = b.getInt();
+        int classes = b.getInt();
+        for (int s = 0; s < sizes.length; s++) {
+            sizes[s] = b.getInt();
+        }
+        List<String> vocabulary = new ArrayList<>(words);
+        for (int w = 0; w < words; w++) {
+            byte[] word = new byte[b.getInt()];
+            b.get(word);
+            vocabulary.add(new String(word, StandardCharsets.UTF_8));
+        }
+        float[] embedding = floats(b, words * dim);
+        float[][] weights = new float[sizes.length][];
+        float[][] biases = new float[sizes.length][];
+        for (int s = 0; s < sizes.length; s++) {
+            weights[s] = floats(b, sizes[s] * dim * filters);
+            biases[s] = floats(b, filters);
+        }
+        float[] output = floats(b, sizes.length * filters * classes);
+        float[] outputBias = floats(b, classes);
+        if (b.hasRemaining()) {
+            throw new IOException("trailing bytes after the output layer: " + file);
+        }
+        return new TextCnn(vocabulary, dim, length, sizes, filters, classes, embedding, weights, biases, output,
+                outputBias);
+    }
+
+    private static float[] floats(ByteBuffer b, int n) {
+        float[] v = new float[n];
+        b.asFloatBuffer().get(v);
+        b.position(b.position() + n * Float.BYTES);
+        return v;
+    }
+
+    public void save(Path file) throws IOException {
+        List<byte[]> words = new ArrayList<>(vocabulary.size());
+        int bytes = MAGIC.length + (6 + sizes.length) * Integer.BYTES;
+        for (String w : vocabulary) {
+            words.add(w.getBytes(StandardCharsets.UTF_8));
+            bytes += Integer.BYTES + words.get(words.size() - 1).length;
+        }
+        int floats = embedding.length + output.length + outputBias.length;
+        for (int s = 0; s < sizes.length; s++) {
+            floats += weights[s].length + biases[s].length;
+        }
+        ByteBuffer b = ByteBuffer.allocate(bytes + floats * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(MAGIC).putInt(vocabulary.size()).putInt(dim).putInt(length).putInt(sizes.length).putInt(filters)
+                .putInt(classes);
+        for (int s : sizes) {
+            b.putInt(s);
+        }
+        for (byte[] w : words) {
+            b.putInt(w.length).put(w);
+        }
+        put(b, embedding);
+        for (int s = 0; s < sizes.length; s++) {
+            put(b, weights[s]);
+            put(b, biases[s]);
+        }
+        put(b, output);
+        put(b, outputBias);
+        Files.write(file, b.array());
+    }
+
+    private static void put(ByteBuffer b, float[] v) {
+        b.asFloatBuffer().put(v);
+        b.position(b.position() + v.length * Float.BYTES);
+    }
+
+    /** Padded comment length, in tokens. */
+    public int length() {
+        return length;
+    }
+
+    public int classes() {
+        return classes;
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    public int[] sizes() {
+        return sizes.clone();
+    }
+
+    public int filters() {
+        return filters;
+    }
+
+    /** Words by id; shared, not copied. */
+    public List<String> vocabulary() {
+        return vocabulary;
+    }
+
+    /** Embedding, {@code words x dim}; shared, not copied. */
+    public float[] embedding() {
+        return embedding;
+    }
+
+    /** Filters of size {@code sizes[s]}, {@code sizes[s] x dim x filters}; shared, not copied. */
+    public float[] weights(int s) {
+        return weights[s];
+    }
+
+    public float[] biases(int s) {
+        return biases[s];
+    }
+
+    /** Output weights, {@code sizes.length * filters x classes}; shared, not copied. */
+    public float[] output() {
+        return output;
+    }
+
+    public float[] outputBias() {
+        return outputBias;
+    }
+
+    /**
+     * Writes the ids of the tokens of {@code comment}, at most
+     * {@link #length} of them, into {@code out}; returns how many.
+     */
+    public int ids(CharSequence comment, int[] out) {
+        StringBuilder token = scratch.get().token;
+        int n = 0;
+        token.setLength(0);
+        for (int i = 0, end = comment.length(); i < end && n < length; i++) {
+            char c = comment.charAt(i);
+            boolean word = c < 128 && (Character.isLetterOrDigit(c) || c == '\'');
+            if (word && token.length() > 0 && splitsBefore(comment, i)) {
+                out[n++] = id(token);
+                token.setLength(0);
+                if (n == length) {
+                    break;
+                }
+            }
+            if (word) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                out[n++] = id(token);
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0 && n < length) {
+            out[n++] = id(token);
+        }
+        return n;
+    }
+
+    /** Whether clean_str puts a space before position {@code i}: {@code 's 've n't 're 'd 'll}, case-sensitive. */
+    private static boolean splitsBefore(CharSequence s, int i) {
+        if (s.charAt(i) == 'n') {
+            return startsWith(s, i, "n't");
+        }
+        return s.charAt(i) == '\'' && (startsWith(s, i, "'s") || startsWith(s, i, "'ve") || startsWith(s, i, "'re")
+                || startsWith(s, i, "'d") || startsWith(s, i, "'ll"));
+    }
+
+    private static boolean startsWith(CharSequence s, int i, String prefix) {
+        if (i + prefix.length() > s.length()) {
+            return false;
+        }
+        for (int k = 0; k < prefix.length(); k++) {
+            if (s.charAt(i + k) != prefix.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int id(CharSequence word) {
+        Integer id = ids.get(word.toString());
+        return id == null ? 0 : id;
+    }
+
+    /** Softmax of the scores of {@code comment}. */
+    public float[] probabilities(CharSequence comment) {
+        Scratch s = scratch.get();
+        float[] p = new float[classes];
+        scores(s.tokens, ids(comment, s.tokens), p);
+        float max = Float.NEGATIVE_INFINITY;
+        for (float v : p) {
+            max = Math.max(max, v);
+        }
+        double sum = 0;
+        for (int c = 0; c < classes; c++) {
+            p[c] = (float) Math.exp(p[c] - max);
+            sum += p[c];
+        }
+        for (int c = 0; c < classes; c++) {
+            p[c] /= sum;
+        }
+        return p;
+    }
+
+    /**
+     * Class scores (train.py's {@code output/scores}, before the softmax)
+     * of the comment whose first {@code n} token ids are {@code tokens},
+     * written into {@code scores}.
+     */
+    public void scores(int[] tokens, int n, float[] scores) {
+        if (n > length) {
+            throw new IllegalArgumentException(n + " tokens, the padded length is " + length);
+        }
+        Scratch s = scratch.get();
+        float[] pooled = s.pooled(sizes.length * filters);
+        for (int f = 0; f < sizes.length; f++) {
+            int size = sizes[f];
+            int width = size * dim;
+            int windows = length - size + 1;
+            int real = Math.min(n, windows);
+            int rows = real + (windows > real ? 1 : 0);
+            float[] col = s.col(rows * width);
+            for (int r = 0; r < rows; r++) {
+                int start = r < real ? r : n;
+                for (int k = 0; k < size; k++) {
+                    int t = start + k;
+                    int word = t < n ? tokens[t] : 0;
+                    System.arraycopy(embedding, word * dim, col, r * width + k * dim, dim);
+                }
+            }
+            float[] conv = s.conv(rows * filters);
+            Arrays.fill(conv, 0, rows * filters, 0f);
+            Gemm.nn(col, weights[f], conv, rows, width, filters);
+            float[] b = biases[f];
+            for (int c = 0; c < filters; c++) {
+                float max = Float.NEGATIVE_INFINITY;
+                for (int r = 0; r < rows; r++) {
+                    max = Math.max(max, conv[r * filters + c]);
+                }
+                pooled[f * filters + c] = Math.max(0f, max + b[c]);
+            }
+        }
+        System.arraycopy(outputBias, 0, scores, 0, classes);
+        Gemm.nn(pooled, output, scores, 1, sizes.length * filters, classes);
+    }
+
+    /** One thread's token ids and matrices, grown on demand. */
+    private final class Scratch {
+        final StringBuilder token = new StringBuilder();
+        final int[] tokens = new int[length];
+        float[] col = new float[0];
+        float[] conv = new float[0];
+        float[] pooled = new float[0];
+
+        float[] col(int n) {
+            return col.length >= n ? col : (col = new float[n]);
+        }
+
+        float[] conv(int n) {
+            return conv.length >= n ? conv : (conv = new float[n]);
+        }
+
+        float[] pooled(int n) {
+            return pooled.length >= n ? pooled : (pooled = new float[n]);
+        }
+    }
+}
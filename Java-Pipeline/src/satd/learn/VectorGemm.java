@@ -0,0 +1,79 @@
+package satd.learn;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Gemm#nn} on the Vector API ({@code jdk.incubator.vector}), which
+ * {@link Gemm} dispatches to when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}.
+ *
+ * Four rows of {@code c} and one vector of columns are kept in registers
+ * while {@code p} runs over all of {@code k}, so every vector of
+ * {@code b} loaded feeds four fused multiply-adds and {@code c} is read
+ * and written once. Auto-vectorized loops cannot keep accumulators in
+ * registers, and reload and store {@code c} on every {@code p}.
+ */
+final class VectorGemm {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private VectorGemm() {
+    }
+
+    /** c[m x n] += a[m x k] * b[k x n] */
+    static void nn(float[] a, float[] b, float[] c, int m, int k, int n) {
+        int lanes = SPECIES.length();
+        int vectorEnd = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i + 4 <= m; i += 4) {
+            int a0 = i * k;
+            int a1 = a0 + k;
+            int a2 = a1 + k;
+            int a3 = a2 + k;
+            for (int j = 0; j < vectorEnd; j += lanes) {
+                int c0 = i * n + j;
+                FloatVector s0 = FloatVector.fromArray(SPECIES, c, c0);
+                FloatVector s1 = FloatVector.fromArray(SPECIES, c, c0 + n);
+                FloatVector s2 = FloatVector.fromArray(SPECIES, c, c0 + 2 * n);
+                FloatVector s3 = FloatVector.fromArray(SPECIES, c, c0 + 3 * n);
+                for (int p = 0; p < k; p++) {
+                    FloatVector bp = FloatVector.fromArray(SPECIES, b, p * n + j);
+                    s0 = bp.fma(FloatVector.broadcast(SPECIES, a[a0 + p]), s0);
+                    s1 = bp.fma(FloatVector.broadcast(SPECIES, a[a1 + p]), s1);
+                    s2 = bp.fma(FloatVector.broadcast(SPECIES, a[a2 + p]), s2);
+                    s3 = bp.fma(FloatVector.broadcast(SPECIES, a[a3 + p]), s3);
+                }
+                s0.intoArray(c, c0);
+                s1.intoArray(c, c0 + n);
+                s2.intoArray(c, c0 + 2 * n);
+                s3.intoArray(c, c0 + 3 * n);
+            }
+            tail(a, b, c, i, i + 4, k, n, vectorEnd);
+        }
+        for (; i < m; i++) {
+            int ai = i * k;
+            for (int j = 0; j < vectorEnd; j += lanes) {
+                FloatVector s = FloatVector.fromArray(SPECIES, c, i * n + j);
+                for (int p = 0; p < k; p++) {
+                    s = FloatVector.fromArray(SPECIES, b, p * n + j).fma(FloatVector.broadcast(SPECIES, a[ai + p]), s);
+                }
+                s.intoArray(c, i * n + j);
+            }
+            tail(a, b, c, i, i + 1, k, n, vectorEnd);
+        }
+    }
+
+    /** Columns {@code [from, n)} of rows {@code [i0, i1)}, one at a time. */
+    private static void tail(float[] a, float[] b, float[] c, int i0, int i1, int k, int n, int from) {
+        for (int i = i0; i < i1; i++) {
+            for (int j = from; j < n; j++) {
+                float s = c[i * n + j];
+                for (int p = 0; p < k; p++) {
+                    s += a[i * k + p] * b[p * n + j];
+                }
+                c[i * n + j] = s;
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package satd.link;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Java replacement for {@code Antipatterns-Data/link-antipatterns.pl}: appends
+ * the LongMethod, LongParameterList and SpaghettiCode 0/1 columns to each
+ * {@code *-met-metr.csv} row.
+ *
+ * Smell lines are indexed once by (system, file path). Each metrics row then
+ * does one hash lookup and tests only the few smell strings of its own file,
+ * with the same method-name-in-smell-string test as the Perl script. Unlike
+ * the script, a row matched by several smell lines gets its three columns
+ * once (flags OR-ed) instead of once per match.
+ *
+ * EXAMPLE (from Antipatterns-Data)
+ *
+ *   java -cp ../Java-Pipeline/out satd.link.AntipatternLinker --ap antipattern-list.txt --metrics metrics-list.txt --out linked
+ */
+public final class AntipatternLinker {
+
+    public static final String[] SMELLS = {"LongMethod", "LongParameterList", "SpaghettiCode"};
+
+    private static final String SMELLS_PREFIX = "smells-";
+    private static final String METRICS_SUFFIX = "-met-metr.csv";
+
+    // system -> file path -> smell strings of that file
+    private final Map<String, Map<String, List<String>>> index = new HashMap<>();
+
+    public static void main(String[] args) throws IOException {
+        Path ap = null;
+        Path metrics = null;
+        Path out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--ap": ap = Paths.get(args[i + 1]); break;
+                case "--metrics": metrics = Paths.get(args[i + 1]); break;
+                case "--out": out = Paths.get(args[i + 1]); break;
+                default: break;
+            }
+        }
+        if (ap == null || metrics == null || out == null) {
+            System.err.println("Usage: AntipatternLinker --ap antipattern-list.txt --metrics metrics-list.txt --out dir");
+            System.exit(1);
+        }
+
+        long t0 = System.nanoTime();
+        AntipatternLinker linker = new AntipatternLinker();
+        linker.addAntipatternList(ap);
+        Files.createDirectories(out);
+        long rows = 0;
+        for (String name : Files.readAllLines(metrics, StandardCharsets.ISO_8859_1)) {
+            if (!name.isBlank()) {
+                Path in = Paths.get(name.trim());
+                rows += linker.link(in, out.resolve(in.getFileName()));
+            }
+        }
+        System.err.printf("%d rows linked in %.1f ms%n", rows, (System.nanoTime() - t0) / 1e6);
+    }
+
+    /**
+     * Adds the lines of a grep over the smell files, as in antipattern-list.txt:
+     * {@code smells-<system>.txt:0:::./<path>:::<smells>}.
+     */
+    public void addAntipatternList(Path list) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(list, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (colon < 0 || !line.startsWith(SMELLS_PREFIX)) {
+                    continue;
+                }
+                addSmellLine(systemOf(line.substring(0, colon)), line.substring(colon + 1));
+            }
+        }
+    }
+
+    /** Adds every smell line of one {@code smells-<system>.txt} file. */
+    public void addSmellFile(Path smells) throws IOException {
+        String system = systemOf(smells.getFileName().toString());
+        try (BufferedReader in = Files.newBufferedReader(smells, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                addSmellLine(system, line);
+            }
+        }
+    }
+
+    /** Indexes {@code 0:::./<path>:::<smells>}; lines without smells are ignored. */
+    private void addSmellLine(String system, String line) {
+        int start = line.indexOf(":::");
+        if (start < 0) {
+            return;
+        }
+        start += 3;
+        if (line.startsWith("./", start)) {
+            start += 2;
+        }
+        int end = line.indexOf(":::", start);
+        if (end < 0 || end + 3 == line.length()) {
+            return;
+        }
+        index.computeIfAbsent(system, k -> new HashMap<>())
+                .computeIfAbsent(line.substring(start, end), k -> new ArrayList<>(1))
+                .add(line.substring(end + 3));
+    }
+
+    /** Writes {@code in} with the smell columns appended to {@code out}; returns the row count. */
+    public long link(Path in, Path out) throws IOException {
+        String name = in.getFileName().toString();
+        String system = name.endsWith(METRICS_SUFFIX) ? name.substring(0, name.length() - METRICS_SUFFIX.length()) : name;
+        try (BufferedReader r = Files.newBufferedReader(in, StandardCharsets.ISO_8859_1);
+             BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.ISO_8859_1)) {
+            return link(system, r, w);
+        }
+    }
+
+    public long link(String system, BufferedReader in, Writer out) throws IOException {
+        Map<String, List<String>> files = index.getOrDefault(system, Map.of());
+        long rows = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            int first = line.indexOf(';');
+            int second = first < 0 ? -1 : line.indexOf(';', first + 1);
+            int flags = second > 0 ? flags(files.get(line.substring(0, first)), line.substring(first + 1, second)) : 0;
+            out.write(line);
+            for (int k = 0; k < SMELLS.length; k++) {
+                out.write((flags & 1 << k) != 0 ? ";1" : ";0");
+            }
+            out.write('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * Smells of one method as a bit mask, bit k set for {@code SMELLS[k]}.
+     *
+     * @param file path as in the File column of the metrics
+     */
+    public int flags(String system, String file, String method) {
+        return flags(index.getOrDefault(system, Map.of()).get(file), method);
+    }
+
+    private static int flags(List<String> smells, String method) {
+        int flags = 0;
+        if (smells != null) {
+            for (String s : smells) {
+                if (s.contains(method)) {
+                    for (int k = 0; k < SMELLS.length; k++) {
+                        if (s.contains(SMELLS[k])) {
+                            flags |= 1 << k;
+                        }
+                    }
+                }
+            }
+        }
+        return flags;
+    }
+
+    private static String systemOf(String smellsFileName) {
+        String s = smellsFileName.startsWith(SMELLS_PREFIX) ? smellsFileName.substring(SMELLS_PREFIX.length()) : smellsFileName;
+        return s.endsWith(".txt") ? s.substring(0, s.length() - 4) : s;
+    }
+}
@@ -0,0 +1,439 @@
+package satd.link;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Dense int ids for the systems, files, classes and methods of the datasets,
+ * shared by all of them, so that joins and group-bys run on ints.
+ *
+ * The three spellings of a path map to the same id:
+ *
+ *   ToAnalyse.csv          Ant, src/main/org/apache/tools/ant/AntClassLoader.java_isParentFirst
+ *   *-met-metr.csv         apache-ant-1.7.0, src/main/org/apache/tools/ant/AntClassLoader.java;isParentFirst
+ *   smells-*.txt           apache-ant-1.7.0, ./src/main/org/apache/tools/ant/AntClassLoader.java
+ *
+ * System names are those of the met-metr files; a short name such as "Ant"
+ * or "ArgoUml" resolves to the one system with a matching '-'-separated
+ * part, ignoring case. Every file has its top-level class, the file name
+ * without ".java"; other classes (the Entities of the smell files) are added
+ * with {@link Builder#addClass}.
+ *
+ * Keys are kept sorted and front-coded (each key stores only what differs
+ * from the one before it, with a full key every {@value Strings#BLOCK}), so
+ * an id is its rank: the files of a system, and the methods of a file, have
+ * consecutive ids. Built dictionaries are immutable and safe to share
+ * between threads.
+ *
+ * EXAMPLE
+ *
+ *   PathDictionary.Builder b = new PathDictionary.Builder();
+ *   b.addMethod("apache-ant-1.7.0", "src/main/org/apache/tools/ant/AntClassLoader.java", "isParentFirst");
+ *   PathDictionary d = b.build();
+ *   int m = d.methodOfClassPath("Ant", "src/main/org/apache/tools/ant/AntClassLoader.java_isParentFirst");
+ *   int f = d.fileOfMethod(m);   // == d.file("apache-ant-1.7.0", "./src/main/org/apache/tools/ant/AntClassLoader.java")
+ */
+public final class PathDictionary {
+
+    private static final byte SEPARATOR = 0;
+    private static final String JAVA = ".java";
+
+    private final String[] systemNames;
+    private final Strings files;
+    private final Strings classes;
+    private final Strings methods;
+    private final int[] fileSystem;
+    private final int[] classFile;
+    private final int[] methodFile;
+
+    /** Collects the keys of a dictionary; any order, duplicates allowed. */
+    public static final class Builder {
+        private final Set<String> systems = new HashSet<>();
+        private final Set<String> files = new HashSet<>();
+        private final Set<String> classes = new HashSet<>();
+        private final Set<String> methods = new HashSet<>();
+
+        public Builder addSystem(String system) {
+            systems.add(system);
+            return this;
+        }
+
+        /** Adds {@code file} of {@code system}, and its top-level class; {@code file} may start with "./". */
+        public Builder addFile(String system, String file) {
+            fileKey(system, file);
+            return this;
+        }
+
+        public Builder addClass(String system, String file, String cls) {
+            classes.add(fileKey(system, file) + '\0' + cls);
+            return this;
+        }
+
+        public Builder addMethod(String system, String file, String method) {
+            methods.add(fileKey(system, file) + '\0' + method);
+            return this;
+        }
+
+        private String fileKey(String system, String file) {
+            addSystem(system);
+            String key = system + '\0' + normalize(file);
+            if (files.add(key)) {
+                classes.add(key + '\0' + topLevelClass(key));
+            }
+            return key;
+        }
+
+        public PathDictionary build() {
+            String[] systemNames = systems.toArray(new String[0]);
+            Arrays.sort(systemNames);
+            return new PathDictionary(systemNames, sorted(files), sorted(classes), sorted(methods));
+        }
+
+        private static String[] sorted(Set<String> keys) {
+            String[] a = keys.toArray(new String[0]);
+            Arrays.sort(a);
+            return a;
+        }
+    }
+
+    private PathDictionary(String[] systemNames, String[] fileKeys, String[] classKeys, String[] methodKeys) {
+        this.systemNames = systemNames;
+        this.files = Strings.of(fileKeys);
+        this.classes = Strings.of(classKeys);
+        this.methods = Strings.of(methodKeys);
+        this.fileSystem = new int[fileKeys.length];
+        for (int f = 0; f < fileKeys.length; f++) {
+            fileSystem[f] = Arrays.binarySearch(systemNames, fileKeys[f].substring(0, fileKeys[f].indexOf('\0')));
+        }
+        this.classFile = parents(classKeys, fileKeys);
+        this.methodFile = parents(methodKeys, fileKeys);
+    }
+
+    /** File of each {@code file\0name} key; both arrays are sorted, so one merge pass. */
+    private static int[] parents(String[] keys, String[] fileKeys) {
+        int[] parent = new int[keys.length];
+        int f = 0;
+        for (int k = 0; k < keys.length; k++) {
+            String file = keys[k].substring(0, keys[k].lastIndexOf('\0'));
+            while (!fileKeys[f].equals(file)) {
+                f++;
+            }
+            parent[k] = f;
+        }
+        return parent;
+    }
+
+    /** Strips a leading "./" and turns '\' into '/'. */
+    public static String normalize(String path) {
+        String p = path.indexOf('\\') >= 0 ? path.replace('\\', '/') : path;
+        return p.startsWith("./") ? p.substring(2) : p;
+    }
+
+    private static String topLevelClass(String fileKey) {
+        int slash = Math.max(fileKey.lastIndexOf('/'), fileKey.indexOf('\0'));
+        String name = fileKey.substring(slash + 1);
+        return name.endsWith(JAVA) ? name.substring(0, name.length() - JAVA.length()) : name;
+    }
+
+    public int systems() {
+        return systemNames.length;
+    }
+
+    public int files() {
+        return files.size();
+    }
+
+    public int classes() {
+        return classes.size();
+    }
+
+    public int methods() {
+        return methods.size();
+    }
+
+    /** Bytes of the front-coded keys and their block offsets. */
+    public long encodedBytes() {
+        return files.bytes() + classes.bytes() + methods.bytes();
+    }
+
+    /** Id of system {@code name} or of the one system it is a short name of; -1 if none or several. */
+    public int system(String name) {
+        int s = Arrays.binarySearch(systemNames, name);
+        if (s >= 0) {
+            return s;
+        }
+        String alias = name.toLowerCase(Locale.ROOT);
+        int found = -1;
+        for (int i = 0; i < systemNames.length; i++) {
+            for (String part : systemNames[i].toLowerCase(Locale.ROOT).split("-")) {
+                if (part.equals(alias)) {
+                    if (found >= 0 && found != i) {
+                        return -1;
+                    }
+                    found = i;
+                }
+            }
+        }
+        return found;
+    }
+
+    public String systemName(int system) {
+        return systemNames[system];
+    }
+
+    /** Id of {@code path} in {@code system} (either spelling), or -1. */
+    public int file(String system, String path) {
+        int s = system(system);
+        return s < 0 ? -1 : files.find(key(systemNames[s], normalize(path), null));
+    }
+
+    /** Id of class {@code cls} of {@code path} in {@code system}, or -1. */
+    public int cls(String system, String path, String cls) {
+        int s = system(system);
+        return s < 0 ? -1 : classes.find(key(systemNames[s], normalize(path), cls));
+    }
+
+    /** Id of method {@code method} of {@code path} in {@code system}, or -1. */
+    public int method(String system, String path, String method) {
+        int s = system(system);
+        return s < 0 ? -1 : methods.find(key(systemNames[s], normalize(path), method));
+    }
+
+    /** Id of a method spelled as in ToAnalyse.csv, {@code <path>.java_<method>}, or -1. */
+    public int methodOfClassPath(String system, String classPathMethod) {
+        int at = classPathMethod.lastIndexOf(JAVA + "_");
+        if (at < 0) {
+            return -1;
+        }
+        int cut = at + JAVA.length();
+        return method(system, classPathMethod.substring(0, cut), classPathMethod.substring(cut + 1));
+    }
+
+    public int systemOfFile(int file) {
+        return fileSystem[file];
+    }
+
+    public int fileOfClass(int cls) {
+        return classFile[cls];
+    }
+
+    public int fileOfMethod(int method) {
+        return methodFile[method];
+    }
+
+    public String path(int file) {
+        return part(files.get(file), 1);
+    }
+
+    public String className(int cls) {
+        return part(classes.get(cls), 2);
+    }
+
+    public String methodName(int method) {
+        return part(methods.get(method), 2);
+    }
+
+    private static String part(String key, int k) {
+        int from = 0;
+        for (int i = 0; i < k; i++) {
+            from = key.indexOf('\0', from) + 1;
+        }
+        int to = key.indexOf('\0', from);
+        return key.substring(from, to < 0 ? key.length() : to);
+    }
+
+    private static byte[] key(String system, String path, String method) {
+        int n = system.length() + 1 + path.length() + (method == null ? 0 : 1 + method.length());
+        byte[] k = new byte[n];
+        int at = put(system, k, 0);
+        k[at++] = SEPARATOR;
+        at = put(path, k, at);
+        if (method != null) {
+            k[at++] = SEPARATOR;
+            put(method, k, at);
+        }
+        return k;
+    }
+
+    private static int put(String s, byte[] out, int at) {
+        for (int i = 0; i < s.length(); i++) {
+            out[at++] = (byte) s.charAt(i);
+        }
+        return at;
+    }
+
+    /**
+     * Sorted Latin-1 strings, front-coded in blocks of {@link #BLOCK}: the
+     * first string of a block is stored whole as (varint length, bytes), the
+     * others as (varint shared prefix, varint suffix length, suffix bytes).
+     * Lookups binary-search the block heads, then decode one block.
+     */
+    static final class Strings {
+        static final int BLOCK = 16;
+
+        private final byte[] data;
+        private final int[] blockAt;
+        private final int size;
+
+        private Strings(byte[] data, int[] blockAt, int size) {
+            this.data = data;
+            this.blockAt = blockAt;
+            this.size = size;
+        }
+
+        static Strings of(String[] sorted) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int[] blockAt = new int[(sorted.length + BLOCK - 1) / BLOCK];
+            byte[] previous = new byte[0];
+            for (int i = 0; i < sorted.length; i++) {
+                byte[] b = sorted[i].getBytes(StandardCharsets.ISO_8859_1);
+                if (i % BLOCK == 0) {
+                    blockAt[i / BLOCK] = out.size();
+                    varint(out, b.length);
+                    out.write(b, 0, b.length);
+                } else {
+                    int shared = Arrays.mismatch(previous, b);
+                    shared = shared < 0 ? b.length : Math.min(shared, Math.min(previous.length, b.length));
+                    varint(out, shared);
+                    varint(out, b.length - shared);
+                    out.write(b, shared, b.length - shared);
+                }
+                previous = b;
+            }
+            return new Strings(out.toByteArray(), blockAt, sorted.length);
+        }
+
+        int size() {
+            return size;
+        }
+
+        long bytes() {
+            return data.length + 4L * blockAt.length;
+        }
+
+        /** Rank of {@code key}, or -1. */
+        int find(byte[] key) {
+            int lo = 0;
+            int hi = blockAt.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int at = blockAt[mid];
+                int len = varint(at);
+                at += varintSize(len);
+                int c = Arrays.compareUnsigned(data, at, at + len, key, 0, key.length);
+                if (c == 0) {
+                    return mid * BLOCK;
+                } else if (c < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            if (hi < 0) {
+                return -1;
+            }
+            // walk the block without decoding it: matched is how much of key
+            // the previous string (smaller than key) has in common with it
+            int at = blockAt[hi];
+            int len = varint(at);
+            at += varintSize(len);
+            int matched = common(at, len, key, 0);
+            at += len;
+            int n = Math.min(BLOCK, size - hi * BLOCK);
+            for (int i = 1; i < n; i++) {
+                int shared = varint(at);
+                at += varintSize(shared);
+                int suffix = varint(at);
+                at += varintSize(suffix);
+                if (shared < matched) {
+                    // differs from the previous string where that one still matched key: larger than key
+                    return -1;
+                }
+                if (shared == matched) {
+                    int more = common(at, suffix, key, matched);
+                    if (more == suffix && matched + more == key.length) {
+                        return hi * BLOCK + i;
+                    }
+                    if (more < suffix && (matched + more == key.length
+                            || (data[at + more] & 0xFF) > (key[matched + more] & 0xFF))) {
+                        return -1;
+                    }
+                    matched += more;
+                }
+                at += suffix;
+            }
+            return -1;
+        }
+
+        /** Length of the common prefix of data[at, at + len) and key[from, ...). */
+        private int common(int at, int len, byte[] key, int from) {
+            int m = Arrays.mismatch(data, at, at + len, key, from, Math.min(key.length, from + len));
+            return m < 0 ? Math.min(len, key.length - from) : m;
+        }
+
+        String get(int id) {
+            if (id < 0 || id >= size) {
+                throw new IndexOutOfBoundsException("id " + id + " of " + size);
+            }
+            byte[] current = new byte[256];
+            int[] pos = {blockAt[id / BLOCK]};
+            int len = 0;
+            for (int i = 0; i <= id % BLOCK; i++) {
+                int shared = i == 0 ? 0 : varint(pos);
+                int suffix = varint(pos);
+                len = shared + suffix;
+                if (len > current.length) {
+                    current = Arrays.copyOf(current, Math.max(len, current.length * 2));
+                }
+                System.arraycopy(data, pos[0], current, shared, suffix);
+                pos[0] += suffix;
+            }
+            return new String(current, 0, len, StandardCharsets.ISO_8859_1);
+        }
+
+        private int varint(int at) {
+            int v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[at++];
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return v;
+        }
+
+        private static int varintSize(int v) {
+            int n = 1;
+            while ((v & ~0x7F) != 0) {
+                v >>>= 7;
+                n++;
+            }
+            return n;
+        }
+
+        private int varint(int[] pos) {
+            int v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos[0]++];
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return v;
+        }
+
+        private static void varint(ByteArrayOutputStream out, int v) {
+            while ((v & ~0x7F) != 0) {
+                out.write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.write(v);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package satd.link;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memory-mapped index of the {@code smells-<system>.txt} files, as written
+ * by {@link SmellIndexWriter}: for every file path of every system, the
+ * class-metric rows (one per class of the file, ACAIC ... connectivity) with
+ * their Entities name, and the smell list of its {@code 0:::} line.
+ *
+ * Keys are (system, path) with the path normalized: no leading "./" and
+ * '/' separators, as in the File column of the met-metr files. Lookups go
+ * through a precomputed open-addressing table and compare the query in
+ * place, so {@link #find} allocates nothing and nothing is re-parsed when
+ * the index is opened; opening only checks the header, that every section
+ * lies within the file, and the metadata, so a truncated index or one with
+ * bad offsets is reported as an IOException.
+ *
+ * File layout (little-endian):
+ *
+ *   "SATDSML1"  int records  int classes  int slots  int columns
+ *   long matrixOffset  long recordsOffset  long entitiesOffset
+ *   long blobOffset  long slotsOffset  long metaOffset
+ *   matrix    classes x columns double, 64-byte aligned
+ *   records   records x (int system, int pathAt, int pathLen, int firstClass,
+ *             int classCount, int smellsAt, int smellsLen, int 0)
+ *   entities  classes x (int at, int len)
+ *   blob      Latin-1 paths, smell lists and Entities names
+ *   slots     slots x int, record + 1 or 0 when empty; slots is a power of two
+ *   meta      column names, system names, then (name, long size, long mtime)
+ *             of every source file; strings are int length + UTF-8
+ */
+public final class SmellIndex implements Closeable {
+
+    static final byte[] MAGIC = "SATDSML1".getBytes(StandardCharsets.US_ASCII);
+    static final int HEADER = 72;
+    static final int RECORD_INTS = 8;
+
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final FileChannel channel;
+    private final int records;
+    private final int columns;
+    private final int mask;
+    private final DoubleBuffer matrix;
+    private final ByteBuffer table;
+    private final ByteBuffer entities;
+    private final ByteBuffer blob;
+    private final ByteBuffer slots;
+    private final List<String> columnNames;
+    private final List<String> systems;
+    private final List<SmellIndexWriter.Source> sources;
+
+    private SmellIndex(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() < HEADER) {
+            throw new IOException("not a smell index");
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not a smell index");
+        }
+        records = header.getInt();
+        int classes = header.getInt();
+        int slotCount = header.getInt();
+        columns = header.getInt();
+        long matrixAt = header.getLong();
+        long recordsAt = header.getLong();
+        long entitiesAt = header.getLong();
+        long blobAt = header.getLong();
+        long slotsAt = header.getLong();
+        long metaAt = header.getLong();
+        if (records < 0 || classes < 0 || columns < 0 || slotCount <= records || Integer.bitCount(slotCount) != 1) {
+            throw new IOException("bad smell index header");
+        }
+        mask = slotCount - 1;
+        // sections in layout order, each ending where the next starts at the latest
+        long size = channel.size();
+        section(HEADER, matrixAt, (long) classes * columns * Double.BYTES, recordsAt);
+        section(matrixAt, recordsAt, (long) records * RECORD_INTS * Integer.BYTES, entitiesAt);
+        section(recordsAt, entitiesAt, (long) classes * 2 * Integer.BYTES, blobAt);
+        section(entitiesAt, blobAt, 0, slotsAt);
+        section(blobAt, slotsAt, (long) slotCount * Integer.BYTES, metaAt);
+        section(slotsAt, metaAt, 0, size);
+        matrix = map(matrixAt, (long) classes * columns * Double.BYTES).asDoubleBuffer();
+        table = map(recordsAt, (long) records * RECORD_INTS * Integer.BYTES);
+        entities = map(entitiesAt, (long) classes * 2 * Integer.BYTES);
+        blob = map(blobAt, slotsAt - blobAt);
+        slots = map(slotsAt, (long) slotCount * Integer.BYTES);
+        ByteBuffer meta = map(metaAt, size - metaAt);
+        try {
+            columnNames = readStrings(meta);
+            systems = readStrings(meta);
+            int n = meta.getInt();
+            List<SmellIndexWriter.Source> s = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                s.add(new SmellIndexWriter.Source(readString(meta), meta.getLong(), meta.getLong()));
+            }
+            sources = Collections.unmodifiableList(s);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("truncated smell index", e);
+        }
+        if (columnNames.size() != columns || meta.hasRemaining()) {
+            throw new IOException("bad smell index metadata");
+        }
+    }
+
+    /** Fails unless a section of {@code length} bytes at {@code at} lies after {@code previous} and ends by {@code next}. */
+    private static void section(long previous, long at, long length, long next) throws IOException {
+        if (at < previous || length < 0 || at + length > next) {
+            throw new IOException("bad smell index section at " + at);
+        }
+    }
+
+    public static SmellIndex open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new SmellIndex(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens {@code index}, first (re)building it from {@code smellFiles} when
+     * it is missing, not an index, or was built from other files or other
+     * versions of them.
+     */
+    public static SmellIndex openOrBuild(Path index, List<Path> smellFiles) throws IOException {
+        SmellIndex s = null;
+        try {
+            s = Files.exists(index) ? open(index) : null;
+        } catch (IOException | RuntimeException e) {
+            // not an index, or a damaged one: rebuilt below
+        }
+        if (s != null) {
+            if (s.sources.equals(SmellIndexWriter.sources(smellFiles))) {
+                return s;
+            }
+            s.close();
+        }
+        SmellIndexWriter.build(smellFiles, index);
+        return open(index);
+    }
+
+    private ByteBuffer map(long at, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("section larger than 2 GB at " + at);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, at, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int records() {
+        return records;
+    }
+
+    /** Names of the class-metric columns, ACAIC ... connectivity. */
+    public List<String> columns() {
+        return columnNames;
+    }
+
+    public List<String> systems() {
+        return systems;
+    }
+
+    /**
+     * Record of {@code path} in {@code system}, or -1 when the smell files do
+     * not mention it. A leading "./" and '\' separators in {@code path} are
+     * accepted.
+     */
+    public int find(String system, CharSequence path) {
+        int sys = systems.indexOf(system);
+        if (sys < 0) {
+            return -1;
+        }
+        int from = skipDot(path);
+        int slot = hash(sys, path, from) & mask;
+        while (true) {
+            int r = slots.getInt(slot * Integer.BYTES) - 1;
+            if (r < 0) {
+                return -1;
+            }
+            if (field(r, 0) == sys && pathEquals(r, path, from)) {
+                return r;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public String system(int record) {
+        return systems.get(field(record, 0));
+    }
+
+    public String path(int record) {
+        return string(field(record, 1), field(record, 2));
+    }
+
+    /** Number of class-metric rows of the file, one per class the metrics tool saw. */
+    public int classes(int record) {
+        return field(record, 4);
+    }
+
+    public double metric(int record, int cls, int column) {
+        return matrix.get(row(record, cls) * columns + column);
+    }
+
+    /** Copies the metrics of class {@code cls} of {@code record} into {@code dst} at {@code off}. */
+    public void copy(int record, int cls, double[] dst, int off) {
+        matrix.get(row(record, cls) * columns, dst, off, columns);
+    }
+
+    /** Entities column of class {@code cls}, the qualified class name; may be empty. */
+    public String entity(int record, int cls) {
+        int row = row(record, cls);
+        return string(entities.getInt(row * 8), entities.getInt(row * 8 + 4));
+    }
+
+    /** The smell list as written after the path, e.g. {@code 1 LongMethod(...);2 LazyClass(...)}. */
+    public String smellText(int record) {
+        return string(field(record, 5), field(record, 6));
+    }
+
+    /** Names of the smells of {@code record}, in file order, e.g. [LongMethod, LazyClass]. */
+    public List<String> smells(int record) {
+        int at = field(record, 5);
+        int end = at + field(record, 6);
+        List<String> names = new ArrayList<>(2);
+        int depth = 0;
+        int start = at;
+        for (int p = at; p <= end; p++) {
+            byte b = p < end ? blob.get(p) : (byte) ';';
+            if (b == '(' || b == '{') {
+                depth++;
+            } else if (b == ')' || b == '}') {
+                depth--;
+            } else if (b == ';' && depth <= 0) {
+                int s = start;
+                while (s < p && (blob.get(s) == ' ' || Character.isDigit(blob.get(s)))) {
+                    s++;
+                }
+                int e = s;
+                while (e < p && blob.get(e) != '(') {
+                    e++;
+                }
+                if (e > s) {
+                    names.add(string(s, e - s));
+                }
+                start = p + 1;
+                depth = 0;
+            }
+        }
+        return names;
+    }
+
+    private int field(int record, int k) {
+        return table.getInt((record * RECORD_INTS + k) * Integer.BYTES);
+    }
+
+    private int row(int record, int cls) {
+        if (cls < 0 || cls >= field(record, 4)) {
+            throw new IndexOutOfBoundsException("class " + cls + " of " + field(record, 4));
+        }
+        return field(record, 3) + cls;
+    }
+
+    private String string(int at, int len) {
+        byte[] b = new byte[len];
+        blob.get(at, b);
+        return new String(b, StandardCharsets.ISO_8859_1);
+    }
+
+    private boolean pathEquals(int record, CharSequence path, int from) {
+        int at = field(record, 1);
+        int len = field(record, 2);
+        if (path.length() - from != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (blob.get(at + i) != (byte) normal(path.charAt(from + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** FNV-1a over the system number and the normalized path. */
+    static int hash(int system, CharSequence path, int from) {
+        int h = FNV_OFFSET;
+        h = (h ^ (system & 0xFF)) * FNV_PRIME;
+        h = (h ^ (system >>> 8 & 0xFF)) * FNV_PRIME;
+        for (int i = from; i < path.length(); i++) {
+            h = (h ^ (normal(path.charAt(i)) & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    static int skipDot(CharSequence path) {
+        return path.length() >= 2 && path.charAt(0) == '.' && (path.charAt(1) == '/' || path.charAt(1) == '\\') ? 2 : 0;
+    }
+
+    private static char normal(char c) {
+        return c == '\\' ? '/' : c;
+    }
+
+    private static List<String> readStrings(ByteBuffer b) {
+        int n = b.getInt();
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            out.add(readString(b));
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    private static String readString(ByteBuffer b) {
+        int n = b.getInt();
+        if (n < 0 || n > b.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[n];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,358 @@
+package satd.link;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Builds a {@link SmellIndex} from {@code smells-<system>.txt} files, reading
+ * each of them once, line by line.
+ *
+ * A file is a sequence of records: a {@code 0:::./<path>:::<smells>} line,
+ * then, when the metrics tool saw a class in the file, the
+ * {@code ACAIC;ACMIC;...;Entities} header and one value line per class.
+ * The header must be the same in every file. A path seen twice in a system
+ * gets the classes and smells of both records.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.link.SmellIndexWriter --out smells.idx ../Antipatterns-Data/smells-*.txt
+ */
+public final class SmellIndexWriter {
+
+    private static final int ALIGN = 64;
+    private static final String PREFIX = "smells-";
+    private static final String SUFFIX = ".txt";
+    private static final String ENTITIES = "Entities";
+
+    private final List<String> systems = new ArrayList<>();
+    private final List<Record> records = new ArrayList<>();
+    private final ByteArrayOutputStream blob = new ByteArrayOutputStream();
+    private String[] header;
+    private int columns;
+    private double[] matrix = new double[1 << 16];
+    private int[] entities = new int[1 << 12];
+    private int classes;
+
+    /** The (name, size, mtime) of a source file, to tell when an index is stale. */
+    static final class Source {
+        final String name;
+        final long size;
+        final long modified;
+
+        Source(String name, long size, long modified) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Source)) {
+                return false;
+            }
+            Source s = (Source) o;
+            return name.equals(s.name) && size == s.size && modified == s.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, size, modified);
+        }
+    }
+
+    private static final class Record {
+        final int system;
+        final String path;
+        final List<Integer> classes = new ArrayList<>(1);
+        String smells;
+
+        Record(int system, String path, String smells) {
+            this.system = system;
+            this.path = path;
+            this.smells = smells;
+        }
+    }
+
+    private SmellIndexWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path out = null;
+        List<Path> in = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+            } else {
+                in.add(Paths.get(args[i]));
+            }
+        }
+        if (out == null || in.isEmpty()) {
+            System.err.println("Usage: SmellIndexWriter --out smells.idx smells-*.txt");
+            System.exit(1);
+        }
+        long t0 = System.nanoTime();
+        int n = build(in, out);
+        System.out.printf("%d files -> %s in %.1f ms%n", n, out, (System.nanoTime() - t0) / 1e6);
+    }
+
+    /** Indexes {@code smellFiles} into {@code out}; returns the number of records. */
+    public static int build(List<Path> smellFiles, Path out) throws IOException {
+        SmellIndexWriter w = new SmellIndexWriter();
+        for (Path f : smellFiles) {
+            w.read(f);
+        }
+        w.write(out, sources(smellFiles));
+        return w.records.size();
+    }
+
+    static List<Source> sources(List<Path> smellFiles) throws IOException {
+        List<Source> out = new ArrayList<>(smellFiles.size());
+        for (Path f : smellFiles) {
+            out.add(new Source(f.toAbsolutePath().normalize().toString(), Files.size(f), Files.getLastModifiedTime(f).toMillis()));
+        }
+        return out;
+    }
+
+    /** {@code smells-<system>.txt} -> {@code <system>}. */
+    public static String systemOf(Path smells) {
+        String name = smells.getFileName().toString();
+        if (name.startsWith(PREFIX)) {
+            name = name.substring(PREFIX.length());
+        }
+        return name.endsWith(SUFFIX) ? name.substring(0, name.length() - SUFFIX.length()) : name;
+    }
+
+    private void read(Path file) throws IOException {
+        String system = systemOf(file);
+        int sys = systems.indexOf(system);
+        if (sys < 0) {
+            sys = systems.size();
+            systems.add(system);
+        }
+        Record current = null;
+        int lineNo = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                int sep = line.indexOf(":::");
+                if (sep > 0 && isDigits(line, 0, sep)) {
+                    int start = sep + 3;
+                    int end = line.indexOf(":::", start);
+                    if (end < 0) {
+                        throw new IOException(file + ":" + lineNo + ": no ':::' after the path");
+                    }
+                    String path = line.substring(start + SmellIndex.skipDot(line.substring(start, end)), end).replace('\\', '/');
+                    current = new Record(sys, path, line.substring(end + 3));
+                    records.add(current);
+                } else if (line.isEmpty()) {
+                    continue;
+                } else if (line.startsWith(firstColumn())) {
+                    header(line, file, lineNo);
+                } else if (current == null || header == null) {
+                    throw new IOException(file + ":" + lineNo + ": metrics before any path or header");
+                } else {
+                    current.classes.add(values(line, file, lineNo));
+                }
+            }
+        }
+    }
+
+    private String firstColumn() {
+        return header == null ? "ACAIC;" : header[0] + ";";
+    }
+
+    private void header(String line, Path file, int lineNo) throws IOException {
+        String[] h = line.split(";", -1);
+        if (header == null) {
+            header = h;
+            columns = h[h.length - 1].equals(ENTITIES) ? h.length - 1 : h.length;
+        } else if (!Arrays.equals(header, h)) {
+            throw new IOException(file + ":" + lineNo + ": class-metric header differs from the first file's");
+        }
+    }
+
+    /** Parses one value line into the next matrix row; returns the row. */
+    private int values(String line, Path file, int lineNo) throws IOException {
+        if ((classes + 1) * columns > matrix.length) {
+            matrix = Arrays.copyOf(matrix, Math.max(matrix.length * 2, (classes + 1) * columns));
+        }
+        if (2 * classes + 2 > entities.length) {
+            entities = Arrays.copyOf(entities, entities.length * 2);
+        }
+        int at = 0;
+        int base = classes * columns;
+        for (int k = 0; k < columns; k++) {
+            int end = line.indexOf(';', at);
+            if (end < 0) {
+                end = line.length();
+                if (k < columns - 1) {
+                    throw new IOException(file + ":" + lineNo + ": " + (k + 1) + " values, expected " + columns);
+                }
+            }
+            try {
+                matrix[base + k] = Double.parseDouble(line.substring(at, end));
+            } catch (NumberFormatException e) {
+                throw new IOException(file + ":" + lineNo + ": bad value for " + header[k] + ": " + line.substring(at, end));
+            }
+            at = end + 1;
+        }
+        String entity = at < line.length() ? line.substring(at) : "";
+        entities[2 * classes] = blob.size();
+        entities[2 * classes + 1] = entity.length();
+        blob.writeBytes(entity.getBytes(StandardCharsets.ISO_8859_1));
+        return classes++;
+    }
+
+    private static boolean isDigits(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(Path out, List<Source> sources) throws IOException {
+        if (header == null) {
+            header = new String[0];
+        }
+        // merge records of a path seen twice in one system into the first
+        int slotCount = Integer.highestOneBit(Math.max(1, records.size()) * 2 - 1) << 1;
+        int[] slots = new int[slotCount];
+        List<Record> kept = new ArrayList<>(records.size());
+        for (Record r : records) {
+            int slot = SmellIndex.hash(r.system, r.path, 0) & (slotCount - 1);
+            Record same = null;
+            while (slots[slot] != 0) {
+                Record o = kept.get(slots[slot] - 1);
+                if (o.system == r.system && o.path.equals(r.path)) {
+                    same = o;
+                    break;
+                }
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            if (same != null) {
+                same.classes.addAll(r.classes);
+                if (!r.smells.isEmpty()) {
+                    same.smells = same.smells.isEmpty() ? r.smells : same.smells + ";" + r.smells;
+                }
+            } else {
+                kept.add(r);
+                slots[slot] = kept.size();
+            }
+        }
+
+        // classes in record order, so each record's rows are contiguous
+        ByteBuffer table = le(kept.size() * SmellIndex.RECORD_INTS * Integer.BYTES);
+        double[] ordered = new double[classes * columns];
+        ByteBuffer entityTable = le(classes * 2 * Integer.BYTES);
+        int row = 0;
+        for (Record r : kept) {
+            byte[] path = r.path.getBytes(StandardCharsets.ISO_8859_1);
+            byte[] smells = r.smells.getBytes(StandardCharsets.ISO_8859_1);
+            table.putInt(r.system).putInt(blob.size()).putInt(path.length);
+            blob.writeBytes(path);
+            table.putInt(row).putInt(r.classes.size()).putInt(blob.size()).putInt(smells.length).putInt(0);
+            blob.writeBytes(smells);
+            for (int c : r.classes) {
+                System.arraycopy(matrix, c * columns, ordered, row * columns, columns);
+                entityTable.putInt(entities[2 * c]).putInt(entities[2 * c + 1]);
+                row++;
+            }
+        }
+
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        writeStrings(meta, Arrays.asList(header).subList(0, columns));
+        writeStrings(meta, systems);
+        writeInt(meta, sources.size());
+        for (Source s : sources) {
+            writeString(meta, s.name);
+            writeLong(meta, s.size);
+            writeLong(meta, s.modified);
+        }
+
+        long matrixAt = align(SmellIndex.HEADER);
+        long recordsAt = matrixAt + (long) ordered.length * Double.BYTES;
+        long entitiesAt = recordsAt + table.capacity();
+        long blobAt = entitiesAt + entityTable.capacity();
+        long slotsAt = blobAt + blob.size();
+        long metaAt = slotsAt + (long) slotCount * Integer.BYTES;
+
+        ByteBuffer head = le(SmellIndex.HEADER);
+        head.put(SmellIndex.MAGIC).putInt(kept.size()).putInt(classes).putInt(slotCount).putInt(columns);
+        head.putLong(matrixAt).putLong(recordsAt).putLong(entitiesAt).putLong(blobAt).putLong(slotsAt).putLong(metaAt);
+        ByteBuffer m = le(ordered.length * Double.BYTES);
+        m.asDoubleBuffer().put(ordered);
+        ByteBuffer s = le(slotCount * Integer.BYTES);
+        s.asIntBuffer().put(slots);
+
+        // written next to out and moved over it, so a crash never leaves a partial index
+        Path dir = out.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, out.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                writeFully(ch, head.flip(), 0);
+                writeFully(ch, m, matrixAt);
+                writeFully(ch, table.flip(), recordsAt);
+                writeFully(ch, entityTable.flip(), entitiesAt);
+                writeFully(ch, ByteBuffer.wrap(blob.toByteArray()), blobAt);
+                writeFully(ch, s, slotsAt);
+                writeFully(ch, ByteBuffer.wrap(meta.toByteArray()), metaAt);
+                ch.force(true);
+            }
+            Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static ByteBuffer le(int bytes) {
+        return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(long at) {
+        return (at + ALIGN - 1) / ALIGN * ALIGN;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b, long at) throws IOException {
+        while (b.hasRemaining()) {
+            at += ch.write(b, at);
+        }
+    }
+
+    private static void writeStrings(ByteArrayOutputStream out, List<String> strings) {
+        writeInt(out, strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeInt(out, b.length);
+        out.writeBytes(b);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int v) {
+        out.writeBytes(le(Integer.BYTES).putInt(v).array());
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long v) {
+        out.writeBytes(le(Long.BYTES).putLong(v).array());
+    }
+}
@@ -0,0 +1,316 @@
+package satd.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The column codecs of {@link MetricsArchive}. Each encodes one column of
+ * one chunk into a byte array and decodes it from a little-endian buffer
+ * positioned at its first byte.
+ *
+ * Integers (metrics, and dictionary codes of text columns) use whichever of
+ * DELTA, FOR and RLE is smallest for the chunk: DELTA suits ascending
+ * columns like StartLine, FOR small counts like ParNbr, RLE the long runs of
+ * File and SATDTag codes. Varints are LEB128, signed ones zigzag encoded.
+ */
+final class Codecs {
+
+    /** zigzag varint first value, then zigzag varint deltas */
+    static final byte DELTA = 0;
+    /** zigzag varint minimum, byte bit width, values - minimum bit-packed LSB first */
+    static final byte FOR = 1;
+    /** (varint run length, zigzag varint value) pairs */
+    static final byte RLE = 2;
+    /** Gorilla XOR bit stream of the IEEE bits, see {@link #xor} */
+    static final byte XOR = 3;
+    /** one bit per row, LSB first */
+    static final byte BITMAP = 4;
+
+    private Codecs() {
+    }
+
+    /** Encodes {@code values[0..n)} with the smallest integer codec; the codec is the first byte. */
+    static byte[] ints(int[] values, int n) {
+        byte[] best = delta(values, n);
+        for (byte[] other : new byte[][] {frameOfReference(values, n), rle(values, n)}) {
+            if (other.length < best.length) {
+                best = other;
+            }
+        }
+        return best;
+    }
+
+    static byte[] delta(int[] values, int n) {
+        Out out = new Out(DELTA);
+        int previous = 0;
+        for (int i = 0; i < n; i++) {
+            out.zigzag(values[i] - previous);
+            previous = values[i];
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] frameOfReference(int[] values, int n) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        if (n == 0) {
+            min = max = 0;
+        }
+        int width = 64 - Long.numberOfLeadingZeros((long) max - min);
+        Out out = new Out(FOR);
+        out.zigzag(min);
+        out.write(width);
+        Bits bits = new Bits(out);
+        for (int i = 0; i < n; i++) {
+            bits.write((long) values[i] - min, width);
+        }
+        bits.flush();
+        return out.toByteArray();
+    }
+
+    static byte[] rle(int[] values, int n) {
+        Out out = new Out(RLE);
+        for (int i = 0; i < n; ) {
+            int end = i + 1;
+            while (end < n && values[end] == values[i]) {
+                end++;
+            }
+            out.varint(end - i);
+            out.zigzag(values[i]);
+            i = end;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Gorilla encoding: the first value's 64 bits, then per value the XOR
+     * with the previous one: '0' when equal; '10' and the meaningful bits
+     * when they fit the previous leading/trailing-zero window; otherwise
+     * '11', 5 bits of leading zeros, 6 bits of (length - 1) and the bits.
+     */
+    static byte[] xor(double[] values, int n) {
+        Out out = new Out(XOR);
+        Bits bits = new Bits(out);
+        long previous = 0;
+        int leading = -1;
+        int trailing = 0;
+        for (int i = 0; i < n; i++) {
+            long v = Double.doubleToRawLongBits(values[i]);
+            if (i == 0) {
+                bits.write(v, 64);
+            } else {
+                long x = v ^ previous;
+                if (x == 0) {
+                    bits.write(0, 1);
+                } else {
+                    int lz = Math.min(Long.numberOfLeadingZeros(x), 31);
+                    int tz = Long.numberOfTrailingZeros(x);
+                    if (leading >= 0 && lz >= leading && tz >= trailing) {
+                        bits.write(0b01, 2);
+                        bits.write(x >>> trailing, 64 - leading - trailing);
+                    } else {
+                        int length = 64 - lz - tz;
+                        bits.write(0b11, 2);
+                        bits.write(lz, 5);
+                        bits.write(length - 1, 6);
+                        bits.write(x >>> tz, length);
+                        leading = lz;
+                        trailing = tz;
+                    }
+                }
+            }
+            previous = v;
+        }
+        bits.flush();
+        return out.toByteArray();
+    }
+
+    static byte[] bitmap(boolean[] values, int n) {
+        Out out = new Out(BITMAP);
+        Bits bits = new Bits(out);
+        for (int i = 0; i < n; i++) {
+            bits.write(values[i] ? 1 : 0, 1);
+        }
+        bits.flush();
+        return out.toByteArray();
+    }
+
+    /** Decodes {@code n} integers written by {@link #ints}. */
+    static void ints(ByteBuffer b, int[] into, int n) {
+        byte codec = b.get();
+        switch (codec) {
+            case DELTA: {
+                int previous = 0;
+                for (int i = 0; i < n; i++) {
+                    previous += unzigzag(varint(b));
+                    into[i] = previous;
+                }
+                break;
+            }
+            case FOR: {
+                int min = unzigzag(varint(b));
+                int width = b.get();
+                BitsIn bits = new BitsIn(b);
+                for (int i = 0; i < n; i++) {
+                    into[i] = (int) (min + bits.read(width));
+                }
+                break;
+            }
+            case RLE:
+                for (int i = 0; i < n; ) {
+                    int length = varint(b);
+                    int value = unzigzag(varint(b));
+                    for (int end = i + length; i < end; i++) {
+                        into[i] = value;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("not an integer codec: " + codec);
+        }
+    }
+
+    static void xor(ByteBuffer b, double[] into, int n) {
+        expect(b, XOR);
+        BitsIn bits = new BitsIn(b);
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                previous = bits.read(64);
+            } else if (bits.read(1) != 0) {
+                if (bits.read(1) != 0) {
+                    leading = (int) bits.read(5);
+                    int length = (int) bits.read(6) + 1;
+                    trailing = 64 - leading - length;
+                }
+                previous ^= bits.read(64 - leading - trailing) << trailing;
+            }
+            into[i] = Double.longBitsToDouble(previous);
+        }
+    }
+
+    static void bitmap(ByteBuffer b, boolean[] into, int n) {
+        expect(b, BITMAP);
+        for (int i = 0; i < n; i++) {
+            into[i] = (b.get(b.position() + (i >>> 3)) & (1 << (i & 7))) != 0;
+        }
+    }
+
+    static String name(byte codec) {
+        return new String[] {"DELTA", "FOR", "RLE", "XOR", "BITMAP"}[codec];
+    }
+
+    private static void expect(ByteBuffer b, byte codec) {
+        byte c = b.get();
+        if (c != codec) {
+            throw new IllegalStateException("expected codec " + name(codec) + ", found " + c);
+        }
+    }
+
+    private static int varint(ByteBuffer b) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int x = b.get();
+            v |= (x & 0x7F) << shift;
+            if (x >= 0) {
+                return v;
+            }
+        }
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static final class Out extends ByteArrayOutputStream {
+        Out(byte codec) {
+            write(codec);
+        }
+
+        void varint(int v) {
+            while ((v & ~0x7F) != 0) {
+                write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            write(v);
+        }
+
+        void zigzag(int v) {
+            varint((v << 1) ^ (v >> 31));
+        }
+    }
+
+    /** Bit writer, LSB first; {@link #flush} writes the last partial byte. */
+    private static final class Bits {
+        private final Out out;
+        private long buffer;
+        private int count;
+
+        Bits(Out out) {
+            this.out = out;
+        }
+
+        void write(long v, int width) {
+            if (width == 0) {
+                return;
+            }
+            if (width < 64) {
+                v &= (1L << width) - 1;
+            }
+            buffer |= v << count;
+            int free = 64 - count;
+            if (width >= free) {
+                for (int k = 0; k < 8; k++) {
+                    out.write((int) (buffer >>> (8 * k)));
+                }
+                buffer = free == 64 ? 0 : v >>> free;
+                count = width - free;
+            } else {
+                count += width;
+            }
+        }
+
+        void flush() {
+            for (int k = 0; k < count; k += 8) {
+                out.write((int) (buffer >>> k));
+            }
+        }
+    }
+
+    /** Bit reader over the rest of a buffer, LSB first. */
+    private static final class BitsIn {
+        private final ByteBuffer b;
+        private long position;
+
+        BitsIn(ByteBuffer b) {
+            this.b = b;
+            this.position = (long) b.position() << 3;
+        }
+
+        long read(int width) {
+            if (width == 0) {
+                return 0;
+            }
+            int at = (int) (position >>> 3);
+            int shift = (int) (position & 7);
+            position += width;
+            long v = 0;
+            int bytes = (shift + width + 7) >>> 3;
+            if (at + 8 <= b.limit() && bytes <= 8) {
+                v = b.getLong(at) >>> shift;
+            } else {
+                for (int k = 0; k < bytes; k++) {
+                    long x = at + k < b.limit() ? b.get(at + k) & 0xFFL : 0;
+                    v |= k == 0 ? x >>> shift : x << (8 * k - shift);
+                }
+            }
+            return width == 64 ? v : v & ((1L << width) - 1);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package satd.metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Java tokenizer over the bytes of a source file. Tokens are kept as
+ * parallel int arrays (kind, code, start offset, line) so that a caller can
+ * look ahead without allocating; comments go to their own arrays. The
+ * arrays are reused from one file to the next.
+ *
+ * Bytes from 0x80 up are identifier characters, so UTF-8 and Latin-1
+ * identifiers both come out as one token.
+ */
+final class JavaLexer {
+
+    static final int IDENT = 0;
+    static final int KEYWORD = 1;
+    static final int NUMBER = 2;
+    static final int STRING = 3;
+    static final int CHAR = 4;
+    static final int OP = 5;
+
+    static final String[] KEYWORDS = {
+        "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+        "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+        "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+        "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super",
+        "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile", "while",
+        "true", "false", "null",
+    };
+
+    /** Operators, longest first so that the first match wins. */
+    private static final String[] OPERATORS = {
+        ">>>=", "<<=", ">>=", ">>>", "...", "->", "::", "++", "--", "&&", "||", "==", "!=", "<=", ">=",
+        "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=", "<<", ">>",
+    };
+
+    private static final byte[][][] KEYWORDS_BY_FIRST = new byte[26][][];
+    private static final int[][] KEYWORD_IDS_BY_FIRST = new int[26][];
+
+    static {
+        for (int c = 0; c < 26; c++) {
+            KEYWORDS_BY_FIRST[c] = new byte[0][];
+            KEYWORD_IDS_BY_FIRST[c] = new int[0];
+        }
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            int c = KEYWORDS[k].charAt(0) - 'a';
+            int n = KEYWORDS_BY_FIRST[c].length;
+            KEYWORDS_BY_FIRST[c] = Arrays.copyOf(KEYWORDS_BY_FIRST[c], n + 1);
+            KEYWORDS_BY_FIRST[c][n] = KEYWORDS[k].getBytes(StandardCharsets.US_ASCII);
+            KEYWORD_IDS_BY_FIRST[c] = Arrays.copyOf(KEYWORD_IDS_BY_FIRST[c], n + 1);
+            KEYWORD_IDS_BY_FIRST[c][n] = k;
+        }
+    }
+
+    /** Code of keyword {@code word}, the value {@link #code} holds for it. */
+    static int keyword(String word) {
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            if (KEYWORDS[k].equals(word)) {
+                return k;
+            }
+        }
+        throw new IllegalArgumentException(word);
+    }
+
+    /** Code of operator {@code op}, its bytes packed little-endian. */
+    static int op(String op) {
+        int v = 0;
+        for (int i = op.length() - 1; i >= 0; i--) {
+            v = (v << 8) | op.charAt(i);
+        }
+        return v;
+    }
+
+    byte[] src;
+    int count;
+    int[] kind = new int[1024];
+    int[] code = new int[1024];
+    int[] start = new int[1024];
+    int[] end = new int[1024];
+    int[] line = new int[1024];
+
+    int comments;
+    int[] commentStart = new int[256];
+
+    /** Tokenizes {@code source}; returns the number of tokens. */
+    int tokenize(byte[] source) {
+        src = source;
+        count = 0;
+        comments = 0;
+        int n = source.length;
+        int i = 0;
+        int ln = 1;
+        while (i < n) {
+            int c = source[i] & 0xFF;
+            if (c == '\n') {
+                ln++;
+                i++;
+            } else if (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+                i++;
+            } else if (c == '/' && i + 1 < n && source[i + 1] == '/') {
+                comment(i);
+                while (i < n && source[i] != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < n && source[i + 1] == '*') {
+                comment(i);
+                i += 2;
+                while (i < n && !(source[i] == '*' && i + 1 < n && source[i + 1] == '/')) {
+                    if (source[i] == '\n') {
+                        ln++;
+                    }
+                    i++;
+                }
+                i = Math.min(n, i + 2);
+            } else if (isIdentStart(c)) {
+                int s = i;
+                while (i < n && isIdentPart(source[i] & 0xFF)) {
+                    i++;
+                }
+                int k = keywordAt(s, i);
+                add(k < 0 ? IDENT : KEYWORD, k, s, i, ln);
+            } else if (isDigit(c) || (c == '.' && i + 1 < n && isDigit(source[i + 1]))) {
+                int s = i;
+                while (i < n) {
+                    int d = source[i] & 0xFF;
+                    if (isIdentPart(d) || d == '.') {
+                        i++;
+                    } else if ((d == '+' || d == '-') && isExponent(source[i - 1]) && !isHex(source, s)) {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                add(NUMBER, 0, s, i, ln);
+            } else if (c == '"' || c == '\'') {
+                int s = i;
+                int startLine = ln;
+                if (c == '"' && i + 2 < n && source[i + 1] == '"' && source[i + 2] == '"') {
+                    i += 3;
+                    while (i < n && !(source[i] == '"' && i + 2 < n && source[i + 1] == '"' && source[i + 2] == '"')) {
+                        if (source[i] == '\\') {
+                            i++;
+                        } else if (source[i] == '\n') {
+                            ln++;
+                        }
+                        i++;
+                    }
+                    i = Math.min(n, i + 3);
+                } else {
+                    i++;
+                    while (i < n && source[i] != c && source[i] != '\n') {
+                        if (source[i] == '\\') {
+                            i++;
+                        }
+                        i++;
+                    }
+                    i = Math.min(n, i + 1);
+                }
+                add(c == '"' ? STRING : CHAR, 0, s, i, startLine);
+            } else {
+                int len = 1;
+                for (String o : OPERATORS) {
+                    if (matches(source, i, o)) {
+                        len = o.length();
+                        break;
+                    }
+                }
+                int v = 0;
+                for (int k = len - 1; k >= 0; k--) {
+                    v = (v << 8) | (source[i + k] & 0xFF);
+                }
+                add(OP, v, i, i + len, ln);
+                i += len;
+            }
+        }
+        return count;
+    }
+
+    boolean is(int t, int kind, int code) {
+        return t >= 0 && t < count && this.kind[t] == kind && this.code[t] == code;
+    }
+
+    boolean isOp(int t, int op) {
+        return is(t, OP, op);
+    }
+
+    boolean isKeyword(int t, int keyword) {
+        return is(t, KEYWORD, keyword);
+    }
+
+    String text(int t) {
+        return new String(src, start[t], end[t] - start[t], StandardCharsets.ISO_8859_1);
+    }
+
+    private void add(int k, int c, int s, int e, int ln) {
+        if (count == kind.length) {
+            int cap = count * 2;
+            kind = Arrays.copyOf(kind, cap);
+            code = Arrays.copyOf(code, cap);
+            start = Arrays.copyOf(start, cap);
+            end = Arrays.copyOf(end, cap);
+            line = Arrays.copyOf(line, cap);
+        }
+        kind[count] = k;
+        code[count] = c;
+        start[count] = s;
+        end[count] = e;
+        line[count] = ln;
+        count++;
+    }
+
+    private void comment(int at) {
+        if (comments == commentStart.length) {
+            commentStart = Arrays.copyOf(commentStart, comments * 2);
+        }
+        commentStart[comments++] = at;
+    }
+
+    private int keywordAt(int s, int e) {
+        int c = (src[s] & 0xFF) - 'a';
+        if (c < 0 || c >= 26) {
+            return -1;
+        }
+        byte[][] words = KEYWORDS_BY_FIRST[c];
+        for (int w = 0; w < words.length; w++) {
+            byte[] word = words[w];
+            if (word.length == e - s && Arrays.equals(word, 0, word.length, src, s, e)) {
+                return KEYWORD_IDS_BY_FIRST[c][w];
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte[] b, int at, String s) {
+        if (at + s.length() > b.length) {
+            return false;
+        }
+        for (int k = 0; k < s.length(); k++) {
+            if (b[at + k] != s.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$' || c >= 0x80;
+    }
+
+    private static boolean isIdentPart(int c) {
+        return isIdentStart(c) || isDigit(c);
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isExponent(byte b) {
+        return b == 'e' || b == 'E' || b == 'p' || b == 'P';
+    }
+
+    private static boolean isHex(byte[] b, int s) {
+        return s + 1 < b.length && b[s] == '0' && (b[s + 1] == 'x' || b[s + 1] == 'X');
+    }
+}
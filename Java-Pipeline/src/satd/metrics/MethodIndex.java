@@ -0,0 +1,254 @@
+package satd.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers "which method of this file contains line N" over the StartLine and
+ * EndLine columns of a {@link MetricsTable}, in O(log n).
+ *
+ * The ranges of a file are swept once in (StartLine, -EndLine) order with a
+ * stack of open methods, which cuts the file into segments of lines that
+ * share the same innermost method. A lookup is a binary search over the
+ * file's segment starts. Methods of nested and anonymous classes are
+ * innermost over their own lines and {@link #parent(int)} gives the method
+ * around them.
+ *
+ * The met-metr files repeat a method's row once per SATD tag; such rows have
+ * the same range and the first of them is the one returned.
+ *
+ * {@link #methods} answers many lookups at once: queries are bucketed by
+ * file with a counting sort, and a file whose queries come in line order, as
+ * a comment extractor emits them, is merged with its segments in one pass
+ * instead of a search per query.
+ */
+public final class MethodIndex {
+
+    private final List<Map<String, Integer>> files;
+    private final int[] fileSegments;
+    private final int[] from;
+    private final int[] method;
+    private final int[] parent;
+
+    private MethodIndex(List<Map<String, Integer>> files, int[] fileSegments, int[] from, int[] method, int[] parent) {
+        this.files = files;
+        this.fileSegments = fileSegments;
+        this.from = from;
+        this.method = method;
+        this.parent = parent;
+    }
+
+    public static MethodIndex of(MetricsTable table) {
+        String[] paths = table.strings(MetricsColumn.FILE);
+        int[] start = table.ints(MetricsColumn.START_LINE);
+        int[] end = table.ints(MetricsColumn.END_LINE);
+        int rows = table.rows();
+
+        List<Map<String, Integer>> files = new ArrayList<>(table.systems().size());
+        int[] fileOf = new int[rows];
+        int fileCount = 0;
+        for (int s = 0; s < table.systems().size(); s++) {
+            Map<String, Integer> ids = new HashMap<>();
+            for (int r = table.start(s); r < table.start(s + 1); r++) {
+                Integer id = ids.get(paths[r]);
+                if (id == null) {
+                    id = fileCount++;
+                    ids.put(paths[r], id);
+                }
+                fileOf[r] = id;
+            }
+            files.add(ids);
+        }
+
+        Integer[] order = new Integer[rows];
+        for (int r = 0; r < rows; r++) {
+            order[r] = r;
+        }
+        Arrays.sort(order, (a, b) -> {
+            if (fileOf[a] != fileOf[b]) {
+                return Integer.compare(fileOf[a], fileOf[b]);
+            }
+            if (start[a] != start[b]) {
+                return Integer.compare(start[a], start[b]);
+            }
+            if (end[a] != end[b]) {
+                return Integer.compare(end[b], end[a]);
+            }
+            return Integer.compare(a, b);
+        });
+
+        Sweep sweep = new Sweep(end, rows, fileCount);
+        int k = 0;
+        for (int f = 0; f < fileCount; f++) {
+            sweep.beginFile(f);
+            int previous = -1;
+            for (; k < rows && fileOf[order[k]] == f; k++) {
+                int r = order[k];
+                if (previous >= 0 && start[r] == start[previous] && end[r] == end[previous]) {
+                    sweep.parent[r] = sweep.parent[previous];
+                    continue;
+                }
+                sweep.open(r, start[r]);
+                previous = r;
+            }
+            sweep.closeBefore(Integer.MAX_VALUE);
+        }
+        sweep.fileSegments[fileCount] = sweep.segments;
+        return new MethodIndex(files, sweep.fileSegments,
+                Arrays.copyOf(sweep.from, sweep.segments), Arrays.copyOf(sweep.method, sweep.segments), sweep.parent);
+    }
+
+    /** Number of distinct (system, File) pairs. */
+    public int files() {
+        return fileSegments.length - 1;
+    }
+
+    /** Id of {@code path} in system {@code system} of the table, or -1; a leading "./" is accepted. */
+    public int file(int system, String path) {
+        if (path.startsWith("./")) {
+            path = path.substring(2);
+        }
+        Integer id = files.get(system).get(path);
+        return id == null ? -1 : id;
+    }
+
+    /** Row of the innermost method of {@code file} whose lines include {@code line}, or -1. */
+    public int method(int file, int line) {
+        int lo = fileSegments[file];
+        int hi = fileSegments[file + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (from[mid] <= line) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi < fileSegments[file] ? -1 : method[hi];
+    }
+
+    /**
+     * {@link #method(int, int)} for every ({@code files[i]}, {@code lines[i]})
+     * into {@code rows[i]}; a file of -1 gives -1.
+     */
+    public void methods(int[] files, int[] lines, int[] rows) {
+        int n = files.length;
+        int fileCount = files();
+        int[] bucket = new int[fileCount + 2];
+        for (int i = 0; i < n; i++) {
+            bucket[files[i] + 2]++;
+        }
+        for (int f = 0; f <= fileCount; f++) {
+            bucket[f + 1] += bucket[f];
+        }
+        // bucket[f + 1] is now the first slot of file f, file -1 first
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[bucket[files[i] + 1]++] = (long) lines[i] << 32 | i;
+        }
+        int at = 0;
+        for (; at < n && files[(int) keys[at]] < 0; at++) {
+            rows[(int) keys[at]] = -1;
+        }
+        for (int f = 0; f < fileCount; f++) {
+            int to = bucket[f + 1];
+            if (!sorted(keys, at, to)) {
+                // sorting costs more than a search per query over so few segments
+                for (; at < to; at++) {
+                    rows[(int) keys[at]] = method(f, (int) (keys[at] >> 32));
+                }
+                continue;
+            }
+            int segment = fileSegments[f] - 1;
+            int last = fileSegments[f + 1] - 1;
+            for (; at < to; at++) {
+                int line = (int) (keys[at] >> 32);
+                while (segment < last && from[segment + 1] <= line) {
+                    segment++;
+                }
+                rows[(int) keys[at]] = segment < fileSegments[f] ? -1 : method[segment];
+            }
+        }
+    }
+
+    private static boolean sorted(long[] keys, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            if (keys[i] < keys[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Row of the method whose lines enclose those of method {@code row}, or -1. */
+    public int parent(int row) {
+        return parent[row];
+    }
+
+    /** Builds the segments of one file after the other. */
+    private static final class Sweep {
+        final int[] end;
+        final int[] parent;
+        final int[] fileSegments;
+        int[] from = new int[1024];
+        int[] method = new int[1024];
+        int segments;
+        int fileStart;
+        int[] stack = new int[16];
+        int depth;
+
+        Sweep(int[] end, int rows, int files) {
+            this.end = end;
+            this.parent = new int[rows];
+            this.fileSegments = new int[files + 1];
+            Arrays.fill(parent, -1);
+        }
+
+        void beginFile(int f) {
+            fileSegments[f] = segments;
+            fileStart = segments;
+            depth = 0;
+        }
+
+        void open(int row, int line) {
+            closeBefore(line);
+            parent[row] = depth > 0 ? stack[depth - 1] : -1;
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            stack[depth++] = row;
+            emit(line, row);
+        }
+
+        /** Closes the open methods that end before {@code line}. */
+        void closeBefore(int line) {
+            while (depth > 0 && end[stack[depth - 1]] < line) {
+                int e = end[stack[--depth]];
+                // a range that overlaps without nesting ends no later than the one above it
+                while (depth > 0 && end[stack[depth - 1]] <= e) {
+                    depth--;
+                }
+                emit(e + 1, depth > 0 ? stack[depth - 1] : -1);
+            }
+        }
+
+        private void emit(int line, int row) {
+            if (segments > fileStart && from[segments - 1] == line) {
+                segments--;
+            }
+            if (segments > fileStart ? method[segments - 1] == row : row < 0) {
+                return;
+            }
+            if (segments == from.length) {
+                from = Arrays.copyOf(from, segments * 2);
+                method = Arrays.copyOf(method, segments * 2);
+            }
+            from[segments] = line;
+            method[segments] = row;
+            segments++;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package satd.metrics;
+
+import java.util.List;
+
+/** Computes the method rows of one source file. */
+public interface MethodMeasurer {
+
+    /**
+     * Name and version of the counting rules, e.g. {@code source-measurer-2}.
+     * Rows cached under one id are never returned for another, so the
+     * version must change whenever a count can change.
+     */
+    String id();
+
+    /** @param path the file path as written in the met-metr File column */
+    List<MethodMetrics> measure(String path, byte[] source);
+}
@@ -0,0 +1,99 @@
+package satd.metrics;
+
+import java.util.Arrays;
+
+/**
+ * The measured part of one met-metr row: method name, line span, the nine
+ * Size ... McCabe counts (in {@link MetricsColumn#METRICS} order) and
+ * Readability. The SATD columns are not measurements and are not kept.
+ */
+public final class MethodMetrics {
+
+    /** A count its measurer does not compute; written as NaN, like a missing Readability. */
+    public static final int NOT_MEASURED = Integer.MIN_VALUE;
+
+    private final String method;
+    private final int startLine;
+    private final int endLine;
+    private final int[] metrics;
+    private final double readability;
+
+    public MethodMetrics(String method, int startLine, int endLine, int[] metrics, double readability) {
+        if (metrics.length != MetricsColumn.METRICS.length) {
+            throw new IllegalArgumentException("expected " + MetricsColumn.METRICS.length + " metrics, got " + metrics.length);
+        }
+        this.method = method;
+        this.startLine = startLine;
+        this.endLine = endLine;
+        this.metrics = metrics.clone();
+        this.readability = readability;
+    }
+
+    /** Row {@code row} of a loaded table. */
+    public static MethodMetrics of(MetricsTable t, int row) {
+        int[] m = new int[MetricsColumn.METRICS.length];
+        for (int i = 0; i < m.length; i++) {
+            m[i] = t.ints(MetricsColumn.METRICS[i])[row];
+        }
+        return new MethodMetrics(t.strings(MetricsColumn.METHOD)[row], t.ints(MetricsColumn.START_LINE)[row],
+                t.ints(MetricsColumn.END_LINE)[row], m, t.doubles(MetricsColumn.READABILITY)[row]);
+    }
+
+    public String method() {
+        return method;
+    }
+
+    /** Name and first line; tells overloads of one file apart. */
+    public String signature() {
+        return method + "@" + startLine;
+    }
+
+    public int startLine() {
+        return startLine;
+    }
+
+    public int endLine() {
+        return endLine;
+    }
+
+    public int metric(MetricsColumn c) {
+        for (int i = 0; i < MetricsColumn.METRICS.length; i++) {
+            if (MetricsColumn.METRICS[i] == c) {
+                return metrics[i];
+            }
+        }
+        throw new IllegalArgumentException(c.header() + " is not a measured count");
+    }
+
+    public int[] metrics() {
+        return metrics.clone();
+    }
+
+    public double readability() {
+        return readability;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof MethodMetrics)) {
+            return false;
+        }
+        MethodMetrics m = (MethodMetrics) o;
+        return method.equals(m.method) && startLine == m.startLine && endLine == m.endLine
+                && Arrays.equals(metrics, m.metrics) && Double.compare(readability, m.readability) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * method.hashCode() + startLine) + Arrays.hashCode(metrics);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(method).append(';').append(startLine).append(';').append(endLine);
+        for (int v : metrics) {
+            sb.append(';').append(v == NOT_MEASURED ? "NaN" : Integer.toString(v));
+        }
+        return sb.append(';').append(readability).toString();
+    }
+}
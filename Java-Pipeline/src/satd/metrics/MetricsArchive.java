@@ -0,0 +1,406 @@
+package satd.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed, chunked columnar archive of a {@link MetricsTable}, one per
+ * snapshot of the met-metr files, written by {@link MetricsArchiveWriter}.
+ *
+ * Opening an archive reads the header and the chunk directory; column data
+ * stays in the memory-mapped file until a chunk is decoded. Each chunk
+ * column carries its minimum and maximum (dictionary codes for text
+ * columns, whose dictionaries are sorted), and each text column the sorted
+ * list of codes it holds, so {@link #select} decodes only the chunks that
+ * can hold a match: a tag or file path shows up in few chunks but falls
+ * inside the code range of most.
+ *
+ * File layout (little-endian):
+ *
+ *   "SATDARC2"  int systems, per system: int length, UTF-8 name, int rows
+ *   int length, int deflated length, deflated dictionaries:
+ *     per STRING column: int size, size x (int length, UTF-8), sorted
+ *   int chunks, per chunk: int system, int firstRow, int rows,
+ *     per column: byte codec, int offset, int length, long min, long max,
+ *       int summary offset, int summary length
+ *     (min and max are double bits for DOUBLE columns; the summary of a
+ *     STRING column is int count and its distinct codes, ascending, as an
+ *     integer block; other columns have none)
+ *   column data, offsets relative to its start
+ *
+ * EXAMPLE
+ *
+ *   try (MetricsArchive a = MetricsArchive.open(Paths.get("metrics.sarc"))) {
+ *       int[] rows = a.select(MetricsColumn.SATD_TAG, "argouml-multi-line-14325-DEFECT.txt");
+ *       MetricsTable all = a.table();
+ *   }
+ */
+public final class MetricsArchive implements Closeable {
+
+    static final byte[] MAGIC = "SATDARC2".getBytes(StandardCharsets.US_ASCII);
+
+    private static final MetricsColumn[] COLUMNS = MetricsColumn.values();
+    private static final int ENTRY = 1 + 4 * Integer.BYTES + 2 * Long.BYTES;
+
+    private final FileChannel channel;
+    private final ByteBuffer map;
+    private final List<String> systems;
+    private final int[] systemRows;
+    private final String[][] dictionaries = new String[COLUMNS.length][];
+    /** Distinct codes per text column and chunk, decoded on first use. */
+    private final int[][][] distinct = new int[COLUMNS.length][][];
+    private final int[] chunkSystem;
+    private final int[] chunkStart;
+    private final int[] chunkRows;
+    private final int directory;
+    private final int data;
+    private final int maxChunkRows;
+
+    private MetricsArchive(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("archive larger than 2 GB");
+        }
+        map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        if (map.limit() < MAGIC.length + Integer.BYTES) {
+            throw new IOException("not a metrics archive");
+        }
+        map.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not a metrics archive");
+        }
+        ByteBuffer header = map.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(MAGIC.length);
+        List<String> names = new ArrayList<>();
+        systemRows = new int[header.getInt()];
+        for (int s = 0; s < systemRows.length; s++) {
+            names.add(string(header));
+            systemRows[s] = header.getInt();
+        }
+        systems = Collections.unmodifiableList(names);
+        ByteBuffer strings = inflate(header);
+        for (MetricsColumn c : COLUMNS) {
+            if (c.type() == MetricsColumn.Type.STRING) {
+                String[] dict = new String[strings.getInt()];
+                for (int i = 0; i < dict.length; i++) {
+                    dict[i] = string(strings);
+                }
+                dictionaries[c.ordinal()] = dict;
+            }
+        }
+        int chunks = header.getInt();
+        chunkSystem = new int[chunks];
+        chunkStart = new int[chunks];
+        chunkRows = new int[chunks];
+        directory = header.position();
+        int largest = 0;
+        for (int k = 0; k < chunks; k++) {
+            int at = directory + k * chunkBytes();
+            chunkSystem[k] = map.getInt(at);
+            chunkStart[k] = map.getInt(at + Integer.BYTES);
+            chunkRows[k] = map.getInt(at + 2 * Integer.BYTES);
+            largest = Math.max(largest, chunkRows[k]);
+        }
+        maxChunkRows = largest;
+        data = directory + chunks * chunkBytes();
+    }
+
+    public static MetricsArchive open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MetricsArchive(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int rows() {
+        int n = 0;
+        for (int r : systemRows) {
+            n += r;
+        }
+        return n;
+    }
+
+    public List<String> systems() {
+        return systems;
+    }
+
+    public int chunks() {
+        return chunkRows.length;
+    }
+
+    /** Index in {@link #systems()} of the system of chunk {@code k}. */
+    public int chunkSystem(int k) {
+        return chunkSystem[k];
+    }
+
+    /** Row of the table at which chunk {@code k} starts. */
+    public int chunkStart(int k) {
+        return chunkStart[k];
+    }
+
+    public int chunkRows(int k) {
+        return chunkRows[k];
+    }
+
+    /** Sorted distinct values of a text column; its codes index this array. */
+    public String[] dictionary(MetricsColumn c) {
+        return dictionaries[checked(c, MetricsColumn.Type.STRING).ordinal()].clone();
+    }
+
+    /** Code of {@code value} in the dictionary of {@code c}, or -1. */
+    public int code(MetricsColumn c, String value) {
+        int i = Arrays.binarySearch(dictionaries[checked(c, MetricsColumn.Type.STRING).ordinal()], value);
+        return i < 0 ? -1 : i;
+    }
+
+    /** Smallest value of {@code c} in chunk {@code k}; a code for text columns, 0 or 1 for SATD. */
+    public double min(int k, MetricsColumn c) {
+        return statistic(k, c, 1 + 2 * Integer.BYTES);
+    }
+
+    public double max(int k, MetricsColumn c) {
+        return statistic(k, c, 1 + 2 * Integer.BYTES + Long.BYTES);
+    }
+
+    /**
+     * Whether chunk {@code k} can hold a value of {@code c} in [lo, hi], from
+     * its statistics alone; exact for text columns, which check their codes.
+     */
+    public boolean mayContain(int k, MetricsColumn c, double lo, double hi) {
+        if (min(k, c) > hi || max(k, c) < lo) {
+            return false;
+        }
+        if (c.type() != MetricsColumn.Type.STRING) {
+            return true;
+        }
+        int[] codes = distinct(c)[k];
+        int i = Arrays.binarySearch(codes, (int) Math.ceil(Math.max(lo, Integer.MIN_VALUE)));
+        i = i < 0 ? -i - 1 : i;
+        return i < codes.length && codes[i] <= hi;
+    }
+
+    /** Encoded size of column {@code c} in chunk {@code k}. */
+    public int encodedBytes(int k, MetricsColumn c) {
+        return map.getInt(entry(k, c) + 1 + Integer.BYTES);
+    }
+
+    /** Codec of column {@code c} in chunk {@code k}: DELTA, FOR, RLE, XOR or BITMAP. */
+    public String codec(int k, MetricsColumn c) {
+        return Codecs.name(map.get(entry(k, c)));
+    }
+
+    /** Decodes an INT column, or the codes of a text column, of chunk {@code k} into {@code into}. */
+    public void ints(int k, MetricsColumn c, int[] into) {
+        if (c.type() != MetricsColumn.Type.STRING) {
+            checked(c, MetricsColumn.Type.INT);
+        }
+        Codecs.ints(block(k, c), into, chunkRows[k]);
+    }
+
+    public void doubles(int k, MetricsColumn c, double[] into) {
+        Codecs.xor(block(k, checked(c, MetricsColumn.Type.DOUBLE)), into, chunkRows[k]);
+    }
+
+    public void booleans(int k, MetricsColumn c, boolean[] into) {
+        Codecs.bitmap(block(k, checked(c, MetricsColumn.Type.BOOLEAN)), into, chunkRows[k]);
+    }
+
+    /**
+     * Rows of the table whose value of {@code c} lies in [lo, hi]; text
+     * columns compare dictionary codes, SATD reads as 0 or 1. Chunks whose
+     * statistics rule out a match are not decoded.
+     */
+    public int[] select(MetricsColumn c, double lo, double hi) {
+        Rows rows = new Rows();
+        if (c.type() == MetricsColumn.Type.DOUBLE) {
+            double[] values = new double[maxChunkRows];
+            for (int k = 0; k < chunks(); k++) {
+                if (mayContain(k, c, lo, hi)) {
+                    doubles(k, c, values);
+                    for (int i = 0; i < chunkRows[k]; i++) {
+                        if (values[i] >= lo && values[i] <= hi) {
+                            rows.add(chunkStart[k] + i);
+                        }
+                    }
+                }
+            }
+        } else {
+            int[] values = new int[maxChunkRows];
+            boolean[] booleans = c.type() == MetricsColumn.Type.BOOLEAN ? new boolean[maxChunkRows] : null;
+            for (int k = 0; k < chunks(); k++) {
+                if (mayContain(k, c, lo, hi)) {
+                    if (booleans != null) {
+                        booleans(k, c, booleans);
+                        for (int i = 0; i < chunkRows[k]; i++) {
+                            values[i] = booleans[i] ? 1 : 0;
+                        }
+                    } else {
+                        ints(k, c, values);
+                    }
+                    for (int i = 0; i < chunkRows[k]; i++) {
+                        if (values[i] >= lo && values[i] <= hi) {
+                            rows.add(chunkStart[k] + i);
+                        }
+                    }
+                }
+            }
+        }
+        return rows.toArray();
+    }
+
+    private static final class Rows {
+        private int[] rows = new int[64];
+        private int n;
+
+        void add(int row) {
+            if (n == rows.length) {
+                rows = Arrays.copyOf(rows, 2 * n);
+            }
+            rows[n++] = row;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, n);
+        }
+    }
+
+    /** Rows of the table whose text column {@code c} equals {@code value}. */
+    public int[] select(MetricsColumn c, String value) {
+        int code = code(c, value);
+        return code < 0 ? new int[0] : select(c, code, code);
+    }
+
+    /** Decodes the whole archive. */
+    public MetricsTable table() {
+        MetricsTable table = new MetricsTable(new ArrayList<>(systems), systemRows);
+        int[] ints = new int[maxChunkRows];
+        double[] doubles = new double[maxChunkRows];
+        boolean[] booleans = new boolean[maxChunkRows];
+        for (int k = 0; k < chunks(); k++) {
+            int start = chunkStart[k];
+            int n = chunkRows[k];
+            for (MetricsColumn c : COLUMNS) {
+                switch (c.type()) {
+                    case STRING: {
+                        ints(k, c, ints);
+                        String[] dict = dictionaries[c.ordinal()];
+                        String[] values = table.strings(c);
+                        for (int i = 0; i < n; i++) {
+                            values[start + i] = dict[ints[i]];
+                        }
+                        break;
+                    }
+                    case INT:
+                        ints(k, c, ints);
+                        System.arraycopy(ints, 0, table.ints(c), start, n);
+                        break;
+                    case DOUBLE:
+                        doubles(k, c, doubles);
+                        System.arraycopy(doubles, 0, table.doubles(c), start, n);
+                        break;
+                    default:
+                        booleans(k, c, booleans);
+                        System.arraycopy(booleans, 0, table.booleans(c), start, n);
+                        break;
+                }
+            }
+        }
+        return table;
+    }
+
+    private int[][] distinct(MetricsColumn c) {
+        int[][] codes = distinct[c.ordinal()];
+        if (codes == null) {
+            codes = new int[chunks()][];
+            for (int k = 0; k < codes.length; k++) {
+                int e = entry(k, c);
+                ByteBuffer b = map.slice(data + map.getInt(e + ENTRY - 2 * Integer.BYTES),
+                        map.getInt(e + ENTRY - Integer.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+                codes[k] = new int[b.getInt()];
+                Codecs.ints(b, codes[k], codes[k].length);
+            }
+            distinct[c.ordinal()] = codes;
+        }
+        return codes;
+    }
+
+    private double statistic(int k, MetricsColumn c, int field) {
+        long v = map.getLong(entry(k, c) + field);
+        return c.type() == MetricsColumn.Type.DOUBLE ? Double.longBitsToDouble(v) : v;
+    }
+
+    private ByteBuffer block(int k, MetricsColumn c) {
+        int e = entry(k, c);
+        int offset = map.getInt(e + 1);
+        int length = map.getInt(e + 1 + Integer.BYTES);
+        return map.slice(data + offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private int entry(int k, MetricsColumn c) {
+        return directory + k * chunkBytes() + 3 * Integer.BYTES + c.ordinal() * ENTRY;
+    }
+
+    private static int chunkBytes() {
+        return 3 * Integer.BYTES + COLUMNS.length * ENTRY;
+    }
+
+    private static MetricsColumn checked(MetricsColumn c, MetricsColumn.Type type) {
+        if (c.type() != type) {
+            throw new IllegalArgumentException(c.header() + " is " + c.type() + ", not " + type);
+        }
+        return c;
+    }
+
+    private static ByteBuffer inflate(ByteBuffer header) throws IOException {
+        byte[] bytes = new byte[header.getInt()];
+        int length = header.getInt();
+        ByteBuffer deflated = header.slice(header.position(), length);
+        header.position(header.position() + length);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            int n = 0;
+            while (n < bytes.length && !inflater.finished()) {
+                int read = inflater.inflate(bytes, n, bytes.length - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != bytes.length || !inflater.finished()) {
+                throw new IOException("corrupt dictionaries");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt dictionaries", e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String string(ByteBuffer b) {
+        byte[] bytes = new byte[b.getInt()];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
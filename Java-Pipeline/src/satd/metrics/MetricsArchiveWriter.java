@@ -0,0 +1,230 @@
+package satd.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a {@link MetricsTable} as a {@link MetricsArchive}: rows are cut
+ * into chunks of at most {@code chunkRows} rows that never span two systems,
+ * every column of a chunk is encoded on its own (see {@link Codecs}), and
+ * the chunk directory records each column's minimum and maximum, plus the
+ * distinct dictionary codes of each text column. The dictionaries are
+ * deflated; sorted file paths and signatures shrink to a sixth.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.metrics.MetricsArchiveWriter --out metrics.sarc ../Method-level-metrics/*-met-metr.csv
+ */
+public final class MetricsArchiveWriter {
+
+    public static final int DEFAULT_CHUNK = 1024;
+
+    private static final MetricsColumn[] COLUMNS = MetricsColumn.values();
+
+    private MetricsArchiveWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path out = null;
+        int chunkRows = DEFAULT_CHUNK;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+            } else if (args[i].equals("--chunk") && i + 1 < args.length) {
+                chunkRows = Integer.parseInt(args[++i]);
+            } else {
+                files.add(Paths.get(args[i]));
+            }
+        }
+        if (out == null || files.isEmpty()) {
+            System.err.println("Usage: MetricsArchiveWriter --out file.sarc [--chunk rows] *-met-metr.csv");
+            System.exit(1);
+        }
+        long text = 0;
+        for (Path f : files) {
+            text += Files.size(f);
+        }
+        MetricsTable table = new MetricsLoader().load(files);
+        long size = write(table, out, chunkRows);
+        System.out.printf("%d rows, %d bytes of text -> %d bytes (%.1f%%)%n",
+                table.rows(), text, size, 100.0 * size / text);
+    }
+
+    /** Writes {@code table} to {@code file} and returns the archive size. */
+    public static long write(MetricsTable table, Path file, int chunkRows) throws IOException {
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("chunkRows must be positive: " + chunkRows);
+        }
+        List<String[]> dictionaries = new ArrayList<>();
+        List<Map<String, Integer>> codes = new ArrayList<>();
+        for (MetricsColumn c : COLUMNS) {
+            if (c.type() == MetricsColumn.Type.STRING) {
+                String[] dict = new TreeSet<>(Arrays.asList(table.strings(c))).toArray(new String[0]);
+                Map<String, Integer> code = new HashMap<>();
+                for (int i = 0; i < dict.length; i++) {
+                    code.put(dict[i], i);
+                }
+                dictionaries.add(dict);
+                codes.add(code);
+            }
+        }
+
+        ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteBuffer entry = ByteBuffer.allocate(1 + 4 * Integer.BYTES + 2 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        int[] ints = new int[chunkRows];
+        double[] doubles = new double[chunkRows];
+        boolean[] booleans = new boolean[chunkRows];
+        int chunks = 0;
+        for (int s = 0; s < table.systems().size(); s++) {
+            for (int start = table.start(s); start < table.start(s + 1); start += chunkRows) {
+                int n = Math.min(chunkRows, table.start(s + 1) - start);
+                directory.writeBytes(ByteBuffer.allocate(3 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(s).putInt(start).putInt(n).array());
+                int string = 0;
+                for (MetricsColumn c : COLUMNS) {
+                    byte[] block;
+                    byte[] summary = null;
+                    long min;
+                    long max;
+                    if (c.type() == MetricsColumn.Type.DOUBLE) {
+                        System.arraycopy(table.doubles(c), start, doubles, 0, n);
+                        block = Codecs.xor(doubles, n);
+                        double lo = Double.POSITIVE_INFINITY;
+                        double hi = Double.NEGATIVE_INFINITY;
+                        for (int i = 0; i < n; i++) {
+                            // NaN compares false and stays out of the statistics
+                            if (doubles[i] < lo) {
+                                lo = doubles[i];
+                            }
+                            if (doubles[i] > hi) {
+                                hi = doubles[i];
+                            }
+                        }
+                        min = Double.doubleToLongBits(lo);
+                        max = Double.doubleToLongBits(hi);
+                    } else if (c.type() == MetricsColumn.Type.BOOLEAN) {
+                        System.arraycopy(table.booleans(c), start, booleans, 0, n);
+                        block = Codecs.bitmap(booleans, n);
+                        min = 1;
+                        max = 0;
+                        for (int i = 0; i < n; i++) {
+                            min = Math.min(min, booleans[i] ? 1 : 0);
+                            max = Math.max(max, booleans[i] ? 1 : 0);
+                        }
+                    } else {
+                        if (c.type() == MetricsColumn.Type.STRING) {
+                            String[] values = table.strings(c);
+                            Map<String, Integer> code = codes.get(string++);
+                            for (int i = 0; i < n; i++) {
+                                ints[i] = code.get(values[start + i]);
+                            }
+                        } else {
+                            System.arraycopy(table.ints(c), start, ints, 0, n);
+                        }
+                        block = Codecs.ints(ints, n);
+                        min = Integer.MAX_VALUE;
+                        max = Integer.MIN_VALUE;
+                        for (int i = 0; i < n; i++) {
+                            min = Math.min(min, ints[i]);
+                            max = Math.max(max, ints[i]);
+                        }
+                        if (c.type() == MetricsColumn.Type.STRING) {
+                            summary = distinct(ints, n);
+                        }
+                    }
+                    entry.clear();
+                    entry.put(block[0]).putInt(data.size()).putInt(block.length).putLong(min).putLong(max);
+                    data.writeBytes(block);
+                    if (summary == null) {
+                        entry.putInt(0).putInt(0);
+                    } else {
+                        entry.putInt(data.size()).putInt(summary.length);
+                        data.writeBytes(summary);
+                    }
+                    directory.writeBytes(entry.array());
+                }
+                chunks++;
+            }
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        ByteBuffer b = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.writeBytes(MetricsArchive.MAGIC);
+        header.writeBytes(b.putInt(0, table.systems().size()).array());
+        for (int s = 0; s < table.systems().size(); s++) {
+            writeString(header, b, table.systems().get(s));
+            header.writeBytes(b.putInt(0, table.start(s + 1) - table.start(s)).array());
+        }
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        for (String[] dict : dictionaries) {
+            strings.writeBytes(b.putInt(0, dict.length).array());
+            for (String s : dict) {
+                writeString(strings, b, s);
+            }
+        }
+        byte[] deflated = deflate(strings.toByteArray());
+        header.writeBytes(b.putInt(0, strings.size()).array());
+        header.writeBytes(b.putInt(0, deflated.length).array());
+        header.writeBytes(deflated);
+        header.writeBytes(b.putInt(0, chunks).array());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            header.writeTo(out);
+            directory.writeTo(out);
+            data.writeTo(out);
+        }
+        return (long) header.size() + directory.size() + data.size();
+    }
+
+    /** The sorted distinct codes of {@code codes[0..n)}: their count, then {@link Codecs#ints}. */
+    private static byte[] distinct(int[] codes, int n) {
+        int[] sorted = Arrays.copyOf(codes, n);
+        Arrays.sort(sorted);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m == 0 || sorted[i] != sorted[m - 1]) {
+                sorted[m++] = sorted[i];
+            }
+        }
+        byte[] block = Codecs.ints(sorted, m);
+        return ByteBuffer.allocate(Integer.BYTES + block.length).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(m).put(block).array();
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1 << 16];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, ByteBuffer b, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeBytes(b.putInt(0, bytes.length).array());
+        out.writeBytes(bytes);
+    }
+}
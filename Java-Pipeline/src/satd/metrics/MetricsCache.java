@@ -0,0 +1,351 @@
+package satd.metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of method metrics: the rows measured for a source
+ * file are stored under the SHA-256 of its bytes, so a file left unchanged
+ * between two system versions is never measured again.
+ *
+ * Rows are only comparable when they come from the same measurer, so each
+ * measurer has its own log in the cache directory,
+ * {@code metrics-<id>.cache} with the id and version of
+ * {@link MethodMeasurer#id()}. Rows of the external tool, seeded from its
+ * met-metr files, go to the {@link #TOOL} log; a file measured by
+ * {@link SourceMeasurer} is never answered from them, nor the other way
+ * around. A log is append-only and read into memory on open. A record
+ * torn by a crash is cut off on the next open.
+ *
+ * Record: 32-byte hash, int rows, then per row UTF method, int StartLine,
+ * int EndLine, nine int metrics, double Readability (big-endian).
+ *
+ * EXAMPLE
+ *
+ *   # seed from the metrics of the version that was measured, then list
+ *   # what the external tool still has to measure in the next one
+ *   java -cp out satd.metrics.MetricsCache --cache cache --seed apache-ant-1.7.0-met-metr.csv --src apache-ant-1.7.0
+ *   java -cp out satd.metrics.MetricsCache --cache cache --changed apache-ant-1.8.0
+ */
+public final class MetricsCache implements Closeable {
+
+    /** Measurer id of the rows seeded from the met-metr files of the external tool. */
+    public static final String TOOL = "met-metr";
+
+    private static final int HASH_BYTES = 32;
+
+    private final String measurer;
+    private final Map<String, List<MethodMetrics>> files = new HashMap<>();
+    private final DataOutputStream log;
+
+    /** Outcome of {@link #measure}: rows per file path, and how many files were reused. */
+    public static final class Measured {
+        public final Map<String, List<MethodMetrics>> rows = new LinkedHashMap<>();
+        public int hits;
+        public int misses;
+    }
+
+    private MetricsCache(Path dir, String measurer) throws IOException {
+        if (!measurer.matches("[A-Za-z0-9._-]+")) {
+            throw new IllegalArgumentException("measurer id is not a file name part: " + measurer);
+        }
+        this.measurer = measurer;
+        Files.createDirectories(dir);
+        Path file = log(dir, measurer);
+        long good = 0;
+        if (Files.exists(file)) {
+            CountingInput counter = new CountingInput(new BufferedInputStream(Files.newInputStream(file)));
+            try (DataInputStream in = new DataInputStream(counter)) {
+                while (true) {
+                    try {
+                        byte[] hash = new byte[HASH_BYTES];
+                        in.readFully(hash);
+                        List<MethodMetrics> rows = readRows(in);
+                        files.put(hex(hash), rows);
+                        good = counter.position;
+                    } catch (EOFException e) {
+                        break;
+                    }
+                }
+            }
+            if (good < Files.size(file)) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    ch.truncate(good);
+                }
+            }
+        }
+        OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        log = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    /** Opens the log of measurer {@code measurer} ({@link #TOOL} or a {@link MethodMeasurer#id()}) in {@code dir}. */
+    public static MetricsCache open(Path dir, String measurer) throws IOException {
+        return new MetricsCache(dir, measurer);
+    }
+
+    /** Log file of {@code measurer} in the cache directory {@code dir}. */
+    public static Path log(Path dir, String measurer) {
+        return dir.resolve("metrics-" + measurer + ".cache");
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path cache = null;
+        Path seed = null;
+        Path src = null;
+        Path changed = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--cache": cache = Paths.get(args[i + 1]); break;
+                case "--seed": seed = Paths.get(args[i + 1]); break;
+                case "--src": src = Paths.get(args[i + 1]); break;
+                case "--changed": changed = Paths.get(args[i + 1]); break;
+                default: break;
+            }
+        }
+        if (cache == null || (seed == null) == (changed == null) || (seed != null && src == null)) {
+            System.err.println("Usage: MetricsCache --cache dir (--seed x-met-metr.csv --src root | --changed root)");
+            System.exit(1);
+        }
+        try (MetricsCache c = open(cache, TOOL)) {
+            if (seed != null) {
+                MetricsTable t = new MetricsLoader().load(List.of(seed));
+                System.out.println(c.seed(t, 0, src) + " files cached");
+            } else {
+                for (String f : c.changed(changed)) {
+                    System.out.println(f);
+                }
+            }
+        }
+    }
+
+    /** Id of the measurer whose rows this log holds. */
+    public String measurer() {
+        return measurer;
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    /** Rows of the file with content hash {@code hash}, or null if it was never measured. */
+    public List<MethodMetrics> get(String hash) {
+        return files.get(hash);
+    }
+
+    public MethodMetrics get(String hash, String signature) {
+        List<MethodMetrics> rows = files.get(hash);
+        if (rows != null) {
+            for (MethodMetrics m : rows) {
+                if (m.signature().equals(signature)) {
+                    return m;
+                }
+            }
+        }
+        return null;
+    }
+
+    public void put(String hash, List<MethodMetrics> rows) throws IOException {
+        if (files.containsKey(hash)) {
+            return;
+        }
+        List<MethodMetrics> copy = Collections.unmodifiableList(new ArrayList<>(rows));
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(record);
+        out.write(unhex(hash));
+        out.writeInt(copy.size());
+        for (MethodMetrics m : copy) {
+            out.writeUTF(m.method());
+            out.writeInt(m.startLine());
+            out.writeInt(m.endLine());
+            for (int v : m.metrics()) {
+                out.writeInt(v);
+            }
+            out.writeDouble(m.readability());
+        }
+        record.writeTo(log);
+        log.flush();
+        files.put(hash, copy);
+    }
+
+    /**
+     * Rows of every file, measuring with {@code measurer} only the files whose
+     * content is not in the cache yet. The cache must be the log of that
+     * measurer.
+     */
+    public Measured measure(Path root, List<Path> sources, MethodMeasurer measurer) throws IOException {
+        if (!measurer.id().equals(this.measurer)) {
+            throw new IllegalArgumentException("cache holds rows of " + this.measurer + ", not " + measurer.id());
+        }
+        Measured result = new Measured();
+        for (Path f : sources) {
+            byte[] bytes = Files.readAllBytes(f);
+            String h = hash(bytes);
+            String path = pathOf(root, f);
+            List<MethodMetrics> rows = files.get(h);
+            if (rows != null) {
+                result.hits++;
+            } else {
+                rows = measurer.measure(path, bytes);
+                put(h, rows);
+                rows = files.get(h);
+                result.misses++;
+            }
+            result.rows.put(path, rows);
+        }
+        return result;
+    }
+
+    /**
+     * Caches the rows of system {@code system} of {@code t} under the hashes of
+     * their files in the source tree {@code root}, the tree those metrics were
+     * measured on. Files missing from the tree are skipped; returns the
+     * number of files cached. Only the {@link #TOOL} log takes seeded rows.
+     *
+     * met-metr repeats a method once per SATD comment in it, with the same
+     * metrics; a file keeps one row per {@link MethodMetrics#signature()},
+     * the first. The files have no class column, but the first line tells
+     * methods of nested classes apart.
+     */
+    public int seed(MetricsTable t, int system, Path root) throws IOException {
+        if (!measurer.equals(TOOL)) {
+            throw new IllegalStateException("met-metr rows cannot be seeded into the " + measurer + " cache");
+        }
+        String[] paths = t.strings(MetricsColumn.FILE);
+        Map<String, Map<String, MethodMetrics>> byFile = new LinkedHashMap<>();
+        for (int r = t.start(system); r < t.start(system + 1); r++) {
+            MethodMetrics m = MethodMetrics.of(t, r);
+            byFile.computeIfAbsent(paths[r], k -> new LinkedHashMap<>()).putIfAbsent(m.signature(), m);
+        }
+        int n = 0;
+        for (Map.Entry<String, Map<String, MethodMetrics>> e : byFile.entrySet()) {
+            Path f = root.resolve(e.getKey());
+            if (Files.isRegularFile(f)) {
+                put(hash(Files.readAllBytes(f)), new ArrayList<>(e.getValue().values()));
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** Paths of the .java files under {@code root} whose content has no rows in this cache. */
+    public List<String> changed(Path root) throws IOException {
+        List<String> changed = new ArrayList<>();
+        for (Path f : javaFiles(root)) {
+            if (files.get(hash(Files.readAllBytes(f))) == null) {
+                changed.add(pathOf(root, f));
+            }
+        }
+        return changed;
+    }
+
+    public static String hash(byte[] content) {
+        try {
+            return hex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The .java files under {@code root}, sorted. */
+    public static List<Path> javaFiles(Path root) throws IOException {
+        try (Stream<Path> s = Files.walk(root)) {
+            return s.filter(p -> p.toString().endsWith(".java") && Files.isRegularFile(p)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /** {@code f} relative to {@code root} with '/' separators, as in the File column. */
+    public static String pathOf(Path root, Path f) {
+        return root.relativize(f).toString().replace('\\', '/');
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private static List<MethodMetrics> readRows(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<MethodMetrics> rows = new ArrayList<>(n);
+        int[] metrics = new int[MetricsColumn.METRICS.length];
+        for (int i = 0; i < n; i++) {
+            String method = in.readUTF();
+            int start = in.readInt();
+            int end = in.readInt();
+            for (int k = 0; k < metrics.length; k++) {
+                metrics[k] = in.readInt();
+            }
+            rows.add(new MethodMetrics(method, start, end, metrics, in.readDouble()));
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    private static String hex(byte[] b) {
+        StringBuilder sb = new StringBuilder(b.length * 2);
+        for (byte x : b) {
+            sb.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] unhex(String s) {
+        if (s.length() != HASH_BYTES * 2) {
+            throw new IllegalArgumentException("not a SHA-256 hex digest: " + s);
+        }
+        byte[] b = new byte[HASH_BYTES];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+        }
+        return b;
+    }
+
+    /** Tracks how many bytes were consumed from the log, to find the last whole record. */
+    private static final class CountingInput extends FilterInputStream {
+        long position;
+
+        CountingInput(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package satd.metrics;
+
+/**
+ * The 19 {@code ;}-separated fields of a {@code *-met-metr.csv} row, in file
+ * order, with the type each is loaded as.
+ */
+public enum MetricsColumn {
+
+    FILE("File", Type.STRING),
+    METHOD("Method", Type.STRING),
+    START_LINE("StartLine", Type.INT),
+    END_LINE("EndLine", Type.INT),
+    SIZE("Size", Type.INT),
+    PAR_NBR("ParNbr", Type.INT),
+    CALLED_NBR("CalledNbr", Type.INT),
+    DECL_NBR("DeclNbr", Type.INT),
+    EXPR_STMT_NBR("ExprStmtNbr", Type.INT),
+    EXPR_NBR("ExprNbr", Type.INT),
+    COMMENT_NBR("CommentNbr", Type.INT),
+    VARS_NBR("VarsNbr", Type.INT),
+    MC_CABE("McCabe", Type.INT),
+    READABILITY("Readability", Type.DOUBLE),
+    SATD("SATD", Type.BOOLEAN),
+    SATD_TYPE("SATDType", Type.STRING),
+    PERCENT("Percent", Type.INT),
+    SATD_TAG("SATDTag", Type.STRING),
+    SATD_NBR("SATDNbr", Type.INT);
+
+    public enum Type { STRING, INT, DOUBLE, BOOLEAN }
+
+    /** Size ... McCabe, the measured method metrics. */
+    public static final MetricsColumn[] METRICS = {
+        SIZE, PAR_NBR, CALLED_NBR, DECL_NBR, EXPR_STMT_NBR, EXPR_NBR, COMMENT_NBR, VARS_NBR, MC_CABE
+    };
+
+    private final String header;
+    private final Type type;
+
+    MetricsColumn(String header, Type type) {
+        this.header = header;
+        this.type = type;
+    }
+
+    public String header() {
+        return header;
+    }
+
+    public Type type() {
+        return type;
+    }
+}
@@ -0,0 +1,221 @@
+package satd.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import satd.csv.Numbers;
+
+/**
+ * Loads {@code *-met-metr.csv} files into one {@link MetricsTable} on a
+ * {@link ForkJoinPool}.
+ *
+ * Every file is cut into byte ranges that end on line boundaries. A first
+ * parallel pass counts the lines of each range, which fixes where each
+ * range's rows land in the table; a second parallel pass parses every range
+ * straight into the final primitive columns, so there is nothing to merge.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.metrics.MetricsLoader ../Method-level-metrics/*-met-metr.csv
+ */
+public final class MetricsLoader {
+
+    static final int DEFAULT_CHUNK = 1 << 18;
+
+    private static final String SUFFIX = "-met-metr.csv";
+    private static final MetricsColumn[] COLUMNS = MetricsColumn.values();
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public MetricsLoader() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK);
+    }
+
+    public MetricsLoader(ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String a : args) {
+            files.add(Paths.get(a));
+        }
+        long t0 = System.nanoTime();
+        MetricsTable table = new MetricsLoader().load(files);
+        System.out.printf("%d systems, %d rows in %.1f ms%n",
+                table.systems().size(), table.rows(), (System.nanoTime() - t0) / 1e6);
+    }
+
+    /** System name of a metrics file: its file name without {@code -met-metr.csv}. */
+    public static String systemOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(SUFFIX) ? name.substring(0, name.length() - SUFFIX.length()) : name;
+    }
+
+    public MetricsTable load(List<Path> files) throws IOException {
+        List<String> systems = new ArrayList<>();
+        List<Chunk> chunks = new ArrayList<>();
+        for (Path f : files) {
+            systems.add(systemOf(f));
+            split(systems.size() - 1, Files.readAllBytes(f), chunks);
+        }
+
+        pool.invoke(new Pass(chunks, 0, chunks.size(), null));
+
+        int[] systemRows = new int[files.size()];
+        int row = 0;
+        for (Chunk c : chunks) {
+            c.firstRow = row;
+            row += c.rows;
+            systemRows[c.system] += c.rows;
+        }
+        MetricsTable table = new MetricsTable(systems, systemRows);
+        pool.invoke(new Pass(chunks, 0, chunks.size(), table));
+        return table;
+    }
+
+    private void split(int system, byte[] bytes, List<Chunk> chunks) {
+        int from = 0;
+        while (from < bytes.length) {
+            int to = Math.min(bytes.length, from + chunkSize);
+            while (to < bytes.length && bytes[to - 1] != '\n') {
+                to++;
+            }
+            chunks.add(new Chunk(system, bytes, from, to));
+            from = to;
+        }
+    }
+
+    private static final class Chunk {
+        final int system;
+        final byte[] bytes;
+        final int from;
+        final int to;
+        int rows;
+        int firstRow;
+
+        Chunk(int system, byte[] bytes, int from, int to) {
+            this.system = system;
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+        }
+
+        void count() {
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == '\n') {
+                    n++;
+                }
+            }
+            if (to > from && bytes[to - 1] != '\n') {
+                n++;
+            }
+            rows = n;
+        }
+
+        void parse(MetricsTable t) {
+            Object[] cols = new Object[COLUMNS.length];
+            for (MetricsColumn c : COLUMNS) {
+                switch (c.type()) {
+                    case STRING: cols[c.ordinal()] = t.strings(c); break;
+                    case INT: cols[c.ordinal()] = t.ints(c); break;
+                    case DOUBLE: cols[c.ordinal()] = t.doubles(c); break;
+                    default: cols[c.ordinal()] = t.booleans(c); break;
+                }
+            }
+            String[] files = (String[]) cols[MetricsColumn.FILE.ordinal()];
+            int row = firstRow;
+            int i = from;
+            while (i < to) {
+                int end = i;
+                while (end < to && bytes[end] != '\n') {
+                    end++;
+                }
+                int lineEnd = end > i && bytes[end - 1] == '\r' ? end - 1 : end;
+                int f = i;
+                for (MetricsColumn c : COLUMNS) {
+                    int fe = f;
+                    while (fe < lineEnd && bytes[fe] != ';') {
+                        fe++;
+                    }
+                    int k = c.ordinal();
+                    switch (c.type()) {
+                        case STRING:
+                            ((String[]) cols[k])[row] = c == MetricsColumn.FILE && row > firstRow
+                                    ? same(files[row - 1], f, fe) : text(f, fe);
+                            break;
+                        case INT:
+                            ((int[]) cols[k])[row] = Numbers.parseInt(bytes, f, fe);
+                            break;
+                        case DOUBLE:
+                            ((double[]) cols[k])[row] = Numbers.parseDouble(bytes, f, fe);
+                            break;
+                        default:
+                            ((boolean[]) cols[k])[row] = fe - f == 3 && bytes[f] == 'Y';
+                            break;
+                    }
+                    f = Math.min(fe + 1, lineEnd);
+                }
+                row++;
+                i = end + 1;
+            }
+        }
+
+        /** The previous row's file when it is the same path, else a new String. */
+        private String same(String previous, int f, int fe) {
+            if (previous.length() != fe - f) {
+                return text(f, fe);
+            }
+            for (int j = fe - f - 1; j >= 0; j--) {
+                if (previous.charAt(j) != (char) (bytes[f + j] & 0xFF)) {
+                    return text(f, fe);
+                }
+            }
+            return previous;
+        }
+
+        private String text(int f, int fe) {
+            return new String(bytes, f, fe - f, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /** Counts rows when {@code table} is null, else parses into it. */
+    private static final class Pass extends RecursiveAction {
+        private final List<Chunk> chunks;
+        private final int lo;
+        private final int hi;
+        private final MetricsTable table;
+
+        Pass(List<Chunk> chunks, int lo, int hi, MetricsTable table) {
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+            this.table = table;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Pass(chunks, lo, mid, table), new Pass(chunks, mid, hi, table));
+            } else if (hi > lo) {
+                Chunk c = chunks.get(lo);
+                if (table == null) {
+                    c.count();
+                } else {
+                    c.parse(table);
+                }
+            }
+        }
+    }
+}
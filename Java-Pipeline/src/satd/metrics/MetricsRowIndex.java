@@ -0,0 +1,400 @@
+package satd.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import satd.csv.Numbers;
+
+/**
+ * Sidecar index of a {@code *-met-metr.csv} file, {@code <file>.idx} next
+ * to it: the byte offset of every row, and a hash table on the row key
+ * (File, Method, StartLine). A lookup probes the mapped table and reads
+ * the one row it needs from the CSV with a positional read, so the CSV is
+ * neither scanned nor loaded.
+ *
+ * The met-metr files repeat a method once per SATD tag, on consecutive
+ * rows; the table keeps the first row and the length of each such run.
+ * The index records the size and modification time of the CSV and
+ * {@link #open} refuses it once the CSV has changed.
+ *
+ * File layout (little-endian):
+ *
+ *   "SATDMRI1"  int rows  int keys  int slots  int 0  long csvSize  long csvModified
+ *   long[rows + 1] row offsets; row r is [offset r, offset r + 1) minus its line end
+ *   slots x (int firstRow + 1 or 0 when empty, int hash, int runLength, int 0)
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.metrics.MetricsRowIndex ../Method-level-metrics/jEdit-met-metr.csv \
+ *       org/gjt/sp/jedit/textarea/ChunkCache.java getScreenLineOfOffset 64
+ */
+public final class MetricsRowIndex implements Closeable {
+
+    static final byte[] MAGIC = "SATDMRI1".getBytes(StandardCharsets.US_ASCII);
+    static final int HEADER = 40;
+    static final String SUFFIX = ".idx";
+
+    private static final int SLOT_INTS = 4;
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final FileChannel csv;
+    private final FileChannel index;
+    private final int rows;
+    private final int mask;
+    private final LongBuffer offsets;
+    private final ByteBuffer slots;
+    private final long modified;
+
+    private MetricsRowIndex(FileChannel csv, FileChannel index) throws IOException {
+        this.csv = csv;
+        this.index = index;
+        if (index.size() < HEADER) {
+            throw new IOException("not a row index");
+        }
+        ByteBuffer header = index.map(FileChannel.MapMode.READ_ONLY, 0, HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not a row index");
+        }
+        rows = header.getInt();
+        header.getInt();
+        int slotCount = header.getInt();
+        header.getInt();
+        if (header.getLong() != csv.size()) {
+            throw new IOException("row index is stale");
+        }
+        modified = header.getLong();
+        long offsetsBytes = (rows + 1L) * Long.BYTES;
+        long slotsBytes = (long) slotCount * SLOT_INTS * Integer.BYTES;
+        if (index.size() != HEADER + offsetsBytes + slotsBytes || Integer.bitCount(slotCount) != 1) {
+            throw new IOException("corrupt row index");
+        }
+        mask = slotCount - 1;
+        offsets = index.map(FileChannel.MapMode.READ_ONLY, HEADER, offsetsBytes).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        slots = index.map(FileChannel.MapMode.READ_ONLY, HEADER + offsetsBytes, slotsBytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 4) {
+            System.err.println("Usage: MetricsRowIndex <x-met-metr.csv> [<file> <method> <startLine>]");
+            System.exit(1);
+        }
+        Path csv = Paths.get(args[0]);
+        long t0 = System.nanoTime();
+        try (MetricsRowIndex index = openOrBuild(csv)) {
+            long t1 = System.nanoTime();
+            System.out.printf("%d rows, index %s opened in %.1f ms%n", index.rows(), sidecar(csv), (t1 - t0) / 1e6);
+            if (args.length == 4) {
+                int[] found = index.findAll(args[1], args[2], Integer.parseInt(args[3]));
+                for (int r : found) {
+                    System.out.println(index.line(r));
+                }
+                System.out.printf("%d rows in %.1f us%n", found.length, (System.nanoTime() - t1) / 1e3);
+            }
+        }
+    }
+
+    /** {@code <csv>.idx}, the index file of {@code csv}. */
+    public static Path sidecar(Path csv) {
+        return csv.resolveSibling(csv.getFileName() + SUFFIX);
+    }
+
+    /** Opens the index of {@code csv}; fails when it is missing or older than the CSV. */
+    public static MetricsRowIndex open(Path csv) throws IOException {
+        FileChannel data = FileChannel.open(csv, StandardOpenOption.READ);
+        FileChannel index = null;
+        try {
+            index = FileChannel.open(sidecar(csv), StandardOpenOption.READ);
+            MetricsRowIndex m = new MetricsRowIndex(data, index);
+            if (m.modified != Files.getLastModifiedTime(csv).toMillis()) {
+                throw new IOException("row index is stale");
+            }
+            return m;
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            if (index != null) {
+                index.close();
+            }
+            throw e;
+        }
+    }
+
+    /** Opens the index of {@code csv}, first (re)building it when it is missing, stale or not an index. */
+    public static MetricsRowIndex openOrBuild(Path csv) throws IOException {
+        if (Files.exists(sidecar(csv))) {
+            try {
+                return open(csv);
+            } catch (IOException e) {
+                // stale or not an index: rebuilt below
+            }
+        }
+        build(csv);
+        return open(csv);
+    }
+
+    /** Writes the index of {@code csv} next to it; returns the number of rows. */
+    public static int build(Path csv) throws IOException {
+        long size = Files.size(csv);
+        long modified = Files.getLastModifiedTime(csv).toMillis();
+        ByteBuffer data;
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("CSV larger than 2 GB: " + csv);
+            }
+            data = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int n = (int) size;
+        long[] starts = new long[1024];
+        int rows = 0;
+        for (int p = 0; p < n; ) {
+            int end = p;
+            while (end < n && data.get(end) != '\n') {
+                end++;
+            }
+            if (rows + 1 == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * starts.length);
+            }
+            starts[rows++] = p;
+            p = end + 1;
+        }
+        starts[rows] = n;
+
+        // key runs: consecutive rows with the same (File, Method, StartLine) prefix
+        int[] first = new int[rows];
+        int[] runs = new int[rows];
+        int[] hashes = new int[rows];
+        int keys = 0;
+        int previousKey = -1;
+        int previousEnd = 0;
+        for (int r = 0; r < rows; r++) {
+            int start = (int) starts[r];
+            int keyEnd = keyEnd(data, start, (int) starts[r + 1]);
+            if (previousKey >= 0 && keyEnd - start == previousEnd - (int) starts[first[previousKey]]
+                    && data.slice(start, keyEnd - start).equals(
+                            data.slice((int) starts[first[previousKey]], previousEnd - (int) starts[first[previousKey]]))) {
+                runs[previousKey]++;
+                continue;
+            }
+            int h = FNV_OFFSET;
+            for (int p = start; p < keyEnd; p++) {
+                h = (h ^ (data.get(p) & 0xFF)) * FNV_PRIME;
+            }
+            first[keys] = r;
+            runs[keys] = 1;
+            hashes[keys] = h;
+            previousKey = keys++;
+            previousEnd = keyEnd;
+        }
+
+        int slotCount = Integer.highestOneBit(Math.max(1, keys) * 2 - 1) << 1;
+        ByteBuffer table = ByteBuffer.allocate(slotCount * SLOT_INTS * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int k = 0; k < keys; k++) {
+            int slot = hashes[k] & (slotCount - 1);
+            while (table.getInt(slot * SLOT_INTS * Integer.BYTES) != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            int at = slot * SLOT_INTS * Integer.BYTES;
+            table.putInt(at, first[k] + 1).putInt(at + 4, hashes[k]).putInt(at + 8, runs[k]);
+        }
+        ByteBuffer head = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        head.put(MAGIC).putInt(rows).putInt(keys).putInt(slotCount).putInt(0).putLong(size).putLong(modified).flip();
+        ByteBuffer offsets = ByteBuffer.allocate((rows + 1) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        offsets.asLongBuffer().put(starts, 0, rows + 1);
+
+        try (FileChannel out = FileChannel.open(sidecar(csv), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long at = 0;
+            for (ByteBuffer b : new ByteBuffer[] {head, offsets, table}) {
+                while (b.hasRemaining()) {
+                    at += out.write(b, at);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** End of the key of the row at [start, end): the position of its third ';', or the row end. */
+    private static int keyEnd(ByteBuffer data, int start, int end) {
+        int fields = 0;
+        for (int p = start; p < end; p++) {
+            if (data.get(p) == ';' && ++fields == 3) {
+                return p;
+            }
+        }
+        return end;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /** First row of the method (file, method, startLine), or -1. */
+    public int find(CharSequence file, CharSequence method, int startLine) {
+        int slot = probe(file, method, startLine, null);
+        return slot < 0 ? -1 : slots.getInt(slot) - 1;
+    }
+
+    /** Every row of the method (file, method, startLine), one per SATD tag; empty when absent. */
+    public int[] findAll(CharSequence file, CharSequence method, int startLine) {
+        int slot = probe(file, method, startLine, null);
+        if (slot < 0) {
+            return new int[0];
+        }
+        int[] found = new int[slots.getInt(slot + 8)];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = slots.getInt(slot) - 1 + i;
+        }
+        return found;
+    }
+
+    /**
+     * Metrics of the first row of the method (file, method, startLine), or
+     * null; parses the row read to confirm the match, so it costs one read.
+     */
+    public MethodMetrics lookup(CharSequence file, CharSequence method, int startLine) {
+        byte[][] row = new byte[1][];
+        int slot = probe(file, method, startLine, row);
+        return slot < 0 ? null : parse(slots.getInt(slot) - 1, row[0]);
+    }
+
+    /** Byte position of the matching slot, or -1; the matching row's bytes go to {@code row[0]}. */
+    private int probe(CharSequence file, CharSequence method, int startLine, byte[][] row) {
+        String line = Integer.toString(startLine);
+        int h = FNV_OFFSET;
+        h = hash(h, file);
+        h = (h ^ ';') * FNV_PRIME;
+        h = hash(h, method);
+        h = (h ^ ';') * FNV_PRIME;
+        h = hash(h, line);
+        for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+            int at = slot * SLOT_INTS * Integer.BYTES;
+            int r = slots.getInt(at) - 1;
+            if (r < 0) {
+                return -1;
+            }
+            if (slots.getInt(at + 4) != h) {
+                continue;
+            }
+            byte[] bytes = read(r);
+            if (keyEquals(bytes, file, method, line)) {
+                if (row != null) {
+                    row[0] = bytes;
+                }
+                return at;
+            }
+        }
+    }
+
+    private static int hash(int h, CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ (s.charAt(i) & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static boolean keyEquals(byte[] row, CharSequence file, CharSequence method, String line) {
+        int p = 0;
+        for (CharSequence part : new CharSequence[] {file, method, line}) {
+            for (int i = 0; i < part.length(); i++, p++) {
+                if (p >= row.length || (row[p] & 0xFF) != part.charAt(i)) {
+                    return false;
+                }
+            }
+            if (p >= row.length || row[p++] != ';') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Length of row {@code r} without its line end. */
+    private int length(int r) {
+        return (int) (offsets.get(r + 1) - offsets.get(r));
+    }
+
+    /** Bytes of row {@code r}, without the line end, read from the CSV at its offset. */
+    public byte[] read(int r) {
+        long at = offsets.get(r);
+        int n = length(r);
+        ByteBuffer b = ByteBuffer.allocate(n);
+        try {
+            while (b.hasRemaining()) {
+                if (csv.read(b, at + b.position()) < 0) {
+                    throw new IOException("CSV shorter than its index");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        while (n > 0 && (b.get(n - 1) == '\n' || b.get(n - 1) == '\r')) {
+            n--;
+        }
+        return Arrays.copyOf(b.array(), n);
+    }
+
+    /** Row {@code r} as read from the CSV. */
+    public String line(int r) {
+        return new String(read(r), StandardCharsets.ISO_8859_1);
+    }
+
+    /** The 19 fields of row {@code r}, see {@link MetricsColumn}. */
+    public String[] fields(int r) {
+        return line(r).split(";", -1);
+    }
+
+    /** Method, lines, measured counts and readability of row {@code r}. */
+    public MethodMetrics metrics(int r) {
+        return parse(r, read(r));
+    }
+
+    private static MethodMetrics parse(int r, byte[] row) {
+        int[] bounds = new int[MetricsColumn.values().length + 1];
+        int f = 1;
+        for (int p = 0; p < row.length && f < bounds.length - 1; p++) {
+            if (row[p] == ';') {
+                bounds[f++] = p + 1;
+            }
+        }
+        if (f != bounds.length - 1) {
+            throw new IllegalStateException("row " + r + " has " + f + " fields");
+        }
+        bounds[f] = row.length + 1;
+        int[] metrics = new int[MetricsColumn.METRICS.length];
+        for (int i = 0; i < metrics.length; i++) {
+            int c = MetricsColumn.METRICS[i].ordinal();
+            metrics[i] = Numbers.parseInt(row, bounds[c], bounds[c + 1] - 1);
+        }
+        int method = MetricsColumn.METHOD.ordinal();
+        int start = MetricsColumn.START_LINE.ordinal();
+        int end = MetricsColumn.END_LINE.ordinal();
+        int readability = MetricsColumn.READABILITY.ordinal();
+        return new MethodMetrics(
+                new String(row, bounds[method], bounds[method + 1] - 1 - bounds[method], StandardCharsets.ISO_8859_1),
+                Numbers.parseInt(row, bounds[start], bounds[start + 1] - 1),
+                Numbers.parseInt(row, bounds[end], bounds[end + 1] - 1),
+                metrics,
+                Numbers.parseDouble(row, bounds[readability], bounds[readability + 1] - 1));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            csv.close();
+        } finally {
+            index.close();
+        }
+    }
+}
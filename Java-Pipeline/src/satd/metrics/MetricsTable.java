@@ -0,0 +1,84 @@
+package satd.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The method metrics of one or more systems as primitive columns, one array
+ * per {@link MetricsColumn}, rows in file order and systems one after the
+ * other. {@link #system(int)} tells which system a row comes from.
+ */
+public final class MetricsTable {
+
+    private final List<String> systems;
+    private final int[] systemStart;
+    private final int rows;
+    private final Object[] columns = new Object[MetricsColumn.values().length];
+
+    /** @param systemRows number of rows of each system, in order */
+    MetricsTable(List<String> systems, int[] systemRows) {
+        this.systems = Collections.unmodifiableList(systems);
+        this.systemStart = new int[systemRows.length + 1];
+        for (int s = 0; s < systemRows.length; s++) {
+            systemStart[s + 1] = systemStart[s] + systemRows[s];
+        }
+        this.rows = systemStart[systemRows.length];
+        for (MetricsColumn c : MetricsColumn.values()) {
+            switch (c.type()) {
+                case STRING: columns[c.ordinal()] = new String[rows]; break;
+                case INT: columns[c.ordinal()] = new int[rows]; break;
+                case DOUBLE: columns[c.ordinal()] = new double[rows]; break;
+                default: columns[c.ordinal()] = new boolean[rows]; break;
+            }
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public List<String> systems() {
+        return systems;
+    }
+
+    /** Index in {@link #systems()} of the system row {@code row} belongs to. */
+    public int system(int row) {
+        int s = Arrays.binarySearch(systemStart, row);
+        if (s < 0) {
+            return -s - 2;
+        }
+        while (systemStart[s + 1] == row) {
+            s++;
+        }
+        return s;
+    }
+
+    /** First row of system {@code s}; its rows are [start(s), start(s + 1)). */
+    public int start(int s) {
+        return systemStart[s];
+    }
+
+    public String[] strings(MetricsColumn c) {
+        return (String[]) column(c, MetricsColumn.Type.STRING);
+    }
+
+    public int[] ints(MetricsColumn c) {
+        return (int[]) column(c, MetricsColumn.Type.INT);
+    }
+
+    public double[] doubles(MetricsColumn c) {
+        return (double[]) column(c, MetricsColumn.Type.DOUBLE);
+    }
+
+    public boolean[] booleans(MetricsColumn c) {
+        return (boolean[]) column(c, MetricsColumn.Type.BOOLEAN);
+    }
+
+    private Object column(MetricsColumn c, MetricsColumn.Type type) {
+        if (c.type() != type) {
+            throw new IllegalArgumentException(c.header() + " is " + c.type() + ", not " + type);
+        }
+        return columns[c.ordinal()];
+    }
+}
@@ -0,0 +1,855 @@
+package satd.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes seven of the nine met-metr counts of every method straight from
+ * source, with one pass over the tokens of {@link JavaLexer} and no syntax
+ * tree.
+ *
+ * Each token gets its counts in per-metric arrays, turned into prefix sums
+ * at the end of the file; a method's count is the difference of the sums at
+ * its first and last token. Methods of local and anonymous classes are rows
+ * of their own and also count towards the methods around them, as in the
+ * metrics files. A file holding bare methods, like the snippets of
+ * toAnalyse_*.java, is measured as if it were a class body.
+ *
+ *   Size         EndLine - StartLine + 1, from the declaration (annotations
+ *                and javadoc excluded) to the closing brace
+ *   ParNbr       parameters
+ *   CalledNbr    method and constructor calls
+ *   DeclNbr      parameters, local variables, for and catch variables
+ *   ExprStmtNbr  expression statements (not declarations, not for updates)
+ *   CommentNbr   comments between the declaration and the closing brace
+ *   McCabe       1 + if, for, while, switch and case; as in the metrics
+ *                files, do-while loops, catch, &&, || and ?: do not count
+ *
+ * These are the {@link #COLUMNS} it writes. ExprNbr and VarsNbr are not
+ * computed and not written: the counting rules of the tool behind the
+ * metrics files could not be recovered from the snippets that have a
+ * reference row (no sum of token counts matched more than 14 of 52), so
+ * their slots of {@link MethodMetrics} hold {@link MethodMetrics#NOT_MEASURED}.
+ * Readability is computed by the Readability-Metric tool and is not
+ * written either.
+ *
+ * With {@code --cache}, rows are kept in the {@link #ID} log of the cache
+ * directory, apart from the rows seeded from the tool (see MetricsCache).
+ * An instance reuses its buffers from file to file and is not thread-safe.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.metrics.SourceMeasurer --src hibernate-distribution-3.3.2.GA > hibernate.csv
+ *   java -cp out satd.metrics.SourceMeasurer --src hibernate-distribution-3.3.2.GA --cache cache > hibernate.csv
+ */
+public final class SourceMeasurer implements MethodMeasurer {
+
+    /**
+     * Cache id; bump the version whenever a count changes. Version 1 still
+     * approximated ExprNbr and VarsNbr, version 2 counted do-while loops and
+     * no switch in McCabe.
+     */
+    public static final String ID = "source-measurer-3";
+
+    /** The met-metr columns computed and written, in met-metr order. */
+    public static final MetricsColumn[] COLUMNS = {
+        MetricsColumn.SIZE, MetricsColumn.PAR_NBR, MetricsColumn.CALLED_NBR, MetricsColumn.DECL_NBR,
+        MetricsColumn.EXPR_STMT_NBR, MetricsColumn.COMMENT_NBR, MetricsColumn.MC_CABE,
+    };
+
+    private static final int SIZE = 0;
+    private static final int PAR = 1;
+    private static final int CALLED = 2;
+    private static final int DECL = 3;
+    private static final int EXPR_STMT = 4;
+    private static final int EXPR = 5;
+    private static final int COMMENT = 6;
+    private static final int VARS = 7;
+    private static final int MC_CABE = 8;
+
+    private static final int[] COUNTED = {CALLED, DECL, EXPR_STMT, MC_CABE};
+
+    private static final int CLASS = 0;
+    private static final int METHOD = 1;
+    private static final int BLOCK = 2;
+    private static final int INIT = 3;
+
+    private static final int PAREN = 0;
+    private static final int PARAMS = 1;
+    private static final int CONTROL = 2;
+
+    private static final int GENERIC = 1;
+
+    private static final int K_ABSTRACT = JavaLexer.keyword("abstract");
+    private static final int K_CASE = JavaLexer.keyword("case");
+    private static final int K_CATCH = JavaLexer.keyword("catch");
+    private static final int K_CLASS = JavaLexer.keyword("class");
+    private static final int K_DEFAULT = JavaLexer.keyword("default");
+    private static final int K_DO = JavaLexer.keyword("do");
+    private static final int K_ELSE = JavaLexer.keyword("else");
+    private static final int K_ENUM = JavaLexer.keyword("enum");
+    private static final int K_EXTENDS = JavaLexer.keyword("extends");
+    private static final int K_FINAL = JavaLexer.keyword("final");
+    private static final int K_FINALLY = JavaLexer.keyword("finally");
+    private static final int K_FOR = JavaLexer.keyword("for");
+    private static final int K_IF = JavaLexer.keyword("if");
+    private static final int K_INTERFACE = JavaLexer.keyword("interface");
+    private static final int K_NEW = JavaLexer.keyword("new");
+    private static final int K_STATIC = JavaLexer.keyword("static");
+    private static final int K_STRICTFP = JavaLexer.keyword("strictfp");
+    private static final int K_SUPER = JavaLexer.keyword("super");
+    private static final int K_SWITCH = JavaLexer.keyword("switch");
+    private static final int K_SYNCHRONIZED = JavaLexer.keyword("synchronized");
+    private static final int K_THIS = JavaLexer.keyword("this");
+    private static final int K_TRY = JavaLexer.keyword("try");
+    private static final int K_WHILE = JavaLexer.keyword("while");
+    private static final boolean[] PRIMITIVE = new boolean[JavaLexer.KEYWORDS.length];
+    private static final boolean[] NOT_EXPR_STMT = new boolean[JavaLexer.KEYWORDS.length];
+
+    static {
+        for (String k : new String[] {"boolean", "byte", "char", "short", "int", "long", "float", "double", "void"}) {
+            PRIMITIVE[JavaLexer.keyword(k)] = true;
+        }
+        for (String k : new String[] {"return", "break", "continue", "throw", "assert", "goto", "const"}) {
+            NOT_EXPR_STMT[JavaLexer.keyword(k)] = true;
+        }
+    }
+
+    private static final int O_LPAREN = JavaLexer.op("(");
+    private static final int O_RPAREN = JavaLexer.op(")");
+    private static final int O_LBRACE = JavaLexer.op("{");
+    private static final int O_RBRACE = JavaLexer.op("}");
+    private static final int O_LBRACKET = JavaLexer.op("[");
+    private static final int O_RBRACKET = JavaLexer.op("]");
+    private static final int O_SEMI = JavaLexer.op(";");
+    private static final int O_COMMA = JavaLexer.op(",");
+    private static final int O_DOT = JavaLexer.op(".");
+    private static final int O_COLON = JavaLexer.op(":");
+    private static final int O_AT = JavaLexer.op("@");
+    private static final int O_ASSIGN = JavaLexer.op("=");
+    private static final int O_LT = JavaLexer.op("<");
+    private static final int O_GT = JavaLexer.op(">");
+    private static final int O_SHR = JavaLexer.op(">>");
+    private static final int O_USHR = JavaLexer.op(">>>");
+    private static final int O_ARROW = JavaLexer.op("->");
+    private static final int O_QUESTION = JavaLexer.op("?");
+    private static final int O_AMP = JavaLexer.op("&");
+
+    private final JavaLexer lex = new JavaLexer();
+    private int n;
+    private int[] flags = new int[0];
+    private int[][] counts = new int[MetricsColumn.METRICS.length][0];
+
+    private Frame[] frames = new Frame[16];
+    private int depth;
+
+    private int[] parenKind = new int[64];
+    private int[] parenKeyword = new int[64];
+    private int[] parenOpen = new int[64];
+    private int parens;
+    private int lastClosedOpen = -1;
+    private int lastGenericOpen = -1;
+    private int lastGenericClose = -1;
+
+    private int methods;
+    private int[] methodStart = new int[64];
+    private int[] methodName = new int[64];
+    private int[] methodClose = new int[64];
+    private int[] methodParams = new int[64];
+
+    /** Parse state of one brace level. */
+    private static final class Frame {
+        int kind;
+        int parenBase;
+        int method;
+        boolean continuation;
+        boolean resumeStatement;
+
+        boolean enumConstants;
+        int headerStart;
+        int headerName;
+        int headerParams;
+        int headerCommas;
+        int headerAngle;
+        boolean headerAny;
+        boolean headerClosed;
+        boolean headerAssign;
+        boolean headerClass;
+        boolean headerEnum;
+
+        boolean statement;
+        boolean inCase;
+        boolean label;
+        boolean pendingClass;
+
+        void resetHeader() {
+            headerStart = -1;
+            headerName = -1;
+            headerParams = 0;
+            headerCommas = 0;
+            headerAngle = 0;
+            headerAny = false;
+            headerClosed = false;
+            headerAssign = false;
+            headerClass = false;
+            headerEnum = false;
+        }
+    }
+
+    public SourceMeasurer() {
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new Frame();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path src = null;
+        Path cache = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--src": src = Paths.get(args[i + 1]); break;
+                case "--cache": cache = Paths.get(args[i + 1]); break;
+                default: break;
+            }
+        }
+        if (src == null) {
+            System.err.println("Usage: SourceMeasurer --src root [--cache dir]");
+            System.exit(1);
+        }
+        List<Path> files = MetricsCache.javaFiles(src);
+        SourceMeasurer measurer = new SourceMeasurer();
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.ISO_8859_1));
+        out.write("File;Method;StartLine;EndLine");
+        for (MetricsColumn c : COLUMNS) {
+            out.write(';');
+            out.write(c.header());
+        }
+        out.write('\n');
+        if (cache != null) {
+            try (MetricsCache c = MetricsCache.open(cache, measurer.id())) {
+                MetricsCache.Measured m = c.measure(src, files, measurer);
+                for (Map.Entry<String, List<MethodMetrics>> e : m.rows.entrySet()) {
+                    write(out, e.getKey(), e.getValue());
+                }
+                System.err.println(m.hits + " files from cache, " + m.misses + " measured");
+            }
+        } else {
+            for (Path f : files) {
+                write(out, MetricsCache.pathOf(src, f), measurer.measure(MetricsCache.pathOf(src, f), Files.readAllBytes(f)));
+            }
+        }
+        out.flush();
+    }
+
+    /** Writes File;Method;StartLine;EndLine rows followed by the {@link #COLUMNS}. */
+    private static void write(Writer out, String path, List<MethodMetrics> rows) throws IOException {
+        for (MethodMetrics m : rows) {
+            out.write(path);
+            out.write(';');
+            out.write(m.method());
+            out.write(';');
+            out.write(Integer.toString(m.startLine()));
+            out.write(';');
+            out.write(Integer.toString(m.endLine()));
+            for (MetricsColumn c : COLUMNS) {
+                out.write(';');
+                out.write(Integer.toString(m.metric(c)));
+            }
+            out.write('\n');
+        }
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public List<MethodMetrics> measure(String path, byte[] source) {
+        n = lex.tokenize(source);
+        if (flags.length < n + 1) {
+            flags = new int[n + 1 + (n >> 1)];
+            for (int k : COUNTED) {
+                counts[k] = new int[flags.length];
+            }
+        }
+        Arrays.fill(flags, 0, n + 1, 0);
+        for (int k : COUNTED) {
+            Arrays.fill(counts[k], 0, n + 1, 0);
+        }
+        depth = 0;
+        parens = 0;
+        methods = 0;
+        lastClosedOpen = -1;
+        lastGenericOpen = -1;
+        lastGenericClose = -1;
+        init(frames[0], CLASS, false, false);
+
+        for (int i = 0; i < n; i++) {
+            if (lex.isOp(i, O_LBRACE)) {
+                openBrace(i);
+            } else if (lex.isOp(i, O_RBRACE)) {
+                closeBrace(i);
+            } else if (frames[depth].kind == CLASS) {
+                classToken(frames[depth], i);
+            } else {
+                codeToken(frames[depth], i);
+            }
+        }
+
+        for (int k : COUNTED) {
+            int[] c = counts[k];
+            int sum = 0;
+            for (int i = 0; i <= n; i++) {
+                int v = c[i];
+                c[i] = sum;
+                sum += v;
+            }
+        }
+        List<MethodMetrics> rows = new ArrayList<>(methods);
+        int[] m = new int[MetricsColumn.METRICS.length];
+        for (int r = 0; r < methods; r++) {
+            int from = methodStart[r];
+            int to = methodClose[r] < 0 ? n - 1 : methodClose[r];
+            for (int k : COUNTED) {
+                m[k] = counts[k][to + 1] - counts[k][from];
+            }
+            int startLine = lex.line[from];
+            int endLine = lex.line[to];
+            m[SIZE] = endLine - startLine + 1;
+            m[PAR] = methodParams[r];
+            m[COMMENT] = commentsBefore(lex.start[to]) - commentsBefore(lex.start[from]);
+            m[MC_CABE]++;
+            m[EXPR] = MethodMetrics.NOT_MEASURED;
+            m[VARS] = MethodMetrics.NOT_MEASURED;
+            rows.add(new MethodMetrics(lex.text(methodName[r]), startLine, endLine, m, Double.NaN));
+        }
+        return rows;
+    }
+
+    private void openBrace(int i) {
+        Frame f = frames[depth];
+        if (f.kind == CLASS) {
+            boolean top = parens == f.parenBase;
+            if (!top || f.enumConstants) {
+                push(isAnonymous(i) || f.enumConstants ? CLASS : INIT, true, false);
+            } else if (f.headerStart < 0) {
+                push(BLOCK, false, false);
+            } else if (f.headerClass) {
+                boolean isEnum = f.headerEnum;
+                push(CLASS, false, false);
+                frames[depth].enumConstants = isEnum;
+            } else if (f.headerAssign) {
+                push(isAnonymous(i) ? CLASS : lex.isOp(i - 1, O_ARROW) ? BLOCK : INIT, true, false);
+            } else if (f.headerClosed && f.headerName >= 0) {
+                addMethod(f);
+                push(METHOD, false, false);
+                frames[depth].method = methods - 1;
+            } else {
+                push(BLOCK, false, false);
+            }
+        } else if (isAnonymous(i)) {
+            push(CLASS, true, false);
+        } else if (f.kind == INIT || lex.isOp(i - 1, O_ASSIGN) || lex.isOp(i - 1, O_COMMA) || lex.isOp(i - 1, O_RBRACKET)) {
+            push(INIT, true, false);
+        } else if (f.pendingClass) {
+            f.pendingClass = false;
+            push(CLASS, true, true);
+        } else {
+            push(BLOCK, true, !lex.isOp(i - 1, O_ARROW));
+        }
+    }
+
+    private void closeBrace(int i) {
+        if (depth == 0) {
+            return;
+        }
+        Frame f = frames[depth];
+        if (f.kind == METHOD) {
+            methodClose[f.method] = i;
+        }
+        parens = f.parenBase;
+        depth--;
+        Frame outer = frames[depth];
+        if (outer.kind == CLASS) {
+            if (!f.continuation) {
+                outer.resetHeader();
+            }
+        } else {
+            outer.statement = f.resumeStatement;
+        }
+    }
+
+    private void push(int kind, boolean continuation, boolean resumeStatement) {
+        if (++depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+            for (int k = depth; k < frames.length; k++) {
+                frames[k] = new Frame();
+            }
+        }
+        init(frames[depth], kind, continuation, resumeStatement);
+    }
+
+    private void init(Frame f, int kind, boolean continuation, boolean resumeStatement) {
+        f.kind = kind;
+        f.parenBase = parens;
+        f.method = -1;
+        f.continuation = continuation;
+        f.resumeStatement = resumeStatement;
+        f.enumConstants = false;
+        f.resetHeader();
+        f.statement = kind == METHOD || kind == BLOCK;
+        f.inCase = false;
+        f.label = false;
+        f.pendingClass = false;
+    }
+
+    private void addMethod(Frame f) {
+        if (methods == methodStart.length) {
+            int cap = methods * 2;
+            methodStart = Arrays.copyOf(methodStart, cap);
+            methodName = Arrays.copyOf(methodName, cap);
+            methodClose = Arrays.copyOf(methodClose, cap);
+            methodParams = Arrays.copyOf(methodParams, cap);
+        }
+        methodStart[methods] = skipAnnotations(f.headerStart);
+        methodName[methods] = f.headerName;
+        methodClose[methods] = -1;
+        methodParams[methods] = f.headerParams;
+        counts[DECL][f.headerName] += f.headerParams;
+        methods++;
+    }
+
+    private void classToken(Frame f, int i) {
+        boolean top = parens == f.parenBase;
+        if (f.headerStart < 0) {
+            if (lex.isOp(i, O_SEMI)) {
+                if (top) {
+                    f.enumConstants = false;
+                }
+                return;
+            }
+            f.headerStart = i;
+        }
+        boolean inParams = f.headerName >= 0 && !f.headerClosed;
+        int kind = lex.kind[i];
+        int code = lex.code[i];
+        if (kind == JavaLexer.OP) {
+            if (code == O_SEMI && top) {
+                f.resetHeader();
+                f.enumConstants = false;
+            } else if (code == O_COMMA) {
+                if (top && f.enumConstants) {
+                    f.resetHeader();
+                } else if (inParams && parens == f.parenBase + 1 && f.headerAngle == 0) {
+                    f.headerCommas++;
+                }
+            } else if (code == O_LPAREN) {
+                int k = PAREN;
+                if (top && !f.enumConstants && !f.headerAssign && f.headerName < 0
+                        && lex.kind[i - 1] == JavaLexer.IDENT && !isAnnotation(i - 1)) {
+                    f.headerName = i - 1;
+                    k = PARAMS;
+                }
+                pushParen(k, -1, i);
+                return;
+            } else if (code == O_RPAREN) {
+                if (parens > f.parenBase) {
+                    if (popParen() == PARAMS) {
+                        f.headerParams = f.headerAny ? f.headerCommas + 1 : 0;
+                        f.headerClosed = true;
+                        return;
+                    }
+                }
+            } else if (code == O_ASSIGN && top) {
+                f.headerAssign = true;
+            } else if (inParams && code == O_LT) {
+                f.headerAngle++;
+            } else if (inParams && code == O_GT) {
+                f.headerAngle--;
+            } else if (inParams && code == O_SHR) {
+                f.headerAngle -= 2;
+            } else if (inParams && code == O_USHR) {
+                f.headerAngle -= 3;
+            }
+        } else if (kind == JavaLexer.KEYWORD && top && !lex.isOp(i - 1, O_DOT)
+                && (code == K_CLASS || code == K_INTERFACE || code == K_ENUM)) {
+            f.headerClass = true;
+            f.headerEnum = code == K_ENUM;
+        }
+        if (inParams) {
+            f.headerAny = true;
+        }
+    }
+
+    private void codeToken(Frame f, int i) {
+        if (f.statement && f.kind != INIT && parens == f.parenBase) {
+            statement(f, i);
+        }
+        int kind = lex.kind[i];
+        int code = lex.code[i];
+        switch (kind) {
+            case JavaLexer.IDENT:
+                if (lex.isOp(i + 1, O_LPAREN) && !isAnnotation(i)) {
+                    counts[CALLED][i]++;
+                }
+                break;
+            case JavaLexer.KEYWORD:
+                if (code == K_IF || code == K_FOR || code == K_SWITCH || code == K_CASE
+                        || (code == K_WHILE && !closesDo(i))) {
+                    counts[MC_CABE][i]++;
+                }
+                break;
+            case JavaLexer.OP:
+                operator(f, i, code);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void operator(Frame f, int i, int code) {
+        if (code == O_LPAREN) {
+            int prev = i - 1;
+            int keyword = prev >= 0 && lex.kind[prev] == JavaLexer.KEYWORD ? lex.code[prev] : -1;
+            boolean control = keyword == K_IF || keyword == K_FOR || keyword == K_WHILE || keyword == K_SWITCH
+                    || keyword == K_CATCH || keyword == K_SYNCHRONIZED;
+            if (control) {
+                if (keyword == K_FOR) {
+                    counts[DECL][i + 1 < n ? i + 1 : i] += declarators(i + 1, true);
+                } else if (keyword == K_CATCH) {
+                    counts[DECL][i]++;
+                }
+            } else if (prev >= 0 && prev == lastGenericClose && lastGenericOpen > 0
+                    && lex.kind[lastGenericOpen - 1] == JavaLexer.IDENT) {
+                counts[CALLED][i]++;
+            }
+            pushParen(control ? CONTROL : PAREN, keyword, i);
+        } else if (code == O_RPAREN) {
+            if (parens > f.parenBase) {
+                int keyword = parenKeyword[parens - 1];
+                if (popParen() == CONTROL && (keyword == K_IF || keyword == K_FOR || keyword == K_WHILE)) {
+                    f.statement = true;
+                }
+            }
+        } else if (code == O_SEMI) {
+            if (parens == f.parenBase) {
+                f.statement = true;
+                f.inCase = false;
+            }
+        } else if (code == O_COLON) {
+            if (parens == f.parenBase && (f.inCase || f.label)) {
+                f.inCase = false;
+                f.label = false;
+                f.statement = true;
+            }
+        } else if (code == O_LT && (flags[i] & GENERIC) == 0 && i > 0
+                && (lex.kind[i - 1] == JavaLexer.IDENT || lex.isOp(i - 1, O_DOT))) {
+            int end = genericEnd(i);
+            if (end > 0) {
+                for (int t = i; t < end; t++) {
+                    flags[t] |= GENERIC;
+                }
+                lastGenericOpen = i;
+                lastGenericClose = end - 1;
+            }
+        }
+    }
+
+    /** Classifies the statement that starts at token {@code i}. */
+    private void statement(Frame f, int i) {
+        int kind = lex.kind[i];
+        int code = lex.code[i];
+        if (kind == JavaLexer.OP && code == O_SEMI) {
+            return;
+        }
+        f.statement = false;
+        if (kind == JavaLexer.KEYWORD) {
+            if (code == K_ELSE || code == K_DO || code == K_TRY || code == K_FINALLY) {
+                f.statement = true;
+                return;
+            }
+            if (code == K_CASE || code == K_DEFAULT) {
+                f.inCase = true;
+                return;
+            }
+            if (code == K_IF || code == K_FOR || code == K_WHILE || code == K_SWITCH || code == K_SYNCHRONIZED
+                    || code == K_CATCH || NOT_EXPR_STMT[code]) {
+                return;
+            }
+            if ((code == K_THIS || code == K_SUPER) && lex.isOp(i + 1, O_LPAREN)) {
+                return;
+            }
+        }
+        if (kind == JavaLexer.IDENT && lex.isOp(i + 1, O_COLON)) {
+            f.label = true;
+            return;
+        }
+        int t = skipModifiers(i);
+        if (lex.isKeyword(t, K_CLASS) || lex.isKeyword(t, K_INTERFACE) || lex.isKeyword(t, K_ENUM)) {
+            f.pendingClass = true;
+            return;
+        }
+        int d = declarators(i, false);
+        if (d > 0) {
+            counts[DECL][i] += d;
+        } else {
+            counts[EXPR_STMT][i]++;
+        }
+    }
+
+    /**
+     * Number of variables declared by a local declaration starting at
+     * {@code i}, or 0 if there is none there. Marks the initializer '='
+     * tokens so they are not counted as assignments.
+     */
+    private int declarators(int i, boolean forHeader) {
+        int t = skipType(skipModifiers(i));
+        if (t < 0 || t >= n || lex.kind[t] != JavaLexer.IDENT) {
+            return 0;
+        }
+        int next = t + 1;
+        if (next < n && lex.kind[next] == JavaLexer.OP) {
+            int c = lex.code[next];
+            if (c != O_ASSIGN && c != O_SEMI && c != O_COMMA && c != O_COLON && c != O_LBRACKET && c != O_RPAREN) {
+                return 0;
+            }
+        } else if (next < n) {
+            return 0;
+        }
+        int d = 1;
+        int nest = 0;
+        for (int j = next; j < n; j++) {
+            if (lex.kind[j] != JavaLexer.OP) {
+                continue;
+            }
+            int c = lex.code[j];
+            if (c == O_LPAREN || c == O_LBRACKET || c == O_LBRACE) {
+                nest++;
+            } else if (c == O_RPAREN || c == O_RBRACKET || c == O_RBRACE) {
+                if (--nest < 0) {
+                    break;
+                }
+            } else if (nest == 0) {
+                if (c == O_SEMI || (forHeader && c == O_COLON)) {
+                    break;
+                } else if (c == O_COMMA) {
+                    d++;
+                } else if (c == O_LT) {
+                    int end = genericEnd(j);
+                    if (end > 0) {
+                        j = end - 1;
+                    }
+                }
+            }
+        }
+        return d;
+    }
+
+    private int skipModifiers(int i) {
+        while (i < n) {
+            if (lex.isKeyword(i, K_FINAL) || lex.isKeyword(i, K_ABSTRACT) || lex.isKeyword(i, K_STATIC)
+                    || lex.isKeyword(i, K_STRICTFP)) {
+                i++;
+            } else if (lex.isOp(i, O_AT) && !lex.isKeyword(i + 1, K_INTERFACE)) {
+                i = skipAnnotation(i);
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private int skipAnnotations(int i) {
+        while (lex.isOp(i, O_AT) && !lex.isKeyword(i + 1, K_INTERFACE)) {
+            i = skipAnnotation(i);
+        }
+        return i;
+    }
+
+    /** Index after the annotation at {@code i}: '@' Name ('.' Name)* ['(' ... ')']. */
+    private int skipAnnotation(int i) {
+        i++;
+        while (i < n && lex.kind[i] == JavaLexer.IDENT) {
+            i++;
+            if (lex.isOp(i, O_DOT)) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (lex.isOp(i, O_LPAREN)) {
+            int nest = 0;
+            for (; i < n; i++) {
+                if (lex.isOp(i, O_LPAREN)) {
+                    nest++;
+                } else if (lex.isOp(i, O_RPAREN) && --nest == 0) {
+                    return i + 1;
+                }
+            }
+        }
+        return i;
+    }
+
+    /** Index after the type starting at {@code i}, or -1 if no type starts there. */
+    private int skipType(int i) {
+        if (i >= n) {
+            return -1;
+        }
+        if (lex.kind[i] == JavaLexer.KEYWORD && PRIMITIVE[lex.code[i]]) {
+            i++;
+        } else if (lex.kind[i] == JavaLexer.IDENT) {
+            i++;
+            while (i < n) {
+                if (lex.isOp(i, O_LT)) {
+                    int end = genericEnd(i);
+                    if (end < 0) {
+                        return -1;
+                    }
+                    i = end;
+                } else if (lex.isOp(i, O_DOT) && i + 1 < n && lex.kind[i + 1] == JavaLexer.IDENT) {
+                    i += 2;
+                } else {
+                    break;
+                }
+            }
+        } else {
+            return -1;
+        }
+        while (lex.isOp(i, O_LBRACKET) && lex.isOp(i + 1, O_RBRACKET)) {
+            i += 2;
+        }
+        return i;
+    }
+
+    /** Index after the type arguments opened by the '<' at {@code i}, or -1 if they are not type arguments. */
+    private int genericEnd(int i) {
+        int nest = 0;
+        for (int t = i; t < n && t < i + 64; t++) {
+            int kind = lex.kind[t];
+            int code = lex.code[t];
+            if (kind == JavaLexer.IDENT) {
+                continue;
+            }
+            if (kind == JavaLexer.KEYWORD) {
+                if (code == K_EXTENDS || code == K_SUPER || PRIMITIVE[code]) {
+                    continue;
+                }
+                return -1;
+            }
+            if (kind != JavaLexer.OP) {
+                return -1;
+            }
+            if (code == O_LT) {
+                nest++;
+            } else if (code == O_GT || code == O_SHR || code == O_USHR) {
+                nest -= code == O_GT ? 1 : code == O_SHR ? 2 : 3;
+                if (nest == 0) {
+                    return t + 1;
+                }
+                if (nest < 0) {
+                    return -1;
+                }
+            } else if (code != O_DOT && code != O_COMMA && code != O_QUESTION && code != O_LBRACKET
+                    && code != O_RBRACKET && code != O_AMP) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /** Whether the {@code while} at {@code i} ends a do statement: its condition is followed by ';'. */
+    private boolean closesDo(int i) {
+        if (!lex.isOp(i + 1, O_LPAREN)) {
+            return false;
+        }
+        int nest = 0;
+        for (int t = i + 1; t < n; t++) {
+            if (lex.isOp(t, O_LPAREN)) {
+                nest++;
+            } else if (lex.isOp(t, O_RPAREN) && --nest == 0) {
+                return lex.isOp(t + 1, O_SEMI);
+            }
+        }
+        return false;
+    }
+
+    /** Whether the identifier at {@code i} names an annotation. */
+    private boolean isAnnotation(int i) {
+        while (i > 0 && lex.isOp(i - 1, O_DOT) && i > 1 && lex.kind[i - 2] == JavaLexer.IDENT) {
+            i -= 2;
+        }
+        return lex.isOp(i - 1, O_AT);
+    }
+
+    /** Whether the '{' at {@code i} opens the body of {@code new T(...)}. */
+    private boolean isAnonymous(int i) {
+        if (!lex.isOp(i - 1, O_RPAREN) || lastClosedOpen < 0) {
+            return false;
+        }
+        int j = lastClosedOpen - 1;
+        if (lex.isOp(j, O_GT) || lex.isOp(j, O_SHR)) {
+            int nest = 0;
+            for (; j > 0; j--) {
+                if (lex.isOp(j, O_GT)) {
+                    nest++;
+                } else if (lex.isOp(j, O_SHR)) {
+                    nest += 2;
+                } else if (lex.isOp(j, O_LT) && --nest == 0) {
+                    j--;
+                    break;
+                }
+            }
+        }
+        if (j < 0 || lex.kind[j] != JavaLexer.IDENT) {
+            return false;
+        }
+        while (j > 1 && lex.isOp(j - 1, O_DOT) && lex.kind[j - 2] == JavaLexer.IDENT) {
+            j -= 2;
+        }
+        return lex.isKeyword(j - 1, K_NEW);
+    }
+
+    private void pushParen(int kind, int keyword, int at) {
+        if (parens == parenKind.length) {
+            parenKind = Arrays.copyOf(parenKind, parens * 2);
+            parenKeyword = Arrays.copyOf(parenKeyword, parens * 2);
+            parenOpen = Arrays.copyOf(parenOpen, parens * 2);
+        }
+        parenKind[parens] = kind;
+        parenKeyword[parens] = keyword;
+        parenOpen[parens] = at;
+        parens++;
+    }
+
+    private int popParen() {
+        parens--;
+        lastClosedOpen = parenOpen[parens];
+        return parenKind[parens];
+    }
+
+    /** Number of comments that start before byte offset {@code offset}. */
+    private int commentsBefore(int offset) {
+        int lo = 0;
+        int hi = lex.comments;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lex.commentStart[mid] < offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
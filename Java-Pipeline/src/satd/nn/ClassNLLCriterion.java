@@ -0,0 +1,23 @@
+package satd.nn;
+
+import java.util.Arrays;
+
+/**
+ * Torch's nn.ClassNLLCriterion on log-probabilities: the loss is
+ * {@code -input[label]}. Labels count from 0 here, from 1 in Lua.
+ */
+public final class ClassNLLCriterion {
+
+    private float[] gradInput = new float[0];
+
+    public float forward(float[] input, int label) {
+        return -input[label];
+    }
+
+    public float[] backward(float[] input, int label) {
+        gradInput = Module.resize(gradInput, input.length);
+        Arrays.fill(gradInput, 0f);
+        gradInput[label] = -1f;
+        return gradInput;
+    }
+}
@@ -0,0 +1,137 @@
+package satd.nn;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * CNN.lua on the JVM: trains its network (two temporal convolutions with
+ * max pooling, two linear layers, log-softmax) to tell triangular from
+ * rectangular pulses in 64-step series, then counts how many pulses it
+ * gets right on the training set, on fresh sets and on fresh sets with
+ * gaussian noise (sd 0.25).
+ *
+ * Pulses are drawn as in CNN.lua: height 5 to 10, width 20 to 40,
+ * starting at step 5 to 10. Every series starts from zeros here, whereas
+ * CNN.lua refills one tensor and leaves the tail of earlier pulses.
+ * Labels are 0 (triangle) and 1 (rectangle).
+ *
+ * EXAMPLE
+ *
+ *   java --add-modules jdk.incubator.vector -cp out satd.nn.CnnPulses --epochs 200 --examples 10000
+ */
+public final class CnnPulses {
+
+    static final int STEPS = 64;
+
+    private CnnPulses() {
+    }
+
+    public static void main(String[] args) {
+        int examples = 10000;
+        int epochs = 200;
+        float learningRate = 0.01f;
+        int rounds = 10;
+        long seed = 1;
+        int i = 0;
+        for (; i + 1 < args.length && args[i].startsWith("--"); i += 2) {
+            switch (args[i]) {
+                case "--examples": examples = Integer.parseInt(args[i + 1]); break;
+                case "--epochs": epochs = Integer.parseInt(args[i + 1]); break;
+                case "--learning-rate": learningRate = Float.parseFloat(args[i + 1]); break;
+                case "--rounds": rounds = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                default: i = args.length; break;
+            }
+        }
+        if (i != args.length) {
+            System.err.println("Usage: CnnPulses [--examples n] [--epochs n] [--learning-rate r] [--rounds n]"
+                    + " [--seed n]");
+            System.exit(1);
+        }
+        Random random = new Random(seed);
+        Sequential model = model(random);
+        float[][] x = new float[examples][];
+        int[] y = new int[examples];
+        pulses(x, y, random);
+        long t0 = System.nanoTime();
+        new StochasticGradient(model, new ClassNLLCriterion(), learningRate, epochs).train(x, y, random, System.out);
+        long t1 = System.nanoTime();
+        System.out.printf(Locale.ROOT, "trained %d epochs in %.1f s (%.1f us per example)%n", epochs,
+                (t1 - t0) / 1e9, (t1 - t0) / 1e3 / epochs / examples);
+        System.out.println("training set: " + correct(model, x, y) + " / " + examples);
+        for (int r = 0; r < rounds; r++) {
+            pulses(x, y, random);
+            System.out.println("fresh set: " + correct(model, x, y) + " / " + examples);
+        }
+        for (int r = 0; r < rounds; r++) {
+            pulses(x, y, random);
+            for (float[] series : x) {
+                for (int t = 0; t < series.length; t++) {
+                    series[t] += (float) (0.25 * random.nextGaussian());
+                }
+            }
+            System.out.println("fresh set with noise: " + correct(model, x, y) + " / " + examples);
+        }
+    }
+
+    /** The network of CNN.lua, initialized as Torch does. */
+    public static Sequential model(Random random) {
+        return new Sequential()
+                .add(new TemporalConvolution(1, 10, 7, random))
+                .add(new TemporalMaxPooling(10, 2))
+                .add(new ReLU())
+                .add(new TemporalConvolution(10, 5, 7, random))
+                .add(new TemporalMaxPooling(5, 2))
+                .add(new ReLU())
+                .add(new View(5, 11))
+                .add(new Linear(11 * 5, 30, random))
+                .add(new ReLU())
+                .add(new Linear(30, 2, random))
+                .add(new ReLU())
+                .add(new LogSoftMax());
+    }
+
+    /** Fills {@code x} with new series and {@code y} with their labels. */
+    public static void pulses(float[][] x, int[] y, Random random) {
+        for (int i = 0; i < x.length; i++) {
+            float[] series = new float[STEPS];
+            int type = 1 + random.nextInt(2);
+            int height = 5 + random.nextInt(6);
+            int width = 20 + random.nextInt(21);
+            int start = 5 + random.nextInt(6);
+            if (type == 1) {
+                double half = width / 2.0;
+                double delta = height / half;
+                for (int j = 1; j <= half; j++) {
+                    series[start - 2 + j] = (float) (delta * j);
+                }
+                // Lua counts on from width / 2 + 1, a half step off for odd widths
+                for (double j = half + 1; j <= width; j++) {
+                    series[(int) (start - 1 + j) - 1] = (float) (delta * (width - j));
+                }
+            } else {
+                for (int j = 1; j <= width; j++) {
+                    series[start - 2 + j] = height;
+                }
+            }
+            x[i] = series;
+            y[i] = type - 1;
+        }
+    }
+
+    /** How many of {@code x} the model labels {@code y}. */
+    public static int correct(Module model, float[][] x, int[] y) {
+        int correct = 0;
+        for (int i = 0; i < x.length; i++) {
+            float[] p = model.forward(x[i]);
+            int best = 0;
+            for (int k = 1; k < p.length; k++) {
+                if (p[k] > p[best]) {
+                    best = k;
+                }
+            }
+            correct += best == y[i] ? 1 : 0;
+        }
+        return correct;
+    }
+}
@@ -0,0 +1,96 @@
+package satd.nn;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Torch's nn.Linear(inputSize, outputSize): {@code W x + b}, with
+ * {@code W} row-major {@code outputSize x inputSize} as Torch keeps it.
+ * Forward is a {@link Simd} dot per output; backward an axpy per output
+ * into the weight gradient and into the input gradient.
+ */
+public final class Linear extends Module {
+
+    private final int inputSize;
+    private final int outputSize;
+    private final float[] weight;
+    private final float[] bias;
+    private final float[] gradWeight;
+    private final float[] gradBias;
+
+    /** Weights and biases uniform in [-s, s], {@code s = 1/sqrt(inputSize)}, as Torch's reset. */
+    public Linear(int inputSize, int outputSize, Random random) {
+        if (inputSize < 1 || outputSize < 1) {
+            throw new IllegalArgumentException("sizes must be positive");
+        }
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.weight = new float[outputSize * inputSize];
+        this.bias = new float[outputSize];
+        this.gradWeight = new float[weight.length];
+        this.gradBias = new float[bias.length];
+        float stdv = (float) (1 / Math.sqrt(inputSize));
+        uniform(weight, stdv, random);
+        uniform(bias, stdv, random);
+    }
+
+    /** Torch's layout, {@code outputSize x inputSize}; live, as Torch's {@code module.weight}. */
+    public float[] weight() {
+        return weight;
+    }
+
+    public float[] bias() {
+        return bias;
+    }
+
+    public float[] gradWeight() {
+        return gradWeight;
+    }
+
+    public float[] gradBias() {
+        return gradBias;
+    }
+
+    static void uniform(float[] v, float stdv, Random random) {
+        for (int i = 0; i < v.length; i++) {
+            v[i] = (2 * random.nextFloat() - 1) * stdv;
+        }
+    }
+
+    @Override
+    public float[] forward(float[] input) {
+        if (input.length != inputSize) {
+            throw new IllegalArgumentException(input.length + " inputs, expected " + inputSize);
+        }
+        output = resize(output, outputSize);
+        for (int o = 0; o < outputSize; o++) {
+            output[o] = bias[o] + Simd.dot(weight, o * inputSize, input, 0, inputSize);
+        }
+        return output;
+    }
+
+    @Override
+    public float[] backward(float[] input, float[] gradOutput) {
+        gradInput = resize(gradInput, inputSize);
+        Arrays.fill(gradInput, 0f);
+        for (int o = 0; o < outputSize; o++) {
+            float g = gradOutput[o];
+            gradBias[o] += g;
+            Simd.axpy(g, input, 0, gradWeight, o * inputSize, inputSize);
+            Simd.axpy(g, weight, o * inputSize, gradInput, 0, inputSize);
+        }
+        return gradInput;
+    }
+
+    @Override
+    public void zeroGradParameters() {
+        Arrays.fill(gradWeight, 0f);
+        Arrays.fill(gradBias, 0f);
+    }
+
+    @Override
+    public void updateParameters(float learningRate) {
+        Simd.axpy(-learningRate, gradWeight, 0, weight, 0, weight.length);
+        Simd.axpy(-learningRate, gradBias, 0, bias, 0, bias.length);
+    }
+}
@@ -0,0 +1,36 @@
+package satd.nn;
+
+/** Torch's nn.LogSoftMax: {@code x - log(sum(exp(x)))}, shifted by the maximum. */
+public final class LogSoftMax extends Module {
+
+    @Override
+    public float[] forward(float[] input) {
+        output = resize(output, input.length);
+        float max = Float.NEGATIVE_INFINITY;
+        for (float v : input) {
+            max = Math.max(max, v);
+        }
+        double sum = 0;
+        for (float v : input) {
+            sum += Math.exp(v - max);
+        }
+        float log = (float) (max + Math.log(sum));
+        for (int j = 0; j < input.length; j++) {
+            output[j] = input[j] - log;
+        }
+        return output;
+    }
+
+    @Override
+    public float[] backward(float[] input, float[] gradOutput) {
+        gradInput = resize(gradInput, input.length);
+        float sum = 0f;
+        for (int j = 0; j < input.length; j++) {
+            sum += gradOutput[j];
+        }
+        for (int j = 0; j < input.length; j++) {
+            gradInput[j] = gradOutput[j] - (float) Math.exp(output[j]) * sum;
+        }
+        return gradInput;
+    }
+}
@@ -0,0 +1,38 @@
+package satd.nn;
+
+/**
+ * A layer of a {@link Sequential} network, after Torch's nn.Module:
+ * {@link #forward} computes and keeps {@link #output}; {@link #backward}
+ * adds the gradient of the loss to the parameter gradients and returns
+ * the gradient with respect to the input.
+ *
+ * Outputs and input gradients are reused from call to call while their
+ * size stays the same, so a module is not thread-safe; use one network
+ * per thread.
+ */
+public abstract class Module {
+
+    protected float[] output = new float[0];
+    protected float[] gradInput = new float[0];
+
+    public abstract float[] forward(float[] input);
+
+    /** {@code input} must be the one of the last {@link #forward}. */
+    public abstract float[] backward(float[] input, float[] gradOutput);
+
+    public float[] output() {
+        return output;
+    }
+
+    public void zeroGradParameters() {
+    }
+
+    /** {@code parameters -= learningRate * gradients}. */
+    public void updateParameters(float learningRate) {
+    }
+
+    /** {@code buffer} when it holds exactly {@code n} values, else a new array. */
+    static float[] resize(float[] buffer, int n) {
+        return buffer.length == n ? buffer : new float[n];
+    }
+}
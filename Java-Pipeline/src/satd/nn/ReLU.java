@@ -0,0 +1,19 @@
+package satd.nn;
+
+/** Torch's nn.ReLU: {@code max(x, 0)}, with no gradient where {@code x <= 0}. */
+public final class ReLU extends Module {
+
+    @Override
+    public float[] forward(float[] input) {
+        output = resize(output, input.length);
+        Simd.relu(input, output, input.length);
+        return output;
+    }
+
+    @Override
+    public float[] backward(float[] input, float[] gradOutput) {
+        gradInput = resize(gradInput, input.length);
+        Simd.reluBackward(input, gradOutput, gradInput, input.length);
+        return gradInput;
+    }
+}
@@ -0,0 +1,65 @@
+package satd.nn;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Torch's nn.Sequential: modules applied one after the other, backward in
+ * reverse, each getting the output of the one before as its input.
+ *
+ * EXAMPLE (the network of CNN.lua, on 64-step series)
+ *
+ *   Random r = new Random(1);
+ *   Sequential net = new Sequential()
+ *       .add(new TemporalConvolution(1, 10, 7, r)).add(new TemporalMaxPooling(10, 2)).add(new ReLU())
+ *       .add(new TemporalConvolution(10, 5, 7, r)).add(new TemporalMaxPooling(5, 2)).add(new ReLU())
+ *       .add(new View(5, 11)).add(new Linear(55, 30, r)).add(new ReLU())
+ *       .add(new Linear(30, 2, r)).add(new ReLU()).add(new LogSoftMax());
+ */
+public final class Sequential extends Module {
+
+    private final List<Module> modules = new ArrayList<>();
+
+    public Sequential add(Module module) {
+        modules.add(module);
+        return this;
+    }
+
+    public List<Module> modules() {
+        return modules;
+    }
+
+    @Override
+    public float[] forward(float[] input) {
+        float[] x = input;
+        for (Module m : modules) {
+            x = m.forward(x);
+        }
+        output = x;
+        return output;
+    }
+
+    @Override
+    public float[] backward(float[] input, float[] gradOutput) {
+        float[] g = gradOutput;
+        for (int i = modules.size() - 1; i >= 0; i--) {
+            g = modules.get(i).backward(i == 0 ? input : modules.get(i - 1).output, g);
+        }
+        gradInput = g;
+        return gradInput;
+    }
+
+    @Override
+    public void zeroGradParameters() {
+        for (Module m : modules) {
+            m.zeroGradParameters();
+        }
+    }
+
+    @Override
+    public void updateParameters(float learningRate) {
+        for (Module m : modules) {
+            m.updateParameters(learningRate);
+        }
+    }
+}
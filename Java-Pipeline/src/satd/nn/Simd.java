@@ -0,0 +1,148 @@
+package satd.nn;
+
+import java.util.Arrays;
+
+/**
+ * The loops of the layers: on {@link VectorSimd} when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}, plain loops otherwise
+ * (nothing loads {@link VectorSimd} then). All ranges are
+ * {@code [offset, offset + n)}; series are channel-major,
+ * {@code channels x steps}.
+ */
+final class Simd {
+
+    /** Whether {@code jdk.incubator.vector} was resolved at startup. */
+    static final boolean VECTOR = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private Simd() {
+    }
+
+    /** {@code y += a * x} */
+    static void axpy(float a, float[] x, int xo, float[] y, int yo, int n) {
+        if (VECTOR) {
+            VectorSimd.axpy(a, x, xo, y, yo, n);
+            return;
+        }
+        for (int j = 0; j < n; j++) {
+            y[yo + j] += a * x[xo + j];
+        }
+    }
+
+    /** {@code sum x * y} */
+    static float dot(float[] x, int xo, float[] y, int yo, int n) {
+        if (VECTOR) {
+            return VectorSimd.dot(x, xo, y, yo, n);
+        }
+        float s = 0f;
+        for (int j = 0; j < n; j++) {
+            s += x[xo + j] * y[yo + j];
+        }
+        return s;
+    }
+
+    /** {@code sum x} */
+    static float sum(float[] x, int xo, int n) {
+        if (VECTOR) {
+            return VectorSimd.sum(x, xo, n);
+        }
+        float s = 0f;
+        for (int j = 0; j < n; j++) {
+            s += x[xo + j];
+        }
+        return s;
+    }
+
+    /** {@code y = max(x, 0)} over the first {@code n} values */
+    static void relu(float[] x, float[] y, int n) {
+        if (VECTOR) {
+            VectorSimd.relu(x, y, n);
+            return;
+        }
+        for (int j = 0; j < n; j++) {
+            y[j] = Math.max(x[j], 0f);
+        }
+    }
+
+    /** {@code gradInput = x > 0 ? gradOutput : 0} over the first {@code n} values */
+    static void reluBackward(float[] x, float[] gradOutput, float[] gradInput, int n) {
+        if (VECTOR) {
+            VectorSimd.reluBackward(x, gradOutput, gradInput, n);
+            return;
+        }
+        for (int j = 0; j < n; j++) {
+            gradInput[j] = x[j] > 0f ? gradOutput[j] : 0f;
+        }
+    }
+
+    /** Floats of scratch {@link #convBackward} needs. */
+    static int convScratch(int steps, int in, int out, int kW) {
+        return VECTOR ? VectorSimd.convScratch(steps, in, out, kW) : 0;
+    }
+
+    /**
+     * {@code y[o][t] = bias[o] + sum weight[o][w * in + i] * x[i][t + w]}
+     * over {@code w < kW, i < in}, for the {@code steps - kW + 1} steps of
+     * {@code y}.
+     */
+    static void convForward(float[] x, int steps, int in, float[] weight, float[] bias, int out, int kW,
+            float[] y) {
+        if (VECTOR && steps - kW + 1 >= VectorSimd.lanes()) {
+            VectorSimd.convForward(x, steps, in, weight, bias, out, kW, y);
+            return;
+        }
+        convForwardLoops(x, steps, in, weight, bias, out, kW, y);
+    }
+
+    static void convForwardLoops(float[] x, int steps, int in, float[] weight, float[] bias, int out, int kW,
+            float[] y) {
+        int n = steps - kW + 1;
+        int k = kW * in;
+        for (int o = 0; o < out; o++) {
+            Arrays.fill(y, o * n, (o + 1) * n, bias[o]);
+            for (int w = 0; w < kW; w++) {
+                for (int i = 0; i < in; i++) {
+                    float a = weight[o * k + w * in + i];
+                    for (int t = 0, xi = i * steps + w, yi = o * n; t < n; t++) {
+                        y[yi + t] += a * x[xi + t];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the gradients of {@link #convForward} for {@code gy} to
+     * {@code gradWeight} and {@code gradBias} and writes the input
+     * gradient to {@code gx}.
+     */
+    static void convBackward(float[] x, int steps, int in, float[] weight, int out, int kW, float[] gy,
+            float[] gradWeight, float[] gradBias, float[] gx, float[] scratch) {
+        if (VECTOR && steps - kW + 1 >= VectorSimd.lanes()) {
+            VectorSimd.convBackward(x, steps, in, weight, out, kW, gy, gradWeight, gradBias, gx, scratch);
+            return;
+        }
+        int n = steps - kW + 1;
+        int k = kW * in;
+        Arrays.fill(gx, 0, in * steps, 0f);
+        for (int o = 0; o < out; o++) {
+            float b = 0f;
+            for (int t = 0; t < n; t++) {
+                b += gy[o * n + t];
+            }
+            gradBias[o] += b;
+            for (int w = 0; w < kW; w++) {
+                for (int i = 0; i < in; i++) {
+                    int xi = i * steps + w;
+                    int yi = o * n;
+                    float a = weight[o * k + w * in + i];
+                    float g = 0f;
+                    for (int t = 0; t < n; t++) {
+                        g += gy[yi + t] * x[xi + t];
+                        gx[xi + t] += a * gy[yi + t];
+                    }
+                    gradWeight[o * k + w * in + i] += g;
+                }
+            }
+        }
+    }
+}
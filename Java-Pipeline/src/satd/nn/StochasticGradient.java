@@ -0,0 +1,59 @@
+package satd.nn;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Torch's nn.StochasticGradient: epochs of one update per example, in a
+ * fresh random order each epoch, at a fixed learning rate.
+ */
+public final class StochasticGradient {
+
+    private final Module module;
+    private final ClassNLLCriterion criterion;
+    private final float learningRate;
+    private final int maxIteration;
+
+    public StochasticGradient(Module module, ClassNLLCriterion criterion, float learningRate, int maxIteration) {
+        this.module = module;
+        this.criterion = criterion;
+        this.learningRate = learningRate;
+        this.maxIteration = maxIteration;
+    }
+
+    /**
+     * Trains on {@code inputs[i]} labelled {@code labels[i]} and returns
+     * the mean loss of the last epoch. With {@code log} set, prints the
+     * mean loss of every epoch there, as Torch does.
+     */
+    public float train(float[][] inputs, int[] labels, Random random, PrintStream log) {
+        int n = inputs.length;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        double error = 0;
+        for (int epoch = 0; epoch < maxIteration; epoch++) {
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+            error = 0;
+            for (int i : order) {
+                float[] output = module.forward(inputs[i]);
+                error += criterion.forward(output, labels[i]);
+                module.zeroGradParameters();
+                module.backward(inputs[i], criterion.backward(output, labels[i]));
+                module.updateParameters(learningRate);
+            }
+            error /= n;
+            if (log != null) {
+                log.printf(Locale.ROOT, "# current error = %.6f%n", error);
+            }
+        }
+        return (float) error;
+    }
+}
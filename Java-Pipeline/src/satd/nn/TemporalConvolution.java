@@ -0,0 +1,102 @@
+package satd.nn;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Torch's nn.TemporalConvolution(inputFrameSize, outputFrameSize, kW),
+ * stride 1, no padding: {@code T} steps in, {@code T - kW + 1} out.
+ *
+ * Series are channel-major: {@code channels x steps}, so each channel is
+ * contiguous in time and the {@link Simd} kernels, forward and backward,
+ * vectorize over the time axis. The weight keeps Torch's layout,
+ * {@code outputFrameSize x (kW * inputFrameSize)} with the input frame
+ * varying fastest, so weights move to and from Torch as they are.
+ */
+public final class TemporalConvolution extends Module {
+
+    private final int inputFrameSize;
+    private final int outputFrameSize;
+    private final int kW;
+    private final float[] weight;
+    private final float[] bias;
+    private final float[] gradWeight;
+    private final float[] gradBias;
+    private float[] scratch = new float[0];
+
+    /** Weights and biases uniform in [-s, s], {@code s = 1/sqrt(kW * inputFrameSize)}, as Torch's reset. */
+    public TemporalConvolution(int inputFrameSize, int outputFrameSize, int kW, Random random) {
+        if (inputFrameSize < 1 || outputFrameSize < 1 || kW < 1) {
+            throw new IllegalArgumentException("sizes must be positive");
+        }
+        this.inputFrameSize = inputFrameSize;
+        this.outputFrameSize = outputFrameSize;
+        this.kW = kW;
+        this.weight = new float[outputFrameSize * kW * inputFrameSize];
+        this.bias = new float[outputFrameSize];
+        this.gradWeight = new float[weight.length];
+        this.gradBias = new float[bias.length];
+        float stdv = (float) (1 / Math.sqrt(kW * inputFrameSize));
+        Linear.uniform(weight, stdv, random);
+        Linear.uniform(bias, stdv, random);
+    }
+
+    /** Torch's layout, {@code outputFrameSize x (kW * inputFrameSize)}; live, as Torch's {@code module.weight}. */
+    public float[] weight() {
+        return weight;
+    }
+
+    public float[] bias() {
+        return bias;
+    }
+
+    public float[] gradWeight() {
+        return gradWeight;
+    }
+
+    public float[] gradBias() {
+        return gradBias;
+    }
+
+    private int steps(float[] input) {
+        int steps = input.length / inputFrameSize;
+        if (steps * inputFrameSize != input.length || steps < kW) {
+            throw new IllegalArgumentException(input.length + " values are not " + inputFrameSize
+                    + " channels of at least " + kW + " steps");
+        }
+        return steps;
+    }
+
+    @Override
+    public float[] forward(float[] input) {
+        int steps = steps(input);
+        output = resize(output, outputFrameSize * (steps - kW + 1));
+        Simd.convForward(input, steps, inputFrameSize, weight, bias, outputFrameSize, kW, output);
+        return output;
+    }
+
+    @Override
+    public float[] backward(float[] input, float[] gradOutput) {
+        int steps = steps(input);
+        gradInput = resize(gradInput, input.length);
+        int scratch = Simd.convScratch(steps, inputFrameSize, outputFrameSize, kW);
+        if (this.scratch.length < scratch) {
+            this.scratch = new float[scratch];
+        }
+        Simd.convBackward(input, steps, inputFrameSize, weight, outputFrameSize, kW, gradOutput, gradWeight,
+                gradBias, gradInput, this.scratch);
+        return gradInput;
+    }
+
+    @Override
+    public void zeroGradParameters() {
+        Arrays.fill(gradWeight, 0f);
+        Arrays.fill(gradBias, 0f);
+    }
+
+    @Override
+    public void updateParameters(float learningRate) {
+        Simd.axpy(-learningRate, gradWeight, 0, weight, 0, weight.length);
+        Simd.axpy(-learningRate, gradBias, 0, bias, 0, bias.length);
+    }
+}
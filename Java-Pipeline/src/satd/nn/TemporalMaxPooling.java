@@ -0,0 +1,68 @@
+package satd.nn;
+
+import java.util.Arrays;
+
+/**
+ * Torch's nn.TemporalMaxPooling(kW, dW) over channel-major series
+ * ({@code channels x steps}): {@code (T - kW) / dW + 1} steps out. The
+ * position of each maximum is kept for {@link #backward}. This one stays
+ * scalar: it is a comparison per input value, strided in time.
+ */
+public final class TemporalMaxPooling extends Module {
+
+    private final int channels;
+    private final int kW;
+    private final int dW;
+    private int[] indices = new int[0];
+
+    /** {@code dW = kW}, as Torch defaults it. */
+    public TemporalMaxPooling(int channels, int kW) {
+        this(channels, kW, kW);
+    }
+
+    public TemporalMaxPooling(int channels, int kW, int dW) {
+        if (channels < 1 || kW < 1 || dW < 1) {
+            throw new IllegalArgumentException("sizes must be positive");
+        }
+        this.channels = channels;
+        this.kW = kW;
+        this.dW = dW;
+    }
+
+    @Override
+    public float[] forward(float[] input) {
+        int steps = input.length / channels;
+        if (steps * channels != input.length || steps < kW) {
+            throw new IllegalArgumentException(input.length + " values are not " + channels
+                    + " channels of at least " + kW + " steps");
+        }
+        int out = (steps - kW) / dW + 1;
+        output = resize(output, channels * out);
+        if (indices.length != output.length) {
+            indices = new int[output.length];
+        }
+        for (int c = 0; c < channels; c++) {
+            for (int t = 0; t < out; t++) {
+                int best = c * steps + t * dW;
+                for (int j = best + 1; j < c * steps + t * dW + kW; j++) {
+                    if (input[j] > input[best]) {
+                        best = j;
+                    }
+                }
+                output[c * out + t] = input[best];
+                indices[c * out + t] = best;
+            }
+        }
+        return output;
+    }
+
+    @Override
+    public float[] backward(float[] input, float[] gradOutput) {
+        gradInput = resize(gradInput, input.length);
+        Arrays.fill(gradInput, 0f);
+        for (int j = 0; j < output.length; j++) {
+            gradInput[indices[j]] += gradOutput[j];
+        }
+        return gradInput;
+    }
+}
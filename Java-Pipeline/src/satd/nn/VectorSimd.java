@@ -0,0 +1,194 @@
+package satd.nn;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Simd} on the Vector API. The series of CNN.lua are short (58 and
+ * 23 steps after the convolutions), so 256-bit vectors are used: fewer
+ * values fall in a partial vector than with 512 bits.
+ *
+ * The convolutions run over blocks of consecutive steps, a sum held in a
+ * register over the kernel width and added to the output once per input
+ * channel (a register carried over both loops would be boxed by C2 on
+ * JDK 17). The last block of a series overlaps the one before rather
+ * than going scalar, and adds only its new lanes. The weight gradient
+ * runs over the kernel lags instead, a lane per lag, so that a step costs
+ * one broadcast and one fma for up to a vector of weights. The backward
+ * pass works on zero-padded copies of the output gradient and input in
+ * scratch, so no block reads outside a series.
+ */
+final class VectorSimd {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_256;
+    private static final FloatVector IOTA = FloatVector.zero(SPECIES).addIndex(1);
+
+    private VectorSimd() {
+    }
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Scratch: output gradient planes with {@code kW - 1} zeros before and
+     * after, input planes with a vector of zeros after, then one vector.
+     */
+    private static int gradPlane(int steps, int kW) {
+        return steps + kW - 1 + SPECIES.length();
+    }
+
+    private static int inputPlane(int steps) {
+        return steps + SPECIES.length();
+    }
+
+    static int convScratch(int steps, int in, int out, int kW) {
+        return out * gradPlane(steps, kW) + in * inputPlane(steps) + SPECIES.length();
+    }
+
+    static void convForward(float[] x, int steps, int in, float[] weight, float[] bias, int out, int kW,
+            float[] y) {
+        int n = steps - kW + 1;
+        int k = kW * in;
+        int lanes = SPECIES.length();
+        for (int o = 0; o < out; o++) {
+            Arrays.fill(y, o * n, (o + 1) * n, bias[o]);
+            for (int i = 0; i < in; i++) {
+                for (int b = 0; b < n; b += lanes) {
+                    int t = Math.min(b, n - lanes);
+                    FloatVector acc = FloatVector.zero(SPECIES);
+                    for (int w = 0; w < kW; w++) {
+                        acc = FloatVector.fromArray(SPECIES, x, i * steps + t + w)
+                                .fma(FloatVector.broadcast(SPECIES, weight[o * k + w * in + i]), acc);
+                    }
+                    addInto(acc, y, o * n + t, b - t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds lanes {@code from} and up of {@code v} to {@code a} at
+     * {@code at}: the lanes below belong to the block before.
+     */
+    private static void addInto(FloatVector v, float[] a, int at, int from) {
+        FloatVector old = FloatVector.fromArray(SPECIES, a, at);
+        if (from == 0) {
+            old.add(v).intoArray(a, at);
+        } else {
+            old.add(v, IOTA.compare(VectorOperators.GE, from)).intoArray(a, at);
+        }
+    }
+
+    static void convBackward(float[] x, int steps, int in, float[] weight, int out, int kW, float[] gy,
+            float[] gradWeight, float[] gradBias, float[] gx, float[] scratch) {
+        int n = steps - kW + 1;
+        int k = kW * in;
+        int lanes = SPECIES.length();
+        int gp = gradPlane(steps, kW);
+        int xp = inputPlane(steps);
+        int xs = out * gp;
+        Arrays.fill(scratch, 0, convScratch(steps, in, out, kW), 0f);
+        for (int o = 0; o < out; o++) {
+            System.arraycopy(gy, o * n, scratch, o * gp + kW - 1, n);
+        }
+        for (int i = 0; i < in; i++) {
+            System.arraycopy(x, i * steps, scratch, xs + i * xp, steps);
+        }
+        int lags = xs + in * xp;
+        for (int o = 0; o < out; o++) {
+            gradBias[o] += sum(gy, o * n, n);
+            for (int i = 0; i < in; i++) {
+                for (int w0 = 0; w0 < kW; w0 += lanes) {
+                    FloatVector acc = FloatVector.zero(SPECIES);
+                    for (int t = 0; t < n; t++) {
+                        acc = FloatVector.fromArray(SPECIES, scratch, xs + i * xp + w0 + t)
+                                .fma(FloatVector.broadcast(SPECIES, gy[o * n + t]), acc);
+                    }
+                    acc.intoArray(scratch, lags);
+                    for (int w = w0; w < Math.min(w0 + lanes, kW); w++) {
+                        gradWeight[o * k + w * in + i] += scratch[lags + w - w0];
+                    }
+                }
+            }
+        }
+        Arrays.fill(gx, 0, in * steps, 0f);
+        for (int i = 0; i < in; i++) {
+            for (int o = 0; o < out; o++) {
+                for (int b = 0; b < steps; b += lanes) {
+                    int s = Math.min(b, steps - lanes);
+                    FloatVector acc = FloatVector.zero(SPECIES);
+                    for (int w = 0; w < kW; w++) {
+                        acc = FloatVector.fromArray(SPECIES, scratch, o * gp + s + kW - 1 - w)
+                                .fma(FloatVector.broadcast(SPECIES, weight[o * k + w * in + i]), acc);
+                    }
+                    addInto(acc, gx, i * steps + s, b - s);
+                }
+            }
+        }
+    }
+
+    static void axpy(float a, float[] x, int xo, float[] y, int yo, int n) {
+        FloatVector va = FloatVector.broadcast(SPECIES, a);
+        int j = 0;
+        for (int end = SPECIES.loopBound(n); j < end; j += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, x, xo + j).fma(va, FloatVector.fromArray(SPECIES, y, yo + j))
+                    .intoArray(y, yo + j);
+        }
+        for (; j < n; j++) {
+            y[yo + j] += a * x[xo + j];
+        }
+    }
+
+    static float dot(float[] x, int xo, float[] y, int yo, int n) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int j = 0;
+        for (int end = SPECIES.loopBound(n); j < end; j += SPECIES.length()) {
+            acc = FloatVector.fromArray(SPECIES, x, xo + j).fma(FloatVector.fromArray(SPECIES, y, yo + j), acc);
+        }
+        float s = acc.reduceLanes(VectorOperators.ADD);
+        for (; j < n; j++) {
+            s += x[xo + j] * y[yo + j];
+        }
+        return s;
+    }
+
+    static float sum(float[] x, int xo, int n) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int j = 0;
+        for (int end = SPECIES.loopBound(n); j < end; j += SPECIES.length()) {
+            acc = acc.add(FloatVector.fromArray(SPECIES, x, xo + j));
+        }
+        float s = acc.reduceLanes(VectorOperators.ADD);
+        for (; j < n; j++) {
+            s += x[xo + j];
+        }
+        return s;
+    }
+
+    static void relu(float[] x, float[] y, int n) {
+        int j = 0;
+        for (int end = SPECIES.loopBound(n); j < end; j += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, x, j).max(0f).intoArray(y, j);
+        }
+        for (; j < n; j++) {
+            y[j] = Math.max(x[j], 0f);
+        }
+    }
+
+    static void reluBackward(float[] x, float[] gradOutput, float[] gradInput, int n) {
+        FloatVector zero = FloatVector.zero(SPECIES);
+        int j = 0;
+        for (int end = SPECIES.loopBound(n); j < end; j += SPECIES.length()) {
+            VectorMask<Float> positive = FloatVector.fromArray(SPECIES, x, j).compare(VectorOperators.GT, 0f);
+            zero.blend(FloatVector.fromArray(SPECIES, gradOutput, j), positive).intoArray(gradInput, j);
+        }
+        for (; j < n; j++) {
+            gradInput[j] = x[j] > 0f ? gradOutput[j] : 0f;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package satd.nn;
+
+/**
+ * Flattens a channel-major series ({@code channels x steps}) into the
+ * step-major order of Torch's nn.View on a {@code steps x channels}
+ * tensor, so a {@link Linear} after it sees its inputs in the order
+ * Torch would and its weights can be exchanged with Torch as they are.
+ */
+public final class View extends Module {
+
+    private final int channels;
+    private final int steps;
+
+    public View(int channels, int steps) {
+        if (channels < 1 || steps < 1) {
+            throw new IllegalArgumentException("sizes must be positive");
+        }
+        this.channels = channels;
+        this.steps = steps;
+    }
+
+    @Override
+    public float[] forward(float[] input) {
+        if (input.length != channels * steps) {
+            throw new IllegalArgumentException(input.length + " values, expected " + channels + " x " + steps);
+        }
+        output = resize(output, input.length);
+        for (int c = 0; c < channels; c++) {
+            for (int t = 0; t < steps; t++) {
+                output[t * channels + c] = input[c * steps + t];
+            }
+        }
+        return output;
+    }
+
+    @Override
+    public float[] backward(float[] input, float[] gradOutput) {
+        gradInput = resize(gradInput, input.length);
+        for (int c = 0; c < channels; c++) {
+            for (int t = 0; t < steps; t++) {
+                gradInput[c * steps + t] = gradOutput[t * channels + c];
+            }
+        }
+        return gradInput;
+    }
+}
@@ -0,0 +1,235 @@
+package satd.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memory-mapped reader for the Arrow IPC files {@link ArrowWriter} writes:
+ * the footer and record-batch metadata are read when the file is opened,
+ * and column buffers are handed out as views of the mapping, without
+ * copying or parsing. Only uncompressed INT(32), DOUBLE, BOOL and UTF8
+ * columns are supported.
+ *
+ * EXAMPLE
+ *
+ *   try (ArrowFile f = ArrowFile.open(Paths.get("data_v3.arrow"))) {
+ *       int loc = f.column("LOC");
+ *       for (int b = 0; b < f.batches(); b++) {
+ *           DoubleBuffer v = f.doubles(b, loc);
+ *           ...
+ *       }
+ *   }
+ */
+public final class ArrowFile implements Closeable {
+
+    private static final int FOOTER_TAIL = 4 + 6;
+
+    private final FileChannel channel;
+    private final ByteBuffer file;
+    private final List<String> names;
+    private final List<ArrowWriter.Type> types;
+    private final int[] batchRows;
+    // per batch and column: absolute position and length of each buffer, and the null count
+    private final long[][][] buffers;
+    private final long[][] nulls;
+
+    private ArrowFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Arrow file larger than 2 GB");
+        }
+        file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        int n = (int) size;
+        if (n < 8 + FOOTER_TAIL || !magic(0) || !magic(n - 6)) {
+            throw new IOException("not an Arrow file");
+        }
+        int footerLength = file.getInt(n - FOOTER_TAIL);
+        int footerAt = n - FOOTER_TAIL - footerLength;
+        int footer = FlatBuffers.root(file, footerAt);
+
+        int schema = FlatBuffers.ref(file, footer, 1);
+        int fields = FlatBuffers.ref(file, schema, 1);
+        List<String> ns = new ArrayList<>();
+        List<ArrowWriter.Type> ts = new ArrayList<>();
+        for (int i = 0; i < FlatBuffers.length(file, fields); i++) {
+            int field = FlatBuffers.table(file, fields, i);
+            ns.add(FlatBuffers.string(file, FlatBuffers.ref(file, field, 0)));
+            ts.add(fieldType(field));
+        }
+        names = Collections.unmodifiableList(ns);
+        types = Collections.unmodifiableList(ts);
+
+        int blocks = FlatBuffers.ref(file, footer, 3);
+        int count = FlatBuffers.length(file, blocks);
+        batchRows = new int[count];
+        buffers = new long[count][][];
+        nulls = new long[count][];
+        for (int b = 0; b < count; b++) {
+            int block = blocks + 4 + 24 * b;
+            long offset = file.getLong(block);
+            int metadataLength = file.getInt(block + 8);
+            batch(b, (int) offset, metadataLength);
+        }
+    }
+
+    public static ArrowFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ArrowFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private boolean magic(int at) {
+        byte[] m = new byte[ArrowWriter.MAGIC.length];
+        file.get(at, m);
+        return Arrays.equals(m, ArrowWriter.MAGIC);
+    }
+
+    private ArrowWriter.Type fieldType(int field) throws IOException {
+        int typeType = FlatBuffers.getByte(file, field, 2, 0);
+        int type = FlatBuffers.ref(file, field, 3);
+        switch (typeType) {
+            case 2:
+                if (FlatBuffers.getInt(file, type, 0, 0) != 32) {
+                    throw new IOException("only 32-bit ints are supported");
+                }
+                return ArrowWriter.Type.INT;
+            case 3:
+                if (FlatBuffers.getShort(file, type, 0, 0) != 2) {
+                    throw new IOException("only double floats are supported");
+                }
+                return ArrowWriter.Type.DOUBLE;
+            case 5: return ArrowWriter.Type.UTF8;
+            case 6: return ArrowWriter.Type.BOOL;
+            default: throw new IOException("unsupported Arrow type " + typeType);
+        }
+    }
+
+    private void batch(int b, int offset, int metadataLength) throws IOException {
+        int message = FlatBuffers.root(file, offset + 8);
+        if (FlatBuffers.getByte(file, message, 1, 0) != ArrowWriter.RECORD_BATCH) {
+            throw new IOException("block " + b + " is not a record batch");
+        }
+        int batch = FlatBuffers.ref(file, message, 2);
+        if (FlatBuffers.ref(file, batch, 3) != 0) {
+            throw new IOException("compressed record batches are not supported");
+        }
+        int body = offset + metadataLength;
+        batchRows[b] = (int) FlatBuffers.getLong(file, batch, 0, 0);
+        int nodes = FlatBuffers.ref(file, batch, 1);
+        int bufs = FlatBuffers.ref(file, batch, 2);
+        buffers[b] = new long[names.size()][];
+        nulls[b] = new long[names.size()];
+        int next = 0;
+        for (int c = 0; c < names.size(); c++) {
+            nulls[b][c] = file.getLong(nodes + 4 + 16 * c + 8);
+            int k = types.get(c) == ArrowWriter.Type.UTF8 ? 3 : 2;
+            long[] pos = new long[2 * k];
+            for (int i = 0; i < k; i++, next++) {
+                int buffer = bufs + 4 + 16 * next;
+                pos[2 * i] = body + file.getLong(buffer);
+                pos[2 * i + 1] = file.getLong(buffer + 8);
+            }
+            buffers[b][c] = pos;
+        }
+    }
+
+    public List<String> columns() {
+        return names;
+    }
+
+    /** Index of column {@code name}, or -1. */
+    public int column(String name) {
+        return names.indexOf(name);
+    }
+
+    public ArrowWriter.Type type(int column) {
+        return types.get(column);
+    }
+
+    public int batches() {
+        return batchRows.length;
+    }
+
+    public int rows(int batch) {
+        return batchRows[batch];
+    }
+
+    public int rows() {
+        int n = 0;
+        for (int r : batchRows) {
+            n += r;
+        }
+        return n;
+    }
+
+    public boolean isNull(int batch, int column, int row) {
+        if (nulls[batch][column] == 0) {
+            return false;
+        }
+        ByteBuffer validity = buffer(batch, column, 0);
+        return (validity.get(row >>> 3) & (1 << (row & 7))) == 0;
+    }
+
+    /** The values of an INT column in {@code batch}, a view of the file. */
+    public IntBuffer ints(int batch, int column) {
+        check(column, ArrowWriter.Type.INT);
+        return buffer(batch, column, 1).asIntBuffer();
+    }
+
+    /** The values of a DOUBLE column in {@code batch}, a view of the file. */
+    public DoubleBuffer doubles(int batch, int column) {
+        check(column, ArrowWriter.Type.DOUBLE);
+        return buffer(batch, column, 1).asDoubleBuffer();
+    }
+
+    public boolean bool(int batch, int column, int row) {
+        check(column, ArrowWriter.Type.BOOL);
+        return (buffer(batch, column, 1).get(row >>> 3) & (1 << (row & 7))) != 0;
+    }
+
+    /** Value of a UTF8 cell, or null. */
+    public String string(int batch, int column, int row) {
+        check(column, ArrowWriter.Type.UTF8);
+        if (isNull(batch, column, row)) {
+            return null;
+        }
+        IntBuffer offsets = buffer(batch, column, 1).asIntBuffer();
+        int from = offsets.get(row);
+        byte[] b = new byte[offsets.get(row + 1) - from];
+        buffer(batch, column, 2).get(from, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer buffer(int batch, int column, int i) {
+        long[] pos = buffers[batch][column];
+        return file.slice((int) pos[2 * i], (int) pos[2 * i + 1]).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void check(int column, ArrowWriter.Type type) {
+        if (types.get(column) != type) {
+            throw new IllegalArgumentException(names.get(column) + " is " + types.get(column) + ", not " + type);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,505 @@
+package satd.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import satd.csv.CsvTokenizer;
+import satd.link.SmellIndex;
+
+/**
+ * Writes tables as Arrow IPC files (the Feather v2 format), so that R's
+ * {@code arrow::read_feather}, pyarrow and {@link ArrowFile} map the
+ * columns instead of parsing text.
+ *
+ * Columns are INT (int32), DOUBLE (float64), BOOL (bit-packed) or UTF8,
+ * all nullable; a column's validity bitmap is written only when it has
+ * nulls. Every {@link #batch} call is one record batch. The metadata is
+ * version V5, little-endian, uncompressed, with 8-byte aligned buffers.
+ * bench/arrow/read-arrow.r reads the golden file of ArrowBench and an export
+ * with R's arrow package.
+ *
+ * {@link #main} exports the joined data_v3 files: one batch per system, a
+ * System column, the columns of the files typed from their values, and,
+ * with {@code --smells}, one BOOL column per smell of the smell files (null
+ * when the class's file has no smell record).
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.store.ArrowWriter --out data_v3.arrow \
+ *       --smells ../Antipatterns-Data/smells-[a-k]*.txt ../Antipatterns-Data/smells-[m-z]*.txt \
+ *       -- ../R-Neural-Network/data_v3/metrics-smells-psatd-msatd-*.csv
+ */
+public final class ArrowWriter implements Closeable {
+
+    public enum Type { INT, DOUBLE, BOOL, UTF8 }
+
+    static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    static final int V5 = 4;
+    static final int SCHEMA = 1;
+    static final int RECORD_BATCH = 3;
+
+    private static final String PREFIX = "metrics-smells-psatd-msatd-";
+    private static final String SUFFIX = ".csv";
+
+    private final OutputStream out;
+    private final List<String> names;
+    private final List<Type> types;
+    private final FlatBuffers.Table schema;
+    private final List<long[]> blocks = new ArrayList<>();
+    private long written;
+
+    public ArrowWriter(Path file, List<String> names, List<Type> types) throws IOException {
+        if (names.size() != types.size()) {
+            throw new IllegalArgumentException(names.size() + " names, " + types.size() + " types");
+        }
+        this.names = names;
+        this.types = types;
+        this.out = Files.newOutputStream(file);
+        this.schema = schema();
+        out.write(MAGIC);
+        out.write(new byte[2]);
+        written = 8;
+        FlatBuffers.Table message = new FlatBuffers.Table()
+                .addShort(0, V5).addByte(1, SCHEMA).add(2, schema).addLong(3, 0);
+        message(FlatBuffers.finish(message), new byte[0]);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path out = null;
+        List<Path> smells = new ArrayList<>();
+        List<Path> csvs = new ArrayList<>();
+        List<Path> into = csvs;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+            } else if (args[i].equals("--smells")) {
+                into = smells;
+            } else if (args[i].equals("--")) {
+                into = csvs;
+            } else {
+                into.add(Paths.get(args[i]));
+            }
+        }
+        if (out == null || csvs.isEmpty()) {
+            System.err.println("Usage: ArrowWriter --out file.arrow [--smells smells-*.txt --] metrics-smells-psatd-msatd-*.csv");
+            System.exit(1);
+        }
+        long t0 = System.nanoTime();
+        int rows;
+        if (smells.isEmpty()) {
+            rows = exportCsv(csvs, null, out);
+        } else {
+            Path index = Files.createTempFile("smells", ".idx");
+            try (SmellIndex s = SmellIndex.openOrBuild(index, smells)) {
+                rows = exportCsv(csvs, s, out);
+            } finally {
+                Files.delete(index);
+            }
+        }
+        System.out.printf("%d rows -> %s in %.1f ms%n", rows, out, (System.nanoTime() - t0) / 1e6);
+    }
+
+    /** System of a data_v3 file: {@code metrics-smells-psatd-msatd-<system>.csv}. */
+    public static String systemOf(Path csv) {
+        String name = csv.getFileName().toString();
+        if (name.startsWith(PREFIX)) {
+            name = name.substring(PREFIX.length());
+        }
+        return name.endsWith(SUFFIX) ? name.substring(0, name.length() - SUFFIX.length()) : name;
+    }
+
+    /**
+     * Writes {@code ;}-separated files with the same header to {@code out},
+     * one batch per file, with their System and (when {@code smells} is not
+     * null) smell columns; returns the number of rows.
+     */
+    public static int exportCsv(List<Path> csvs, SmellIndex smells, Path out) throws IOException {
+        // type every column from its values; a column with no value at all is text
+        String[] header = null;
+        Type[] inferred = null;
+        for (Path p : csvs) {
+            CsvTokenizer csv = CsvTokenizer.map(p, (byte) ';');
+            csv.next();
+            String[] h = new String[csv.fields()];
+            for (int f = 0; f < h.length; f++) {
+                h[f] = csv.string(f);
+            }
+            if (header == null) {
+                header = h;
+                inferred = new Type[h.length];
+            } else if (!Arrays.equals(header, h)) {
+                throw new IOException(p + ": header differs from " + csvs.get(0) + "'s");
+            }
+            while (csv.next() >= 0) {
+                for (int f = 0; f < Math.min(header.length, csv.fields()); f++) {
+                    if (!csv.isEmpty(f) && inferred[f] != Type.UTF8) {
+                        inferred[f] = widen(inferred[f], csv.string(f));
+                    }
+                }
+            }
+        }
+        for (int f = 0; f < inferred.length; f++) {
+            if (inferred[f] == null) {
+                inferred[f] = Type.UTF8;
+            }
+        }
+
+        List<String> smellNames = new ArrayList<>();
+        if (smells != null) {
+            TreeSet<String> all = new TreeSet<>();
+            for (int r = 0; r < smells.records(); r++) {
+                all.addAll(smells.smells(r));
+            }
+            smellNames.addAll(all);
+        }
+        List<String> names = new ArrayList<>();
+        List<Type> types = new ArrayList<>();
+        names.add("System");
+        types.add(Type.UTF8);
+        names.addAll(Arrays.asList(header));
+        types.addAll(Arrays.asList(inferred));
+        for (String s : smellNames) {
+            names.add(s);
+            types.add(Type.BOOL);
+        }
+
+        int total = 0;
+        int fileColumn = Arrays.asList(header).indexOf("File");
+        try (ArrowWriter w = new ArrowWriter(out, names, types)) {
+            for (int i = 0; i < csvs.size(); i++) {
+                String system = systemOf(csvs.get(i));
+                List<Object[]> rows = new ArrayList<>();
+                CsvTokenizer csv = CsvTokenizer.map(csvs.get(i), (byte) ';');
+                csv.next();
+                while (csv.next() >= 0) {
+                    Object[] row = new Object[names.size()];
+                    row[0] = system;
+                    for (int f = 0; f < Math.min(header.length, csv.fields()); f++) {
+                        row[1 + f] = csv.isEmpty(f) ? null : value(csv, f, inferred[f]);
+                    }
+                    int record = smells == null || fileColumn < 0 || row[1 + fileColumn] == null
+                            ? -1 : smells.find(system, (String) row[1 + fileColumn]);
+                    if (record >= 0) {
+                        List<String> present = smells.smells(record);
+                        for (int s = 0; s < smellNames.size(); s++) {
+                            row[1 + header.length + s] = present.contains(smellNames.get(s));
+                        }
+                    }
+                    rows.add(row);
+                }
+                Object[] columns = new Object[names.size()];
+                boolean[][] valid = new boolean[names.size()][];
+                for (int c = 0; c < names.size(); c++) {
+                    valid[c] = new boolean[rows.size()];
+                    columns[c] = column(types.get(c), rows, c, valid[c]);
+                }
+                w.batch(rows.size(), columns, valid);
+                total += rows.size();
+            }
+        }
+        return total;
+    }
+
+    private static Type widen(Type t, String v) {
+        if (t != Type.DOUBLE && isInt(v)) {
+            return Type.INT;
+        }
+        try {
+            Double.parseDouble(v);
+            return Type.DOUBLE;
+        } catch (NumberFormatException e) {
+            return Type.UTF8;
+        }
+    }
+
+    private static boolean isInt(String v) {
+        int i = v.startsWith("-") ? 1 : 0;
+        if (i == v.length() || v.length() - i > 9) {
+            return false;
+        }
+        for (; i < v.length(); i++) {
+            if (v.charAt(i) < '0' || v.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object value(CsvTokenizer csv, int f, Type t) {
+        switch (t) {
+            case INT: return csv.parseInt(f);
+            case DOUBLE: return csv.parseDouble(f);
+            default: return csv.string(f);
+        }
+    }
+
+    private static Object column(Type t, List<Object[]> rows, int c, boolean[] valid) {
+        int n = rows.size();
+        switch (t) {
+            case INT: {
+                int[] a = new int[n];
+                for (int r = 0; r < n; r++) {
+                    Object v = rows.get(r)[c];
+                    valid[r] = v != null;
+                    a[r] = v == null ? 0 : (Integer) v;
+                }
+                return a;
+            }
+            case DOUBLE: {
+                double[] a = new double[n];
+                for (int r = 0; r < n; r++) {
+                    Object v = rows.get(r)[c];
+                    valid[r] = v != null;
+                    a[r] = v == null ? 0 : ((Number) v).doubleValue();
+                }
+                return a;
+            }
+            case BOOL: {
+                boolean[] a = new boolean[n];
+                for (int r = 0; r < n; r++) {
+                    Object v = rows.get(r)[c];
+                    valid[r] = v != null;
+                    a[r] = v != null && (Boolean) v;
+                }
+                return a;
+            }
+            default: {
+                String[] a = new String[n];
+                for (int r = 0; r < n; r++) {
+                    a[r] = (String) rows.get(r)[c];
+                    valid[r] = a[r] != null;
+                }
+                return a;
+            }
+        }
+    }
+
+    private FlatBuffers.Table schema() {
+        List<FlatBuffers.Table> fields = new ArrayList<>();
+        for (int c = 0; c < names.size(); c++) {
+            FlatBuffers.Table type = new FlatBuffers.Table();
+            int typeType;
+            switch (types.get(c)) {
+                case INT: typeType = 2; type.addInt(0, 32).addBool(1, true); break;
+                case DOUBLE: typeType = 3; type.addShort(0, 2); break;
+                case BOOL: typeType = 6; break;
+                default: typeType = 5; break;
+            }
+            fields.add(new FlatBuffers.Table()
+                    .addString(0, names.get(c))
+                    .addBool(1, true)
+                    .addByte(2, typeType)
+                    .add(3, type)
+                    .addTables(5, new ArrayList<>()));
+        }
+        return new FlatBuffers.Table().addShort(0, 0).addTables(1, fields);
+    }
+
+    /**
+     * Writes one record batch of {@code rows} rows. {@code columns[c]} is an
+     * int[], double[], boolean[] or String[] by type; {@code valid[c]}, when
+     * not null, tells which rows of column c are not null (a null String is
+     * null either way).
+     */
+    public void batch(int rows, Object[] columns, boolean[][] valid) throws IOException {
+        Body body = new Body();
+        ByteSink nodes = new ByteSink();
+        ByteSink buffers = new ByteSink();
+        for (int c = 0; c < names.size(); c++) {
+            Type t = types.get(c);
+            boolean[] ok = valid == null ? null : valid[c];
+            if (t == Type.UTF8) {
+                String[] s = (String[]) columns[c];
+                ok = new boolean[rows];
+                for (int r = 0; r < rows; r++) {
+                    ok[r] = s[r] != null && (valid == null || valid[c] == null || valid[c][r]);
+                }
+            }
+            int nulls = 0;
+            if (ok != null) {
+                for (int r = 0; r < rows; r++) {
+                    nulls += ok[r] ? 0 : 1;
+                }
+            }
+            nodes.putLong(rows);
+            nodes.putLong(nulls);
+            body.buffer(buffers, nulls == 0 ? new byte[0] : bits(ok, rows));
+            switch (t) {
+                case INT: {
+                    int[] a = (int[]) columns[c];
+                    byte[] b = new byte[4 * rows];
+                    for (int r = 0; r < rows; r++) {
+                        putInt(b, 4 * r, a[r]);
+                    }
+                    body.buffer(buffers, b);
+                    break;
+                }
+                case DOUBLE: {
+                    double[] a = (double[]) columns[c];
+                    byte[] b = new byte[8 * rows];
+                    for (int r = 0; r < rows; r++) {
+                        putLong(b, 8 * r, Double.doubleToRawLongBits(a[r]));
+                    }
+                    body.buffer(buffers, b);
+                    break;
+                }
+                case BOOL: {
+                    body.buffer(buffers, bits((boolean[]) columns[c], rows));
+                    break;
+                }
+                default: {
+                    String[] a = (String[]) columns[c];
+                    byte[] offsets = new byte[4 * (rows + 1)];
+                    ByteSink data = new ByteSink();
+                    for (int r = 0; r < rows; r++) {
+                        if (a[r] != null) {
+                            data.put(a[r].getBytes(StandardCharsets.UTF_8));
+                        }
+                        putInt(offsets, 4 * (r + 1), data.size());
+                    }
+                    body.buffer(buffers, offsets);
+                    body.buffer(buffers, data.toByteArray());
+                    break;
+                }
+            }
+        }
+        byte[] bodyBytes = body.sink.toByteArray();
+        FlatBuffers.Table batch = new FlatBuffers.Table()
+                .addLong(0, rows)
+                .addStructs(1, names.size(), nodes.toByteArray())
+                .addStructs(2, buffers.size() / 16, buffers.toByteArray());
+        FlatBuffers.Table message = new FlatBuffers.Table()
+                .addShort(0, V5).addByte(1, RECORD_BATCH).add(2, batch).addLong(3, bodyBytes.length);
+        long at = written;
+        int metadata = message(FlatBuffers.finish(message), bodyBytes);
+        blocks.add(new long[] {at, metadata, bodyBytes.length});
+    }
+
+    /** Writes an encapsulated message; returns the length of its metadata, prefix included. */
+    private int message(byte[] flatbuffer, byte[] body) throws IOException {
+        byte[] prefix = new byte[8];
+        putInt(prefix, 0, -1);
+        putInt(prefix, 4, flatbuffer.length);
+        out.write(prefix);
+        out.write(flatbuffer);
+        out.write(body);
+        written += 8 + flatbuffer.length + body.length;
+        return 8 + flatbuffer.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            byte[] end = new byte[8];
+            putInt(end, 0, -1);
+            out.write(end);
+            ByteSink blockBytes = new ByteSink();
+            for (long[] b : blocks) {
+                blockBytes.putLong(b[0]);
+                blockBytes.putInt((int) b[1]);
+                blockBytes.putInt(0);
+                blockBytes.putLong(b[2]);
+            }
+            FlatBuffers.Table footer = new FlatBuffers.Table()
+                    .addShort(0, V5)
+                    .add(1, schema())
+                    .addStructs(2, 0, new byte[0])
+                    .addStructs(3, blocks.size(), blockBytes.toByteArray());
+            byte[] fb = FlatBuffers.finish(footer);
+            out.write(fb);
+            byte[] tail = new byte[4];
+            putInt(tail, 0, fb.length);
+            out.write(tail);
+            out.write(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] bits(boolean[] v, int n) {
+        byte[] b = new byte[(n + 7) / 8];
+        for (int i = 0; i < n; i++) {
+            if (v[i]) {
+                b[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        return b;
+    }
+
+    private static void putInt(byte[] b, int at, int v) {
+        for (int k = 0; k < 4; k++) {
+            b[at + k] = (byte) (v >>> (8 * k));
+        }
+    }
+
+    private static void putLong(byte[] b, int at, long v) {
+        for (int k = 0; k < 8; k++) {
+            b[at + k] = (byte) (v >>> (8 * k));
+        }
+    }
+
+    /** Body of a record batch: buffers at 8-byte aligned offsets. */
+    private static final class Body {
+        final ByteSink sink = new ByteSink();
+
+        /** Appends {@code b} and its (offset, length) Buffer struct to {@code buffers}. */
+        void buffer(ByteSink buffers, byte[] b) {
+            buffers.putLong(sink.size());
+            buffers.putLong(b.length);
+            sink.put(b);
+            sink.pad(8);
+        }
+    }
+
+    private static final class ByteSink {
+        private byte[] buf = new byte[256];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void put(byte[] b) {
+            ensure(size + b.length);
+            System.arraycopy(b, 0, buf, size, b.length);
+            size += b.length;
+        }
+
+        void putInt(int v) {
+            ensure(size + 4);
+            ArrowWriter.putInt(buf, size, v);
+            size += 4;
+        }
+
+        void putLong(long v) {
+            ensure(size + 8);
+            ArrowWriter.putLong(buf, size, v);
+            size += 8;
+        }
+
+        void pad(int a) {
+            int n = (size + a - 1) / a * a;
+            ensure(n);
+            size = n;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        private void ensure(int n) {
+            if (n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(n, buf.length * 2));
+            }
+        }
+    }
+}
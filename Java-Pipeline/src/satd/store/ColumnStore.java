@@ -0,0 +1,214 @@
+package satd.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader for the columnar feature matrix written by {@link ColumnStoreWriter}.
+ *
+ * Opening a store reads the column directory only. Each column lives in its
+ * own block of the memory-mapped file and is decoded when asked for, so a
+ * run that projects twelve columns never pages in the others.
+ *
+ * File layout (little-endian):
+ *
+ *   "SATDCOL1"  int rows  int columns
+ *   per column: short nameLength, name (UTF-8), byte kind, long offset, long length
+ *   column blocks, see {@link Kind}
+ */
+public final class ColumnStore implements Closeable {
+
+    static final byte[] MAGIC = "SATDCOL1".getBytes(StandardCharsets.US_ASCII);
+
+    /** Column encodings. */
+    public enum Kind {
+        /** int size, size x (int length, UTF-8 bytes), byte codeWidth (1, 2 or 4), rows x code */
+        DICT,
+        /** rows x float */
+        DENSE,
+        /** int nonzero, byte allOnes, long[(rows + 63) / 64] bitmap, nonzero x float unless allOnes */
+        BITSET,
+        /** int runs, runs x (int length, float value) */
+        RLE
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer map;
+    private final int rows;
+    private final Map<String, Entry> directory = new LinkedHashMap<>();
+
+    private static final class Entry {
+        final Kind kind;
+        final long offset;
+        final long length;
+
+        Entry(Kind kind, long offset, long length) {
+            this.kind = kind;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private ColumnStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        map.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not a column store");
+        }
+        ByteBuffer header = map.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(MAGIC.length);
+        rows = header.getInt();
+        int columns = header.getInt();
+        for (int i = 0; i < columns; i++) {
+            byte[] name = new byte[header.getShort() & 0xFFFF];
+            header.get(name);
+            Kind kind = Kind.values()[header.get()];
+            directory.put(new String(name, StandardCharsets.UTF_8), new Entry(kind, header.getLong(), header.getLong()));
+        }
+    }
+
+    public static ColumnStore open(Path file) throws IOException {
+        return new ColumnStore(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public List<String> columns() {
+        return Collections.unmodifiableList(new ArrayList<>(directory.keySet()));
+    }
+
+    public Kind kind(String column) {
+        return entry(column).kind;
+    }
+
+    /** Decodes a numeric column; missing values read back as NaN. */
+    public float[] floats(String column) {
+        Entry e = entry(column);
+        ByteBuffer b = block(e);
+        float[] values = new float[rows];
+        switch (e.kind) {
+            case DENSE:
+                b.asFloatBuffer().get(values);
+                break;
+            case BITSET: {
+                int nonzero = b.getInt();
+                boolean allOnes = b.get() != 0;
+                int words = (rows + 63) >>> 6;
+                int valuesAt = b.position() + words * Long.BYTES;
+                int k = 0;
+                for (int w = 0; w < words; w++) {
+                    long bits = b.getLong();
+                    while (bits != 0) {
+                        int row = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        values[row] = allOnes ? 1f : b.getFloat(valuesAt + k * Float.BYTES);
+                        k++;
+                        bits &= bits - 1;
+                    }
+                }
+                if (k != nonzero) {
+                    throw new IllegalStateException("corrupt bitmap in column " + column);
+                }
+                break;
+            }
+            case RLE: {
+                int runs = b.getInt();
+                int row = 0;
+                for (int r = 0; r < runs; r++) {
+                    int length = b.getInt();
+                    float value = b.getFloat();
+                    Arrays.fill(values, row, row + length, value);
+                    row += length;
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(column + " is not numeric");
+        }
+        return values;
+    }
+
+    /** Decodes several numeric columns, column-major. */
+    public float[][] floats(List<String> columns) {
+        float[][] out = new float[columns.size()][];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = floats(columns.get(i));
+        }
+        return out;
+    }
+
+    public String[] dictionary(String column) {
+        ByteBuffer b = block(dictEntry(column));
+        String[] dict = new String[b.getInt()];
+        for (int i = 0; i < dict.length; i++) {
+            byte[] bytes = new byte[b.getInt()];
+            b.get(bytes);
+            dict[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return dict;
+    }
+
+    public int[] codes(String column) {
+        ByteBuffer b = block(dictEntry(column));
+        int size = b.getInt();
+        for (int i = 0; i < size; i++) {
+            int length = b.getInt();
+            b.position(b.position() + length);
+        }
+        int width = b.get();
+        int[] codes = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            codes[r] = width == 1 ? b.get() & 0xFF : width == 2 ? b.getShort() & 0xFFFF : b.getInt();
+        }
+        return codes;
+    }
+
+    public String[] strings(String column) {
+        String[] dict = dictionary(column);
+        int[] codes = codes(column);
+        String[] values = new String[rows];
+        for (int r = 0; r < rows; r++) {
+            values[r] = dict[codes[r]];
+        }
+        return values;
+    }
+
+    private Entry entry(String column) {
+        Entry e = directory.get(column);
+        if (e == null) {
+            throw new IllegalArgumentException("no such column: " + column);
+        }
+        return e;
+    }
+
+    private Entry dictEntry(String column) {
+        Entry e = entry(column);
+        if (e.kind != Kind.DICT) {
+            throw new IllegalArgumentException(column + " is not dictionary encoded");
+        }
+        return e;
+    }
+
+    private ByteBuffer block(Entry e) {
+        return map.slice((int) e.offset, (int) e.length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,229 @@
+package satd.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import satd.csv.CsvReader;
+
+/**
+ * Converts a CSV feature matrix such as {@code ToAnalyse.csv} to the
+ * {@link ColumnStore} format.
+ *
+ * Text columns (System, ClassPath_methodName, the reviewer note, ...) are
+ * dictionary encoded. Numeric columns that are mostly non-zero, like the
+ * Size ... McCabe metrics and Readibility, are stored dense; mostly-zero ones,
+ * like the PMD rule counts, get whichever of BITSET and RLE is smaller.
+ * Header columns with an empty name (ToAnalyse.csv pads to 16384) are dropped.
+ *
+ * EXAMPLE
+ *
+ *   java -cp out satd.store.ColumnStoreWriter ../ToAnalyse.csv ToAnalyse.col
+ */
+public final class ColumnStoreWriter {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<List<String>> cells = new ArrayList<>();
+    private int rows;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ColumnStoreWriter <in.csv> <out.col>");
+            System.exit(1);
+        }
+        ColumnStoreWriter w = fromCsv(Paths.get(args[0]), ',');
+        w.write(Paths.get(args[1]));
+        System.out.println(w.rows + " rows, " + w.names.size() + " columns -> " + args[1]);
+    }
+
+    /** Reads a headed CSV; cells are decoded as ISO-8859-1 like the files we keep. */
+    public static ColumnStoreWriter fromCsv(Path csv, char delimiter) throws IOException {
+        ColumnStoreWriter w = new ColumnStoreWriter();
+        try (CsvReader in = CsvReader.open(csv, StandardCharsets.ISO_8859_1, delimiter)) {
+            String[] header = in.next();
+            int width = header.length;
+            while (width > 0 && header[width - 1].isEmpty()) {
+                width--;
+            }
+            for (int c = 0; c < width; c++) {
+                w.names.add(header[c]);
+                w.cells.add(new ArrayList<>());
+            }
+            String[] record;
+            while ((record = in.next()) != null) {
+                if (record.length == 1 && record[0].isEmpty()) {
+                    continue;
+                }
+                for (int c = 0; c < width; c++) {
+                    w.cells.get(c).add(c < record.length ? record[c] : "");
+                }
+                w.rows++;
+            }
+        }
+        return w;
+    }
+
+    public void write(Path file) throws IOException {
+        Map<String, byte[]> blocks = new LinkedHashMap<>();
+        Map<String, ColumnStore.Kind> kinds = new LinkedHashMap<>();
+        for (int c = 0; c < names.size(); c++) {
+            List<String> column = cells.get(c);
+            float[] values = parse(column);
+            ColumnStore.Kind kind;
+            byte[] block;
+            if (values == null) {
+                kind = ColumnStore.Kind.DICT;
+                block = dict(column);
+            } else if (zeros(values) * 2 < rows) {
+                kind = ColumnStore.Kind.DENSE;
+                block = dense(values);
+            } else {
+                byte[] bitset = bitset(values);
+                byte[] rle = rle(values);
+                kind = bitset.length <= rle.length ? ColumnStore.Kind.BITSET : ColumnStore.Kind.RLE;
+                block = bitset.length <= rle.length ? bitset : rle;
+            }
+            blocks.put(names.get(c), block);
+            kinds.put(names.get(c), kind);
+        }
+
+        int headerSize = ColumnStore.MAGIC.length + 2 * Integer.BYTES;
+        for (String name : names) {
+            headerSize += Short.BYTES + name.getBytes(StandardCharsets.UTF_8).length + 1 + 2 * Long.BYTES;
+        }
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(ColumnStore.MAGIC).putInt(rows).putInt(names.size());
+        long offset = headerSize;
+        for (String name : names) {
+            byte[] n = name.getBytes(StandardCharsets.UTF_8);
+            long length = blocks.get(name).length;
+            header.putShort((short) n.length).put(n).put((byte) kinds.get(name).ordinal()).putLong(offset).putLong(length);
+            offset += length;
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(header.array());
+            for (byte[] block : blocks.values()) {
+                out.write(block);
+            }
+        }
+    }
+
+    /** Values of a numeric column (empty cells become NaN), or null for text. */
+    private float[] parse(List<String> column) {
+        float[] values = new float[rows];
+        for (int r = 0; r < rows; r++) {
+            String s = column.get(r).trim();
+            if (s.isEmpty()) {
+                values[r] = Float.NaN;
+                continue;
+            }
+            try {
+                values[r] = Float.parseFloat(s);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    private static int zeros(float[] values) {
+        int n = 0;
+        for (float v : values) {
+            if (v == 0f) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private byte[] dense(float[] values) {
+        ByteBuffer b = ByteBuffer.allocate(rows * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        b.asFloatBuffer().put(values);
+        return b.array();
+    }
+
+    private byte[] bitset(float[] values) {
+        int nonzero = rows - zeros(values);
+        boolean allOnes = true;
+        long[] words = new long[(rows + 63) >>> 6];
+        for (int r = 0; r < rows; r++) {
+            if (values[r] != 0f) {
+                words[r >>> 6] |= 1L << r;
+                allOnes &= values[r] == 1f;
+            }
+        }
+        ByteBuffer b = ByteBuffer.allocate(Integer.BYTES + 1 + words.length * Long.BYTES
+                + (allOnes ? 0 : nonzero * Float.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(nonzero).put((byte) (allOnes ? 1 : 0));
+        for (long w : words) {
+            b.putLong(w);
+        }
+        if (!allOnes) {
+            for (float v : values) {
+                if (v != 0f) {
+                    b.putFloat(v);
+                }
+            }
+        }
+        return b.array();
+    }
+
+    private byte[] rle(float[] values) {
+        List<int[]> runs = new ArrayList<>();
+        for (int r = 0; r < rows; ) {
+            int bits = Float.floatToIntBits(values[r]);
+            int end = r + 1;
+            while (end < rows && Float.floatToIntBits(values[end]) == bits) {
+                end++;
+            }
+            runs.add(new int[] {end - r, bits});
+            r = end;
+        }
+        ByteBuffer b = ByteBuffer.allocate(Integer.BYTES + runs.size() * 2 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(runs.size());
+        for (int[] run : runs) {
+            b.putInt(run[0]).putInt(run[1]);
+        }
+        return b.array();
+    }
+
+    private byte[] dict(List<String> column) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        int[] codes = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            codes[r] = ids.computeIfAbsent(column.get(r), k -> ids.size());
+        }
+        int width = ids.size() <= 0x100 ? 1 : ids.size() <= 0x10000 ? 2 : 4;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer b = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        out.writeBytes(b.putInt(0, ids.size()).array());
+        for (String s : ids.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeBytes(b.putInt(0, bytes.length).array());
+            out.writeBytes(bytes);
+        }
+        out.write(width);
+        ByteBuffer packed = ByteBuffer.allocate(rows * width).order(ByteOrder.LITTLE_ENDIAN);
+        for (int code : codes) {
+            if (width == 1) {
+                packed.put((byte) code);
+            } else if (width == 2) {
+                packed.putShort((short) code);
+            } else {
+                packed.putInt(code);
+            }
+        }
+        out.writeBytes(packed.array());
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,294 @@
+package satd.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The little of the FlatBuffers wire format that Arrow IPC metadata needs:
+ * tables of scalars and references, strings, vectors of tables and vectors
+ * of structs, written front to back, and field access on the read side.
+ *
+ * A buffer starts with the offset of its root table. A table starts with
+ * the signed distance back to its vtable (vtable size, table size, then one
+ * field offset per slot, 0 when absent), followed by its fields. References
+ * are unsigned offsets from where they are stored, so every object is
+ * written after the one that points at it.
+ */
+final class FlatBuffers {
+
+    private FlatBuffers() {
+    }
+
+    private interface Node {
+    }
+
+    private static final class Str implements Node {
+        final byte[] bytes;
+
+        Str(String s) {
+            bytes = s.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Tables implements Node {
+        final List<Table> tables;
+
+        Tables(List<Table> tables) {
+            this.tables = tables;
+        }
+    }
+
+    private static final class Structs implements Node {
+        final int count;
+        final byte[] bytes;
+
+        Structs(int count, byte[] bytes) {
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+
+    /** A table under construction: one value per slot, in field-declaration order. */
+    static final class Table implements Node {
+        private final Object[] values = new Object[16];
+        private final int[] sizes = new int[16];
+        private int slots;
+
+        private Table set(int slot, Object value, int size) {
+            values[slot] = value;
+            sizes[slot] = size;
+            slots = Math.max(slots, slot + 1);
+            return this;
+        }
+
+        Table addByte(int slot, int v) {
+            return set(slot, (long) v, 1);
+        }
+
+        Table addBool(int slot, boolean v) {
+            return set(slot, v ? 1L : 0L, 1);
+        }
+
+        Table addShort(int slot, int v) {
+            return set(slot, (long) v, 2);
+        }
+
+        Table addInt(int slot, int v) {
+            return set(slot, (long) v, 4);
+        }
+
+        Table addLong(int slot, long v) {
+            return set(slot, v, 8);
+        }
+
+        Table add(int slot, Table t) {
+            return set(slot, t, 4);
+        }
+
+        Table addString(int slot, String s) {
+            return set(slot, new Str(s), 4);
+        }
+
+        Table addTables(int slot, List<Table> tables) {
+            return set(slot, new Tables(tables), 4);
+        }
+
+        /** A vector of {@code count} structs whose little-endian bytes are {@code bytes}; aligned to 8. */
+        Table addStructs(int slot, int count, byte[] bytes) {
+            return set(slot, new Structs(count, bytes), 4);
+        }
+    }
+
+    /** Serializes the buffer rooted at {@code root}; its length is a multiple of 8. */
+    static byte[] finish(Table root) {
+        Out out = new Out();
+        out.pos = 4;
+        int at = out.write(root);
+        out.putInt(0, at);
+        out.pos = (out.pos + 7) & ~7;
+        return Arrays.copyOf(out.buf, out.pos);
+    }
+
+    private static final class Out {
+        byte[] buf = new byte[256];
+        int pos;
+
+        int write(Node n) {
+            if (n instanceof Table) {
+                return table((Table) n);
+            } else if (n instanceof Str) {
+                byte[] b = ((Str) n).bytes;
+                align(4);
+                int at = pos;
+                ensure(pos + 4);
+                putInt(pos, b.length);
+                pos += 4;
+                put(b);
+                pos++;
+                ensure(pos);
+                return at;
+            } else if (n instanceof Tables) {
+                List<Table> tables = ((Tables) n).tables;
+                align(4);
+                int at = pos;
+                ensure(pos + 4);
+                putInt(pos, tables.size());
+                pos += 4 + 4 * tables.size();
+                ensure(pos);
+                for (int i = 0; i < tables.size(); i++) {
+                    int slot = at + 4 + 4 * i;
+                    putInt(slot, table(tables.get(i)) - slot);
+                }
+                return at;
+            } else {
+                Structs s = (Structs) n;
+                align(4);
+                if ((pos + 4) % 8 != 0) {
+                    pos += 4;
+                }
+                int at = pos;
+                ensure(pos + 4);
+                putInt(pos, s.count);
+                pos += 4;
+                put(s.bytes);
+                return at;
+            }
+        }
+
+        private int table(Table t) {
+            int n = t.slots;
+            int vtableSize = 4 + 2 * n;
+            int[] offsets = new int[n];
+            int size = 4;
+            for (int width = 8; width >= 1; width /= 2) {
+                for (int s = 0; s < n; s++) {
+                    if (t.values[s] != null && t.sizes[s] == width) {
+                        size = (size + width - 1) & -width;
+                        offsets[s] = size;
+                        size += width;
+                    }
+                }
+            }
+            int at = (pos + vtableSize + 7) & ~7;
+            int vtable = at - vtableSize;
+            ensure(at + size);
+            putShort(vtable, vtableSize);
+            putShort(vtable + 2, size);
+            for (int s = 0; s < n; s++) {
+                putShort(vtable + 4 + 2 * s, offsets[s]);
+            }
+            putInt(at, at - vtable);
+            List<Integer> references = new ArrayList<>();
+            for (int s = 0; s < n; s++) {
+                Object v = t.values[s];
+                if (v instanceof Long) {
+                    long x = (Long) v;
+                    for (int k = 0; k < t.sizes[s]; k++) {
+                        buf[at + offsets[s] + k] = (byte) (x >>> (8 * k));
+                    }
+                } else if (v != null) {
+                    references.add(s);
+                }
+            }
+            pos = at + size;
+            for (int s : references) {
+                int field = at + offsets[s];
+                putInt(field, write((Node) t.values[s]) - field);
+            }
+            return at;
+        }
+
+        private void align(int a) {
+            pos = (pos + a - 1) & -a;
+            ensure(pos);
+        }
+
+        private void put(byte[] b) {
+            ensure(pos + b.length);
+            System.arraycopy(b, 0, buf, pos, b.length);
+            pos += b.length;
+        }
+
+        private void putShort(int at, int v) {
+            buf[at] = (byte) v;
+            buf[at + 1] = (byte) (v >>> 8);
+        }
+
+        void putInt(int at, int v) {
+            for (int k = 0; k < 4; k++) {
+                buf[at + k] = (byte) (v >>> (8 * k));
+            }
+        }
+
+        private void ensure(int size) {
+            if (size > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(size, buf.length * 2));
+            }
+        }
+    }
+
+    // Reading; b is little-endian and positions are absolute.
+
+    /** Position of the root table of the buffer starting at {@code at}. */
+    static int root(ByteBuffer b, int at) {
+        return at + b.getInt(at);
+    }
+
+    /** Position of field {@code slot} of the table at {@code table}, or 0 when absent. */
+    static int field(ByteBuffer b, int table, int slot) {
+        int vtable = table - b.getInt(table);
+        int vtableSize = b.getShort(vtable) & 0xFFFF;
+        int entry = 4 + 2 * slot;
+        if (entry >= vtableSize) {
+            return 0;
+        }
+        int off = b.getShort(vtable + entry) & 0xFFFF;
+        return off == 0 ? 0 : table + off;
+    }
+
+    /** Object (table, vector or string) referenced by field {@code slot}, or 0 when absent. */
+    static int ref(ByteBuffer b, int table, int slot) {
+        int f = field(b, table, slot);
+        return f == 0 ? 0 : f + b.getInt(f);
+    }
+
+    static long getLong(ByteBuffer b, int table, int slot, long otherwise) {
+        int f = field(b, table, slot);
+        return f == 0 ? otherwise : b.getLong(f);
+    }
+
+    static int getInt(ByteBuffer b, int table, int slot, int otherwise) {
+        int f = field(b, table, slot);
+        return f == 0 ? otherwise : b.getInt(f);
+    }
+
+    static int getShort(ByteBuffer b, int table, int slot, int otherwise) {
+        int f = field(b, table, slot);
+        return f == 0 ? otherwise : b.getShort(f);
+    }
+
+    static int getByte(ByteBuffer b, int table, int slot, int otherwise) {
+        int f = field(b, table, slot);
+        return f == 0 ? otherwise : b.get(f) & 0xFF;
+    }
+
+    /** Length of the vector at {@code vector}; its elements start 4 bytes further. */
+    static int length(ByteBuffer b, int vector) {
+        return vector == 0 ? 0 : b.getInt(vector);
+    }
+
+    /** Table {@code i} of the vector of tables at {@code vector}. */
+    static int table(ByteBuffer b, int vector, int i) {
+        int slot = vector + 4 + 4 * i;
+        return slot + b.getInt(slot);
+    }
+
+    static String string(ByteBuffer b, int string) {
+        byte[] bytes = new byte[b.getInt(string)];
+        b.get(string + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
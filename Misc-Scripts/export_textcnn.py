@@ -0,0 +1,100 @@
+#! /usr/bin/env python
+
+# Exports a TextCNN trained by train.py for satd.learn.TextCnn (Java-Pipeline):
+# vocabulary, embedding, convolution and output weights in one little-endian
+# file, see the layout in TextCnn.java. With --check_comments, also writes
+# <out>.check: the scores TensorFlow gives every comment of that file (one per
+# line), for `TextCnn --check` to compare against.
+#
+#   python export_textcnn.py --run_dir runs/1500000000 --out runs/1500000000/model.cnn \
+#       --check_comments data/satd.txt
+
+import os
+import re
+import struct
+import sys
+
+import numpy as np
+import tensorflow as tf
+from tensorflow.contrib import learn
+import data_helpers
+
+tf.flags.DEFINE_string("run_dir", "", "Output directory of train.py (holds vocab and checkpoints/)")
+tf.flags.DEFINE_string("out", "model.cnn", "Model file to write")
+tf.flags.DEFINE_string("check_comments", "", "Comments, one per line, to score with TensorFlow")
+
+FLAGS = tf.flags.FLAGS
+FLAGS._parse_flags()
+
+
+def filter_sizes(meta_file):
+    # The rows of output/W follow the order in which TextCNN concatenated the
+    # pooled features, which is the --filter_sizes order train.py was given;
+    # train.py does not save its flags, so read it from the concat op.
+    meta = tf.MetaGraphDef()
+    with open(meta_file, "rb") as f:
+        meta.ParseFromString(f.read())
+    pool = re.compile(r"^conv-maxpool-(\d+)/pool(:0)?$")
+    found = []
+    for node in meta.graph_def.node:
+        if node.op in ("Concat", "ConcatV2"):
+            inputs = [pool.match(i) for i in node.input]
+            if any(inputs):
+                found.append([int(m.group(1)) for m in inputs if m])
+    if len(found) != 1:
+        sys.exit("{}: expected one concat of the conv-maxpool outputs, found {}".format(meta_file, len(found)))
+    return found[0]
+
+
+checkpoint = tf.train.latest_checkpoint(os.path.join(FLAGS.run_dir, "checkpoints"))
+vocab_processor = learn.preprocessing.VocabularyProcessor.restore(os.path.join(FLAGS.run_dir, "vocab"))
+vocabulary = vocab_processor.vocabulary_
+reader = tf.train.NewCheckpointReader(checkpoint)
+
+embedding = reader.get_tensor("embedding/W")
+sizes = filter_sizes(checkpoint + ".meta")
+trained = set(int(name[len("conv-maxpool-"):-len("/W")])
+              for name in reader.get_variable_to_shape_map()
+              if name.startswith("conv-maxpool-") and name.endswith("/W"))
+if len(set(sizes)) != len(sizes) or set(sizes) != trained:
+    sys.exit("concat order {} does not match the checkpoint's filters {}".format(sizes, sorted(trained)))
+output = reader.get_tensor("output/W")
+filters = reader.get_tensor("conv-maxpool-%d/W" % sizes[0]).shape[3]
+
+
+def floats(array):
+    return np.ascontiguousarray(array, dtype="<f4").tobytes()
+
+
+with open(FLAGS.out, "wb") as f:
+    f.write(b"SATDCNN1")
+    f.write(struct.pack("<6i", len(vocabulary), embedding.shape[1], vocab_processor.max_document_length,
+                        len(sizes), filters, output.shape[1]))
+    f.write(struct.pack("<%di" % len(sizes), *sizes))
+    for i in range(len(vocabulary)):
+        word = vocabulary.reverse(i).encode("utf-8")
+        f.write(struct.pack("<i", len(word)))
+        f.write(word)
+    f.write(floats(embedding))
+    for size in sizes:
+        f.write(floats(reader.get_tensor("conv-maxpool-%d/W" % size)))  # [size, dim, 1, filters]
+        f.write(floats(reader.get_tensor("conv-maxpool-%d/b" % size)))
+    f.write(floats(output))
+    f.write(floats(reader.get_tensor("output/b")))
+print("{} words, filter sizes {}, {} filters -> {}".format(len(vocabulary), sizes, filters, FLAGS.out))
+
+if FLAGS.check_comments:
+    with open(FLAGS.check_comments) as f:
+        comments = [line.rstrip("\n") for line in f]
+    x = np.array(list(vocab_processor.transform([data_helpers.clean_str(c) for c in comments])))
+    with tf.Session() as sess:
+        saver = tf.train.import_meta_graph(checkpoint + ".meta")
+        saver.restore(sess, checkpoint)
+        graph = tf.get_default_graph()
+        scores = sess.run(graph.get_operation_by_name("output/scores").outputs[0],
+                          {graph.get_operation_by_name("input_x").outputs[0]: x,
+                           graph.get_operation_by_name("dropout_keep_prob").outputs[0]: 1.0})
+    with open(FLAGS.out + ".check", "w") as f:
+        for comment, s in zip(comments, scores):
+            f.write("{}\t{}\n".format(" ".join("%.7g" % v for v in s), comment))
+    print("{} comments scored -> {}.check".format(len(comments), FLAGS.out))
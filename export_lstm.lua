@@ -0,0 +1,76 @@
+-- Exports an LSTM classifier built with LSTM.lua for satd.learn.Lstm
+-- (Java-Pipeline), in the layout described in Lstm.java.
+--
+-- The .t7 file must hold a table
+--   {layers = {cell, cell, ...}, classifier = nn.Linear(rnn_size, classes)}
+-- where every cell is an LSTM.create(...) gModule fed with word2vec rows,
+-- and the classifier takes the last h of the top cell (a LogSoftMax after
+-- it is applied by the Java side as a softmax).
+--
+--   th export_lstm.lua model.t7 satd.lstm
+
+require 'nn'
+require 'nngraph'
+
+local model = torch.load(arg[1])
+local out = torch.DiskFile(arg[2], 'w'):binary():littleEndianEncoding()
+
+-- whether linear's last output is its affine map of input
+local function consumed(linear, input)
+  local expected = torch.addmm(linear.bias:view(1, -1):expandAs(linear.output), input, linear.weight:t())
+  return (linear.output - expected):abs():max() <= 1e-4 * (1 + expected:abs():max())
+end
+
+-- i2h and h2h of a cell, told apart by the node each consumes: h2h takes
+-- prev_h, so it is the one with rnn_size inputs; when the word vectors are
+-- rnn_size wide too, a forward pass with distinct x and prev_h shows which
+-- Linear read which, since findModules does not keep LSTM.create's order
+local function linears(cell)
+  local found = cell:findModules('nn.Linear')
+  assert(#found == 2, 'expected the i2h and h2h of LSTM.create')
+  local a, b = found[1], found[2]
+  local hidden = a.weight:size(1) / 4
+  assert(b.weight:size(1) == 4 * hidden, 'i2h and h2h must both give 4 * rnn_size outputs')
+  local wa, wb = a.weight:size(2), b.weight:size(2)
+  if wa ~= wb then
+    assert(wa == hidden or wb == hidden, 'neither Linear takes rnn_size inputs')
+    if wa == hidden then
+      return b, a
+    end
+    return a, b
+  end
+  local x = torch.randn(1, wa):typeAs(a.weight)
+  local h = torch.randn(1, hidden):typeAs(a.weight)
+  cell:forward({x, torch.zeros(1, hidden):typeAs(a.weight), h})
+  if consumed(a, x) and consumed(b, h) then
+    return a, b
+  elseif consumed(b, x) and consumed(a, h) then
+    return b, a
+  end
+  error('cannot tell i2h from h2h: neither Linear reads x alone')
+end
+
+-- a copy, so views into flattened parameters write only their own values
+local function write(t)
+  out:writeFloat(t:clone():float():storage())
+end
+
+local first = linears(model.layers[1])
+local hidden = first.weight:size(1) / 4
+out:writeString('SATDLSTM')
+out:writeInt(#model.layers)
+out:writeInt(first.weight:size(2))
+out:writeInt(hidden)
+out:writeInt(model.classifier.weight:size(1))
+for _, cell in ipairs(model.layers) do
+  local i2h, h2h = linears(cell)
+  assert(h2h.weight:size(2) == hidden, 'h2h must take rnn_size inputs')
+  write(i2h.weight)
+  write(i2h.bias)
+  write(h2h.weight)
+  write(h2h.bias)
+end
+write(model.classifier.weight)
+write(model.classifier.bias)
+out:close()
+print(string.format('%d layers of %d units -> %s', #model.layers, hidden, arg[2]))